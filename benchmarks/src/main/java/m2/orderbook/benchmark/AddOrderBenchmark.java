@@ -0,0 +1,64 @@
+package m2.orderbook.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderSide;
+
+// addOrder of a passive order into a book of depth x occupancy, followed by removing it again
+// so the book stays the same size across iterations
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddOrderBenchmark {
+
+	@Param({"BIG_DECIMAL", "FIXED_POINT"})
+	public EngineMode engineMode;
+
+	@Param({"10", "1000"})
+	public int depth;
+
+	@Param({"1", "100"})
+	public int occupancy;
+
+	private MatchingEngine book;
+	private Order[] orders;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		book = BookFixture.newBook(engineMode);
+		BookFixture.fill(book, depth, occupancy);
+		// new orders spread over the existing levels, queued behind the resting ones
+		orders = new Order[1024];
+		for(int i = 0; i < orders.length; i++) {
+			orders[i] = BookFixture.restingOrder(OrderSide.BUY, i % depth, occupancy + i);
+		}
+	}
+
+	@Benchmark
+	public void addAndRemove() {
+		Order order = orders[next];
+		next = (next + 1) & (orders.length - 1);
+		book.addOrder(order);
+		book.cancelOrder(order.getOrderId());
+	}
+}
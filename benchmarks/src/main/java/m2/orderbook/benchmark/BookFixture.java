@@ -0,0 +1,53 @@
+package m2.orderbook.benchmark;
+
+import java.math.BigDecimal;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.MatchingEngineFactory;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+
+// builds books with a given number of price levels per side and orders per level
+final class BookFixture {
+
+	static final BigDecimal MID_PRICE = new BigDecimal("1000");
+	static final BigDecimal TICK = new BigDecimal("0.01");
+	static final BigDecimal ORDER_QUANTITY = BigDecimal.ONE;
+
+	private BookFixture() {
+	}
+
+	static MatchingEngine newBook(EngineMode engineMode) {
+		return MatchingEngineFactory.create(Symbol.BTC, engineMode);
+	}
+
+	// sells from MID_PRICE + TICK upwards, buys from MID_PRICE - TICK downwards
+	static BigDecimal levelPrice(OrderSide side, int level) {
+		BigDecimal offset = TICK.multiply(BigDecimal.valueOf(level + 1L));
+		return side == OrderSide.SELL ? MID_PRICE.add(offset) : MID_PRICE.subtract(offset);
+	}
+
+	static String orderId(OrderSide side, int level, int position) {
+		return side.name().charAt(0) + "-" + level + "-" + position;
+	}
+
+	static Order restingOrder(OrderSide side, int level, int position) {
+		return new Order(orderId(side, level, position), levelPrice(side, level), ORDER_QUANTITY, side, Ordertype.LIMIT);
+	}
+
+	static void fillSide(MatchingEngine book, OrderSide side, int depth, int occupancy) {
+		for(int level = 0; level < depth; level++) {
+			for(int position = 0; position < occupancy; position++) {
+				book.addOrder(restingOrder(side, level, position));
+			}
+		}
+	}
+
+	static void fill(MatchingEngine book, int depth, int occupancy) {
+		fillSide(book, OrderSide.SELL, depth, occupancy);
+		fillSide(book, OrderSide.BUY, depth, occupancy);
+	}
+}
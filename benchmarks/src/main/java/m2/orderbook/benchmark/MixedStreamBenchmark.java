@@ -0,0 +1,141 @@
+package m2.orderbook.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+
+// Replays a generated stream of adds (passive and crossing), cancels and market orders
+// against a fresh book. Results are reported per message.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixedStreamBenchmark {
+
+	static final int MESSAGES = 100_000;
+
+	@Param({"BIG_DECIMAL", "FIXED_POINT"})
+	public EngineMode engineMode;
+
+	// percentages of the stream, the rest are limit adds
+	@Param({"30"})
+	public int cancelPercent;
+
+	@Param({"5"})
+	public int marketPercent;
+
+	// half width of the band limit prices are drawn from, in ticks around the mid
+	@Param({"50"})
+	public int priceBand;
+
+	private static final byte ADD = 0;
+	private static final byte CANCEL = 1;
+
+	private byte[] actions;
+	private String[] ids;
+	private BigDecimal[] prices;
+	private BigDecimal[] quantities;
+	private OrderSide[] sides;
+	private Ordertype[] types;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		actions = new byte[MESSAGES];
+		ids = new String[MESSAGES];
+		prices = new BigDecimal[MESSAGES];
+		quantities = new BigDecimal[MESSAGES];
+		sides = new OrderSide[MESSAGES];
+		types = new Ordertype[MESSAGES];
+
+		// run the stream once on a scratch book so cancels only target orders which are still resting
+		MatchingEngine scratch = BookFixture.newBook(EngineMode.FIXED_POINT);
+		List<String> live = new ArrayList<>();
+		Random random = new Random(7);
+		int generated = 0;
+		long id = 0;
+		while(generated < MESSAGES) {
+			int roll = random.nextInt(100);
+			if(roll < cancelPercent) {
+				if(live.isEmpty()) {
+					continue;
+				}
+				String orderId = live.remove(random.nextInt(live.size()));
+				if(!isResting(scratch, orderId)) {
+					continue;
+				}
+				actions[generated] = CANCEL;
+				ids[generated] = orderId;
+			} else {
+				OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+				Ordertype type = roll < cancelPercent + marketPercent ? Ordertype.MARKET : Ordertype.LIMIT;
+				BigDecimal price = null;
+				if(type == Ordertype.LIMIT) {
+					// skew slightly passive so the book builds depth
+					int ticks = random.nextInt(2 * priceBand + 1) - priceBand + (side == OrderSide.BUY ? -priceBand / 5 : priceBand / 5);
+					price = BookFixture.MID_PRICE.add(BookFixture.TICK.multiply(BigDecimal.valueOf(ticks)));
+				}
+				BigDecimal quantity = BigDecimal.valueOf(1 + random.nextInt(10));
+				String orderId = "o" + id++;
+				scratch.executeOrder(new Order(orderId, price, quantity, side, type), OrderActionType.ADD);
+				if(type == Ordertype.LIMIT) {
+					live.add(orderId);
+				}
+				actions[generated] = ADD;
+				ids[generated] = orderId;
+				prices[generated] = price;
+				quantities[generated] = quantity;
+				sides[generated] = side;
+				types[generated] = type;
+			}
+			generated++;
+		}
+	}
+
+	private static boolean isResting(MatchingEngine scratch, String orderId) {
+		try {
+			scratch.cancelOrder(orderId);
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MESSAGES)
+	public MatchingEngine replay() {
+		MatchingEngine book = BookFixture.newBook(engineMode);
+		for(int i = 0; i < MESSAGES; i++) {
+			if(actions[i] == CANCEL) {
+				book.cancelOrder(ids[i]);
+			} else {
+				book.executeOrder(new Order(ids[i], prices[i], quantities[i], sides[i], types[i]), OrderActionType.ADD);
+			}
+		}
+		return book;
+	}
+}
@@ -0,0 +1,65 @@
+package m2.orderbook.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderSide;
+
+// removeOrder from a level holding queueDepth orders; the removed order is re-added at the
+// back of the queue so the level depth stays constant
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoveOrderBenchmark {
+
+	@Param({"BIG_DECIMAL", "FIXED_POINT"})
+	public EngineMode engineMode;
+
+	@Param({"1", "100", "10000"})
+	public int queueDepth;
+
+	@Param({"100"})
+	public int depth;
+
+	private MatchingEngine book;
+	private Order[] queue;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		book = BookFixture.newBook(engineMode);
+		BookFixture.fill(book, depth, 1);
+		queue = new Order[queueDepth];
+		for(int i = 0; i < queueDepth; i++) {
+			// second best bid level, away from any matching
+			queue[i] = BookFixture.restingOrder(OrderSide.BUY, 1, 1 + i);
+			book.addOrder(queue[i]);
+		}
+	}
+
+	@Benchmark
+	public void removeAndReAdd() {
+		Order order = queue[next];
+		next = next + 1 == queue.length ? 0 : next + 1;
+		book.removeOrder(order);
+		book.addOrder(order);
+	}
+}
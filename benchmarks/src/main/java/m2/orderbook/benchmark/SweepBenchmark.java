@@ -0,0 +1,91 @@
+package m2.orderbook.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+
+// executeOrder of an aggressive buy which consumes levelsSwept complete ask levels.
+// The consumed levels are restored before every invocation (not measured).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepBenchmark {
+
+	@Param({"BIG_DECIMAL", "FIXED_POINT"})
+	public EngineMode engineMode;
+
+	@Param({"1", "10", "100"})
+	public int levelsSwept;
+
+	@Param({"1", "10"})
+	public int occupancy;
+
+	@Param({"1000"})
+	public int depth;
+
+	private MatchingEngine book;
+	private BigDecimal sweepQuantity;
+	private BigDecimal sweepLimitPrice;
+	private long sequence;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		book = BookFixture.newBook(engineMode);
+		BookFixture.fill(book, depth, occupancy);
+		// the swept levels are (re)filled per invocation
+		for(int level = 0; level < levelsSwept; level++) {
+			for(int position = 0; position < occupancy; position++) {
+				book.cancelOrder(BookFixture.orderId(OrderSide.SELL, level, position));
+			}
+		}
+		sweepQuantity = BookFixture.ORDER_QUANTITY.multiply(BigDecimal.valueOf((long) levelsSwept * occupancy));
+		sweepLimitPrice = BookFixture.levelPrice(OrderSide.SELL, levelsSwept - 1);
+	}
+
+	@Setup(Level.Invocation)
+	public void refill() {
+		for(int level = 0; level < levelsSwept; level++) {
+			for(int position = 0; position < occupancy; position++) {
+				String id = BookFixture.orderId(OrderSide.SELL, level, position) + "-" + sequence;
+				book.addOrder(new Order(id, BookFixture.levelPrice(OrderSide.SELL, level), BookFixture.ORDER_QUANTITY, OrderSide.SELL, Ordertype.LIMIT));
+			}
+		}
+		sequence++;
+	}
+
+	@Benchmark
+	public Order limitSweep() {
+		Order order = new Order("taker-" + sequence, sweepLimitPrice, sweepQuantity, OrderSide.BUY, Ordertype.LIMIT);
+		book.executeOrder(order, OrderActionType.ADD);
+		return order;
+	}
+
+	@Benchmark
+	public Order marketSweep() {
+		Order order = new Order("taker-" + sequence, null, sweepQuantity, OrderSide.BUY, Ordertype.MARKET);
+		book.executeOrder(order, OrderActionType.ADD);
+		return order;
+	}
+}
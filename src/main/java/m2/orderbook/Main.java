@@ -1,12 +1,14 @@
 package m2.orderbook;
 
 import java.math.BigDecimal;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 
 import m2.orderbook.dto.Order;
+import m2.orderbook.enums.EngineMode;
 import m2.orderbook.enums.OrderSide;
 import m2.orderbook.enums.Ordertype;
-import m2.orderbook.service.impl.OrderbookServiceImpl;
+import m2.orderbook.event.AsyncConsoleEventListener;
+import m2.orderbook.service.impl.SequencedOrderbookServiceImpl;
 import m2.orderbook.util.OrderUtility;
 
 public class Main {
@@ -16,24 +18,18 @@ public class Main {
 		
 		
 		// Adding sample code for Matching engine Testing
-		final OrderbookServiceImpl serv = new OrderbookServiceImpl();
-		serv.initializeOrderBook();
-
-		final Order limitOrder =  new Order(OrderUtility.getOrderId(), new BigDecimal(6), new BigDecimal(9), OrderSide.BUY, Ordertype.LIMIT);
-		Executors.newSingleThreadExecutor().execute(new Runnable() {
-		    @Override 
-		    public void run() {
-		    	serv.placeNewOrder(limitOrder);
-		    	serv.cancelOrder(limitOrder);
-		    }
-		});
-		
-		Executors.newSingleThreadExecutor().execute(new Runnable() {
-		    @Override 
-		    public void run() {
-		    	serv.placeNewOrder( new Order(OrderUtility.getOrderId(), null, new BigDecimal(5), OrderSide.BUY, Ordertype.MARKET));
-		    }
-		});
+		try (AsyncConsoleEventListener console = new AsyncConsoleEventListener();
+				SequencedOrderbookServiceImpl serv = new SequencedOrderbookServiceImpl(EngineMode.BIG_DECIMAL, console)) {
+			serv.initializeOrderBook();
+
+			// producers publish into the sequencer, the matching thread applies commands in order
+			final Order limitOrder =  new Order(OrderUtility.getOrderId(), new BigDecimal(6), new BigDecimal(9), OrderSide.BUY, Ordertype.LIMIT);
+			CompletableFuture<String> limit = serv.placeNewOrderAsync(limitOrder);
+			CompletableFuture<String> cancel = serv.cancelOrderAsync(limitOrder.getOrderId());
+			CompletableFuture<String> market = serv.placeNewOrderAsync( new Order(OrderUtility.getOrderId(), null, new BigDecimal(5), OrderSide.BUY, Ordertype.MARKET));
+
+			CompletableFuture.allOf(limit, cancel, market).join();
+		}
 		
 	
 		
@@ -1,80 +1,221 @@
 package m2.orderbook;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.dto.MassCancel;
 import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.RestingOrderVisitor;
+import m2.orderbook.engine.StopOrderVisitor;
+import m2.orderbook.engine.TopOfBook;
 import m2.orderbook.enums.OrderActionType;
 import m2.orderbook.enums.OrderSide;
 import m2.orderbook.enums.Ordertype;
 import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
 import m2.orderbook.exception.OrderException;
+import m2.orderbook.metrics.EngineMetrics;
 import m2.orderbook.util.BigDecimalUtility;
 
 
-public class OrderBook {
+public class OrderBook implements MatchingEngine {
 
 	private Symbol symbol;
-	private final TreeMap<BigDecimal, Queue<Order>> sellOrders;
-	private final TreeMap<BigDecimal, Queue<Order>> buyOrders;
+	private final TreeMap<BigDecimal, OrderQueue> sellOrders;
+	private final TreeMap<BigDecimal, OrderQueue> buyOrders;
+	// parked stops by stop price: buy stops lowest first, sell stops highest first
+	private final TreeMap<BigDecimal, OrderQueue> buyStops;
+	private final TreeMap<BigDecimal, OrderQueue> sellStops;
+	private int stopCount;
+	// book orders and parked stops
+	private final HashMap<String, OrderQueue.Node> orderIndex;
+	// book orders and parked stops by owner in arrival order
+	private final HashMap<String, Set<OrderQueue.Node>> ownerIndex = new HashMap<>();
+	private volatile OrderEventListener eventListener = OrderEventListener.NO_OP;
+	private final TopOfBook topOfBook;
+	private MarketDepth publishedDepth = new MarketDepth(TopOfBook.DEFAULT_LEVELS);
+	// depth of the current command, published only when it differs from publishedDepth
+	private MarketDepth pendingDepth = new MarketDepth(TopOfBook.DEFAULT_LEVELS);
+	private boolean inBatch;
+	private volatile EngineMetrics metrics;
+	// per order counters for the metrics, reset for every ADD
+	private int fills;
+	private int levelsTraversed;
+	// range of prices traded by the current command including the stops it triggered, null before the first trade
+	private BigDecimal lowTradePrice;
+	private BigDecimal highTradePrice;
+	private boolean triggering;
 
 	public synchronized void executeOrder(Order order, OrderActionType orderActionType) throws OrderException {
-		System.out.println("\nNEW ORDER:  Price: "+order.getPrice()+" , Quantity: "+order.getQuantity()+ " , side: "+ order.getSide()+" , type: "+order.getType());
+		if(order.getSymbol() != symbol)
+			throw new OrderException("Order symbol " + order.getSymbol() + " does not match book " + symbol + ", Order:" + order.getOrderId());
 		switch (orderActionType) {
 		case ADD:
-
-			checkExistingOrderToMatch(getOrderMap(order.getSide(), false), order);
-			if(order.hasOrderQuantityLeft()) {
-				System.out.println("\nLIMIT: Add remaining order to orderbook at Price: "+order.getPrice()+" , Quantity: "+order.getQuantity());
-				addOrder(order);
+			EngineMetrics metrics = this.metrics;
+			long start = metrics == null ? 0L : System.nanoTime();
+			// a reused id is refused before anything trades, not when the rest of the order would go in the book
+			if((order.getType().canRest() || order.getType().isStop()) && orderIndex.containsKey(order.getOrderId())) {
+				if(metrics != null) {
+					metrics.recordReject();
+				}
+				throw new OrderException("Duplicate order id, Order:" + order.getOrderId());
+			}
+			eventListener.onOrderAccepted(symbol, order.getOrderId(), order.getSide(), order.getType(), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()));
+
+			fills = 0;
+			levelsTraversed = 0;
+			lowTradePrice = null;
+			highTradePrice = null;
+			try {
+				if(order.getType().isStop()) {
+					// only trades after this one can trigger it
+					parkStop(order);
+				} else {
+					run(order);
+				}
+				if(metrics != null) {
+					metrics.recordOrder(order.getType(), System.nanoTime() - start, fills, levelsTraversed, restingOrderCount());
+				}
+				triggerStops();
+			} catch (OrderException e) {
+				if(metrics != null) {
+					metrics.recordReject();
+				}
+				throw e;
+			} finally {
+				publishTopOfBook();
 			}
 
 			break;
 		case REMOVE:
 			removeOrder(order);
 			break;
+		case AMEND:
+			amendOrder(order);
+			break;
 		default:
 			throw new OrderException("Unexpected Order Action Type:" + orderActionType);
 		}
 	}
 
 
-	private void checkExistingOrderToMatch(TreeMap<BigDecimal, Queue<Order>> orderMapToCompare, Order order) {
+	private void run(Order order) {
+		checkExistingOrderToMatch(getOrderMap(order.getSide(), false), order);
+		if(order.hasOrderQuantityLeft() && order.getType() == Ordertype.LIMIT) {
+			restOrder(order);
+			eventListener.onOrderRested(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()));
+		}
+	}
+
+	private void parkStop(Order order) throws OrderException {
+		if(orderIndex.containsKey(order.getOrderId()))
+			throw new OrderException("Duplicate order id, Order:" + order.getOrderId());
+		TreeMap<BigDecimal, OrderQueue> stopMap = getStopMap(order.getSide());
+		OrderQueue stopQueue = stopMap.get(order.getStopPrice());
+		if (stopQueue == null) {
+			stopQueue = new OrderQueue();
+			stopMap.put(order.getStopPrice(), stopQueue);
+		}
+		OrderQueue.Node node = stopQueue.append(order);
+		orderIndex.put(order.getOrderId(), node);
+		own(node);
+		stopCount++;
+	}
+
+	// Runs the parked stops the trades of the current command reached through the normal matching path;
+	// stops triggered by those trades follow in the same loop. Buy stops go before sell stops, each side
+	// nearest stop price first and FIFO within a price. Only the first level of each stop map is looked
+	// at per triggered stop, so the cost follows the number of triggered orders, not the parked ones.
+	private void triggerStops() {
+		if(triggering) {
+			return;
+		}
+		triggering = true;
+		try {
+			Order stop;
+			while((stop = nextTriggeredStop()) != null) {
+				EngineMetrics metrics = this.metrics;
+				long start = metrics == null ? 0L : System.nanoTime();
+				OrderQueue.Node node = orderIndex.remove(stop.getOrderId());
+				disown(node);
+				node.queue.unlink(node);
+				if(node.queue.isEmpty()) {
+					getStopMap(stop.getSide()).remove(stop.getStopPrice());
+				}
+				stopCount--;
+				eventListener.onStopTriggered(symbol, stop.getOrderId(), stop.getSide(), toFixedPoint(stop.getStopPrice()));
+
+				Order triggered = new Order(symbol, stop.getOrderId(), stop.getPrice(), stop.getQuantity(), stop.getSide(), stop.getType().triggeredType());
+				triggered.setOwner(stop.getOwner());
+				fills = 0;
+				levelsTraversed = 0;
+				run(triggered);
+				if(metrics != null) {
+					metrics.recordOrder(triggered.getType(), System.nanoTime() - start, fills, levelsTraversed, restingOrderCount());
+				}
+			}
+		} finally {
+			triggering = false;
+		}
+	}
+
+	// buy stops trigger at or above their stop price, sell stops at or below
+	private Order nextTriggeredStop() {
+		if(highTradePrice == null) {
+			return null;
+		}
+		if(!buyStops.isEmpty() && buyStops.firstKey().compareTo(highTradePrice) <= 0) {
+			return buyStops.firstEntry().getValue().peek();
+		}
+		if(!sellStops.isEmpty() && sellStops.firstKey().compareTo(lowTradePrice) >= 0) {
+			return sellStops.firstEntry().getValue().peek();
+		}
+		return null;
+	}
+
+	// orders in the book, parked stops are in the index as well
+	private int restingOrderCount() {
+		return orderIndex.size() - stopCount;
+	}
+
+	private TreeMap<BigDecimal, OrderQueue> getStopMap(OrderSide side) {
+		return side == OrderSide.BUY ? buyStops : sellStops;
+	}
+
+	private void checkExistingOrderToMatch(TreeMap<BigDecimal, OrderQueue> orderMapToCompare, Order order) {
+
+		// a FOK that cannot fill completely is dropped before any queue is touched
+		if(order.getType() == Ordertype.FOK && !isFillable(orderMapToCompare, order)) {
+			eventListener.onMarketOrderUnfilled(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getQuantity()));
+			return;
+		}
 
 		// iterate through comparing order map
-		Iterator<Map.Entry<BigDecimal, Queue<Order>>> iterator = orderMapToCompare.entrySet().iterator();
+		Iterator<Map.Entry<BigDecimal, OrderQueue>> iterator = orderMapToCompare.entrySet().iterator();
 
 		if(order.getType() == Ordertype.MARKET) {
 
 			while (iterator.hasNext()) {
-				Map.Entry<BigDecimal, Queue<Order>> entry = iterator.next();
-
-				BigDecimal comparingPrice = entry.getKey();
+				Map.Entry<BigDecimal, OrderQueue> entry = iterator.next();
 
 				// iterate through order queue and execute order
-				Queue<Order> orderQueue = orderMapToCompare.get(comparingPrice);
-				Iterator<Order> queueIterator = orderQueue.iterator();
-				while(queueIterator.hasNext()) {
-					Order orderInFront = queueIterator.next();
-					if(orderInFront.getQuantity().compareTo(order.getQuantity()) > 0) {
-						orderInFront.setQuantity(BigDecimalUtility.setScale(orderInFront.getQuantity().subtract(order.getQuantity())));
-						System.out.println("\nMARKET: Complete Order matched at Price: "+comparingPrice+" , Quantity: "+order.getQuantity());
-						order.setQuantity(BigDecimal.ZERO);
-						break;
-					} else {
-						order.setQuantity(order.getQuantity().subtract(orderInFront.getQuantity()));
-						System.out.println("\nMARKET: Partial Order matched at Price: "+comparingPrice+" , Quantity: "+orderInFront.getQuantity());
-						queueIterator.remove();
-					}
-				}
+				levelsTraversed++;
+				matchQueue(entry.getKey(), entry.getValue(), order);
 
 				// remove entry from Order Book if no more orders in the queue
-				if(orderQueue.isEmpty()) {
+				if(entry.getValue().isEmpty()) {
 					iterator.remove();
 				}
 				// exit if order is fully executed
@@ -83,35 +224,22 @@ public class OrderBook {
 				}
 			}
 			if(order.hasOrderQuantityLeft()){
-				System.err.println("Orders not available for Market Order");
+				eventListener.onMarketOrderUnfilled(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getQuantity()));
 			}
 
-		}else if(order.getType() == Ordertype.LIMIT){
+		}else {
 
 			while (iterator.hasNext()) {
-				Map.Entry<BigDecimal, Queue<Order>> entry = iterator.next();
+				Map.Entry<BigDecimal, OrderQueue> entry = iterator.next();
 
 				BigDecimal comparingPrice = entry.getKey();
 				if(order.isExecutable(comparingPrice)) {
 					// iterate through order queue and execute order
-					Queue<Order> orderQueue = orderMapToCompare.get(comparingPrice);
-					Iterator<Order> queueIterator = orderQueue.iterator();
-					while(queueIterator.hasNext()) {
-						Order orderInFront = queueIterator.next();
-						if(orderInFront.getQuantity().compareTo(order.getQuantity()) > 0) {
-							orderInFront.setQuantity(BigDecimalUtility.setScale(orderInFront.getQuantity().subtract(order.getQuantity())));
-							System.out.println("\nLIMIT: Complete Order matched at Price: "+comparingPrice+" , Quantity: "+order.getQuantity());
-							order.setQuantity(BigDecimal.ZERO);
-							break;
-						} else {
-							order.setQuantity(order.getQuantity().subtract(orderInFront.getQuantity()));
-							System.out.println("\nLIMIT: Partial Order matched at Price: "+comparingPrice+" , Quantity: "+orderInFront.getQuantity());
-							queueIterator.remove();
-						}
-					}
+					levelsTraversed++;
+					matchQueue(comparingPrice, entry.getValue(), order);
 
 					// remove entry from Order Book if no more orders in the queue
-					if(orderQueue.isEmpty()) {
+					if(entry.getValue().isEmpty()) {
 						iterator.remove();
 					}
 					// exit if order is fully executed
@@ -123,56 +251,349 @@ public class OrderBook {
 					break;
 				}
 			}
+			if(order.hasOrderQuantityLeft() && !order.getType().canRest()) {
+				eventListener.onMarketOrderUnfilled(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getQuantity()));
+			}
 		}
 	}
 
-	public void addOrder(Order order) throws OrderException {
+	// Sums the queue aggregates of the executable levels, stops as soon as there is enough.
+	// Cost is O(k) in the k levels walked, not the O(log n) of the ARRAY ladder's Fenwick tree: a TreeMap
+	// keeps no prefix sums. A fillable FOK sweeps the same k levels right after, so only a killed FOK pays
+	// the walk on top, and it reads no queue. FixedPointOrderBook with an ARRAY ladder is the O(log n) path.
+	private static boolean isFillable(TreeMap<BigDecimal, OrderQueue> orderMapToCompare, Order order) {
+		BigDecimal available = BigDecimal.ZERO;
+		for (Map.Entry<BigDecimal, OrderQueue> entry : orderMapToCompare.entrySet()) {
+			if(!order.isExecutable(entry.getKey())) {
+				break;
+			}
+			available = available.add(entry.getValue().getTotalQuantity());
+			if(available.compareTo(order.getQuantity()) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void matchQueue(BigDecimal comparingPrice, OrderQueue orderQueue, Order order) {
+		if(lowTradePrice == null || comparingPrice.compareTo(lowTradePrice) < 0) {
+			lowTradePrice = comparingPrice;
+		}
+		if(highTradePrice == null || comparingPrice.compareTo(highTradePrice) > 0) {
+			highTradePrice = comparingPrice;
+		}
+		Iterator<Order> queueIterator = orderQueue.iterator();
+		while(queueIterator.hasNext() && order.hasOrderQuantityLeft()) {
+			Order orderInFront = queueIterator.next();
+			fills++;
+			if(orderInFront.getQuantity().compareTo(order.getQuantity()) > 0) {
+				orderQueue.fill(orderInFront, order.getQuantity());
+				eventListener.onTrade(symbol, order.getOrderId(), orderInFront.getOrderId(), order.getSide(), toFixedPoint(comparingPrice), toFixedPoint(order.getQuantity()));
+				order.setQuantity(BigDecimal.ZERO);
+			} else {
+				order.setQuantity(order.getQuantity().subtract(orderInFront.getQuantity()));
+				if(order.hasOrderQuantityLeft()) {
+					eventListener.onPartialFill(symbol, order.getOrderId(), orderInFront.getOrderId(), order.getSide(), toFixedPoint(comparingPrice), toFixedPoint(orderInFront.getQuantity()), toFixedPoint(order.getQuantity()));
+				} else {
+					eventListener.onTrade(symbol, order.getOrderId(), orderInFront.getOrderId(), order.getSide(), toFixedPoint(comparingPrice), toFixedPoint(orderInFront.getQuantity()));
+				}
+				queueIterator.remove();
+				disown(orderIndex.remove(orderInFront.getOrderId()));
+			}
+		}
+	}
+
+	// events carry fixed point values, 0 stands for a missing (MARKET) price
+	private static long toFixedPoint(BigDecimal value) {
+		return value == null ? 0L : BigDecimalUtility.toFixedPoint(value);
+	}
+
+	public synchronized void addOrder(Order order) throws OrderException {
+		restOrder(order);
+		publishTopOfBook();
+	}
+
+	private void restOrder(Order order) throws OrderException {
 
 		if(!order.isValidOrder()) 
 			throw new OrderException("Not executable, Order:" + order.getOrderId());
+		if(orderIndex.containsKey(order.getOrderId()))
+			throw new OrderException("Duplicate order id, Order:" + order.getOrderId());
 
 
-		TreeMap<BigDecimal, Queue<Order>> orderMap = getOrderMap(order.getSide(), true);
+		TreeMap<BigDecimal, OrderQueue> orderMap = getOrderMap(order.getSide(), true);
 
 		// if price exist add to the end of the existing queue else add a new queue
-		if (orderMap.containsKey(order.getPrice())) {
-			Queue<Order> orderQueue = orderMap.get(order.getPrice());
-			orderQueue.add(order);
-		} else {
-			Queue<Order> orderQueue = new LinkedList<>();
-			orderQueue.add(order);
+		OrderQueue orderQueue = orderMap.get(order.getPrice());
+		if (orderQueue == null) {
+			orderQueue = new OrderQueue(toFixedPoint(order.getPrice()));
 			orderMap.put(order.getPrice(), orderQueue);
 		}
+		OrderQueue.Node node = orderQueue.append(order);
+		orderIndex.put(order.getOrderId(), node);
+		own(node);
+
+	}
+
+	private void own(OrderQueue.Node node) {
+		if(node.order.getOwner() != null) {
+			ownerIndex.computeIfAbsent(node.order.getOwner(), owner -> new LinkedHashSet<>()).add(node);
+		}
+	}
 
+	private void disown(OrderQueue.Node node) {
+		String owner = node.order.getOwner();
+		if(owner == null) {
+			return;
+		}
+		Set<OrderQueue.Node> nodes = ownerIndex.get(owner);
+		if(nodes != null && nodes.remove(node) && nodes.isEmpty()) {
+			ownerIndex.remove(owner);
+		}
 	}
 
 	public void removeOrder(Order order) throws OrderException {
-		TreeMap<BigDecimal, Queue<Order>>  orderMap = getOrderMap(order.getSide(), true);
-		boolean orderNotFound = true;
-		// check a matching price available in the corresponding map
-		if(orderMap.containsKey(order.getPrice())) {
-			Queue<Order> orderQueue = orderMap.get(order.getPrice());
-			Iterator<Order> queueIterator = orderQueue.iterator();
-
-			while(queueIterator.hasNext()) {
-				if(order.getOrderId().equals(queueIterator.next().getOrderId())) {
-					System.out.println("\nOrder Canceled Price: "+order.getPrice()+" , Quantity: "+order.getQuantity());
-					queueIterator.remove();
-					orderNotFound = false;
-					break;
-				}
+		cancelOrder(order.getOrderId());
+	}
+
+	public synchronized void cancelOrder(String orderId) throws OrderException {
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		// unlink through the order id index, no queue scan needed
+		OrderQueue.Node node = orderIndex.remove(orderId);
+		if(node == null) {
+			if(metrics != null) {
+				metrics.recordReject();
 			}
+			throw new OrderException("Remove fail.Not found, Order:" + orderId);
+		}
+		Order order = node.order;
+		OrderQueue orderQueue = node.queue;
+		orderQueue.unlink(node);
+		disown(node);
+		if(order.getType().isStop()) {
+			stopCount--;
 			if(orderQueue.isEmpty()) {
-				orderMap.remove(order.getPrice());
+				getStopMap(order.getSide()).remove(order.getStopPrice());
+			}
+		} else {
+			if(orderQueue.isEmpty()) {
+				getOrderMap(order.getSide(), true).remove(order.getPrice());
 			}
 		}
-		if(orderNotFound) {
-			throw new OrderException("Remove fail.Not found, Order:" + order.getOrderId());
+		eventListener.onOrderCanceled(symbol, orderId, order.getSide(), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()));
+		publishTopOfBook();
+		if(metrics != null) {
+			metrics.recordCancel(System.nanoTime() - start, restingOrderCount());
 		}
 	}
 
-	private TreeMap<BigDecimal, Queue<Order>> getOrderMap(OrderSide side, boolean isSameSide) {
-		TreeMap<BigDecimal, Queue<Order>>  orderMap;
+	public synchronized int massCancel(MassCancel massCancel, RestingOrderVisitor visitor) throws OrderException {
+		if(massCancel.getSymbol() != null && massCancel.getSymbol() != symbol)
+			throw new OrderException("Mass cancel symbol " + massCancel.getSymbol() + " does not match book " + symbol);
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		BigDecimal low = massCancel.getLowPrice();
+		BigDecimal high = massCancel.getHighPrice();
+		int canceled = 0;
+		try {
+			if(massCancel.getOwner() != null) {
+				// only the owner's orders are visited, whatever the range
+				Set<OrderQueue.Node> nodes = ownerIndex.getOrDefault(massCancel.getOwner(), Collections.emptySet());
+				Iterator<OrderQueue.Node> iterator = nodes.iterator();
+				while(iterator.hasNext()) {
+					OrderQueue.Node node = iterator.next();
+					Order order = node.order;
+					boolean stop = order.getType().isStop();
+					// parked stops by their stop price
+					BigDecimal price = stop ? order.getStopPrice() : order.getPrice();
+					if(!massCancel.matchesSide(order.getSide()) || (low != null && price.compareTo(low) < 0)
+							|| (high != null && price.compareTo(high) > 0)) {
+						continue;
+					}
+					if(visitor != null) {
+						visitor.visit(order.getOrderId(), toFixedPoint(price), toFixedPoint(order.getQuantity()));
+					}
+					iterator.remove();
+					orderIndex.remove(order.getOrderId());
+					node.queue.unlink(node);
+					if(node.queue.isEmpty()) {
+						(stop ? getStopMap(order.getSide()) : getOrderMap(order.getSide(), true)).remove(price);
+					}
+					if(stop) {
+						stopCount--;
+					}
+					eventListener.onOrderCanceled(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()));
+					canceled++;
+				}
+				if(nodes.isEmpty()) {
+					ownerIndex.remove(massCancel.getOwner());
+				}
+			} else {
+				for(OrderSide side : OrderSide.values()) {
+					if(!massCancel.matchesSide(side)) {
+						continue;
+					}
+					// the buy book runs from the highest price down, the sell stops as well
+					canceled += massCancel(inRange(getOrderMap(side, true), side == OrderSide.BUY, low, high), false, visitor);
+					canceled += massCancel(inRange(getStopMap(side), side == OrderSide.SELL, low, high), true, visitor);
+				}
+			}
+		} finally {
+			if(canceled > 0) {
+				publishTopOfBook();
+				if(metrics != null) {
+					metrics.recordCancel(System.nanoTime() - start, restingOrderCount());
+				}
+			}
+		}
+		return canceled;
+	}
+
+	// every order of a view of levels, whole levels are dropped through it
+	private int massCancel(NavigableMap<BigDecimal, OrderQueue> levels, boolean stops, RestingOrderVisitor visitor) {
+		int canceled = 0;
+		Iterator<Map.Entry<BigDecimal, OrderQueue>> iterator = levels.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Map.Entry<BigDecimal, OrderQueue> level = iterator.next();
+			Iterator<Order> orders = level.getValue().iterator();
+			while(orders.hasNext()) {
+				Order order = orders.next();
+				if(visitor != null) {
+					visitor.visit(order.getOrderId(), toFixedPoint(level.getKey()), toFixedPoint(order.getQuantity()));
+				}
+				orders.remove();
+				disown(orderIndex.remove(order.getOrderId()));
+				if(stops) {
+					stopCount--;
+				}
+				eventListener.onOrderCanceled(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()));
+				canceled++;
+			}
+			iterator.remove();
+		}
+		return canceled;
+	}
+
+	// levels of a map with a price in [low, high] (null for an open end), in map order
+	private static NavigableMap<BigDecimal, OrderQueue> inRange(NavigableMap<BigDecimal, OrderQueue> levels, boolean descending, BigDecimal low, BigDecimal high) {
+		BigDecimal from = descending ? high : low;
+		BigDecimal to = descending ? low : high;
+		if(from != null && to != null) {
+			return levels.subMap(from, true, to, true);
+		}
+		if(from != null) {
+			return levels.tailMap(from, true);
+		}
+		if(to != null) {
+			return levels.headMap(to, true);
+		}
+		return levels;
+	}
+
+	public synchronized void amendOrder(Order order) throws OrderException {
+		if(order.getSymbol() != symbol)
+			throw new OrderException("Order symbol " + order.getSymbol() + " does not match book " + symbol + ", Order:" + order.getOrderId());
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		OrderQueue.Node node = orderIndex.get(order.getOrderId());
+		String rejection = null;
+		if(node == null) {
+			rejection = "Amend fail.Not found, Order:";
+		} else if(!order.getType().canRest() || !order.isValidOrder()) {
+			rejection = "Not executable, Order:";
+		} else if(order.getSide() != node.order.getSide()) {
+			rejection = "Amend cannot change side, Order:";
+		} else if(node.order.getType().isStop()) {
+			rejection = "Only resting LIMIT orders can be amended, Order:";
+		}
+		if(rejection != null) {
+			if(metrics != null) {
+				metrics.recordReject();
+			}
+			throw new OrderException(rejection + order.getOrderId());
+		}
+
+		fills = 0;
+		levelsTraversed = 0;
+		lowTradePrice = null;
+		highTradePrice = null;
+		Order restingOrder = node.order;
+		try {
+			if(order.getPrice().compareTo(restingOrder.getPrice()) == 0 && order.getQuantity().compareTo(restingOrder.getQuantity()) <= 0) {
+				// reduce in place, the order keeps its place in the queue
+				node.queue.fill(restingOrder, restingOrder.getQuantity().subtract(order.getQuantity()));
+				eventListener.onOrderAmended(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()), true);
+			} else {
+				// moves to the back of the new level, trading first if the new price crosses
+				orderIndex.remove(order.getOrderId());
+				disown(node);
+				node.queue.unlink(node);
+				if(node.queue.isEmpty()) {
+					getOrderMap(restingOrder.getSide(), true).remove(restingOrder.getPrice());
+				}
+				// the amended order keeps its owner
+				order.setOwner(restingOrder.getOwner());
+				eventListener.onOrderAmended(symbol, order.getOrderId(), order.getSide(), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()), false);
+				checkExistingOrderToMatch(getOrderMap(order.getSide(), false), order);
+				if(order.hasOrderQuantityLeft()) {
+					restOrder(order);
+				}
+			}
+			if(metrics != null) {
+				metrics.recordAmend(System.nanoTime() - start, fills, restingOrderCount());
+			}
+			triggerStops();
+		} finally {
+			publishTopOfBook();
+		}
+	}
+
+	// Inside a batch the view is published once when the batch ends. A command that left the published
+	// levels as they were (a stop parked, an order resting deeper than them) does not move the version.
+	private void publishTopOfBook() {
+		if(inBatch) {
+			return;
+		}
+		MarketDepth depth = getMarketDepth(pendingDepth);
+		if(!depth.hasSameLevels(publishedDepth)) {
+			topOfBook.publish(depth);
+			pendingDepth = publishedDepth;
+			publishedDepth = depth;
+		}
+		eventListener.onUpdateComplete(symbol);
+	}
+
+	public synchronized List<OrderResult> executeOrders(List<Order> orders, OrderActionType orderActionType) {
+		List<OrderResult> results = new ArrayList<>(orders.size());
+		inBatch = true;
+		try {
+			for(Order order : orders) {
+				RuntimeException error = null;
+				try {
+					executeOrder(order, orderActionType);
+				} catch (RuntimeException e) {
+					error = e;
+				}
+				results.add(new OrderResult(order == null ? null : order.getOrderId(), error));
+			}
+		} finally {
+			inBatch = false;
+			publishTopOfBook();
+		}
+		return results;
+	}
+
+	public void setMetrics(EngineMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public TopOfBook getTopOfBook() {
+		return topOfBook;
+	}
+
+	private TreeMap<BigDecimal, OrderQueue> getOrderMap(OrderSide side, boolean isSameSide) {
+		TreeMap<BigDecimal, OrderQueue>  orderMap;
 		OrderSide orderMapSide = side;
 		if(!isSameSide) {
 			orderMapSide = (side == OrderSide.BUY) ? OrderSide.SELL : OrderSide.BUY;
@@ -198,45 +619,57 @@ public class OrderBook {
 		if(symbol==null)
 			throw new IllegalArgumentException();
 		setSymbol(symbol);
-		sellOrders = new TreeMap<BigDecimal, Queue<Order>>();
-		buyOrders = new TreeMap<BigDecimal, Queue<Order>>(Collections.reverseOrder());
+		sellOrders = new TreeMap<BigDecimal, OrderQueue>();
+		buyOrders = new TreeMap<BigDecimal, OrderQueue>(Collections.reverseOrder());
+		buyStops = new TreeMap<BigDecimal, OrderQueue>();
+		sellStops = new TreeMap<BigDecimal, OrderQueue>(Collections.reverseOrder());
+		orderIndex = new HashMap<String, OrderQueue.Node>();
+		topOfBook = new TopOfBook(symbol, TopOfBook.DEFAULT_LEVELS);
 
 	}
 
-	public String toString() {
+	public synchronized String toString() {
 		StringBuilder orderBookString = new StringBuilder();
 
 		orderBookString.append("\n>>>>>>>>>>>>>>>>>>>>>>>ORDERBOOK>>>>>>>>>>>>>>>>>>>>>>>>>>>\n>>           SELL\n");
-
-		try {
-			for (Map.Entry<BigDecimal, Queue<Order>> entry : sellOrders.descendingMap().entrySet()) {
-				orderBookString.append(getOrderBookEntryString(entry));
-			}
-			orderBookString.append(">> PRICE                QUANTITY\n");
-			for (Map.Entry<BigDecimal, Queue<Order>> entry : buyOrders.entrySet()) {
-				orderBookString.append(getOrderBookEntryString(entry));
-			}
-			orderBookString.append(">>               BUY\n<<<<<<<<<<<<<<<<<<<<<<<<ORDERBOOK<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n");
-		}catch(Exception e) {
-			// To Suppress concurrent modification exception
-			//	System.err.println("Exception "+e.getMessage());
-
+		for (Map.Entry<BigDecimal, OrderQueue> entry : sellOrders.descendingMap().entrySet()) {
+			appendOrderBookEntry(orderBookString, entry);
+		}
+		orderBookString.append(">> PRICE                QUANTITY\n");
+		for (Map.Entry<BigDecimal, OrderQueue> entry : buyOrders.entrySet()) {
+			appendOrderBookEntry(orderBookString, entry);
 		}
+		orderBookString.append(">>               BUY\n<<<<<<<<<<<<<<<<<<<<<<<<ORDERBOOK<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n");
 		return orderBookString.toString();
 	}
 
-	private StringBuilder getOrderBookEntryString(Map.Entry<BigDecimal, Queue<Order>> entry) {
-		StringBuilder orderBookEntryString = new StringBuilder();
-		orderBookEntryString.append(">> ");
-		orderBookEntryString.append(entry.getKey().toString());
-		orderBookEntryString.append(":         ");
-		// remove ',' from quantity string
-		String quantityString = entry.getValue().toString().replaceAll(",","");
-		// get order string without brackets '[' and ']'
-		orderBookEntryString.append(quantityString.substring(1,quantityString.length() - 1));
-		orderBookEntryString.append("\n");
+	private void appendOrderBookEntry(StringBuilder orderBookString, Map.Entry<BigDecimal, OrderQueue> entry) {
+		orderBookString.append(">> ");
+		orderBookString.append(entry.getKey().toString());
+		orderBookString.append(":         ");
+		boolean first = true;
+		for (Order order : entry.getValue()) {
+			if(!first) {
+				orderBookString.append(' ');
+			}
+			orderBookString.append(order.getQuantity());
+			first = false;
+		}
+		orderBookString.append("\n");
+	}
 
-		return orderBookEntryString;
+	// walks at most depth.getMaxLevels() entries per side, prices and quantities are the fixed point
+	// values the queues keep up to date
+	public synchronized MarketDepth getMarketDepth(MarketDepth depth) {
+		depth.reset(symbol);
+		for (OrderSide side : OrderSide.values()) {
+			for (OrderQueue orderQueue : getOrderMap(side, true).values()) {
+				if(!depth.addLevel(side, orderQueue.getPrice(), orderQueue.getFixedPointQuantity(), orderQueue.size())) {
+					break;
+				}
+			}
+		}
+		return depth;
 	}
 
 	private void setSymbol(Symbol symbol) {
@@ -248,19 +681,60 @@ public class OrderBook {
 		return symbol;
 	}
 
+	public void setEventListener(OrderEventListener eventListener) {
+		this.eventListener = eventListener == null ? OrderEventListener.NO_OP : eventListener;
+	}
+
 
-	public TreeMap<BigDecimal, Queue<Order>> getSellOrders() {
+	// live maps, only safe to walk while holding the book's lock; other threads should use getTopOfBook
+	public TreeMap<BigDecimal, OrderQueue> getSellOrders() {
 		return sellOrders;
 	}
 
 
-	public TreeMap<BigDecimal, Queue<Order>> getBuyOrders() {
+	public TreeMap<BigDecimal, OrderQueue> getBuyOrders() {
 		return buyOrders;
 	}
 
-	public void clear() {
+	public synchronized void forEachRestingOrder(OrderSide side, RestingOrderVisitor visitor) {
+		for (Map.Entry<BigDecimal, OrderQueue> entry : getOrderMap(side, true).entrySet()) {
+			long price = toFixedPoint(entry.getKey());
+			for (Order order : entry.getValue()) {
+				visitor.visit(order.getOrderId(), price, toFixedPoint(order.getQuantity()));
+			}
+		}
+	}
+
+	public synchronized void forEachStopOrder(OrderSide side, StopOrderVisitor visitor) {
+		for (OrderQueue stopQueue : getStopMap(side).values()) {
+			for (Order order : stopQueue) {
+				visitor.visit(order.getOrderId(), order.getType(), toFixedPoint(order.getStopPrice()), toFixedPoint(order.getPrice()), toFixedPoint(order.getQuantity()));
+			}
+		}
+	}
+
+	public synchronized String getOwner(String orderId) {
+		OrderQueue.Node node = orderIndex.get(orderId);
+		return node == null ? null : node.order.getOwner();
+	}
+
+	public synchronized boolean containsOrder(String orderId) {
+		return orderIndex.containsKey(orderId);
+	}
+
+	public synchronized int getStopOrderCount() {
+		return stopCount;
+	}
+
+	public synchronized void clear() {
 		sellOrders.clear();
 		buyOrders.clear();
+		buyStops.clear();
+		sellStops.clear();
+		stopCount = 0;
+		orderIndex.clear();
+		ownerIndex.clear();
+		publishTopOfBook();
 	}
 
 
@@ -0,0 +1,160 @@
+package m2.orderbook;
+
+import java.math.BigDecimal;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.util.BigDecimalUtility;
+
+// FIFO order queue for a single price, doubly linked so that a known node can be unlinked in O(1).
+// The total quantity is maintained on append, fill and unlink so depth never walks the queue, together with
+// its fixed point value and the fixed point price of a book level, so depth converts nothing either.
+public class OrderQueue extends AbstractQueue<Order> {
+
+	static final class Node {
+		final Order order;
+		final OrderQueue queue;
+		Node prev;
+		Node next;
+
+		Node(Order order, OrderQueue queue) {
+			this.order = order;
+			this.queue = queue;
+		}
+	}
+
+	private Node head;
+	private Node tail;
+	private int size;
+	private BigDecimal totalQuantity = BigDecimal.ZERO;
+	private long fixedPointQuantity;
+	private final long price;
+
+	public OrderQueue() {
+		this(0L);
+	}
+
+	// price in fixed point units, the level this queue holds
+	public OrderQueue(long price) {
+		this.price = price;
+	}
+
+	Node append(Order order) {
+		Node node = new Node(order, this);
+		node.prev = tail;
+		if(tail == null) {
+			head = node;
+		} else {
+			tail.next = node;
+		}
+		tail = node;
+		size++;
+		setTotalQuantity(totalQuantity.add(order.getQuantity()));
+		return node;
+	}
+
+	// partial fill of an order that stays in the queue
+	void fill(Order order, BigDecimal quantity) {
+		order.setQuantity(order.getQuantity().subtract(quantity));
+		setTotalQuantity(totalQuantity.subtract(quantity));
+	}
+
+	void unlink(Node node) {
+		if(node.prev == null) {
+			head = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if(node.next == null) {
+			tail = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+		size--;
+		setTotalQuantity(totalQuantity.subtract(node.order.getQuantity()));
+	}
+
+	private void setTotalQuantity(BigDecimal totalQuantity) {
+		this.totalQuantity = totalQuantity;
+		this.fixedPointQuantity = BigDecimalUtility.toFixedPoint(totalQuantity);
+	}
+
+	Node headNode() {
+		return head;
+	}
+
+	@Override
+	public boolean offer(Order order) {
+		if(order == null)
+			throw new NullPointerException();
+		append(order);
+		return true;
+	}
+
+	@Override
+	public Order poll() {
+		if(head == null)
+			return null;
+		Node node = head;
+		unlink(node);
+		return node.order;
+	}
+
+	@Override
+	public Order peek() {
+		return head == null ? null : head.order;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public BigDecimal getTotalQuantity() {
+		return totalQuantity;
+	}
+
+	// getTotalQuantity in fixed point units
+	public long getFixedPointQuantity() {
+		return fixedPointQuantity;
+	}
+
+	// fixed point price given at creation, 0 for a queue created without one
+	public long getPrice() {
+		return price;
+	}
+
+	@Override
+	public Iterator<Order> iterator() {
+		return new Iterator<Order>() {
+			private Node nextNode = head;
+			private Node lastReturned;
+
+			@Override
+			public boolean hasNext() {
+				return nextNode != null;
+			}
+
+			@Override
+			public Order next() {
+				if(nextNode == null)
+					throw new NoSuchElementException();
+				lastReturned = nextNode;
+				nextNode = nextNode.next;
+				return lastReturned.order;
+			}
+
+			@Override
+			public void remove() {
+				if(lastReturned == null)
+					throw new IllegalStateException();
+				unlink(lastReturned);
+				lastReturned = null;
+			}
+		};
+	}
+}
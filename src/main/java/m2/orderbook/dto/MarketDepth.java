@@ -0,0 +1,135 @@
+package m2.orderbook.dto;
+
+import java.math.BigDecimal;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Reusable L2 view: for each side the best levels first, with the aggregate quantity (fixed point)
+// and number of orders resting at each price. Filled by MatchingEngine.getMarketDepth.
+public class MarketDepth {
+
+	private final int maxLevels;
+	private final long[][] prices = new long[2][];
+	private final long[][] quantities = new long[2][];
+	private final int[][] orderCounts = new int[2][];
+	private final int[] levelCounts = new int[2];
+	private Symbol symbol;
+
+	public MarketDepth(int maxLevels) {
+		if(maxLevels <= 0)
+			throw new IllegalArgumentException("Invalid depth:" + maxLevels);
+		this.maxLevels = maxLevels;
+		for(int side = 0; side < 2; side++) {
+			prices[side] = new long[maxLevels];
+			quantities[side] = new long[maxLevels];
+			orderCounts[side] = new int[maxLevels];
+		}
+	}
+
+	public void reset(Symbol symbol) {
+		this.symbol = symbol;
+		levelCounts[0] = 0;
+		levelCounts[1] = 0;
+	}
+
+	// appends the next worse level of a side, returns false once maxLevels is reached
+	public boolean addLevel(OrderSide side, long price, long quantity, int orderCount) {
+		int s = side.ordinal();
+		int level = levelCounts[s];
+		if(level == maxLevels) {
+			return false;
+		}
+		prices[s][level] = price;
+		quantities[s][level] = quantity;
+		orderCounts[s][level] = orderCount;
+		levelCounts[s] = level + 1;
+		return true;
+	}
+
+	// same symbol, levels, quantities and order counts on both sides
+	public boolean hasSameLevels(MarketDepth other) {
+		if(symbol != other.symbol) {
+			return false;
+		}
+		for(int s = 0; s < 2; s++) {
+			int levels = levelCounts[s];
+			if(levels != other.levelCounts[s]) {
+				return false;
+			}
+			for(int level = 0; level < levels; level++) {
+				if(prices[s][level] != other.prices[s][level] || quantities[s][level] != other.quantities[s][level]
+						|| orderCounts[s][level] != other.orderCounts[s][level]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public int getMaxLevels() {
+		return maxLevels;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public int getLevelCount(OrderSide side) {
+		return levelCounts[side.ordinal()];
+	}
+
+	public long getPrice(OrderSide side, int level) {
+		checkLevel(side, level);
+		return prices[side.ordinal()][level];
+	}
+
+	public long getQuantity(OrderSide side, int level) {
+		checkLevel(side, level);
+		return quantities[side.ordinal()][level];
+	}
+
+	public int getOrderCount(OrderSide side, int level) {
+		checkLevel(side, level);
+		return orderCounts[side.ordinal()][level];
+	}
+
+	public BigDecimal getPriceDecimal(OrderSide side, int level) {
+		return BigDecimalUtility.fromFixedPoint(getPrice(side, level));
+	}
+
+	public BigDecimal getQuantityDecimal(OrderSide side, int level) {
+		return BigDecimalUtility.fromFixedPoint(getQuantity(side, level));
+	}
+
+	private void checkLevel(OrderSide side, int level) {
+		if(level < 0 || level >= levelCounts[side.ordinal()])
+			throw new IndexOutOfBoundsException("Level " + level + " of " + levelCounts[side.ordinal()]);
+	}
+
+	// same layout as the book printout, one aggregate per price
+	public String toString() {
+		StringBuilder depthString = new StringBuilder();
+		depthString.append("\n>>>>>>>>>>>>>>>>>>>>>>>>>DEPTH>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n>>           SELL\n");
+		for(int level = getLevelCount(OrderSide.SELL) - 1; level >= 0; level--) {
+			appendLevel(depthString, OrderSide.SELL, level);
+		}
+		depthString.append(">> PRICE                QUANTITY (ORDERS)\n");
+		for(int level = 0; level < getLevelCount(OrderSide.BUY); level++) {
+			appendLevel(depthString, OrderSide.BUY, level);
+		}
+		depthString.append(">>               BUY\n<<<<<<<<<<<<<<<<<<<<<<<<<DEPTH<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n");
+		return depthString.toString();
+	}
+
+	private void appendLevel(StringBuilder depthString, OrderSide side, int level) {
+		depthString.append(">> ");
+		depthString.append(getPriceDecimal(side, level));
+		depthString.append(":         ");
+		depthString.append(getQuantityDecimal(side, level));
+		depthString.append(" (");
+		depthString.append(getOrderCount(side, level));
+		depthString.append(")\n");
+	}
+}
@@ -0,0 +1,91 @@
+package m2.orderbook.dto;
+
+import java.math.BigDecimal;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Which resting orders a mass cancel removes, see MatchingEngine.massCancel. Every criterion that is set
+// has to match: null side means both sides, a null price bound leaves that end of the range open (bounds
+// are inclusive), a null owner matches any owner and a null symbol every book of a service.
+// Parked stop orders are cancelled as well, the price range applies to their stop price.
+public class MassCancel {
+
+	private final Symbol symbol;
+
+	private final OrderSide side;
+
+	private final BigDecimal lowPrice;
+
+	private final BigDecimal highPrice;
+
+	private final String owner;
+
+	public MassCancel(Symbol symbol, OrderSide side, BigDecimal lowPrice, BigDecimal highPrice, String owner) {
+		if(lowPrice != null && lowPrice.compareTo(BigDecimal.ZERO) <= 0)
+			throw new IllegalArgumentException("Invalid Low Price:" + lowPrice);
+		if(highPrice != null && highPrice.compareTo(BigDecimal.ZERO) <= 0)
+			throw new IllegalArgumentException("Invalid High Price:" + highPrice);
+		if(lowPrice != null && highPrice != null && lowPrice.compareTo(highPrice) > 0)
+			throw new IllegalArgumentException("Low Price above High Price:" + lowPrice + " > " + highPrice);
+		if(owner != null && owner.trim().isEmpty())
+			throw new IllegalArgumentException("Invalid Owner");
+		this.symbol = symbol;
+		this.side = side;
+		this.lowPrice = lowPrice == null ? null : BigDecimalUtility.setScale(lowPrice);
+		this.highPrice = highPrice == null ? null : BigDecimalUtility.setScale(highPrice);
+		this.owner = owner;
+	}
+
+	// every resting order of one side
+	public static MassCancel forSide(Symbol symbol, OrderSide side) {
+		return new MassCancel(symbol, side, null, null, null);
+	}
+
+	// every resting order of the owner, in all books if symbol is null
+	public static MassCancel forOwner(Symbol symbol, String owner) {
+		if(owner == null)
+			throw new IllegalArgumentException("Invalid Owner");
+		return new MassCancel(symbol, null, null, null, owner);
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public OrderSide getSide() {
+		return side;
+	}
+
+	public BigDecimal getLowPrice() {
+		return lowPrice;
+	}
+
+	public BigDecimal getHighPrice() {
+		return highPrice;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public boolean matchesSide(OrderSide orderSide) {
+		return side == null || side == orderSide;
+	}
+
+	// lowest price in fixed point, 0 when the range is open at the bottom
+	public long getLowPriceFixedPoint() {
+		return lowPrice == null ? 0L : BigDecimalUtility.toFixedPoint(lowPrice);
+	}
+
+	// highest price in fixed point, Long.MAX_VALUE when the range is open at the top
+	public long getHighPriceFixedPoint() {
+		return highPrice == null ? Long.MAX_VALUE : BigDecimalUtility.toFixedPoint(highPrice);
+	}
+
+	public String toString() {
+		return "MassCancel " + symbol + " " + (side == null ? "BOTH" : side) + " [" + lowPrice + ", " + highPrice + "]"
+				+ (owner == null ? "" : " owner " + owner);
+	}
+}
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 
 import m2.orderbook.enums.OrderSide;
 import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
 import m2.orderbook.util.BigDecimalUtility;
 
 public class Order {
@@ -18,14 +19,37 @@ public class Order {
 
 	private Ordertype type;
 
+	// trigger price of STOP and STOP_LIMIT orders, null otherwise
+	private BigDecimal stopPrice;
 
+	private Symbol symbol;
+
+	// market maker or session the order belongs to, null if none; see MassCancel
+	private String owner;
+
+	// orders without an explicit symbol belong to BTC, the only book the service originally had
 	public Order(String orderId, BigDecimal price, BigDecimal quantity, OrderSide side,Ordertype type) {
+		this(Symbol.BTC, orderId, price, quantity, side, type);
+	}
+
+	public Order(Symbol symbol, String orderId, BigDecimal price, BigDecimal quantity, OrderSide side,Ordertype type) {
+		this(symbol, orderId, price, null, quantity, side, type);
+	}
 
+	// price is ignored for STOP, stopPrice is required for STOP and STOP_LIMIT and ignored otherwise
+	public Order(Symbol symbol, String orderId, BigDecimal price, BigDecimal stopPrice, BigDecimal quantity, OrderSide side,Ordertype type) {
+
+		setSymbol(symbol);
 		setOrderId(orderId);
 		setSide(side);
 		this.type = type;
-		if(type==Ordertype.LIMIT)
+		if(type != null && type.hasLimitPrice())
 		setPrice(price);
+		if(type != null && type.isStop()) {
+			if(!isValidPrice(stopPrice))
+				throw new IllegalArgumentException("Invalid Order Stop Price:" + stopPrice);
+			this.stopPrice = BigDecimalUtility.setScale(stopPrice);
+		}
 		setQuantity(quantity);
 
 		
@@ -67,6 +91,10 @@ public class Order {
 		return price;
 	}
 
+	public BigDecimal getStopPrice() {
+		return stopPrice;
+	}
+
 
 	public void setPrice(BigDecimal price) {
 		if(isValidPrice(price)){
@@ -89,10 +117,30 @@ public class Order {
 		return side;
 	}
 
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public void setSymbol(Symbol symbol) {
+		if(symbol == null)
+			throw new IllegalArgumentException("Invalid Order Symbol");
+		this.symbol = symbol;
+	}
+
 	public String getOrderId() {
 		return orderId;
 	}
 
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		if(owner != null && owner.trim().isEmpty())
+			throw new IllegalArgumentException("Invalid Order Owner");
+		this.owner = owner;
+	}
+
 	public String toString() {
 		return String.valueOf(this.quantity);
 	}
@@ -0,0 +1,30 @@
+package m2.orderbook.dto;
+
+// outcome of one order in a batch, error is the exception the single order call would have thrown
+public class OrderResult {
+
+	private final String orderId;
+
+	private final RuntimeException error;
+
+	public OrderResult(String orderId, RuntimeException error) {
+		this.orderId = orderId;
+		this.error = error;
+	}
+
+	public String getOrderId() {
+		return orderId;
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	public RuntimeException getError() {
+		return error;
+	}
+
+	public String toString() {
+		return orderId + (error == null ? " OK" : " FAILED " + error.getMessage());
+	}
+}
@@ -0,0 +1,245 @@
+package m2.orderbook.engine;
+
+import m2.orderbook.exception.OrderException;
+
+// Levels kept in a contiguous array indexed by tick offset from basePrice.
+// The window is recentered (and grown if needed) when a price falls outside it, but never beyond
+// maxCapacity slots: a price that would need a wider window is refused (see canHold).
+// A Fenwick tree over the slots answers cumulative quantity up to a price in O(log n), and a SlotBitSet of
+// the occupied slots finds the next level, the new best and the window bounds without walking empty slots.
+class ArrayPriceLadder implements PriceLadder {
+
+	// true for the buy side where the best level is the highest price
+	private final boolean descending;
+	private final long tickSize;
+	private PriceLevel[] levels;
+	private final int maxCapacity;
+	// price at index 0
+	private long basePrice;
+	private int bestIndex = -1;
+	private int size;
+	private final ObjectPool<PriceLevel> levelPool;
+	// slot index -> level totalQuantity
+	private final FenwickTree depth;
+	private SlotBitSet occupied;
+
+	ArrayPriceLadder(boolean descending, long tickSize, int capacity, int maxCapacity, ObjectPool<PriceLevel> levelPool) {
+		if(tickSize <= 0 || capacity <= 0 || maxCapacity < capacity)
+			throw new IllegalArgumentException("Invalid ladder tick size/capacity/max capacity:" + tickSize + "/" + capacity + "/" + maxCapacity);
+		this.descending = descending;
+		this.tickSize = tickSize;
+		this.levels = new PriceLevel[capacity];
+		this.maxCapacity = maxCapacity;
+		this.levelPool = levelPool;
+		this.depth = new FenwickTree(capacity);
+		this.occupied = new SlotBitSet(capacity);
+	}
+
+	private int indexOf(long price) {
+		if(price < basePrice) {
+			return -1;
+		}
+		// negative when the distance overflows, which is outside the window as well
+		long offset = price - basePrice;
+		if(offset < 0 || offset / tickSize >= levels.length) {
+			return -1;
+		}
+		return (int) (offset / tickSize);
+	}
+
+	private boolean isBetter(int index, int comparingIndex) {
+		return descending ? index > comparingIndex : index < comparingIndex;
+	}
+
+	@Override
+	public PriceLevel get(long price) {
+		if(price % tickSize != 0) {
+			return null;
+		}
+		int index = indexOf(price);
+		return index < 0 ? null : levels[index];
+	}
+
+	@Override
+	public boolean accepts(long price) {
+		return price % tickSize == 0;
+	}
+
+	// Prices inside the window always fit. Outside it the window the price would need is measured from
+	// the lowest and highest occupied slots, as a recenter does.
+	@Override
+	public boolean canHold(long price) {
+		if(size == 0 || indexOf(price) >= 0) {
+			return true;
+		}
+		return span(price) <= maxCapacity;
+	}
+
+	@Override
+	public PriceLevel getOrCreate(long price) throws OrderException {
+		if(!accepts(price))
+			throw new OrderException("Price not on tick grid:" + price);
+
+		if(size == 0) {
+			basePrice = price - (levels.length / 2) * tickSize;
+		}
+		int index = indexOf(price);
+		if(index < 0) {
+			recenter(price);
+			index = indexOf(price);
+		}
+		PriceLevel level = levels[index];
+		if(level == null) {
+			level = levelPool.acquire().reset(price, this);
+			levels[index] = level;
+			occupied.set(index);
+			size++;
+			if(bestIndex < 0 || isBetter(index, bestIndex)) {
+				bestIndex = index;
+			}
+		}
+		return level;
+	}
+
+	@Override
+	public PriceLevel best() {
+		return bestIndex < 0 ? null : levels[bestIndex];
+	}
+
+	@Override
+	public PriceLevel next(PriceLevel level) {
+		return scanFrom(indexOf(level.price));
+	}
+
+	// compared against the window bounds first, an open range bound like Long.MAX_VALUE must not overflow
+	@Override
+	public PriceLevel from(long price) {
+		if(size == 0) {
+			return null;
+		}
+		long topPrice = basePrice + (long) (levels.length - 1) * tickSize;
+		int index;
+		if(descending) {
+			// slot on or below the price, the walk goes down from there
+			if(price < basePrice) {
+				return null;
+			}
+			index = price >= topPrice ? levels.length - 1 : (int) ((price - basePrice) / tickSize);
+		} else {
+			// slot on or above the price, the walk goes up from there
+			if(price > topPrice) {
+				return null;
+			}
+			index = price <= basePrice ? 0 : (int) ((price - basePrice + tickSize - 1) / tickSize);
+		}
+		return levels[index] != null ? levels[index] : scanFrom(index);
+	}
+
+	// first occupied level worse than the given index
+	private PriceLevel scanFrom(int index) {
+		int next = descending ? occupied.previous(index - 1) : occupied.next(index + 1);
+		return next < 0 ? null : levels[next];
+	}
+
+	@Override
+	public void remove(PriceLevel level) {
+		int index = indexOf(level.price);
+		if(index < 0 || levels[index] != level) {
+			return;
+		}
+		levels[index] = null;
+		occupied.clear(index);
+		size--;
+		if(index == bestIndex) {
+			PriceLevel nextBest = size == 0 ? null : scanFrom(index);
+			bestIndex = nextBest == null ? -1 : indexOf(nextBest.price);
+		}
+		levelPool.release(level);
+	}
+
+	@Override
+	public long availableQuantity(long limitPrice, long wanted) {
+		if(size == 0) {
+			return 0L;
+		}
+		long offset = limitPrice - basePrice;
+		if(descending) {
+			// levels at or above the limit: first slot on or above it up to the end
+			long from = offset <= 0 ? 0 : (offset + tickSize - 1) / tickSize;
+			return from >= levels.length ? 0L : depth.total() - depth.prefixSum((int) from - 1);
+		}
+		// levels at or below the limit: slot 0 up to the last slot on or below it
+		if(offset < 0) {
+			return 0L;
+		}
+		return depth.prefixSum((int) Math.min(offset / tickSize, levels.length - 1));
+	}
+
+	@Override
+	public void quantityChanged(PriceLevel level, long delta) {
+		depth.add(indexOf(level.price), delta);
+	}
+
+	// slots needed to hold price together with every occupied level
+	private long span(long price) {
+		// prices are positive, so the difference cannot overflow
+		return (highestWith(price) - lowestWith(price)) / tickSize + 1;
+	}
+
+	// slots are in ascending price order on both sides
+	private long lowestWith(long price) {
+		int lowest = occupied.next(0);
+		return lowest < 0 ? price : Math.min(price, levels[lowest].price);
+	}
+
+	private long highestWith(long price) {
+		int highest = occupied.previous(levels.length - 1);
+		return highest < 0 ? price : Math.max(price, levels[highest].price);
+	}
+
+	private void recenter(long price) throws OrderException {
+		long span = span(price);
+		if(span > maxCapacity)
+			throw new OrderException("Price outside ladder window:" + price);
+		long lowest = lowestWith(price);
+		int capacity = levels.length;
+		while(capacity < span) {
+			capacity = (int) Math.min((long) capacity << 1, maxCapacity);
+		}
+
+		PriceLevel[] oldLevels = levels;
+		levels = new PriceLevel[capacity];
+		basePrice = lowest - ((capacity - span) / 2) * tickSize;
+		bestIndex = -1;
+		depth.reset(capacity);
+		SlotBitSet oldOccupied = occupied;
+		occupied = new SlotBitSet(capacity);
+		for(int old = oldOccupied.next(0); old >= 0; old = oldOccupied.next(old + 1)) {
+			PriceLevel level = oldLevels[old];
+			int index = indexOf(level.price);
+			levels[index] = level;
+			occupied.set(index);
+			depth.add(index, level.totalQuantity);
+			if(bestIndex < 0 || isBetter(index, bestIndex)) {
+				bestIndex = index;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for(int index = occupied.next(0); index >= 0; index = occupied.next(index + 1)) {
+			levelPool.release(levels[index]);
+			levels[index] = null;
+		}
+		occupied.reset(levels.length);
+		depth.reset(levels.length);
+		size = 0;
+		bestIndex = -1;
+	}
+}
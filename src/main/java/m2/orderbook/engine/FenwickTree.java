@@ -0,0 +1,46 @@
+package m2.orderbook.engine;
+
+import java.util.Arrays;
+
+// Binary indexed tree of longs: point add and prefix sum in O(log n), used for cumulative
+// quantity over the slots of an ArrayPriceLadder.
+final class FenwickTree {
+
+	// tree[i] (1 based) holds the sum of the (i & -i) slots ending at slot i - 1
+	private long[] tree;
+	private long total;
+
+	FenwickTree(int size) {
+		tree = new long[size + 1];
+	}
+
+	void add(int index, long delta) {
+		total += delta;
+		for(int i = index + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	// sum of slots 0..index inclusive, 0 for a negative index
+	long prefixSum(int index) {
+		long sum = 0;
+		for(int i = Math.min(index + 1, tree.length - 1); i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	long total() {
+		return total;
+	}
+
+	// empty the tree, resized when the ladder grew
+	void reset(int size) {
+		if(tree.length != size + 1) {
+			tree = new long[size + 1];
+		} else {
+			Arrays.fill(tree, 0L);
+		}
+		total = 0;
+	}
+}
@@ -0,0 +1,892 @@
+package m2.orderbook.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.metrics.EngineMetrics;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Order book keeping prices and quantities as scaled longs (8 decimals, same as BigDecimalUtility).
+// BigDecimal conversion only happens when an Order enters or leaves the book.
+// Resting orders and parked stops are records of an OrderStore addressed by int handles: RestingOrder
+// objects in a HeapOrderStore here, off-heap OrderSlab records in an OffHeapOrderBook, which shares all
+// of the matching below. Records and levels are reused, so with an ARRAY ladder the primitive
+// executeOrder/cancelOrder path allocates nothing once the store, the id index and the level pool have
+// warmed up. The default TREE_MAP ladder (see SymbolConfig) still allocates.
+// Orders can be keyed by String ids or, on the executeOrder(long, ...)/cancelOrder(long) path, by
+// primitive long ids (see OrderIdGenerator) which skips String hashing and equals on every lookup.
+// The two id spaces are separate: an order is cancelled through the same kind of id it was entered with.
+public class FixedPointOrderBook implements MatchingEngine {
+
+	private static final int LEVEL_POOL_SIZE = 1 << 12;
+	static final int EXPECTED_ORDERS = 1 << 12;
+	private static final OrderSide[] SIDES = OrderSide.values();
+	private static final int NIL = OrderStore.NIL;
+
+	private final Symbol symbol;
+	private final PriceLadder sellLevels;
+	private final PriceLadder buyLevels;
+	// parked stops by stop price: buy stops lowest first, sell stops highest first
+	private final PriceLadder buyStops;
+	private final PriceLadder sellStops;
+	private int stopCount;
+	private final OrderStore store;
+	// owner -> code kept in the records; codes live until clear, there are few owners (sessions, market makers)
+	private final HashMap<String, Integer> ownerCodes = new HashMap<>();
+	// code -> owner
+	private final ArrayList<String> owners = new ArrayList<>();
+	// code -> the owner's most recently stored order or stop, the rest follow through the store's owner links
+	private int[] ownerOrders = new int[16];
+	private final TopOfBook topOfBook;
+	private final MarketDepth publishedDepth = new MarketDepth(TopOfBook.DEFAULT_LEVELS);
+	private boolean inBatch;
+	private volatile EngineMetrics metrics;
+	// per order counters for the metrics, reset by executeOrder
+	private int fills;
+	private int levelsTraversed;
+	// range of prices traded by the current command including the stops it triggered
+	private long lowTradePrice;
+	private long highTradePrice;
+	private boolean triggering;
+	private volatile OrderEventListener eventListener = OrderEventListener.NO_OP;
+
+	public FixedPointOrderBook(Symbol symbol) {
+		this(symbol, SymbolConfig.forSymbol(symbol));
+	}
+
+	public FixedPointOrderBook(Symbol symbol, SymbolConfig config) {
+		this(symbol, config, new HeapOrderStore(EXPECTED_ORDERS));
+	}
+
+	FixedPointOrderBook(Symbol symbol, SymbolConfig config, OrderStore store) {
+		if(symbol==null || config==null)
+			throw new IllegalArgumentException();
+		this.symbol = symbol;
+		this.store = store;
+		ObjectPool<PriceLevel> levelPool = new ObjectPool<>(LEVEL_POOL_SIZE, store::newLevel);
+		sellLevels = config.newLadder(false, levelPool);
+		buyLevels = config.newLadder(true, levelPool);
+		// stop prices need not be on the tick grid, and are sparse
+		buyStops = new TreeMapPriceLadder(false, levelPool);
+		sellStops = new TreeMapPriceLadder(true, levelPool);
+		topOfBook = new TopOfBook(symbol, TopOfBook.DEFAULT_LEVELS);
+		Arrays.fill(ownerOrders, NIL);
+	}
+
+	@Override
+	public synchronized void executeOrder(Order order, OrderActionType orderActionType) throws OrderException {
+		if(order.getSymbol() != symbol)
+			throw new OrderException("Order symbol " + order.getSymbol() + " does not match book " + symbol + ", Order:" + order.getOrderId());
+		switch (orderActionType) {
+		case ADD:
+			long quantity = BigDecimalUtility.toFixedPoint(order.getQuantity());
+			long price = order.getType().hasLimitPrice() ? BigDecimalUtility.toFixedPoint(order.getPrice()) : 0L;
+
+			long stopPrice = order.getType().isStop() ? BigDecimalUtility.toFixedPoint(order.getStopPrice()) : 0L;
+
+			long remaining = execute(order.getOrderId(), 0L, order.getSide(), order.getType(), price, stopPrice, quantity, order.getOwner());
+			if(remaining != quantity) {
+				order.setQuantity(BigDecimalUtility.fromFixedPoint(remaining));
+			}
+			break;
+		case REMOVE:
+			removeOrder(order);
+			break;
+		case AMEND:
+			amendOrder(order);
+			break;
+		default:
+			throw new OrderException("Unexpected Order Action Type:" + orderActionType);
+		}
+	}
+
+	// Allocation free entry point with fixed point price/quantity (price ignored for MARKET).
+	// Returns the quantity left after matching, which for a LIMIT order is now resting in the book
+	// and for the other types was dropped. A FOK that cannot fill completely returns its full quantity
+	// without touching the book.
+	public synchronized long executeOrder(String orderId, OrderSide side, Ordertype type, long price, long quantity) throws OrderException {
+		return execute(orderId, 0L, side, type, price, 0L, quantity, null);
+	}
+
+	// same as above for an order keyed by a primitive id
+	public synchronized long executeOrder(long orderId, OrderSide side, Ordertype type, long price, long quantity) throws OrderException {
+		return execute(null, orderId, side, type, price, 0L, quantity, null);
+	}
+
+	// parks a STOP (limitPrice ignored) or STOP_LIMIT order until a trade reaches stopPrice
+	public synchronized void executeStopOrder(String orderId, OrderSide side, Ordertype type, long stopPrice, long limitPrice, long quantity) throws OrderException {
+		execute(orderId, 0L, side, type, limitPrice, stopPrice, quantity, null);
+	}
+
+	public synchronized void executeStopOrder(long orderId, OrderSide side, Ordertype type, long stopPrice, long limitPrice, long quantity) throws OrderException {
+		execute(null, orderId, side, type, limitPrice, stopPrice, quantity, null);
+	}
+
+	// orderId null means the order is keyed by id, owner may be null
+	private long execute(String orderId, long id, OrderSide side, Ordertype type, long price, long stopPrice, long quantity, String owner) throws OrderException {
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		if(!type.hasLimitPrice()) {
+			price = 0L;
+		}
+		// a limit price off the tick grid is refused before anything trades
+		if(quantity <= 0 || (type.hasLimitPrice() && (price <= 0 || !getLevels(side, true).accepts(price))) || (type.isStop() && stopPrice <= 0)) {
+			reject(metrics);
+			throw new OrderException("Not executable, Order:" + displayId(orderId, id));
+		}
+		// so is a price the ladder has no room for, for orders that may rest there
+		if(type.triggeredType().canRest() && !getLevels(side, true).canHold(price)) {
+			reject(metrics);
+			throw new OrderException("Price outside ladder window, Order:" + displayId(orderId, id));
+		}
+		if(type.canRest() || type.isStop()) {
+			// a store may limit the ids it can keep, see OrderSlab.MAX_ID_LENGTH
+			if(orderId != null && !store.isStorable(orderId)) {
+				reject(metrics);
+				throw new OrderException("Order id too long for the order store, Order:" + orderId);
+			}
+			if((orderId != null ? store.find(orderId) : store.find(id)) != NIL) {
+				reject(metrics);
+				throw new OrderException("Duplicate order id, Order:" + displayId(orderId, id));
+			}
+		}
+
+		if(orderId != null) {
+			eventListener.onOrderAccepted(symbol, orderId, side, type, price, quantity);
+		} else {
+			eventListener.onOrderAccepted(symbol, id, side, type, price, quantity);
+		}
+
+		long remaining = quantity;
+		int ownerCode = ownerCode(owner);
+		lowTradePrice = Long.MAX_VALUE;
+		highTradePrice = Long.MIN_VALUE;
+		try {
+			if(type.isStop()) {
+				// only trades after this one can trigger it
+				store(getStops(side).getOrCreate(stopPrice), orderId, id, side, type, stopPrice, quantity, price, ownerCode);
+				stopCount++;
+				if(metrics != null) {
+					metrics.recordOrder(type, System.nanoTime() - start, 0, 0, restingOrderCount());
+				}
+			} else {
+				remaining = run(orderId, id, side, type, price, quantity, ownerCode);
+				if(metrics != null) {
+					metrics.recordOrder(type, System.nanoTime() - start, fills, levelsTraversed, restingOrderCount());
+				}
+				triggerStops();
+			}
+		} finally {
+			publishTopOfBook();
+		}
+		return remaining;
+	}
+
+	// matches, then rests or drops what is left; returns the quantity left after matching
+	private long run(String orderId, long id, OrderSide side, Ordertype type, long price, long quantity, int owner) throws OrderException {
+		fills = 0;
+		levelsTraversed = 0;
+		long remaining;
+		PriceLadder opposite = getLevels(side, false);
+		// answered from the ladder's cumulative depth, a killed FOK costs no sweep and no rollback
+		if(type == Ordertype.FOK && opposite.availableQuantity(price, quantity) < quantity) {
+			remaining = quantity;
+		} else {
+			remaining = match(opposite, orderId, id, side, type, price, quantity);
+		}
+		if(remaining > 0) {
+			// checked on entry; only a triggered stop limit can find its price no longer fits, it drops the rest
+			if(type.canRest() && getLevels(side, true).canHold(price)) {
+				rest(orderId, id, side, price, remaining, owner);
+				if(orderId != null) {
+					eventListener.onOrderRested(symbol, orderId, side, price, remaining);
+				} else {
+					eventListener.onOrderRested(symbol, id, side, price, remaining);
+				}
+			} else if(orderId != null) {
+				eventListener.onMarketOrderUnfilled(symbol, orderId, side, remaining);
+			} else {
+				eventListener.onMarketOrderUnfilled(symbol, id, side, remaining);
+			}
+		}
+		return remaining;
+	}
+
+	// Runs every parked stop that the trades of the current command reached, through the same path as
+	// a new order. Stops triggered by those trades follow in the same loop, so a cascade costs one
+	// ladder lookup per triggered stop. Buy stops go before sell stops, each side nearest stop price
+	// first and FIFO within a price, which makes the order deterministic for journal replay.
+	private void triggerStops() throws OrderException {
+		if(triggering) {
+			return;
+		}
+		triggering = true;
+		try {
+			int stop;
+			while((stop = nextTriggeredStop()) != NIL) {
+				EngineMetrics metrics = this.metrics;
+				long start = metrics == null ? 0L : System.nanoTime();
+				PriceLevel level = store.level(stop);
+				unlink(level, stop);
+				if(level.isEmpty()) {
+					level.ladder.remove(level);
+				}
+				stopCount--;
+				String orderId = store.hasStringId(stop) ? store.orderId(stop) : null;
+				long id = store.id(stop);
+				OrderSide side = store.side(stop);
+				Ordertype type = store.type(stop).triggeredType();
+				long stopPrice = store.price(stop);
+				long price = store.limitPrice(stop);
+				long quantity = store.quantity(stop);
+				int owner = store.owner(stop);
+				release(stop);
+
+				if(orderId != null) {
+					eventListener.onStopTriggered(symbol, orderId, side, stopPrice);
+				} else {
+					eventListener.onStopTriggered(symbol, id, side, stopPrice);
+				}
+				run(orderId, id, side, type, price, quantity, owner);
+				if(metrics != null) {
+					metrics.recordOrder(type, System.nanoTime() - start, fills, levelsTraversed, restingOrderCount());
+				}
+			}
+		} finally {
+			triggering = false;
+		}
+	}
+
+	// buy stops trigger at or above their stop price, sell stops at or below
+	private int nextTriggeredStop() {
+		PriceLevel level = buyStops.best();
+		if(level != null && level.price <= highTradePrice) {
+			return level.headHandle;
+		}
+		level = sellStops.best();
+		if(level != null && level.price >= lowTradePrice) {
+			return level.headHandle;
+		}
+		return NIL;
+	}
+
+	private PriceLadder getStops(OrderSide side) {
+		return side == OrderSide.BUY ? buyStops : sellStops;
+	}
+
+	private static String displayId(String orderId, long id) {
+		return orderId != null ? orderId : Long.toString(id);
+	}
+
+	private static void reject(EngineMetrics metrics) {
+		if(metrics != null) {
+			metrics.recordReject();
+		}
+	}
+
+	// returns quantity left over after matching against the opposite side
+	private long match(PriceLadder levels, String orderId, long id, OrderSide side, Ordertype type, long price, long quantity) {
+		PriceLevel level;
+		while(quantity > 0 && (level = levels.best()) != null) {
+
+			if(type.hasLimitPrice() && !isExecutable(side, price, level.price)) {
+				// exit if no matching price found for execution
+				break;
+			}
+			levelsTraversed++;
+			if(level.price < lowTradePrice) {
+				lowTradePrice = level.price;
+			}
+			if(level.price > highTradePrice) {
+				highTradePrice = level.price;
+			}
+
+			while(quantity > 0 && !level.isEmpty()) {
+				int orderInFront = level.headHandle;
+				long frontQuantity = store.quantity(orderInFront);
+				fills++;
+				if(frontQuantity > quantity) {
+					fill(level, orderInFront, quantity);
+					trade(orderId, id, orderInFront, side, level.price, quantity, 0L);
+					quantity = 0;
+				} else {
+					quantity -= frontQuantity;
+					trade(orderId, id, orderInFront, side, level.price, frontQuantity, quantity);
+					unlink(level, orderInFront);
+					release(orderInFront);
+				}
+			}
+
+			// remove entry from Order Book if no more orders in the queue
+			if(level.isEmpty()) {
+				levels.remove(level);
+			}
+		}
+		return quantity;
+	}
+
+	// onTrade when the taker is done, onPartialFill otherwise; the long id callbacks when neither side has a String id
+	private void trade(String takerOrderId, long takerId, int maker, OrderSide side, long price, long quantity, long remainingQuantity) {
+		if(takerOrderId == null && !store.hasStringId(maker)) {
+			if(remainingQuantity > 0) {
+				eventListener.onPartialFill(symbol, takerId, store.id(maker), side, price, quantity, remainingQuantity);
+			} else {
+				eventListener.onTrade(symbol, takerId, store.id(maker), side, price, quantity);
+			}
+			return;
+		}
+		String takerDisplayId = displayId(takerOrderId, takerId);
+		if(remainingQuantity > 0) {
+			eventListener.onPartialFill(symbol, takerDisplayId, store.displayId(maker), side, price, quantity, remainingQuantity);
+		} else {
+			eventListener.onTrade(symbol, takerDisplayId, store.displayId(maker), side, price, quantity);
+		}
+	}
+
+	private static boolean isExecutable(OrderSide side, long price, long comparingPrice) {
+		if(side == OrderSide.BUY) {
+			return price >= comparingPrice;
+		} else {
+			return price <= comparingPrice;
+		}
+	}
+
+	@Override
+	public synchronized void addOrder(Order order) throws OrderException {
+
+		if(!order.isValidOrder())
+			throw new OrderException("Not executable, Order:" + order.getOrderId());
+		if(!store.isStorable(order.getOrderId()))
+			throw new OrderException("Order id too long for the order store, Order:" + order.getOrderId());
+		if(store.find(order.getOrderId()) != NIL)
+			throw new OrderException("Duplicate order id, Order:" + order.getOrderId());
+
+		rest(order.getOrderId(), 0L, order.getSide(), BigDecimalUtility.toFixedPoint(order.getPrice()), BigDecimalUtility.toFixedPoint(order.getQuantity()),
+				ownerCode(order.getOwner()));
+		publishTopOfBook();
+	}
+
+	// inside a batch the view is published once when the batch ends
+	private void publishTopOfBook() {
+		if(inBatch) {
+			return;
+		}
+		topOfBook.publish(getMarketDepth(publishedDepth));
+		eventListener.onUpdateComplete(symbol);
+	}
+
+	@Override
+	public synchronized List<OrderResult> executeOrders(List<Order> orders, OrderActionType orderActionType) {
+		List<OrderResult> results = new ArrayList<>(orders.size());
+		inBatch = true;
+		try {
+			for(Order order : orders) {
+				RuntimeException error = null;
+				try {
+					executeOrder(order, orderActionType);
+				} catch (RuntimeException e) {
+					error = e;
+				}
+				results.add(new OrderResult(order == null ? null : order.getOrderId(), error));
+			}
+		} finally {
+			inBatch = false;
+			publishTopOfBook();
+		}
+		return results;
+	}
+
+	private void rest(String orderId, long id, OrderSide side, long price, long quantity, int owner) throws OrderException {
+		// if price exist add to the end of the existing queue else add a new level
+		store(getLevels(side, true).getOrCreate(price), orderId, id, side, Ordertype.LIMIT, price, quantity, 0L, owner);
+	}
+
+	// new record at the back of level, indexed by its id; owner is a code from ownerCode
+	private void store(PriceLevel level, String orderId, long id, OrderSide side, Ordertype type, long price, long quantity, long limitPrice, int owner) {
+		int handle = store.add(orderId, id, side, type, price, quantity, limitPrice);
+		append(level, handle);
+		if(owner != NIL) {
+			store.setOwner(handle, owner);
+			own(handle, owner);
+		}
+	}
+
+	// NIL for no owner, a new code the first time an owner is seen
+	private int ownerCode(String owner) {
+		if(owner == null) {
+			return NIL;
+		}
+		Integer code = ownerCodes.get(owner);
+		if(code == null) {
+			code = owners.size();
+			if(code == ownerOrders.length) {
+				ownerOrders = Arrays.copyOf(ownerOrders, code * 2);
+				Arrays.fill(ownerOrders, code, ownerOrders.length, NIL);
+			}
+			ownerCodes.put(owner, code);
+			owners.add(owner);
+		}
+		return code;
+	}
+
+	// links a book order or parked stop in front of its owner's list
+	private void own(int handle, int owner) {
+		int newest = ownerOrders[owner];
+		store.setOwnerNext(handle, newest);
+		if(newest != NIL) {
+			store.setOwnerPrev(newest, handle);
+		}
+		ownerOrders[owner] = handle;
+	}
+
+	private void disown(int handle, int owner) {
+		int prev = store.ownerPrev(handle);
+		int next = store.ownerNext(handle);
+		if(prev == NIL) {
+			ownerOrders[owner] = next;
+		} else {
+			store.setOwnerNext(prev, next);
+		}
+		if(next != NIL) {
+			store.setOwnerPrev(next, prev);
+		}
+	}
+
+	// every record leaves through here, so an owned record is out of its owner's list and its id out of
+	// the index before the record is reused
+	private void release(int handle) {
+		int owner = store.owner(handle);
+		if(owner != NIL) {
+			disown(handle, owner);
+		}
+		store.remove(handle);
+	}
+
+	private void append(PriceLevel level, int handle) {
+		store.setLevel(handle, level);
+		store.setPrev(handle, level.tailHandle);
+		store.setNext(handle, NIL);
+		if(level.tailHandle == NIL) {
+			level.headHandle = handle;
+		} else {
+			store.setNext(level.tailHandle, handle);
+		}
+		level.tailHandle = handle;
+		level.orderCount++;
+		level.changeQuantity(store.quantity(handle));
+	}
+
+	// partial fill of an order that stays in the queue
+	private void fill(PriceLevel level, int handle, long quantity) {
+		store.setQuantity(handle, store.quantity(handle) - quantity);
+		level.changeQuantity(-quantity);
+	}
+
+	private void unlink(PriceLevel level, int handle) {
+		int prev = store.prev(handle);
+		int next = store.next(handle);
+		if(prev == NIL) {
+			level.headHandle = next;
+		} else {
+			store.setNext(prev, next);
+		}
+		if(next == NIL) {
+			level.tailHandle = prev;
+		} else {
+			store.setPrev(next, prev);
+		}
+		level.orderCount--;
+		level.changeQuantity(-store.quantity(handle));
+	}
+
+	// orders in the book, parked stops are in the store as well
+	private int restingOrderCount() {
+		return store.size() - stopCount;
+	}
+
+	@Override
+	public void removeOrder(Order order) throws OrderException {
+		cancelOrder(order.getOrderId());
+	}
+
+	@Override
+	public synchronized void cancelOrder(String orderId) throws OrderException {
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		int handle = store.find(orderId);
+		if(handle == NIL) {
+			reject(metrics);
+			throw new OrderException("Remove fail.Not found, Order:" + orderId);
+		}
+		cancel(handle, orderId, metrics, start);
+	}
+
+	public synchronized void cancelOrder(long orderId) throws OrderException {
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		int handle = store.find(orderId);
+		if(handle == NIL) {
+			reject(metrics);
+			throw new OrderException("Remove fail.Not found, Order:" + orderId);
+		}
+		cancel(handle, null, metrics, start);
+	}
+
+	// orderId null for a long id
+	private void cancel(int handle, String orderId, EngineMetrics metrics, long start) {
+		discard(handle, orderId);
+		publishTopOfBook();
+		if(metrics != null) {
+			metrics.recordCancel(System.nanoTime() - start, restingOrderCount());
+		}
+	}
+
+	// takes a record off its level, reports it canceled and releases it; orderId is passed in so a
+	// store that does not keep id Strings need not rebuild it
+	private void discard(int handle, String orderId) {
+		PriceLevel level = store.level(handle);
+		unlink(level, handle);
+		if(level.isEmpty()) {
+			// the book or the stop ladder the order was in
+			level.ladder.remove(level);
+		}
+		if(store.type(handle) != Ordertype.LIMIT) {
+			stopCount--;
+		}
+		if(orderId != null) {
+			eventListener.onOrderCanceled(symbol, orderId, store.side(handle), store.price(handle), store.quantity(handle));
+		} else {
+			eventListener.onOrderCanceled(symbol, store.id(handle), store.side(handle), store.price(handle), store.quantity(handle));
+		}
+		release(handle);
+	}
+
+	@Override
+	public synchronized int massCancel(MassCancel massCancel, RestingOrderVisitor visitor) throws OrderException {
+		if(massCancel.getSymbol() != null && massCancel.getSymbol() != symbol)
+			throw new OrderException("Mass cancel symbol " + massCancel.getSymbol() + " does not match book " + symbol);
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		long low = massCancel.getLowPriceFixedPoint();
+		long high = massCancel.getHighPriceFixedPoint();
+		int canceled = 0;
+		try {
+			if(massCancel.getOwner() != null) {
+				// only the owner's orders are visited, whatever the range
+				Integer owner = ownerCodes.get(massCancel.getOwner());
+				int handle = owner == null ? NIL : ownerOrders[owner];
+				while(handle != NIL) {
+					int next = store.ownerNext(handle);
+					long price = store.price(handle);
+					if(massCancel.matchesSide(store.side(handle)) && price >= low && price <= high) {
+						massCancel(handle, visitor);
+						canceled++;
+					}
+					handle = next;
+				}
+			} else {
+				for(OrderSide side : SIDES) {
+					if(massCancel.matchesSide(side)) {
+						// buy levels and sell stops run from the highest price down
+						canceled += massCancel(getLevels(side, true), side == OrderSide.BUY, low, high, visitor);
+						canceled += massCancel(getStops(side), side == OrderSide.SELL, low, high, visitor);
+					}
+				}
+			}
+		} finally {
+			if(canceled > 0) {
+				publishTopOfBook();
+				if(metrics != null) {
+					metrics.recordCancel(System.nanoTime() - start, restingOrderCount());
+				}
+			}
+		}
+		return canceled;
+	}
+
+	// every order of the ladder's levels in [low, high], walked in ladder order from the first price in range;
+	// levels outside it are not touched
+	private int massCancel(PriceLadder levels, boolean descending, long low, long high, RestingOrderVisitor visitor) {
+		int canceled = 0;
+		PriceLevel level = levels.from(descending ? high : low);
+		while(level != null && (descending ? level.price >= low : level.price <= high)) {
+			PriceLevel next = levels.next(level);
+			// the level goes back to the pool with its last order
+			int handle = level.headHandle;
+			while(handle != NIL) {
+				int behind = store.next(handle);
+				massCancel(handle, visitor);
+				canceled++;
+				handle = behind;
+			}
+			level = next;
+		}
+		return canceled;
+	}
+
+	private void massCancel(int handle, RestingOrderVisitor visitor) {
+		if(visitor != null) {
+			visitor.visit(store.displayId(handle), store.price(handle), store.quantity(handle));
+		}
+		discard(handle, store.hasStringId(handle) ? store.orderId(handle) : null);
+	}
+
+	@Override
+	public synchronized void amendOrder(Order order) throws OrderException {
+		if(order.getSymbol() != symbol)
+			throw new OrderException("Order symbol " + order.getSymbol() + " does not match book " + symbol + ", Order:" + order.getOrderId());
+		if(!order.getType().canRest())
+			throw new OrderException("Only LIMIT orders can be amended, Order:" + order.getOrderId());
+		long quantity = BigDecimalUtility.toFixedPoint(order.getQuantity());
+		long remaining = amendOrder(order.getOrderId(), order.getSide(), BigDecimalUtility.toFixedPoint(order.getPrice()), quantity);
+		if(remaining != quantity) {
+			order.setQuantity(BigDecimalUtility.fromFixedPoint(remaining));
+		}
+	}
+
+	// Allocation free amend with fixed point price/quantity, see MatchingEngine.amendOrder.
+	// Returns the quantity resting after the amend, less than quantity if the new price traded.
+	public synchronized long amendOrder(String orderId, OrderSide side, long price, long quantity) throws OrderException {
+		return amend(store.find(orderId), orderId, 0L, side, price, quantity);
+	}
+
+	public synchronized long amendOrder(long orderId, OrderSide side, long price, long quantity) throws OrderException {
+		return amend(store.find(orderId), null, orderId, side, price, quantity);
+	}
+
+	private long amend(int handle, String orderId, long id, OrderSide side, long price, long quantity) throws OrderException {
+		EngineMetrics metrics = this.metrics;
+		long start = metrics == null ? 0L : System.nanoTime();
+		if(handle == NIL) {
+			reject(metrics);
+			throw new OrderException("Amend fail.Not found, Order:" + displayId(orderId, id));
+		}
+		// everything is checked before the order is touched, a rejected amend leaves it as it was
+		if(quantity <= 0 || price <= 0 || !getLevels(side, true).accepts(price)) {
+			reject(metrics);
+			throw new OrderException("Not executable, Order:" + displayId(orderId, id));
+		}
+		if(!getLevels(side, true).canHold(price)) {
+			reject(metrics);
+			throw new OrderException("Price outside ladder window, Order:" + displayId(orderId, id));
+		}
+		if(side != store.side(handle)) {
+			reject(metrics);
+			throw new OrderException("Amend cannot change side, Order:" + displayId(orderId, id));
+		}
+		if(store.type(handle) != Ordertype.LIMIT) {
+			reject(metrics);
+			throw new OrderException("Only resting LIMIT orders can be amended, Order:" + displayId(orderId, id));
+		}
+
+		fills = 0;
+		levelsTraversed = 0;
+		lowTradePrice = Long.MAX_VALUE;
+		highTradePrice = Long.MIN_VALUE;
+		long remaining = quantity;
+		try {
+			long restingQuantity = store.quantity(handle);
+			PriceLevel level = store.level(handle);
+			if(price == store.price(handle) && quantity <= restingQuantity) {
+				fill(level, handle, restingQuantity - quantity);
+				amended(orderId, id, side, price, quantity, true);
+			} else {
+				// loses its place: out of the old queue, then in as if it were a new order at the new price
+				unlink(level, handle);
+				if(level.isEmpty()) {
+					getLevels(side, true).remove(level);
+				}
+				int owner = store.owner(handle);
+				release(handle);
+				amended(orderId, id, side, price, quantity, false);
+
+				remaining = match(getLevels(side, false), orderId, id, side, Ordertype.LIMIT, price, quantity);
+				if(remaining > 0) {
+					rest(orderId, id, side, price, remaining, owner);
+				}
+			}
+			if(metrics != null) {
+				metrics.recordAmend(System.nanoTime() - start, fills, restingOrderCount());
+			}
+			triggerStops();
+		} finally {
+			publishTopOfBook();
+		}
+		return remaining;
+	}
+
+	private void amended(String orderId, long id, OrderSide side, long price, long quantity, boolean keptPriority) {
+		if(orderId != null) {
+			eventListener.onOrderAmended(symbol, orderId, side, price, quantity, keptPriority);
+		} else {
+			eventListener.onOrderAmended(symbol, id, side, price, quantity, keptPriority);
+		}
+	}
+
+	private PriceLadder getLevels(OrderSide side, boolean isSameSide) {
+		OrderSide levelsSide = side;
+		if(!isSameSide) {
+			levelsSide = (side == OrderSide.BUY) ? OrderSide.SELL : OrderSide.BUY;
+		}
+		switch (levelsSide) {
+		case BUY:
+			return buyLevels;
+		case SELL:
+			return sellLevels;
+		default:
+			throw new IllegalStateException("Unexpected value: " + side);
+		}
+	}
+
+	// best price in fixed point units, or 0 if the side is empty
+	public synchronized long getBestPrice(OrderSide side) {
+		PriceLevel level = getLevels(side, true).best();
+		return level == null ? 0L : level.price;
+	}
+
+	// total resting quantity in fixed point units at the given fixed point price
+	public synchronized long getQuantityAtPrice(OrderSide side, long price) {
+		PriceLevel level = getLevels(side, true).get(price);
+		return level == null ? 0L : level.totalQuantity;
+	}
+
+	// O(levels) from the per level aggregates, no order is visited
+	@Override
+	public synchronized MarketDepth getMarketDepth(MarketDepth depth) {
+		depth.reset(symbol);
+		for(OrderSide side : SIDES) {
+			PriceLadder levels = getLevels(side, true);
+			for(PriceLevel level = levels.best(); level != null; level = levels.next(level)) {
+				if(!depth.addLevel(side, level.price, level.totalQuantity, level.orderCount)) {
+					break;
+				}
+			}
+		}
+		return depth;
+	}
+
+	@Override
+	public synchronized void forEachRestingOrder(OrderSide side, RestingOrderVisitor visitor) {
+		PriceLadder levels = getLevels(side, true);
+		for(PriceLevel level = levels.best(); level != null; level = levels.next(level)) {
+			for(int handle = level.headHandle; handle != NIL; handle = store.next(handle)) {
+				visitor.visit(store.displayId(handle), store.price(handle), store.quantity(handle));
+			}
+		}
+	}
+
+	@Override
+	public synchronized void forEachStopOrder(OrderSide side, StopOrderVisitor visitor) {
+		PriceLadder stops = getStops(side);
+		for(PriceLevel level = stops.best(); level != null; level = stops.next(level)) {
+			for(int handle = level.headHandle; handle != NIL; handle = store.next(handle)) {
+				visitor.visit(store.displayId(handle), store.type(handle), store.price(handle), store.limitPrice(handle), store.quantity(handle));
+			}
+		}
+	}
+
+	@Override
+	public synchronized String getOwner(String orderId) {
+		int handle = store.find(orderId);
+		if(handle == NIL || store.owner(handle) == NIL) {
+			return null;
+		}
+		return owners.get(store.owner(handle));
+	}
+
+	@Override
+	public synchronized boolean containsOrder(String orderId) {
+		return store.find(orderId) != NIL;
+	}
+
+	public synchronized int getStopOrderCount() {
+		return stopCount;
+	}
+
+	// orders resting in the book, parked stops not included
+	public synchronized int getOrderCount() {
+		return restingOrderCount();
+	}
+
+	public synchronized int getLevelCount(OrderSide side) {
+		return getLevels(side, true).size();
+	}
+
+	@Override
+	public void setEventListener(OrderEventListener eventListener) {
+		this.eventListener = eventListener == null ? OrderEventListener.NO_OP : eventListener;
+	}
+
+	@Override
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	@Override
+	public synchronized void clear() {
+		sellLevels.clear();
+		buyLevels.clear();
+		buyStops.clear();
+		sellStops.clear();
+		stopCount = 0;
+		store.clear();
+		ownerCodes.clear();
+		owners.clear();
+		Arrays.fill(ownerOrders, NIL);
+		publishTopOfBook();
+	}
+
+	@Override
+	public void setMetrics(EngineMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public TopOfBook getTopOfBook() {
+		return topOfBook;
+	}
+
+	public synchronized String toString() {
+		StringBuilder orderBookString = new StringBuilder();
+
+		orderBookString.append("\n>>>>>>>>>>>>>>>>>>>>>>>ORDERBOOK>>>>>>>>>>>>>>>>>>>>>>>>>>>\n>>           SELL\n");
+		ArrayList<PriceLevel> sells = new ArrayList<>();
+		for (PriceLevel level = sellLevels.best(); level != null; level = sellLevels.next(level)) {
+			sells.add(level);
+		}
+		for (int i = sells.size() - 1; i >= 0; i--) {
+			appendLevel(orderBookString, sells.get(i));
+		}
+		orderBookString.append(">> PRICE                QUANTITY\n");
+		for (PriceLevel level = buyLevels.best(); level != null; level = buyLevels.next(level)) {
+			appendLevel(orderBookString, level);
+		}
+		orderBookString.append(">>               BUY\n<<<<<<<<<<<<<<<<<<<<<<<<ORDERBOOK<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n");
+		return orderBookString.toString();
+	}
+
+	private void appendLevel(StringBuilder orderBookString, PriceLevel level) {
+		orderBookString.append(">> ");
+		orderBookString.append(BigDecimalUtility.fromFixedPoint(level.price));
+		orderBookString.append(":         ");
+		for(int handle = level.headHandle; handle != NIL; handle = store.next(handle)) {
+			if(handle != level.headHandle) {
+				orderBookString.append(' ');
+			}
+			orderBookString.append(BigDecimalUtility.fromFixedPoint(store.quantity(handle)));
+		}
+		orderBookString.append("\n");
+	}
+}
@@ -0,0 +1,219 @@
+package m2.orderbook.engine;
+
+import java.util.Arrays;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+
+// OrderStore of RestingOrder objects, the handle is the index into the record table.
+// Freed records go on a free list threaded through their next field and are reused before the table
+// grows, so records stay at the high-water mark of the book and adding an order allocates nothing once
+// the table and the id indexes have warmed up.
+final class HeapOrderStore implements OrderStore {
+
+	private RestingOrder[] orders;
+	// records ever handed out, the table is filled in order before the free list is used
+	private int used;
+	private int freeHead = NIL;
+	private int size;
+	private final OrderIndex orderIndex;
+	private final LongOrderIndex longOrderIndex;
+
+	HeapOrderStore(int expectedOrders) {
+		orders = new RestingOrder[expectedOrders];
+		orderIndex = new OrderIndex(expectedOrders);
+		longOrderIndex = new LongOrderIndex(expectedOrders);
+	}
+
+	@Override
+	public boolean isStorable(String orderId) {
+		return true;
+	}
+
+	@Override
+	public int add(String orderId, long id, OrderSide side, Ordertype type, long price, long quantity, long limitPrice) {
+		RestingOrder order;
+		if(freeHead != NIL) {
+			order = orders[freeHead];
+			freeHead = order.next;
+		} else {
+			if(used == orders.length) {
+				orders = Arrays.copyOf(orders, used * 2);
+			}
+			order = orders[used];
+			// records handed out before a clear are reused as well
+			if(order == null) {
+				order = new RestingOrder(used);
+				orders[used] = order;
+			}
+			used++;
+		}
+		order.set(orderId, id, side, type, price, quantity, limitPrice);
+		if(orderId != null) {
+			orderIndex.put(orderId, order);
+		} else {
+			longOrderIndex.put(id, order);
+		}
+		size++;
+		return order.handle;
+	}
+
+	@Override
+	public void remove(int handle) {
+		RestingOrder order = orders[handle];
+		if(order.orderId != null) {
+			orderIndex.remove(order.orderId);
+		} else {
+			longOrderIndex.remove(order.id);
+		}
+		order.clear();
+		order.next = freeHead;
+		freeHead = handle;
+		size--;
+	}
+
+	@Override
+	public int find(String orderId) {
+		RestingOrder order = orderIndex.get(orderId);
+		return order == null ? NIL : order.handle;
+	}
+
+	@Override
+	public int find(long id) {
+		RestingOrder order = longOrderIndex.get(id);
+		return order == null ? NIL : order.handle;
+	}
+
+	@Override
+	public boolean hasStringId(int handle) {
+		return orders[handle].orderId != null;
+	}
+
+	@Override
+	public String orderId(int handle) {
+		return orders[handle].orderId;
+	}
+
+	@Override
+	public long id(int handle) {
+		return orders[handle].id;
+	}
+
+	@Override
+	public String displayId(int handle) {
+		return orders[handle].displayId();
+	}
+
+	@Override
+	public OrderSide side(int handle) {
+		return orders[handle].side;
+	}
+
+	@Override
+	public Ordertype type(int handle) {
+		return orders[handle].type;
+	}
+
+	@Override
+	public long price(int handle) {
+		return orders[handle].price;
+	}
+
+	@Override
+	public long quantity(int handle) {
+		return orders[handle].quantity;
+	}
+
+	@Override
+	public void setQuantity(int handle, long quantity) {
+		orders[handle].quantity = quantity;
+	}
+
+	@Override
+	public long limitPrice(int handle) {
+		return orders[handle].limitPrice;
+	}
+
+	@Override
+	public int prev(int handle) {
+		return orders[handle].prev;
+	}
+
+	@Override
+	public void setPrev(int handle, int prev) {
+		orders[handle].prev = prev;
+	}
+
+	@Override
+	public int next(int handle) {
+		return orders[handle].next;
+	}
+
+	@Override
+	public void setNext(int handle, int next) {
+		orders[handle].next = next;
+	}
+
+	@Override
+	public PriceLevel level(int handle) {
+		return orders[handle].level;
+	}
+
+	@Override
+	public void setLevel(int handle, PriceLevel level) {
+		orders[handle].level = level;
+	}
+
+	@Override
+	public int owner(int handle) {
+		return orders[handle].owner;
+	}
+
+	@Override
+	public void setOwner(int handle, int owner) {
+		orders[handle].owner = owner;
+	}
+
+	@Override
+	public int ownerPrev(int handle) {
+		return orders[handle].ownerPrev;
+	}
+
+	@Override
+	public void setOwnerPrev(int handle, int prev) {
+		orders[handle].ownerPrev = prev;
+	}
+
+	@Override
+	public int ownerNext(int handle) {
+		return orders[handle].ownerNext;
+	}
+
+	@Override
+	public void setOwnerNext(int handle, int next) {
+		orders[handle].ownerNext = next;
+	}
+
+	@Override
+	public PriceLevel newLevel() {
+		return new PriceLevel();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	// the records are kept for reuse
+	@Override
+	public void clear() {
+		for(int handle = 0; handle < used; handle++) {
+			orders[handle].clear();
+		}
+		used = 0;
+		freeHead = NIL;
+		size = 0;
+		orderIndex.clear();
+		longOrderIndex.clear();
+	}
+}
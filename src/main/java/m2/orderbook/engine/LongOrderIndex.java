@@ -0,0 +1,115 @@
+package m2.orderbook.engine;
+
+import java.util.Arrays;
+
+// OrderIndex for primitive long ids: no String hashing or equals, no boxing.
+// A slot is free when its value is null, so every long (including 0) is a valid id.
+final class LongOrderIndex {
+
+	private long[] keys;
+	private RestingOrder[] values;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	LongOrderIndex(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new RestingOrder[capacity];
+		mask = capacity - 1;
+		resizeThreshold = capacity / 2;
+	}
+
+	// generated ids differ mostly in the middle bits, spread them before masking
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	RestingOrder get(long key) {
+		for(int index = slot(key); values[index] != null; index = (index + 1) & mask) {
+			if(keys[index] == key) {
+				return values[index];
+			}
+		}
+		return null;
+	}
+
+	boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	void put(long key, RestingOrder value) {
+		int index = slot(key);
+		while(values[index] != null) {
+			if(keys[index] == key) {
+				values[index] = value;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		if(++size > resizeThreshold) {
+			resize();
+		}
+	}
+
+	RestingOrder remove(long key) {
+		int index = slot(key);
+		while(values[index] != null) {
+			if(keys[index] == key) {
+				RestingOrder value = values[index];
+				shiftBack(index);
+				size--;
+				return value;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	// close the gap left at index so probing chains stay unbroken
+	private void shiftBack(int gap) {
+		int index = gap;
+		while(true) {
+			index = (index + 1) & mask;
+			if(values[index] == null) {
+				break;
+			}
+			int home = slot(keys[index]);
+			// move the entry when its home slot is not within (gap, index]
+			if(((index - home) & mask) >= ((index - gap) & mask)) {
+				keys[gap] = keys[index];
+				values[gap] = values[index];
+				gap = index;
+			}
+		}
+		values[gap] = null;
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		RestingOrder[] oldValues = values;
+		allocate(oldKeys.length << 1);
+		size = 0;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldValues[i] != null) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+}
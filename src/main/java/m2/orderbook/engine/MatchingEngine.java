@@ -0,0 +1,69 @@
+package m2.orderbook.engine;
+
+import java.util.List;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.metrics.EngineMetrics;
+
+public interface MatchingEngine {
+
+	Symbol getSymbol();
+
+	void executeOrder(Order order, OrderActionType orderActionType) throws OrderException;
+
+	// applies every order under one lock acquisition, a failing order does not stop the batch;
+	// the top of book is published and onUpdateComplete fired once at the end
+	List<OrderResult> executeOrders(List<Order> orders, OrderActionType orderActionType);
+
+	void addOrder(Order order) throws OrderException;
+
+	void removeOrder(Order order) throws OrderException;
+
+	void cancelOrder(String orderId) throws OrderException;
+
+	// Cancels every resting order and parked stop massCancel matches, stops by their stop price. Only the
+	// price levels in range (or the owner's orders) are visited; every order gets its onOrderCanceled and the
+	// top of book is published and onUpdateComplete fired once at the end. visitor, may be null, sees each
+	// order right before it is cancelled (a stop with its stop price); an exception from it stops the mass
+	// cancel and leaves the orders cancelled so far cancelled. Returns the count.
+	int massCancel(MassCancel massCancel, RestingOrderVisitor visitor) throws OrderException;
+
+	// Gives the resting order with the same id the order's price and quantity (the new open quantity).
+	// A quantity reduction at the same price is done in place and keeps queue priority; a price change
+	// or quantity increase moves the order to the back of its new level, trading first if the new
+	// price crosses the book. Leaves order with the quantity still resting.
+	void amendOrder(Order order) throws OrderException;
+
+	void clear();
+
+	// resting orders of one side from best to worst price, in queue order within a price
+	void forEachRestingOrder(OrderSide side, RestingOrderVisitor visitor);
+
+	// parked stop orders of one side in trigger order (nearest stop price first, FIFO within a price)
+	void forEachStopOrder(OrderSide side, StopOrderVisitor visitor);
+
+	// owner of a resting order or parked stop entered with a String id, null if it has none or is not there
+	String getOwner(String orderId);
+
+	// true while a resting order or parked stop with this String id is in the book
+	boolean containsOrder(String orderId);
+
+	// top depth.getMaxLevels() levels per side with aggregate quantity and order count, returns depth
+	MarketDepth getMarketDepth(MarketDepth depth);
+
+	// lock free view of the best levels, safe to read from any thread
+	TopOfBook getTopOfBook();
+
+	void setEventListener(OrderEventListener eventListener);
+
+	// latency and activity recording, null (the default) turns it off
+	void setMetrics(EngineMetrics metrics);
+}
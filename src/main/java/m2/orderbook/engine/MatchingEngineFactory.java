@@ -0,0 +1,28 @@
+package m2.orderbook.engine;
+
+import m2.orderbook.OrderBook;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.Symbol;
+
+public class MatchingEngineFactory {
+
+	public static MatchingEngine create(Symbol symbol, EngineMode engineMode) {
+		return create(symbol, engineMode, SymbolConfig.forSymbol(symbol));
+	}
+
+	// config is only used by the FIXED_POINT and OFF_HEAP engines, OrderBook always keeps TreeMap levels
+	public static MatchingEngine create(Symbol symbol, EngineMode engineMode, SymbolConfig config) {
+		if(engineMode==null)
+			throw new IllegalArgumentException("Engine mode is required");
+		switch (engineMode) {
+		case BIG_DECIMAL:
+			return new OrderBook(symbol);
+		case FIXED_POINT:
+			return new FixedPointOrderBook(symbol, config);
+		case OFF_HEAP:
+			return new OffHeapOrderBook(symbol, config);
+		default:
+			throw new IllegalStateException("Unexpected value: " + engineMode);
+		}
+	}
+}
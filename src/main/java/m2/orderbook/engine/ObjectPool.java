@@ -0,0 +1,40 @@
+package m2.orderbook.engine;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+// free list, acquire only allocates when the pool is empty
+// Every released object is kept (the free list grows past capacity), so the objects ever created stay
+// at the high-water mark of those in use; an OrderSlab relies on that for its level table.
+final class ObjectPool<T> {
+
+	private Object[] free;
+	private final Supplier<T> factory;
+	private int size;
+
+	ObjectPool(int capacity, Supplier<T> factory) {
+		this.free = new Object[capacity];
+		this.factory = factory;
+	}
+
+	@SuppressWarnings("unchecked")
+	T acquire() {
+		if(size == 0) {
+			return factory.get();
+		}
+		T object = (T) free[--size];
+		free[size] = null;
+		return object;
+	}
+
+	void release(T object) {
+		if(size == free.length) {
+			free = Arrays.copyOf(free, size * 2);
+		}
+		free[size++] = object;
+	}
+
+	int size() {
+		return size;
+	}
+}
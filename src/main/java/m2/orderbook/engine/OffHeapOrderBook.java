@@ -0,0 +1,33 @@
+package m2.orderbook.engine;
+
+import m2.orderbook.enums.Symbol;
+
+// FixedPointOrderBook with the resting orders (and parked stops) in an off-heap OrderSlab instead of
+// RestingOrder objects. Price levels link slab handles, the id indexes are int tables
+// (SlabOrderIndex), so the heap holds one int per order and a few objects per price level: heap size and
+// GC marking stay flat however many orders rest. Matching rules, events and the public entry points are
+// FixedPointOrderBook's, only the store differs.
+// String ids are stored in the slab records and limited to OrderSlab.MAX_ID_LENGTH latin1 characters,
+// longer ids are refused for orders that would rest. Events for String id orders rebuild the id String.
+public class OffHeapOrderBook extends FixedPointOrderBook {
+
+	private final OrderSlab slab;
+
+	public OffHeapOrderBook(Symbol symbol) {
+		this(symbol, SymbolConfig.forSymbol(symbol));
+	}
+
+	public OffHeapOrderBook(Symbol symbol, SymbolConfig config) {
+		this(symbol, config, new OrderSlab(EXPECTED_ORDERS));
+	}
+
+	private OffHeapOrderBook(Symbol symbol, SymbolConfig config, OrderSlab slab) {
+		super(symbol, config, slab);
+		this.slab = slab;
+	}
+
+	// direct memory held by the order slabs, grows with the largest book seen
+	public synchronized long getReservedOffHeapBytes() {
+		return slab.reservedBytes();
+	}
+}
@@ -0,0 +1,117 @@
+package m2.orderbook.engine;
+
+import java.util.Arrays;
+
+// Open addressing order id -> resting order map (linear probing, backward shift delete).
+// Unlike HashMap it allocates nothing per put, only when the table has to grow.
+final class OrderIndex {
+
+	private String[] keys;
+	private RestingOrder[] values;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	OrderIndex(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new String[capacity];
+		values = new RestingOrder[capacity];
+		mask = capacity - 1;
+		resizeThreshold = capacity / 2;
+	}
+
+	private int slot(String key) {
+		int hash = key.hashCode() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	RestingOrder get(String key) {
+		for(int index = slot(key); keys[index] != null; index = (index + 1) & mask) {
+			if(keys[index].equals(key)) {
+				return values[index];
+			}
+		}
+		return null;
+	}
+
+	boolean containsKey(String key) {
+		return get(key) != null;
+	}
+
+	void put(String key, RestingOrder value) {
+		int index = slot(key);
+		while(keys[index] != null) {
+			if(keys[index].equals(key)) {
+				values[index] = value;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		if(++size > resizeThreshold) {
+			resize();
+		}
+	}
+
+	RestingOrder remove(String key) {
+		int index = slot(key);
+		while(keys[index] != null) {
+			if(keys[index].equals(key)) {
+				RestingOrder value = values[index];
+				shiftBack(index);
+				size--;
+				return value;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	// close the gap left at index so probing chains stay unbroken
+	private void shiftBack(int gap) {
+		int index = gap;
+		while(true) {
+			index = (index + 1) & mask;
+			String key = keys[index];
+			if(key == null) {
+				break;
+			}
+			int home = slot(key);
+			// move the entry when its home slot is not within (gap, index]
+			if(((index - home) & mask) >= ((index - gap) & mask)) {
+				keys[gap] = key;
+				values[gap] = values[index];
+				gap = index;
+			}
+		}
+		keys[gap] = null;
+		values[gap] = null;
+	}
+
+	private void resize() {
+		String[] oldKeys = keys;
+		RestingOrder[] oldValues = values;
+		allocate(oldKeys.length << 1);
+		size = 0;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != null) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+}
@@ -0,0 +1,354 @@
+package m2.orderbook.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+
+// OrderStore of an OffHeapOrderBook: fixed width records in direct ByteBuffer slabs of SLAB_RECORDS
+// records each. An order is addressed by an int handle (slab << SLAB_BITS | record), NIL is no order.
+// Freed records go on a free list threaded through their next field and are reused before the slabs grow.
+// Slabs are kept for the life of the book, memory stays at the high-water mark like the records of a
+// HeapOrderStore.
+// The heap only holds the slab array and the int id tables (SlabOrderIndex), so heap size and GC marking
+// do not depend on the number of orders.
+//
+// Record layout (native byte order):
+//   long id, long price, long quantity, long limitPrice, int prev, int next,
+//   byte side, byte type, byte id length (-1 for a long id), byte unused, int id hash,
+//   int owner, int owner prev, int owner next, int level, id chars (latin1)
+// String ids are stored in the record and limited to MAX_ID_LENGTH latin1 characters. The owner is a code
+// handed out by the book (NIL for none), owner prev/next link a book order into its owner's list.
+// The level is the slot of the record's PriceLevel in the level table: every level of the book is created
+// by newLevel and pooled for the life of the book, so a slot never changes its level.
+final class OrderSlab implements OrderStore {
+
+	static final int MAX_ID_LENGTH = 32;
+
+	static final int SLAB_BITS = 16;
+	static final int SLAB_RECORDS = 1 << SLAB_BITS;
+	private static final int RECORD_MASK = SLAB_RECORDS - 1;
+	// keeps every handle a positive int
+	private static final int MAX_SLABS = (1 << (31 - SLAB_BITS)) - 1;
+
+	private static final int ID = 0;
+	private static final int PRICE = 8;
+	private static final int QUANTITY = 16;
+	private static final int LIMIT_PRICE = 24;
+	private static final int PREV = 32;
+	private static final int NEXT = 36;
+	private static final int SIDE = 40;
+	private static final int TYPE = 41;
+	private static final int ID_LENGTH = 42;
+	private static final int ID_HASH = 44;
+	private static final int OWNER = 48;
+	private static final int OWNER_PREV = 52;
+	private static final int OWNER_NEXT = 56;
+	private static final int LEVEL = 60;
+	private static final int ID_CHARS = 64;
+	static final int RECORD_SIZE = ID_CHARS + MAX_ID_LENGTH;
+
+	private static final OrderSide[] SIDES = OrderSide.values();
+	private static final Ordertype[] TYPES = Ordertype.values();
+
+	private ByteBuffer[] slabs = new ByteBuffer[4];
+	private int slabCount;
+	// records ever handed out, the slabs are filled in order before the free list is used
+	private int used;
+	private int freeHead = NIL;
+	private int size;
+	private final SlabOrderIndex orderIndex;
+	private final SlabOrderIndex longOrderIndex;
+	private PriceLevel[] levels = new PriceLevel[64];
+	private int levelCount;
+
+	OrderSlab(int expectedOrders) {
+		orderIndex = new SlabOrderIndex(this, false, expectedOrders);
+		longOrderIndex = new SlabOrderIndex(this, true, expectedOrders);
+	}
+
+	// true if the id fits into a record
+	@Override
+	public boolean isStorable(String orderId) {
+		if(orderId.length() > MAX_ID_LENGTH) {
+			return false;
+		}
+		for(int i = 0; i < orderId.length(); i++) {
+			if(orderId.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int add(String orderId, long id, OrderSide side, Ordertype type, long price, long quantity, long limitPrice) {
+		int handle = allocate(side, type, price, quantity, limitPrice);
+		if(orderId != null) {
+			setId(handle, orderId);
+			orderIndex.put(handle);
+		} else {
+			setId(handle, id);
+			longOrderIndex.put(handle);
+		}
+		return handle;
+	}
+
+	// a record with its links cleared, id fields are set by the caller
+	private int allocate(OrderSide side, Ordertype type, long price, long quantity, long limitPrice) {
+		int handle;
+		if(freeHead != NIL) {
+			handle = freeHead;
+			freeHead = next(handle);
+		} else {
+			if(used == slabCount * SLAB_RECORDS) {
+				addSlab();
+			}
+			handle = used++;
+		}
+		ByteBuffer slab = slab(handle);
+		int offset = offset(handle);
+		slab.putLong(offset + PRICE, price);
+		slab.putLong(offset + QUANTITY, quantity);
+		slab.putLong(offset + LIMIT_PRICE, limitPrice);
+		slab.putInt(offset + PREV, NIL);
+		slab.putInt(offset + NEXT, NIL);
+		slab.put(offset + SIDE, (byte) side.ordinal());
+		slab.put(offset + TYPE, (byte) type.ordinal());
+		slab.putInt(offset + OWNER, NIL);
+		slab.putInt(offset + OWNER_PREV, NIL);
+		slab.putInt(offset + OWNER_NEXT, NIL);
+		slab.putInt(offset + LEVEL, NIL);
+		size++;
+		return handle;
+	}
+
+	private void addSlab() {
+		if(slabCount == MAX_SLABS)
+			throw new IllegalStateException("Order slab is full");
+		if(slabCount == slabs.length) {
+			slabs = Arrays.copyOf(slabs, Math.min(slabs.length * 2, MAX_SLABS));
+		}
+		slabs[slabCount++] = ByteBuffer.allocateDirect(SLAB_RECORDS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+	}
+
+	@Override
+	public void remove(int handle) {
+		if(hasStringId(handle)) {
+			orderIndex.remove(handle);
+		} else {
+			longOrderIndex.remove(handle);
+		}
+		setNext(handle, freeHead);
+		freeHead = handle;
+		size--;
+	}
+
+	private ByteBuffer slab(int handle) {
+		return slabs[handle >>> SLAB_BITS];
+	}
+
+	private static int offset(int handle) {
+		return (handle & RECORD_MASK) * RECORD_SIZE;
+	}
+
+	@Override
+	public int find(String orderId) {
+		return orderIndex.get(orderId);
+	}
+
+	@Override
+	public int find(long id) {
+		return longOrderIndex.get(id);
+	}
+
+	private void setId(int handle, String orderId) {
+		ByteBuffer slab = slab(handle);
+		int offset = offset(handle);
+		slab.put(offset + ID_LENGTH, (byte) orderId.length());
+		slab.putInt(offset + ID_HASH, orderId.hashCode());
+		for(int i = 0; i < orderId.length(); i++) {
+			slab.put(offset + ID_CHARS + i, (byte) orderId.charAt(i));
+		}
+	}
+
+	private void setId(int handle, long id) {
+		ByteBuffer slab = slab(handle);
+		int offset = offset(handle);
+		slab.putLong(offset + ID, id);
+		slab.put(offset + ID_LENGTH, (byte) -1);
+	}
+
+	@Override
+	public boolean hasStringId(int handle) {
+		return slab(handle).get(offset(handle) + ID_LENGTH) >= 0;
+	}
+
+	@Override
+	public long id(int handle) {
+		return slab(handle).getLong(offset(handle) + ID);
+	}
+
+	// String.hashCode of the stored id
+	int idHash(int handle) {
+		return slab(handle).getInt(offset(handle) + ID_HASH);
+	}
+
+	boolean idEquals(int handle, String orderId) {
+		ByteBuffer slab = slab(handle);
+		int offset = offset(handle);
+		int length = slab.get(offset + ID_LENGTH);
+		if(length != orderId.length() || slab.getInt(offset + ID_HASH) != orderId.hashCode()) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if((slab.get(offset + ID_CHARS + i) & 0xFF) != orderId.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// allocates, only for String ids
+	@Override
+	public String orderId(int handle) {
+		ByteBuffer slab = slab(handle);
+		int offset = offset(handle);
+		int length = slab.get(offset + ID_LENGTH);
+		char[] chars = new char[length];
+		for(int i = 0; i < length; i++) {
+			chars[i] = (char) (slab.get(offset + ID_CHARS + i) & 0xFF);
+		}
+		return new String(chars);
+	}
+
+	// id as reported outside the engine, allocates
+	@Override
+	public String displayId(int handle) {
+		return hasStringId(handle) ? orderId(handle) : Long.toString(id(handle));
+	}
+
+	@Override
+	public long price(int handle) {
+		return slab(handle).getLong(offset(handle) + PRICE);
+	}
+
+	@Override
+	public long quantity(int handle) {
+		return slab(handle).getLong(offset(handle) + QUANTITY);
+	}
+
+	@Override
+	public void setQuantity(int handle, long quantity) {
+		slab(handle).putLong(offset(handle) + QUANTITY, quantity);
+	}
+
+	@Override
+	public long limitPrice(int handle) {
+		return slab(handle).getLong(offset(handle) + LIMIT_PRICE);
+	}
+
+	@Override
+	public OrderSide side(int handle) {
+		return SIDES[slab(handle).get(offset(handle) + SIDE)];
+	}
+
+	@Override
+	public Ordertype type(int handle) {
+		return TYPES[slab(handle).get(offset(handle) + TYPE)];
+	}
+
+	@Override
+	public int prev(int handle) {
+		return slab(handle).getInt(offset(handle) + PREV);
+	}
+
+	@Override
+	public void setPrev(int handle, int prev) {
+		slab(handle).putInt(offset(handle) + PREV, prev);
+	}
+
+	@Override
+	public int next(int handle) {
+		return slab(handle).getInt(offset(handle) + NEXT);
+	}
+
+	@Override
+	public void setNext(int handle, int next) {
+		slab(handle).putInt(offset(handle) + NEXT, next);
+	}
+
+	@Override
+	public int owner(int handle) {
+		return slab(handle).getInt(offset(handle) + OWNER);
+	}
+
+	@Override
+	public void setOwner(int handle, int owner) {
+		slab(handle).putInt(offset(handle) + OWNER, owner);
+	}
+
+	@Override
+	public int ownerPrev(int handle) {
+		return slab(handle).getInt(offset(handle) + OWNER_PREV);
+	}
+
+	@Override
+	public void setOwnerPrev(int handle, int prev) {
+		slab(handle).putInt(offset(handle) + OWNER_PREV, prev);
+	}
+
+	@Override
+	public int ownerNext(int handle) {
+		return slab(handle).getInt(offset(handle) + OWNER_NEXT);
+	}
+
+	@Override
+	public void setOwnerNext(int handle, int next) {
+		slab(handle).putInt(offset(handle) + OWNER_NEXT, next);
+	}
+
+	@Override
+	public PriceLevel level(int handle) {
+		return levels[slab(handle).getInt(offset(handle) + LEVEL)];
+	}
+
+	@Override
+	public void setLevel(int handle, PriceLevel level) {
+		slab(handle).putInt(offset(handle) + LEVEL, level.slot);
+	}
+
+	@Override
+	public PriceLevel newLevel() {
+		if(levelCount == levels.length) {
+			levels = Arrays.copyOf(levels, levelCount * 2);
+		}
+		PriceLevel level = new PriceLevel();
+		level.slot = levelCount;
+		levels[levelCount++] = level;
+		return level;
+	}
+
+	// orders currently stored
+	@Override
+	public int size() {
+		return size;
+	}
+
+	// off-heap bytes reserved by the slabs
+	long reservedBytes() {
+		return (long) slabCount * SLAB_RECORDS * RECORD_SIZE;
+	}
+
+	// forgets every order, the slabs and the levels are kept for reuse
+	@Override
+	public void clear() {
+		used = 0;
+		freeHead = NIL;
+		size = 0;
+		orderIndex.clear();
+		longOrderIndex.clear();
+	}
+}
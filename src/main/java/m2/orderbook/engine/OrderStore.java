@@ -0,0 +1,87 @@
+package m2.orderbook.engine;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+
+// Records of the resting orders and parked stops of a FixedPointOrderBook, addressed by int handles
+// (NIL is no order), together with the id indexes that find them. The book does all the matching,
+// queueing and owner bookkeeping through these accessors, a store only keeps the fields.
+// HeapOrderStore keeps RestingOrder objects, OrderSlab fixed width records in direct memory.
+// prev/next link a record into the queue of its level, ownerPrev/ownerNext into its owner's list.
+interface OrderStore {
+
+	int NIL = -1;
+
+	// false if the id cannot be kept in a record
+	boolean isStorable(String orderId);
+
+	// a new record with its links cleared and no owner, indexed by orderId or by id when orderId is null
+	int add(String orderId, long id, OrderSide side, Ordertype type, long price, long quantity, long limitPrice);
+
+	// takes the record out of its index and frees it for reuse
+	void remove(int handle);
+
+	int find(String orderId);
+
+	int find(long id);
+
+	boolean hasStringId(int handle);
+
+	// may allocate, only for String ids
+	String orderId(int handle);
+
+	long id(int handle);
+
+	// id as reported outside the engine, allocates for long ids
+	String displayId(int handle);
+
+	OrderSide side(int handle);
+
+	// LIMIT for orders in the book, STOP or STOP_LIMIT while parked
+	Ordertype type(int handle);
+
+	// the stop price while parked
+	long price(int handle);
+
+	long quantity(int handle);
+
+	void setQuantity(int handle, long quantity);
+
+	// limit price a STOP_LIMIT enters the book with once triggered
+	long limitPrice(int handle);
+
+	int prev(int handle);
+
+	void setPrev(int handle, int prev);
+
+	int next(int handle);
+
+	void setNext(int handle, int next);
+
+	// the book or stop level the record is queued in
+	PriceLevel level(int handle);
+
+	void setLevel(int handle, PriceLevel level);
+
+	// owner code handed out by the book, NIL for none
+	int owner(int handle);
+
+	void setOwner(int handle, int owner);
+
+	int ownerPrev(int handle);
+
+	void setOwnerPrev(int handle, int prev);
+
+	int ownerNext(int handle);
+
+	void setOwnerNext(int handle, int next);
+
+	// levels of the book are created here, a store may keep track of them (see OrderSlab.level)
+	PriceLevel newLevel();
+
+	// records currently stored
+	int size();
+
+	// forgets every record
+	void clear();
+}
@@ -0,0 +1,42 @@
+package m2.orderbook.engine;
+
+import m2.orderbook.exception.OrderException;
+
+// one side of the book, levels ordered from best to worst price
+interface PriceLadder {
+
+	PriceLevel get(long price);
+
+	PriceLevel getOrCreate(long price) throws OrderException;
+
+	// false when the price is off the tick grid, getOrCreate refuses it
+	boolean accepts(long price);
+
+	// false when a level at this on grid price does not fit the ladder next to the occupied ones
+	// (ARRAY window at its maximum size), getOrCreate refuses it
+	boolean canHold(long price);
+
+	// best level or null when the side is empty
+	PriceLevel best();
+
+	// next worse level after the given one, or null
+	PriceLevel next(PriceLevel level);
+
+	// first level from best to worst that is not better than price (at or below it on the buy side,
+	// at or above it on the sell side), or null; the start of a range walk with next
+	PriceLevel from(long price);
+
+	// drop a level that has no orders left
+	void remove(PriceLevel level);
+
+	// Quantity resting at levels priced at limitPrice or better for this side (at or above it on the buy
+	// side, at or below on the sell side). Implementations may stop counting once wanted is reached.
+	long availableQuantity(long limitPrice, long wanted);
+
+	// called by a level of this ladder whenever its totalQuantity changes
+	void quantityChanged(PriceLevel level, long delta);
+
+	int size();
+
+	void clear();
+}
@@ -0,0 +1,52 @@
+package m2.orderbook.engine;
+
+// FIFO queue of resting orders at one price, doubly linked through the OrderStore records by handle
+// (see FixedPointOrderBook.append/unlink). orderCount and totalQuantity are kept up to date on every add,
+// fill and cancel for depth queries, and every change of totalQuantity is passed on to the owning ladder
+// (see PriceLadder.quantityChanged).
+class PriceLevel {
+
+	long price;
+
+	int headHandle = OrderStore.NIL;
+
+	int tailHandle = OrderStore.NIL;
+
+	int orderCount;
+
+	long totalQuantity;
+
+	PriceLadder ladder;
+
+	// index in the level table of an OrderSlab, whose records keep it instead of a reference
+	int slot = OrderStore.NIL;
+
+	PriceLevel() {
+	}
+
+	PriceLevel(long price) {
+		this.price = price;
+	}
+
+	// reuse a pooled level for a new price, levels are pooled across both sides
+	PriceLevel reset(long price, PriceLadder ladder) {
+		this.price = price;
+		this.ladder = ladder;
+		this.headHandle = OrderStore.NIL;
+		this.tailHandle = OrderStore.NIL;
+		this.orderCount = 0;
+		this.totalQuantity = 0;
+		return this;
+	}
+
+	boolean isEmpty() {
+		return orderCount == 0;
+	}
+
+	void changeQuantity(long delta) {
+		totalQuantity += delta;
+		if(ladder != null) {
+			ladder.quantityChanged(this, delta);
+		}
+	}
+}
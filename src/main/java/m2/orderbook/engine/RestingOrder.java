@@ -0,0 +1,77 @@
+package m2.orderbook.engine;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+
+// resting order state in fixed point units, price and quantity scaled by BigDecimalUtility.FIXED_POINT_ONE
+// One record of a HeapOrderStore, addressed by its handle. prev/next are the handles linking the order
+// into its PriceLevel queue so it can be unlinked without a scan.
+// Parked stop orders use the same structure in the stop ladders, keyed by stop price.
+class RestingOrder {
+
+	final int handle;
+
+	// null for orders entered with a primitive id, see id
+	String orderId;
+
+	// the order id when it came in through the long id path
+	long id;
+
+	OrderSide side;
+
+	long price;
+
+	long quantity;
+
+	// LIMIT for orders in the book, STOP or STOP_LIMIT while parked
+	Ordertype type;
+
+	// limit price a STOP_LIMIT enters the book with once triggered (price holds the stop price)
+	long limitPrice;
+
+	PriceLevel level;
+
+	int prev = OrderStore.NIL;
+
+	int next = OrderStore.NIL;
+
+	// owner code, see OrderStore.owner
+	int owner = OrderStore.NIL;
+
+	int ownerPrev = OrderStore.NIL;
+
+	int ownerNext = OrderStore.NIL;
+
+	RestingOrder(int handle) {
+		this.handle = handle;
+	}
+
+	RestingOrder set(String orderId, long id, OrderSide side, Ordertype type, long price, long quantity, long limitPrice) {
+		this.orderId = orderId;
+		this.id = id;
+		this.side = side;
+		this.type = type;
+		this.price = price;
+		this.quantity = quantity;
+		this.limitPrice = limitPrice;
+		this.prev = OrderStore.NIL;
+		this.next = OrderStore.NIL;
+		this.owner = OrderStore.NIL;
+		this.ownerPrev = OrderStore.NIL;
+		this.ownerNext = OrderStore.NIL;
+		return this;
+	}
+
+	// id as reported outside the engine, allocates for long ids
+	String displayId() {
+		return orderId != null ? orderId : Long.toString(id);
+	}
+
+	// drop references while the record is free
+	void clear() {
+		orderId = null;
+		side = null;
+		type = null;
+		level = null;
+	}
+}
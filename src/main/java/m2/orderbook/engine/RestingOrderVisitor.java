@@ -0,0 +1,8 @@
+package m2.orderbook.engine;
+
+// receives resting orders in priority order, price and quantity in fixed point
+@FunctionalInterface
+public interface RestingOrderVisitor {
+
+	void visit(String orderId, long price, long quantity);
+}
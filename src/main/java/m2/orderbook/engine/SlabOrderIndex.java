@@ -0,0 +1,152 @@
+package m2.orderbook.engine;
+
+import java.util.Arrays;
+
+// OrderIndex for an OrderSlab: the table holds only int handles, keys are read back from the slab.
+// One instance indexes either String ids or long ids (see OrderSlab.hasStringId).
+// Linear probing with backward shift delete like OrderIndex; a primitive array is not scanned by the GC.
+final class SlabOrderIndex {
+
+	private final OrderSlab slab;
+	private final boolean longKeys;
+	private int[] handles;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	SlabOrderIndex(OrderSlab slab, boolean longKeys, int expectedSize) {
+		this.slab = slab;
+		this.longKeys = longKeys;
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		handles = new int[capacity];
+		Arrays.fill(handles, OrderSlab.NIL);
+		mask = capacity - 1;
+		resizeThreshold = capacity / 2;
+	}
+
+	private int slot(String key) {
+		return slot(key.hashCode());
+	}
+
+	private int slot(int hashCode) {
+		int hash = hashCode * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private int home(int handle) {
+		return longKeys ? slot(slab.id(handle)) : slot(slab.idHash(handle));
+	}
+
+	int get(String key) {
+		for(int index = slot(key); handles[index] != OrderSlab.NIL; index = (index + 1) & mask) {
+			if(slab.idEquals(handles[index], key)) {
+				return handles[index];
+			}
+		}
+		return OrderSlab.NIL;
+	}
+
+	int get(long key) {
+		for(int index = slot(key); handles[index] != OrderSlab.NIL; index = (index + 1) & mask) {
+			if(slab.id(handles[index]) == key) {
+				return handles[index];
+			}
+		}
+		return OrderSlab.NIL;
+	}
+
+	// the handle's id must not be in the index yet
+	void put(int handle) {
+		int index = home(handle);
+		while(handles[index] != OrderSlab.NIL) {
+			index = (index + 1) & mask;
+		}
+		handles[index] = handle;
+		if(++size > resizeThreshold) {
+			resize();
+		}
+	}
+
+	int remove(String key) {
+		for(int index = slot(key); handles[index] != OrderSlab.NIL; index = (index + 1) & mask) {
+			if(slab.idEquals(handles[index], key)) {
+				return removeAt(index);
+			}
+		}
+		return OrderSlab.NIL;
+	}
+
+	int remove(long key) {
+		for(int index = slot(key); handles[index] != OrderSlab.NIL; index = (index + 1) & mask) {
+			if(slab.id(handles[index]) == key) {
+				return removeAt(index);
+			}
+		}
+		return OrderSlab.NIL;
+	}
+
+	// removes a handle that is known to be in the index
+	void remove(int handle) {
+		for(int index = home(handle); handles[index] != OrderSlab.NIL; index = (index + 1) & mask) {
+			if(handles[index] == handle) {
+				removeAt(index);
+				return;
+			}
+		}
+	}
+
+	private int removeAt(int index) {
+		int handle = handles[index];
+		shiftBack(index);
+		size--;
+		return handle;
+	}
+
+	// close the gap left at index so probing chains stay unbroken
+	private void shiftBack(int gap) {
+		int index = gap;
+		while(true) {
+			index = (index + 1) & mask;
+			int handle = handles[index];
+			if(handle == OrderSlab.NIL) {
+				break;
+			}
+			int home = home(handle);
+			// move the entry when its home slot is not within (gap, index]
+			if(((index - home) & mask) >= ((index - gap) & mask)) {
+				handles[gap] = handle;
+				gap = index;
+			}
+		}
+		handles[gap] = OrderSlab.NIL;
+	}
+
+	private void resize() {
+		int[] oldHandles = handles;
+		allocate(oldHandles.length << 1);
+		size = 0;
+		for(int handle : oldHandles) {
+			if(handle != OrderSlab.NIL) {
+				put(handle);
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(handles, OrderSlab.NIL);
+		size = 0;
+	}
+}
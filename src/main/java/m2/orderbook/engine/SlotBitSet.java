@@ -0,0 +1,98 @@
+package m2.orderbook.engine;
+
+import java.util.Arrays;
+
+// Occupied slots of an ArrayPriceLadder in two levels of long words: a bit per slot, and a summary bit per
+// non empty word. Finding the next occupied slot either way reads at most one word, then skips 4096 empty
+// slots per summary word, so walking a sparse window of 2^20 slots reads a few hundred longs at worst.
+final class SlotBitSet {
+
+	private long[] words;
+	// bit w set when words[w] is not 0
+	private long[] summary;
+	private int size;
+
+	SlotBitSet(int size) {
+		reset(size);
+	}
+
+	void set(int index) {
+		int word = index >>> 6;
+		words[word] |= 1L << index;
+		summary[word >>> 6] |= 1L << word;
+	}
+
+	void clear(int index) {
+		int word = index >>> 6;
+		words[word] &= ~(1L << index);
+		if(words[word] == 0) {
+			summary[word >>> 6] &= ~(1L << word);
+		}
+	}
+
+	// lowest set slot at or above index, or -1
+	int next(int index) {
+		if(index >= size) {
+			return -1;
+		}
+		int word = Math.max(index, 0) >>> 6;
+		long bits = words[word] & (-1L << Math.max(index, 0));
+		if(bits != 0) {
+			return (word << 6) + Long.numberOfTrailingZeros(bits);
+		}
+		int after = word + 1;
+		int group = after >>> 6;
+		if(group >= summary.length) {
+			return -1;
+		}
+		long groupBits = summary[group] & (-1L << after);
+		while(groupBits == 0) {
+			if(++group == summary.length) {
+				return -1;
+			}
+			groupBits = summary[group];
+		}
+		word = (group << 6) + Long.numberOfTrailingZeros(groupBits);
+		return (word << 6) + Long.numberOfTrailingZeros(words[word]);
+	}
+
+	// highest set slot at or below index, or -1
+	int previous(int index) {
+		if(index < 0) {
+			return -1;
+		}
+		int from = Math.min(index, size - 1);
+		int word = from >>> 6;
+		long bits = words[word] & (-1L >>> (63 - (from & 63)));
+		if(bits != 0) {
+			return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+		}
+		if(word == 0) {
+			return -1;
+		}
+		int before = word - 1;
+		int group = before >>> 6;
+		long groupBits = summary[group] & (-1L >>> (63 - (before & 63)));
+		while(groupBits == 0) {
+			if(--group < 0) {
+				return -1;
+			}
+			groupBits = summary[group];
+		}
+		word = (group << 6) + 63 - Long.numberOfLeadingZeros(groupBits);
+		return (word << 6) + 63 - Long.numberOfLeadingZeros(words[word]);
+	}
+
+	// empty the set, resized when the ladder grew
+	void reset(int size) {
+		int wordCount = (size + 63) >>> 6;
+		if(words == null || words.length != wordCount) {
+			words = new long[wordCount];
+			summary = new long[(wordCount + 63) >>> 6];
+		} else {
+			Arrays.fill(words, 0L);
+			Arrays.fill(summary, 0L);
+		}
+		this.size = size;
+	}
+}
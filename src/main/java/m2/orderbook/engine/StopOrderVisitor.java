@@ -0,0 +1,10 @@
+package m2.orderbook.engine;
+
+import m2.orderbook.enums.Ordertype;
+
+// receives parked stop orders in trigger order, prices and quantity in fixed point (limitPrice 0 for STOP)
+@FunctionalInterface
+public interface StopOrderVisitor {
+
+	void visit(String orderId, Ordertype type, long stopPrice, long limitPrice, long quantity);
+}
@@ -0,0 +1,89 @@
+package m2.orderbook.engine;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+import m2.orderbook.enums.LadderType;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Per symbol book layout. ARRAY ladders need every limit price on the tick grid and grow their window
+// up to maxLadderLevels slots; a resting price further away from the rest of its side is refused.
+// Symbols default to TREE_MAP at the fixed point resolution, which takes any price but allocates (boxed
+// keys, tree entries): register an ARRAY config for a symbol that needs the allocation free path.
+public class SymbolConfig {
+
+	private static final int DEFAULT_LADDER_LEVELS = 4096;
+
+	private static final int DEFAULT_MAX_LADDER_LEVELS = 1 << 20;
+
+	private static final Map<Symbol, SymbolConfig> configs = new EnumMap<>(Symbol.class);
+
+	static {
+		for(Symbol symbol : Symbol.values()) {
+			configs.put(symbol, new SymbolConfig(LadderType.TREE_MAP, BigDecimalUtility.fromFixedPoint(1L), DEFAULT_LADDER_LEVELS));
+		}
+	}
+
+	private final LadderType ladderType;
+
+	private final long tickSize;
+
+	private final int ladderLevels;
+
+	private final int maxLadderLevels;
+
+	public SymbolConfig(LadderType ladderType, BigDecimal tickSize, int ladderLevels) {
+		this(ladderType, tickSize, ladderLevels, Math.max(ladderLevels, DEFAULT_MAX_LADDER_LEVELS));
+	}
+
+	public SymbolConfig(LadderType ladderType, BigDecimal tickSize, int ladderLevels, int maxLadderLevels) {
+		if(ladderType == null)
+			throw new IllegalArgumentException("Ladder type is required");
+		this.ladderType = ladderType;
+		this.tickSize = BigDecimalUtility.toFixedPoint(tickSize);
+		if(this.tickSize <= 0 || ladderLevels <= 0 || maxLadderLevels < ladderLevels)
+			throw new IllegalArgumentException("Invalid tick size/ladder levels/max ladder levels:" + tickSize + "/" + ladderLevels + "/" + maxLadderLevels);
+		this.ladderLevels = ladderLevels;
+		this.maxLadderLevels = maxLadderLevels;
+	}
+
+	public static synchronized SymbolConfig forSymbol(Symbol symbol) {
+		return configs.get(symbol);
+	}
+
+	public static synchronized void register(Symbol symbol, SymbolConfig config) {
+		if(symbol == null || config == null)
+			throw new IllegalArgumentException();
+		configs.put(symbol, config);
+	}
+
+	public LadderType getLadderType() {
+		return ladderType;
+	}
+
+	// tick size in fixed point units
+	public long getTickSize() {
+		return tickSize;
+	}
+
+	public int getLadderLevels() {
+		return ladderLevels;
+	}
+
+	public int getMaxLadderLevels() {
+		return maxLadderLevels;
+	}
+
+	PriceLadder newLadder(boolean descending, ObjectPool<PriceLevel> levelPool) {
+		switch (ladderType) {
+		case TREE_MAP:
+			return new TreeMapPriceLadder(descending, levelPool);
+		case ARRAY:
+			return new ArrayPriceLadder(descending, tickSize, ladderLevels, maxLadderLevels, levelPool);
+		default:
+			throw new IllegalStateException("Unexpected value: " + ladderType);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package m2.orderbook.engine;
+
+import java.lang.invoke.VarHandle;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Symbol;
+
+// Seqlock protected copy of the best levels of a book, for readers on other threads (risk checks, UIs).
+// The engine publishes after every change while it holds its own lock; readers never lock, they copy
+// and retry if the version moved underneath them, so reader load does not reach the matching thread.
+// Prices and quantities are fixed point, 0 means the side is empty.
+public final class TopOfBook {
+
+	public static final int DEFAULT_LEVELS = 10;
+	private static final OrderSide[] SIDES = OrderSide.values();
+
+	private final Symbol symbol;
+	private final int maxLevels;
+	// odd while a publish is in progress
+	private volatile long version;
+	private final long[][] prices = new long[2][];
+	private final long[][] quantities = new long[2][];
+	private final int[][] orderCounts = new int[2][];
+	private final int[] levelCounts = new int[2];
+
+	public TopOfBook(Symbol symbol, int maxLevels) {
+		if(maxLevels <= 0)
+			throw new IllegalArgumentException("Invalid depth:" + maxLevels);
+		this.symbol = symbol;
+		this.maxLevels = maxLevels;
+		for(int side = 0; side < 2; side++) {
+			prices[side] = new long[maxLevels];
+			quantities[side] = new long[maxLevels];
+			orderCounts[side] = new int[maxLevels];
+		}
+	}
+
+	// single writer, called by the engine with its lock held
+	public void publish(MarketDepth depth) {
+		long current = version;
+		version = current + 1;
+		// the data stores below must not become visible before the odd version
+		VarHandle.storeStoreFence();
+		for(OrderSide side : SIDES) {
+			int s = side.ordinal();
+			int levels = Math.min(depth.getLevelCount(side), maxLevels);
+			for(int level = 0; level < levels; level++) {
+				prices[s][level] = depth.getPrice(side, level);
+				quantities[s][level] = depth.getQuantity(side, level);
+				orderCounts[s][level] = depth.getOrderCount(side, level);
+			}
+			levelCounts[s] = levels;
+		}
+		version = current + 2;
+	}
+
+	public long getBestBid() {
+		return getBestPrice(OrderSide.BUY);
+	}
+
+	public long getBestAsk() {
+		return getBestPrice(OrderSide.SELL);
+	}
+
+	public long getBestPrice(OrderSide side) {
+		int s = side.ordinal();
+		while(true) {
+			long before = version;
+			long price = levelCounts[s] > 0 ? prices[s][0] : 0L;
+			if(isStable(before)) {
+				return price;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	// best ask minus best bid from the same version, 0 when either side is empty
+	public long getSpread() {
+		while(true) {
+			long before = version;
+			long bid = levelCounts[0] > 0 ? prices[0][0] : 0L;
+			long ask = levelCounts[1] > 0 ? prices[1][0] : 0L;
+			if(isStable(before)) {
+				return bid == 0L || ask == 0L ? 0L : ask - bid;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	// consistent copy of up to depth.getMaxLevels() levels per side, returns depth
+	public MarketDepth read(MarketDepth depth) {
+		while(true) {
+			long before = version;
+			depth.reset(symbol);
+			for(OrderSide side : SIDES) {
+				int s = side.ordinal();
+				int levels = levelCounts[s];
+				for(int level = 0; level < levels; level++) {
+					if(!depth.addLevel(side, prices[s][level], quantities[s][level], orderCounts[s][level])) {
+						break;
+					}
+				}
+			}
+			if(isStable(before)) {
+				return depth;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	private boolean isStable(long before) {
+		// the data loads above must complete before the version is checked again
+		VarHandle.loadLoadFence();
+		return (before & 1) == 0 && version == before;
+	}
+
+	// moves on every publish, a poller can skip a book whose version has not changed
+	public long getVersion() {
+		return version;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public int getMaxLevels() {
+		return maxLevels;
+	}
+}
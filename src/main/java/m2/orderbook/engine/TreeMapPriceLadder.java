@@ -0,0 +1,99 @@
+package m2.orderbook.engine;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+class TreeMapPriceLadder implements PriceLadder {
+
+	private final boolean descending;
+	private final TreeMap<Long, PriceLevel> levels;
+	private final ObjectPool<PriceLevel> levelPool;
+
+	TreeMapPriceLadder(boolean descending, ObjectPool<PriceLevel> levelPool) {
+		this.levelPool = levelPool;
+		this.descending = descending;
+		levels = descending ? new TreeMap<Long, PriceLevel>(Collections.reverseOrder()) : new TreeMap<Long, PriceLevel>();
+	}
+
+	@Override
+	public PriceLevel get(long price) {
+		return levels.get(price);
+	}
+
+	@Override
+	public PriceLevel getOrCreate(long price) {
+		PriceLevel level = levels.get(price);
+		if(level == null) {
+			level = levelPool.acquire().reset(price, this);
+			levels.put(price, level);
+		}
+		return level;
+	}
+
+	@Override
+	public boolean accepts(long price) {
+		return true;
+	}
+
+	@Override
+	public boolean canHold(long price) {
+		return true;
+	}
+
+	@Override
+	public PriceLevel best() {
+		return levels.isEmpty() ? null : levels.get(levels.firstKey());
+	}
+
+	@Override
+	public PriceLevel next(PriceLevel level) {
+		Long nextPrice = levels.higherKey(level.price);
+		return nextPrice == null ? null : levels.get(nextPrice);
+	}
+
+	// ceiling in the ladder's own order, which runs downwards on the buy side
+	@Override
+	public PriceLevel from(long price) {
+		Map.Entry<Long, PriceLevel> entry = levels.ceilingEntry(price);
+		return entry == null ? null : entry.getValue();
+	}
+
+	@Override
+	public void remove(PriceLevel level) {
+		if(levels.remove(level.price) != null) {
+			levelPool.release(level);
+		}
+	}
+
+	// Walks the level aggregates from the best price, the queues are not touched. O(k) in the levels
+	// walked: sparse keys cannot index a Fenwick tree, so only ArrayPriceLadder answers in O(log n).
+	@Override
+	public long availableQuantity(long limitPrice, long wanted) {
+		long available = 0;
+		for(PriceLevel level = best(); level != null && available < wanted; level = next(level)) {
+			if(descending ? level.price < limitPrice : level.price > limitPrice) {
+				break;
+			}
+			available += level.totalQuantity;
+		}
+		return available;
+	}
+
+	@Override
+	public void quantityChanged(PriceLevel level, long delta) {
+	}
+
+	@Override
+	public int size() {
+		return levels.size();
+	}
+
+	@Override
+	public void clear() {
+		for(PriceLevel level : levels.values()) {
+			levelPool.release(level);
+		}
+		levels.clear();
+	}
+}
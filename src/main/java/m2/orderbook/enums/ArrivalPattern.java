@@ -0,0 +1,7 @@
+package m2.orderbook.enums;
+
+// UNIFORM spaces commands evenly, POISSON draws exponential gaps around the target rate,
+// BURSTY switches between short busy phases at 4x and quiet phases at 1/4 of the target rate
+public enum ArrivalPattern {
+UNIFORM,POISSON,BURSTY
+}
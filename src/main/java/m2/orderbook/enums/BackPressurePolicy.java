@@ -0,0 +1,8 @@
+package m2.orderbook.enums;
+
+// What a publisher does when its ring is full because a consumer fell a whole lap behind.
+// DROP discards the new record at once, SPIN_THEN_DROP busy waits up to a fixed budget for the
+// slowest consumer and only then discards it. The producer never waits without bound.
+public enum BackPressurePolicy {
+DROP,SPIN_THEN_DROP
+}
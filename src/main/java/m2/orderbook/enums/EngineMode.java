@@ -0,0 +1,6 @@
+package m2.orderbook.enums;
+
+// OFF_HEAP is FIXED_POINT with the resting orders stored outside the Java heap, see OffHeapOrderBook
+public enum EngineMode {
+BIG_DECIMAL,FIXED_POINT,OFF_HEAP
+}
@@ -0,0 +1,10 @@
+package m2.orderbook.enums;
+
+// NONE leaves flushing to the OS page cache (survives a process crash, not a machine crash),
+// BATCH forces after a number of records, or at the end of a sequencer batch once the flush interval has
+// passed since the last force (a background thread forces whatever is left after that interval), so light
+// load costs at most one msync per interval instead of one per command,
+// INTERVAL forces from a background thread on a fixed period
+public enum FlushPolicy {
+NONE,BATCH,INTERVAL
+}
@@ -0,0 +1,7 @@
+package m2.orderbook.enums;
+
+// TREE_MAP takes any price but boxes its Long keys and allocates a tree entry per new level. ARRAY takes
+// tick grid prices inside a bounded window and is the one that keeps the fixed point path allocation free.
+public enum LadderType {
+TREE_MAP,ARRAY
+}
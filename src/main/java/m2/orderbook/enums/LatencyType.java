@@ -0,0 +1,8 @@
+package m2.orderbook.enums;
+
+// ADD is an order that rested (or a stop that was parked) without trading, MATCH an order that traded at least once
+// (including MARKET, IOC and FOK orders that found nothing), CANCEL a cancel by id or by order,
+// AMEND an amend of a resting order (including any trades a price change caused)
+public enum LatencyType {
+ADD,MATCH,CANCEL,AMEND
+}
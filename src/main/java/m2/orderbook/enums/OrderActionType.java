@@ -3,5 +3,7 @@ package m2.orderbook.enums;
 
 public enum OrderActionType {
     ADD,
-    REMOVE
+    REMOVE,
+    // new price and quantity for a resting order, see MatchingEngine.amendOrder
+    AMEND
 }
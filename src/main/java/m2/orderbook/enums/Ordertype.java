@@ -1,5 +1,34 @@
 package m2.orderbook.enums;
 
+// IOC trades what it can at its limit price and drops the rest, FOK trades its full quantity
+// at its limit price or nothing; neither rests in the book.
+// STOP and STOP_LIMIT wait off the book until a trade reaches their stop price and then enter as
+// MARKET and LIMIT orders respectively.
 public enum Ordertype {
-LIMIT,MARKET
+LIMIT,MARKET,IOC,FOK,STOP,STOP_LIMIT;
+
+	public boolean hasLimitPrice() {
+		return this != MARKET && this != STOP;
+	}
+
+	public boolean isStop() {
+		return this == STOP || this == STOP_LIMIT;
+	}
+
+	// the type a stop order is executed as once triggered
+	public Ordertype triggeredType() {
+		switch (this) {
+		case STOP:
+			return MARKET;
+		case STOP_LIMIT:
+			return LIMIT;
+		default:
+			return this;
+		}
+	}
+
+	// only LIMIT orders rest, for the others the unfilled part is reported through onMarketOrderUnfilled
+	public boolean canRest() {
+		return this == LIMIT;
+	}
 }
@@ -0,0 +1,163 @@
+package m2.orderbook.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Console logging off the matching thread. Events are queued and formatted by a daemon thread;
+// when the queue is full the event is dropped instead of blocking the engine.
+public class AsyncConsoleEventListener implements OrderEventListener, AutoCloseable {
+
+	private static final int DEFAULT_CAPACITY = 8192;
+
+	private enum EventType {
+		ACCEPTED, TRADE, PARTIAL_FILL, RESTED, CANCELED, AMENDED, STOP_TRIGGERED, MARKET_UNFILLED
+	}
+
+	private static final class ConsoleEvent {
+		final EventType type;
+		final Symbol symbol;
+		final String orderId;
+		final String makerOrderId;
+		final OrderSide side;
+		final Ordertype orderType;
+		final long price;
+		final long quantity;
+
+		ConsoleEvent(EventType type, Symbol symbol, String orderId, String makerOrderId, OrderSide side, Ordertype orderType, long price, long quantity) {
+			this.type = type;
+			this.symbol = symbol;
+			this.orderId = orderId;
+			this.makerOrderId = makerOrderId;
+			this.side = side;
+			this.orderType = orderType;
+			this.price = price;
+			this.quantity = quantity;
+		}
+	}
+
+	private final ArrayBlockingQueue<ConsoleEvent> events;
+	private final AtomicLong droppedEvents = new AtomicLong();
+	private final Thread printer;
+	private volatile boolean running = true;
+
+	public AsyncConsoleEventListener() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public AsyncConsoleEventListener(int capacity) {
+		events = new ArrayBlockingQueue<>(capacity);
+		printer = new Thread(this::printEvents, "orderbook-console-listener");
+		printer.setDaemon(true);
+		printer.start();
+	}
+
+	private void publish(ConsoleEvent event) {
+		if(!events.offer(event)) {
+			droppedEvents.incrementAndGet();
+		}
+	}
+
+	private void printEvents() {
+		while(running || !events.isEmpty()) {
+			try {
+				ConsoleEvent event = events.poll(100, TimeUnit.MILLISECONDS);
+				if(event == null) {
+					continue;
+				}
+				if(event.type == EventType.MARKET_UNFILLED) {
+					System.err.println("Orders not available, unfilled quantity dropped for Order: " + event.orderId + " , unfilled Quantity: " + BigDecimalUtility.fromFixedPoint(event.quantity));
+				} else {
+					System.out.println(format(event));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private static String format(ConsoleEvent event) {
+		switch (event.type) {
+		case ACCEPTED:
+			return "\nNEW ORDER:  " + event.symbol + " Price: " + (event.orderType == Ordertype.MARKET ? "MARKET" : BigDecimalUtility.fromFixedPoint(event.price))
+					+ " , Quantity: " + BigDecimalUtility.fromFixedPoint(event.quantity) + " , side: " + event.side + " , type: " + event.orderType;
+		case TRADE:
+			return "\nComplete Order matched at Price: " + BigDecimalUtility.fromFixedPoint(event.price) + " , Quantity: " + BigDecimalUtility.fromFixedPoint(event.quantity)
+					+ " , taker: " + event.orderId + " , maker: " + event.makerOrderId;
+		case PARTIAL_FILL:
+			return "\nPartial Order matched at Price: " + BigDecimalUtility.fromFixedPoint(event.price) + " , Quantity: " + BigDecimalUtility.fromFixedPoint(event.quantity)
+					+ " , taker: " + event.orderId + " , maker: " + event.makerOrderId;
+		case RESTED:
+			return "\nLIMIT: Add remaining order to orderbook at Price: " + BigDecimalUtility.fromFixedPoint(event.price) + " , Quantity: " + BigDecimalUtility.fromFixedPoint(event.quantity);
+		case CANCELED:
+			return "\nOrder Canceled Price: " + BigDecimalUtility.fromFixedPoint(event.price) + " , Quantity: " + BigDecimalUtility.fromFixedPoint(event.quantity);
+		case STOP_TRIGGERED:
+			return "\nStop Triggered: " + event.orderId + " Stop Price: " + BigDecimalUtility.fromFixedPoint(event.price) + " , side: " + event.side;
+		case AMENDED:
+			return "\nOrder Amended: " + event.orderId + " Price: " + BigDecimalUtility.fromFixedPoint(event.price) + " , Quantity: " + BigDecimalUtility.fromFixedPoint(event.quantity);
+		default:
+			throw new IllegalStateException("Unexpected value: " + event.type);
+		}
+	}
+
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	@Override
+	public void onOrderAccepted(Symbol symbol, String orderId, OrderSide side, Ordertype type, long price, long quantity) {
+		publish(new ConsoleEvent(EventType.ACCEPTED, symbol, orderId, null, side, type, price, quantity));
+	}
+
+	@Override
+	public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+		publish(new ConsoleEvent(EventType.TRADE, symbol, takerOrderId, makerOrderId, takerSide, null, price, quantity));
+	}
+
+	@Override
+	public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+		publish(new ConsoleEvent(EventType.PARTIAL_FILL, symbol, takerOrderId, makerOrderId, takerSide, null, price, quantity));
+	}
+
+	@Override
+	public void onOrderRested(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+		publish(new ConsoleEvent(EventType.RESTED, symbol, orderId, null, side, null, price, quantity));
+	}
+
+	@Override
+	public void onOrderCanceled(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+		publish(new ConsoleEvent(EventType.CANCELED, symbol, orderId, null, side, null, price, quantity));
+	}
+
+	@Override
+	public void onOrderAmended(Symbol symbol, String orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+		publish(new ConsoleEvent(EventType.AMENDED, symbol, orderId, null, side, null, price, quantity));
+	}
+
+	@Override
+	public void onStopTriggered(Symbol symbol, String orderId, OrderSide side, long stopPrice) {
+		publish(new ConsoleEvent(EventType.STOP_TRIGGERED, symbol, orderId, null, side, null, stopPrice, 0L));
+	}
+
+	@Override
+	public void onMarketOrderUnfilled(Symbol symbol, String orderId, OrderSide side, long unfilledQuantity) {
+		publish(new ConsoleEvent(EventType.MARKET_UNFILLED, symbol, orderId, null, side, null, 0L, unfilledQuantity));
+	}
+
+	// stops the printer once the queued events are written
+	@Override
+	public void close() {
+		running = false;
+		try {
+			printer.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package m2.orderbook.event;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+
+// fans events out to several listeners in registration order
+public class CompositeOrderEventListener implements OrderEventListener {
+
+	private final OrderEventListener[] listeners;
+
+	public CompositeOrderEventListener(OrderEventListener... listeners) {
+		if(listeners == null)
+			throw new IllegalArgumentException();
+		this.listeners = listeners.clone();
+	}
+
+	@Override
+	public void onOrderAccepted(Symbol symbol, String orderId, OrderSide side, Ordertype type, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderAccepted(symbol, orderId, side, type, price, quantity);
+		}
+	}
+
+	@Override
+	public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onTrade(symbol, takerOrderId, makerOrderId, takerSide, price, quantity);
+		}
+	}
+
+	@Override
+	public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onPartialFill(symbol, takerOrderId, makerOrderId, takerSide, price, quantity, remainingQuantity);
+		}
+	}
+
+	@Override
+	public void onOrderRested(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderRested(symbol, orderId, side, price, quantity);
+		}
+	}
+
+	@Override
+	public void onOrderCanceled(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderCanceled(symbol, orderId, side, price, quantity);
+		}
+	}
+
+	@Override
+	public void onMarketOrderUnfilled(Symbol symbol, String orderId, OrderSide side, long unfilledQuantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onMarketOrderUnfilled(symbol, orderId, side, unfilledQuantity);
+		}
+	}
+
+	@Override
+	public void onOrderAmended(Symbol symbol, String orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderAmended(symbol, orderId, side, price, quantity, keptPriority);
+		}
+	}
+
+	@Override
+	public void onStopTriggered(Symbol symbol, String orderId, OrderSide side, long stopPrice) {
+		for(OrderEventListener listener : listeners) {
+			listener.onStopTriggered(symbol, orderId, side, stopPrice);
+		}
+	}
+
+	@Override
+	public void onOrderAccepted(Symbol symbol, long orderId, OrderSide side, Ordertype type, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderAccepted(symbol, orderId, side, type, price, quantity);
+		}
+	}
+
+	@Override
+	public void onTrade(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onTrade(symbol, takerOrderId, makerOrderId, takerSide, price, quantity);
+		}
+	}
+
+	@Override
+	public void onPartialFill(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onPartialFill(symbol, takerOrderId, makerOrderId, takerSide, price, quantity, remainingQuantity);
+		}
+	}
+
+	@Override
+	public void onOrderRested(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderRested(symbol, orderId, side, price, quantity);
+		}
+	}
+
+	@Override
+	public void onOrderCanceled(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderCanceled(symbol, orderId, side, price, quantity);
+		}
+	}
+
+	@Override
+	public void onMarketOrderUnfilled(Symbol symbol, long orderId, OrderSide side, long unfilledQuantity) {
+		for(OrderEventListener listener : listeners) {
+			listener.onMarketOrderUnfilled(symbol, orderId, side, unfilledQuantity);
+		}
+	}
+
+	@Override
+	public void onOrderAmended(Symbol symbol, long orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+		for(OrderEventListener listener : listeners) {
+			listener.onOrderAmended(symbol, orderId, side, price, quantity, keptPriority);
+		}
+	}
+
+	@Override
+	public void onStopTriggered(Symbol symbol, long orderId, OrderSide side, long stopPrice) {
+		for(OrderEventListener listener : listeners) {
+			listener.onStopTriggered(symbol, orderId, side, stopPrice);
+		}
+	}
+
+	@Override
+	public void onUpdateComplete(Symbol symbol) {
+		for(OrderEventListener listener : listeners) {
+			listener.onUpdateComplete(symbol);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package m2.orderbook.event;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Symbol;
+
+// One fill as a fixed size record, a preallocated slot of the ExecutionReportPublisher ring.
+// Ids from the long id path are kept as longs, String ids by reference, so writing a report
+// allocates nothing. Prices and quantities are fixed point longs like the listener callbacks.
+public final class ExecutionReport {
+
+	private long sequence;
+	private long timestamp;
+	private Symbol symbol;
+	private OrderSide takerSide;
+	private long price;
+	private long quantity;
+	private long remainingQuantity;
+	private long takerId;
+	private long makerId;
+	// null when the ids are longs
+	private String takerOrderId;
+	private String makerOrderId;
+	private long droppedReports;
+	private boolean skipped;
+
+	ExecutionReport() {
+	}
+
+	void set(long sequence, long timestamp, Symbol symbol, OrderSide takerSide, long price, long quantity, long remainingQuantity,
+			long takerId, long makerId, String takerOrderId, String makerOrderId, long droppedReports) {
+		this.sequence = sequence;
+		this.skipped = false;
+		this.droppedReports = droppedReports;
+		this.timestamp = timestamp;
+		this.symbol = symbol;
+		this.takerSide = takerSide;
+		this.price = price;
+		this.quantity = quantity;
+		this.remainingQuantity = remainingQuantity;
+		this.takerId = takerId;
+		this.makerId = makerId;
+		this.takerOrderId = takerOrderId;
+		this.makerOrderId = makerOrderId;
+	}
+
+	// a sequence claimed after the publisher closed, published only so the consumers can move past it
+	void skip(long sequence) {
+		set(sequence, 0L, null, null, 0L, 0L, 0L, 0L, 0L, null, null, 0L);
+		this.skipped = true;
+	}
+
+	boolean isSkipped() {
+		return skipped;
+	}
+
+	// Position in the publisher's stream. A report dropped by back-pressure never gets a sequence, so
+	// the stream has no gaps for it; see getDroppedReports.
+	public long getSequence() {
+		return sequence;
+	}
+
+	// Reports the publisher had dropped when this one was published, counted from its start. Drops hit
+	// every consumer alike, a consumer that sees this go up between two reports has lost the difference.
+	// Reports published concurrently may read it in either order, use the highest value seen.
+	public long getDroppedReports() {
+		return droppedReports;
+	}
+
+	// epoch millis at which the fill was published
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public OrderSide getTakerSide() {
+		return takerSide;
+	}
+
+	public long getPrice() {
+		return price;
+	}
+
+	public long getQuantity() {
+		return quantity;
+	}
+
+	// left on the taker after this fill, 0 when the fill completed it
+	public long getRemainingQuantity() {
+		return remainingQuantity;
+	}
+
+	public boolean hasLongIds() {
+		return takerOrderId == null;
+	}
+
+	// only meaningful when hasLongIds
+	public long getTakerId() {
+		return takerId;
+	}
+
+	public long getMakerId() {
+		return makerId;
+	}
+
+	// allocates for long ids
+	public String getTakerOrderId() {
+		return takerOrderId == null ? Long.toString(takerId) : takerOrderId;
+	}
+
+	public String getMakerOrderId() {
+		return makerOrderId == null ? Long.toString(makerId) : makerOrderId;
+	}
+
+	@Override
+	public String toString() {
+		return "ExecutionReport [sequence=" + sequence + ", timestamp=" + timestamp + ", symbol=" + symbol + ", takerSide=" + takerSide
+				+ ", price=" + price + ", quantity=" + quantity + ", remainingQuantity=" + remainingQuantity
+				+ ", taker=" + getTakerOrderId() + ", maker=" + getMakerOrderId() + "]";
+	}
+}
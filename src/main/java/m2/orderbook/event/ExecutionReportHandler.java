@@ -0,0 +1,8 @@
+package m2.orderbook.event;
+
+// Consumer of an ExecutionReportPublisher, called on the consumer's own thread in sequence order.
+// The report is a reused ring slot, copy what has to outlive the call.
+public interface ExecutionReportHandler {
+
+	void onExecutionReport(ExecutionReport report);
+}
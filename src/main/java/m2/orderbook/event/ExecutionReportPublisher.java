@@ -0,0 +1,288 @@
+package m2.orderbook.event;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import m2.orderbook.enums.BackPressurePolicy;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+
+// Execution report stream: every fill is written into a preallocated ring of ExecutionReport slots
+// and each handler drains the whole stream on its own daemon thread (broadcast, like the sequencer
+// ring but with one cursor per consumer). The listener may be shared by several matching threads,
+// a slot is claimed with a compare and set on the publish sequence.
+// A matching thread never waits on a consumer without bound: when the slowest consumer is a full lap
+// behind, the report is dropped as the BackPressurePolicy says and counted in getDroppedReports.
+// A dropped report takes no sequence, the consumers learn about it from ExecutionReport.getDroppedReports.
+public class ExecutionReportPublisher implements OrderEventListener, AutoCloseable {
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long PARK_NANOS = 1_000L;
+
+	private final ExecutionReport[] ring;
+	private final int mask;
+	private final int indexShift;
+	// round number (sequence / ring size) last published into each slot
+	private final AtomicIntegerArray published;
+	private final AtomicLong claimSequence = new AtomicLong(-1);
+	private final AtomicLong droppedReports = new AtomicLong();
+	private final AtomicLong handlerErrors = new AtomicLong();
+	private final BackPressurePolicy policy;
+	private final long maxSpinNanos;
+	private final Consumer[] consumers;
+	// lowest consumer sequence seen last time, producers only rescan the consumers when it is in the way
+	private volatile long cachedGatingSequence = -1;
+	private volatile boolean running = true;
+
+	private final class Consumer implements Runnable {
+
+		final ExecutionReportHandler handler;
+		// last sequence handed to the handler
+		final AtomicLong sequence = new AtomicLong(-1);
+		// drops reported by the last report handed to the handler
+		volatile long droppedReports;
+		final Thread thread;
+
+		Consumer(ExecutionReportHandler handler, int index) {
+			this.handler = handler;
+			this.thread = new Thread(this, "orderbook-execution-reports-" + index);
+			this.thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			long nextSequence = 0;
+			int idle = 0;
+			while(true) {
+				long available = nextSequence - 1;
+				long limit = claimSequence.get();
+				while(available < limit && isPublished(available + 1)) {
+					available++;
+				}
+
+				if(available < nextSequence) {
+					// stops only once every claimed sequence has been published and handled
+					if(!running && claimSequence.get() < nextSequence) {
+						return;
+					}
+					idle = idle(idle);
+					continue;
+				}
+				idle = 0;
+
+				long dropped = droppedReports;
+				for(long next = nextSequence; next <= available; next++) {
+					ExecutionReport report = ring[(int) (next & mask)];
+					if(report.isSkipped()) {
+						continue;
+					}
+					dropped = Math.max(dropped, report.getDroppedReports());
+					try {
+						handler.onExecutionReport(report);
+					} catch (RuntimeException e) {
+						handlerErrors.incrementAndGet();
+					}
+				}
+				droppedReports = dropped;
+				sequence.set(available);
+				nextSequence = available + 1;
+			}
+		}
+	}
+
+	public ExecutionReportPublisher(int ringSize, ExecutionReportHandler... handlers) {
+		this(ringSize, BackPressurePolicy.DROP, 0L, handlers);
+	}
+
+	// maxSpinNanos is the wait budget per report for SPIN_THEN_DROP
+	public ExecutionReportPublisher(int ringSize, BackPressurePolicy policy, long maxSpinNanos, ExecutionReportHandler... handlers) {
+		if(ringSize <= 0 || Integer.bitCount(ringSize) != 1)
+			throw new IllegalArgumentException("Ring size must be a power of 2:" + ringSize);
+		if(policy == null || maxSpinNanos < 0)
+			throw new IllegalArgumentException();
+		if(handlers == null || handlers.length == 0)
+			throw new IllegalArgumentException("At least one handler is required");
+		this.ring = new ExecutionReport[ringSize];
+		for(int i = 0; i < ringSize; i++) {
+			ring[i] = new ExecutionReport();
+		}
+		this.mask = ringSize - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(ringSize);
+		int[] notPublished = new int[ringSize];
+		Arrays.fill(notPublished, -1);
+		this.published = new AtomicIntegerArray(notPublished);
+		this.policy = policy;
+		this.maxSpinNanos = maxSpinNanos;
+		this.consumers = new Consumer[handlers.length];
+		for(int i = 0; i < handlers.length; i++) {
+			if(handlers[i] == null)
+				throw new IllegalArgumentException();
+			consumers[i] = new Consumer(handlers[i], i);
+		}
+		for(Consumer consumer : consumers) {
+			consumer.thread.start();
+		}
+	}
+
+	private void publish(Symbol symbol, OrderSide takerSide, long price, long quantity, long remainingQuantity,
+			long takerId, long makerId, String takerOrderId, String makerOrderId) {
+		long sequence = running ? tryClaim() : -1;
+		if(sequence < 0) {
+			droppedReports.incrementAndGet();
+			return;
+		}
+		int index = (int) (sequence & mask);
+		// Read after the claim like OrderSequencer.publish: claimed while running, the consumers see it
+		// before they stop. Claimed after close, the slot is published empty in case a consumer waits for it.
+		if(running) {
+			ring[index].set(sequence, System.currentTimeMillis(), symbol, takerSide, price, quantity, remainingQuantity,
+					takerId, makerId, takerOrderId, makerOrderId, droppedReports.get());
+		} else {
+			ring[index].skip(sequence);
+			droppedReports.incrementAndGet();
+		}
+		published.set(index, (int) (sequence >>> indexShift));
+	}
+
+	// next sequence, or -1 when the ring stays full past the back-pressure budget
+	private long tryClaim() {
+		long deadline = 0L;
+		while(true) {
+			long current = claimSequence.get();
+			long next = current + 1;
+			long wrapPoint = next - ring.length;
+			if(wrapPoint > cachedGatingSequence) {
+				long gating = gatingSequence();
+				cachedGatingSequence = gating;
+				if(wrapPoint <= gating) {
+					continue;
+				}
+				if(policy == BackPressurePolicy.DROP) {
+					return -1;
+				}
+				long now = System.nanoTime();
+				if(deadline == 0L) {
+					deadline = now + maxSpinNanos;
+				} else if(now - deadline > 0) {
+					return -1;
+				}
+				Thread.onSpinWait();
+				continue;
+			}
+			if(claimSequence.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	private long gatingSequence() {
+		long minimum = Long.MAX_VALUE;
+		for(Consumer consumer : consumers) {
+			minimum = Math.min(minimum, consumer.sequence.get());
+		}
+		return minimum;
+	}
+
+	private boolean isPublished(long sequence) {
+		return published.get((int) (sequence & mask)) == (int) (sequence >>> indexShift);
+	}
+
+	private static int idle(int idle) {
+		if(idle < SPIN_TRIES) {
+			Thread.onSpinWait();
+		} else if(idle < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+			return idle;
+		}
+		return idle + 1;
+	}
+
+	@Override
+	public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+		publish(symbol, takerSide, price, quantity, 0L, 0L, 0L, takerOrderId, makerOrderId);
+	}
+
+	@Override
+	public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+		publish(symbol, takerSide, price, quantity, remainingQuantity, 0L, 0L, takerOrderId, makerOrderId);
+	}
+
+	@Override
+	public void onTrade(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity) {
+		publish(symbol, takerSide, price, quantity, 0L, takerOrderId, makerOrderId, null, null);
+	}
+
+	@Override
+	public void onPartialFill(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+		publish(symbol, takerSide, price, quantity, remainingQuantity, takerOrderId, makerOrderId, null, null);
+	}
+
+	// the remaining callbacks are not fills, the long id variants must not fall back to the String defaults
+	@Override
+	public void onOrderAccepted(Symbol symbol, long orderId, OrderSide side, Ordertype type, long price, long quantity) {
+	}
+
+	@Override
+	public void onOrderRested(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+	}
+
+	@Override
+	public void onOrderCanceled(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+	}
+
+	@Override
+	public void onMarketOrderUnfilled(Symbol symbol, long orderId, OrderSide side, long unfilledQuantity) {
+	}
+
+	@Override
+	public void onOrderAmended(Symbol symbol, long orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+	}
+
+	@Override
+	public void onStopTriggered(Symbol symbol, long orderId, OrderSide side, long stopPrice) {
+	}
+
+	// reports claimed so far, including ones the consumers have not seen yet
+	public long getPublishedReports() {
+		return claimSequence.get() + 1;
+	}
+
+	// reports dropped for every consumer, see ExecutionReport.getDroppedReports
+	public long getDroppedReports() {
+		return droppedReports.get();
+	}
+
+	// drops the consumer at index (handler order) has been told about by the reports it handled
+	public long getConsumerDroppedReports(int consumer) {
+		return consumers[consumer].droppedReports;
+	}
+
+	// exceptions thrown by handlers, the report is skipped and the consumer carries on
+	public long getHandlerErrors() {
+		return handlerErrors.get();
+	}
+
+	// reports published but not yet handled by the consumer at index (handler order)
+	public long getConsumerLag(int consumer) {
+		return claimSequence.get() - consumers[consumer].sequence.get();
+	}
+
+	// stops accepting reports, the consumers drain what was already published before their threads end
+	@Override
+	public void close() {
+		running = false;
+		try {
+			for(Consumer consumer : consumers) {
+				consumer.thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package m2.orderbook.event;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+
+// Callbacks from the matching thread. Prices and quantities are fixed point longs
+// (see BigDecimalUtility.toFixedPoint) so the engine can emit them without allocating.
+// Implementations must not block and must not call back into the engine.
+public interface OrderEventListener {
+
+	OrderEventListener NO_OP = new OrderEventListener() {
+		@Override
+		public void onOrderAccepted(Symbol symbol, long orderId, OrderSide side, Ordertype type, long price, long quantity) {
+		}
+
+		@Override
+		public void onTrade(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity) {
+		}
+
+		@Override
+		public void onPartialFill(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+		}
+
+		@Override
+		public void onOrderRested(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+		}
+
+		@Override
+		public void onOrderCanceled(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+		}
+
+		@Override
+		public void onMarketOrderUnfilled(Symbol symbol, long orderId, OrderSide side, long unfilledQuantity) {
+		}
+
+		@Override
+		public void onOrderAmended(Symbol symbol, long orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+		}
+
+		@Override
+		public void onStopTriggered(Symbol symbol, long orderId, OrderSide side, long stopPrice) {
+		}
+	};
+
+	// price is 0 for MARKET and STOP orders, a stop is accepted when it is parked and not again when it triggers
+	default void onOrderAccepted(Symbol symbol, String orderId, OrderSide side, Ordertype type, long price, long quantity) {
+	}
+
+	// fill which completes the incoming order
+	default void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+	}
+
+	// fill which leaves the incoming order with remainingQuantity
+	default void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+	}
+
+	default void onOrderRested(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+	}
+
+	default void onOrderCanceled(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+	}
+
+	// a resting order got a new price and/or quantity, sent before any trade a price change causes;
+	// keptPriority is true for a quantity reduction at the same price
+	default void onOrderAmended(Symbol symbol, String orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+	}
+
+	// a parked stop was reached by a trade, its matching events follow with the stop as taker
+	default void onStopTriggered(Symbol symbol, String orderId, OrderSide side, long stopPrice) {
+	}
+
+	// quantity of a MARKET, IOC or FOK order that did not trade and was dropped (all of it for a killed FOK)
+	default void onMarketOrderUnfilled(Symbol symbol, String orderId, OrderSide side, long unfilledQuantity) {
+	}
+
+	// Primitive id variants, used when every order involved came in through the long id path
+	// (FixedPointOrderBook.executeOrder(long, ...)). By default they forward to the String callbacks,
+	// which allocates the id strings; listeners on the allocation free path override them.
+
+	default void onOrderAccepted(Symbol symbol, long orderId, OrderSide side, Ordertype type, long price, long quantity) {
+		onOrderAccepted(symbol, Long.toString(orderId), side, type, price, quantity);
+	}
+
+	default void onTrade(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity) {
+		onTrade(symbol, Long.toString(takerOrderId), Long.toString(makerOrderId), takerSide, price, quantity);
+	}
+
+	default void onPartialFill(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+		onPartialFill(symbol, Long.toString(takerOrderId), Long.toString(makerOrderId), takerSide, price, quantity, remainingQuantity);
+	}
+
+	default void onOrderRested(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+		onOrderRested(symbol, Long.toString(orderId), side, price, quantity);
+	}
+
+	default void onOrderCanceled(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+		onOrderCanceled(symbol, Long.toString(orderId), side, price, quantity);
+	}
+
+	default void onMarketOrderUnfilled(Symbol symbol, long orderId, OrderSide side, long unfilledQuantity) {
+		onMarketOrderUnfilled(symbol, Long.toString(orderId), side, unfilledQuantity);
+	}
+
+	default void onOrderAmended(Symbol symbol, long orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+		onOrderAmended(symbol, Long.toString(orderId), side, price, quantity, keptPriority);
+	}
+
+	default void onStopTriggered(Symbol symbol, long orderId, OrderSide side, long stopPrice) {
+		onStopTriggered(symbol, Long.toString(orderId), side, stopPrice);
+	}
+
+	// the engine finished a command or a whole batch and the book is consistent again,
+	// listeners that aggregate (depth, flushing) can publish here once instead of per event
+	default void onUpdateComplete(Symbol symbol) {
+	}
+}
@@ -0,0 +1,148 @@
+package m2.orderbook.gateway;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.metrics.Histogram;
+import m2.orderbook.metrics.HistogramSnapshot;
+
+// Opens many sessions against an OrderGateway, connects all of them before any traffic starts and then
+// has each send limit orders one at a time, cancelling every fourth order it placed. Prices are spread over
+// the seeded book (1 to 10) so part of the orders trade and part of the cancels are rejected as already filled.
+// Every round trip is recorded, the report merges the per session histograms.
+//   java m2.orderbook.gateway.GatewayLoadClient [host] [port] [sessions] [orders per session] [symbol]
+public class GatewayLoadClient {
+
+	public static GatewayLoadReport run(String host, int port, int sessions, int ordersPerSession, Symbol symbol) {
+		return run(host, port, sessions, ordersPerSession, symbol, () -> {});
+	}
+
+	// beforeStart runs once every session is connected, before any of them sends, e.g. to wait until the
+	// gateway accepted all of them (a connect completes as soon as the connection is queued on the server)
+	public static GatewayLoadReport run(String host, int port, int sessions, int ordersPerSession, Symbol symbol,
+			Runnable beforeStart) {
+		CountDownLatch connected = new CountDownLatch(sessions);
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(sessions);
+		AtomicInteger connectedSessions = new AtomicInteger();
+		AtomicLong requests = new AtomicLong();
+		AtomicLong rejected = new AtomicLong();
+		List<Histogram> roundTrips = new ArrayList<>();
+		ExecutorService executor = OrderGateway.newSessionExecutor();
+		long elapsed;
+		try {
+			for(int i = 0; i < sessions; i++) {
+				Histogram roundTrip = new Histogram();
+				roundTrips.add(roundTrip);
+				int session = i;
+				executor.execute(() -> {
+					try (Socket socket = connect(host, port, connected)) {
+						if(socket == null) {
+							return;
+						}
+						connectedSessions.incrementAndGet();
+						connected.countDown();
+						start.await();
+						runSession(socket, session, ordersPerSession, symbol, roundTrip, requests, rejected);
+					} catch (IOException e) {
+						System.err.println("Load session " + session + " failed: " + e);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						finished.countDown();
+					}
+				});
+			}
+			connected.await();
+			beforeStart.run();
+			long started = System.nanoTime();
+			start.countDown();
+			finished.await();
+			elapsed = System.nanoTime() - started;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the load", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		List<HistogramSnapshot> snapshots = new ArrayList<>();
+		for(Histogram roundTrip : roundTrips) {
+			snapshots.add(roundTrip.snapshot());
+		}
+		return new GatewayLoadReport(sessions, connectedSessions.get(), requests.get(), requests.get() - rejected.get(),
+				rejected.get(), elapsed, HistogramSnapshot.merge(snapshots));
+	}
+
+	// null if the connection failed, the latch is released for it so the other sessions still start
+	private static Socket connect(String host, int port, CountDownLatch connected) {
+		try {
+			Socket socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			return socket;
+		} catch (IOException e) {
+			System.err.println("Load session could not connect: " + e);
+			connected.countDown();
+			return null;
+		}
+	}
+
+	private static void runSession(Socket socket, int session, int orders, Symbol symbol, Histogram roundTrip,
+			AtomicLong requests, AtomicLong rejected) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		Random random = new Random(session);
+		long correlationId = 0;
+		for(int i = 0; i < orders; i++) {
+			OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+			String orderId = "S" + session + "-" + i;
+			Order order = new Order(symbol, orderId, new BigDecimal(1 + random.nextInt(10)), BigDecimal.ONE, side, Ordertype.LIMIT);
+			GatewayProtocol.writeOrder(out, ++correlationId, order, OrderActionType.ADD);
+			roundTrip(in, out, correlationId, roundTrip, requests, rejected);
+			if(i % 4 == 3) {
+				GatewayProtocol.writeCancel(out, ++correlationId, symbol, orderId);
+				roundTrip(in, out, correlationId, roundTrip, requests, rejected);
+			}
+		}
+		socket.shutdownOutput();
+	}
+
+	private static void roundTrip(DataInputStream in, DataOutputStream out, long correlationId, Histogram roundTrip,
+			AtomicLong requests, AtomicLong rejected) throws IOException {
+		long sent = System.nanoTime();
+		out.flush();
+		GatewayResponse response = GatewayProtocol.readResponse(in);
+		roundTrip.record(System.nanoTime() - sent);
+		if(response.getCorrelationId() != correlationId)
+			throw new IOException("Response out of order, expected " + correlationId + " got " + response.getCorrelationId());
+		requests.incrementAndGet();
+		if(!response.isAccepted()) {
+			rejected.incrementAndGet();
+		}
+	}
+
+	public static void main(String[] args) {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 7001;
+		int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int orders = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+		Symbol symbol = args.length > 4 ? Symbol.valueOf(args[4]) : Symbol.BTC;
+		System.out.print(run(host, port, sessions, orders, symbol));
+	}
+}
@@ -0,0 +1,65 @@
+package m2.orderbook.gateway;
+
+import m2.orderbook.metrics.HistogramSnapshot;
+
+// outcome of one GatewayLoadClient run, round trip times in nanoseconds
+public final class GatewayLoadReport {
+
+	private final int sessions;
+	private final int connectedSessions;
+	private final long requests;
+	private final long accepted;
+	private final long rejected;
+	private final long elapsedNanos;
+	private final HistogramSnapshot roundTrip;
+
+	GatewayLoadReport(int sessions, int connectedSessions, long requests, long accepted, long rejected, long elapsedNanos,
+			HistogramSnapshot roundTrip) {
+		this.sessions = sessions;
+		this.connectedSessions = connectedSessions;
+		this.requests = requests;
+		this.accepted = accepted;
+		this.rejected = rejected;
+		this.elapsedNanos = elapsedNanos;
+		this.roundTrip = roundTrip;
+	}
+
+	public int getSessions() {
+		return sessions;
+	}
+
+	// sessions that were connected at the same time when the load started
+	public int getConnectedSessions() {
+		return connectedSessions;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	public long getAccepted() {
+		return accepted;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public HistogramSnapshot getRoundTrip() {
+		return roundTrip;
+	}
+
+	public double getRequestsPerSecond() {
+		return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+	}
+
+	public String toString() {
+		return "sessions=" + connectedSessions + "/" + sessions + " requests=" + requests + " accepted=" + accepted
+				+ " rejected=" + rejected + " throughput=" + Math.round(getRequestsPerSecond()) + "/s\n"
+				+ "  round trip ns: " + roundTrip + '\n';
+	}
+}
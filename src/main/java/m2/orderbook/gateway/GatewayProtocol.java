@@ -0,0 +1,149 @@
+package m2.orderbook.gateway;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Wire format spoken by OrderGateway and GatewayLoadClient, big endian as written by DataOutputStream.
+//
+// Request:  byte action, long correlation id, byte symbol,
+//           [ADD and AMEND] byte side, byte type, long price, long stop price, long quantity (fixed point),
+//           id as modified UTF-8 (short length + bytes)
+// Mass cancel: byte MASS_CANCEL, long correlation id, byte symbol or ALL, byte side or ALL,
+//           long low price, long high price (fixed point, 0 leaves that end of the range open)
+// Response: byte status, long correlation id, [REJECTED only] reason as modified UTF-8
+// Enums travel as their ordinal, like in the journal. Prices that do not apply to the type are sent as 0.
+// A session may pipeline requests, responses come back in request order.
+// Orders carry no owner on the wire: the gateway makes the session's identity the owner of every order
+// it adds, and a mass cancel only reaches the orders of the session that sends it.
+public final class GatewayProtocol {
+
+	public static final byte ACCEPTED = 0;
+	public static final byte REJECTED = 1;
+
+	// action code of a mass cancel, after the OrderActionType ordinals
+	public static final int MASS_CANCEL = 0x40;
+	// symbol or side of a mass cancel that matches all of them
+	public static final int ALL = 0xFF;
+
+	private GatewayProtocol() {
+	}
+
+	public static void writeOrder(DataOutputStream out, long correlationId, Order order, OrderActionType actionType) throws IOException {
+		out.writeByte(actionType.ordinal());
+		out.writeLong(correlationId);
+		out.writeByte(order.getSymbol().ordinal());
+		Ordertype type = order.getType();
+		out.writeByte(order.getSide().ordinal());
+		out.writeByte(type.ordinal());
+		out.writeLong(type.hasLimitPrice() ? BigDecimalUtility.toFixedPoint(order.getPrice()) : 0L);
+		out.writeLong(type.isStop() ? BigDecimalUtility.toFixedPoint(order.getStopPrice()) : 0L);
+		out.writeLong(BigDecimalUtility.toFixedPoint(order.getQuantity()));
+		out.writeUTF(order.getOrderId());
+	}
+
+	public static void writeCancel(DataOutputStream out, long correlationId, Symbol symbol, String orderId) throws IOException {
+		out.writeByte(OrderActionType.REMOVE.ordinal());
+		out.writeLong(correlationId);
+		out.writeByte(symbol.ordinal());
+		out.writeUTF(orderId);
+	}
+
+	// null symbol for every book, null side for both sides, a null price leaves that end of the range open
+	public static void writeMassCancel(DataOutputStream out, long correlationId, Symbol symbol, OrderSide side, BigDecimal lowPrice,
+			BigDecimal highPrice) throws IOException {
+		out.writeByte(MASS_CANCEL);
+		out.writeLong(correlationId);
+		out.writeByte(symbol == null ? ALL : symbol.ordinal());
+		out.writeByte(side == null ? ALL : side.ordinal());
+		out.writeLong(lowPrice == null ? 0L : BigDecimalUtility.toFixedPoint(lowPrice));
+		out.writeLong(highPrice == null ? 0L : BigDecimalUtility.toFixedPoint(highPrice));
+	}
+
+	// null when the peer closed the connection between requests
+	public static GatewayRequest readRequest(DataInputStream in) throws IOException {
+		int action = in.read();
+		if(action < 0) {
+			return null;
+		}
+		if(action == MASS_CANCEL) {
+			return readMassCancel(in);
+		}
+		OrderActionType actionType = valueOf(OrderActionType.values(), action, "action");
+		long correlationId = in.readLong();
+		Symbol symbol = valueOf(Symbol.values(), in.readUnsignedByte(), "symbol");
+		if(actionType == OrderActionType.REMOVE) {
+			return new GatewayRequest(actionType, correlationId, symbol, in.readUTF(), null, null, null);
+		}
+		OrderSide side = valueOf(OrderSide.values(), in.readUnsignedByte(), "side");
+		Ordertype type = valueOf(Ordertype.values(), in.readUnsignedByte(), "order type");
+		long price = in.readLong();
+		long stopPrice = in.readLong();
+		long quantity = in.readLong();
+		String orderId = in.readUTF();
+		Order order = null;
+		String error = null;
+		try {
+			order = new Order(symbol, orderId, type.hasLimitPrice() ? BigDecimalUtility.fromFixedPoint(price) : null,
+					type.isStop() ? BigDecimalUtility.fromFixedPoint(stopPrice) : null, BigDecimalUtility.fromFixedPoint(quantity), side, type);
+		} catch (IllegalArgumentException e) {
+			// well framed but not a valid order, the session rejects it and carries on
+			error = e.getMessage();
+		}
+		return new GatewayRequest(actionType, correlationId, symbol, orderId, order, null, error);
+	}
+
+	// the mass cancel has no owner yet, the gateway gives it the session's
+	private static GatewayRequest readMassCancel(DataInputStream in) throws IOException {
+		long correlationId = in.readLong();
+		int symbolCode = in.readUnsignedByte();
+		Symbol symbol = symbolCode == ALL ? null : valueOf(Symbol.values(), symbolCode, "symbol");
+		int sideCode = in.readUnsignedByte();
+		OrderSide side = sideCode == ALL ? null : valueOf(OrderSide.values(), sideCode, "side");
+		long lowPrice = in.readLong();
+		long highPrice = in.readLong();
+		MassCancel massCancel = null;
+		String error = null;
+		try {
+			massCancel = new MassCancel(symbol, side, lowPrice == 0L ? null : BigDecimalUtility.fromFixedPoint(lowPrice),
+					highPrice == 0L ? null : BigDecimalUtility.fromFixedPoint(highPrice), null);
+		} catch (IllegalArgumentException e) {
+			error = e.getMessage();
+		}
+		return new GatewayRequest(null, correlationId, symbol, null, null, massCancel, error);
+	}
+
+	public static void writeResponse(DataOutputStream out, long correlationId, String rejectReason) throws IOException {
+		out.writeByte(rejectReason == null ? ACCEPTED : REJECTED);
+		out.writeLong(correlationId);
+		if(rejectReason != null) {
+			out.writeUTF(rejectReason);
+		}
+	}
+
+	public static GatewayResponse readResponse(DataInputStream in) throws IOException {
+		byte status = in.readByte();
+		long correlationId = in.readLong();
+		if(status == ACCEPTED) {
+			return new GatewayResponse(correlationId, null);
+		}
+		if(status != REJECTED)
+			throw new IOException("Unknown response status:" + status);
+		return new GatewayResponse(correlationId, in.readUTF());
+	}
+
+	private static <T> T valueOf(T[] values, int ordinal, String field) throws IOException {
+		if(ordinal < 0 || ordinal >= values.length)
+			throw new IOException("Unknown " + field + ":" + ordinal);
+		return values[ordinal];
+	}
+}
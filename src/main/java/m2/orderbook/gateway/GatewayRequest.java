@@ -0,0 +1,63 @@
+package m2.orderbook.gateway;
+
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Symbol;
+
+// One decoded request, order is null for REMOVE and when the fields did not make a valid order (see getError).
+// A mass cancel has no action type and no order, see getMassCancel.
+public final class GatewayRequest {
+
+	private final OrderActionType actionType;
+	private final long correlationId;
+	private final Symbol symbol;
+	private final String orderId;
+	private final Order order;
+	private final MassCancel massCancel;
+	private final String error;
+
+	GatewayRequest(OrderActionType actionType, long correlationId, Symbol symbol, String orderId, Order order, MassCancel massCancel,
+			String error) {
+		this.actionType = actionType;
+		this.correlationId = correlationId;
+		this.symbol = symbol;
+		this.orderId = orderId;
+		this.order = order;
+		this.massCancel = massCancel;
+		this.error = error;
+	}
+
+	public OrderActionType getActionType() {
+		return actionType;
+	}
+
+	public long getCorrelationId() {
+		return correlationId;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public String getOrderId() {
+		return orderId;
+	}
+
+	public Order getOrder() {
+		return order;
+	}
+
+	// criteria of a mass cancel without an owner, null for every other request
+	public MassCancel getMassCancel() {
+		return massCancel;
+	}
+
+	public boolean isMassCancel() {
+		return actionType == null;
+	}
+
+	public String getError() {
+		return error;
+	}
+}
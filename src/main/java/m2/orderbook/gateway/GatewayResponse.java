@@ -0,0 +1,29 @@
+package m2.orderbook.gateway;
+
+public final class GatewayResponse {
+
+	private final long correlationId;
+	private final String rejectReason;
+
+	GatewayResponse(long correlationId, String rejectReason) {
+		this.correlationId = correlationId;
+		this.rejectReason = rejectReason;
+	}
+
+	public long getCorrelationId() {
+		return correlationId;
+	}
+
+	public boolean isAccepted() {
+		return rejectReason == null;
+	}
+
+	// the engine's OrderException message, null when accepted
+	public String getRejectReason() {
+		return rejectReason;
+	}
+
+	public String toString() {
+		return correlationId + (rejectReason == null ? " ACCEPTED" : " REJECTED " + rejectReason);
+	}
+}
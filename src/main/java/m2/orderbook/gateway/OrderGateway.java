@@ -0,0 +1,333 @@
+package m2.orderbook.gateway;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+
+// TCP front end for ShardedOrderbookServiceImpl speaking GatewayProtocol.
+// Every session gets a reader and a writer task: the reader decodes requests and hands them to the
+// shard's sequencer without waiting, the writer waits for the results in request order and sends the
+// responses, so a client may pipeline up to MAX_PENDING requests. Waiting only ever parks session
+// threads, the matching threads never touch a socket.
+// On Java 21+ session tasks run on virtual threads and thousands of mostly idle sessions cost little,
+// older runtimes fall back to a cached pool of platform threads.
+// Every session gets an identity unique across gateway restarts, which becomes the owner of the orders it
+// adds, so a mass cancel from the session (or, with cancelOnDisconnect, its disconnect) reaches just those.
+public class OrderGateway implements AutoCloseable {
+
+	// requests a session may have in flight before its reader stops reading from the socket
+	private static final int MAX_PENDING = 1024;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Pending END = new Pending(0, null);
+
+	private final ShardedOrderbookServiceImpl service;
+
+	private final ServerSocket serverSocket;
+
+	private final ExecutorService sessionExecutor;
+
+	private final Thread acceptor;
+
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger activeSessions = new AtomicInteger();
+
+	private final AtomicInteger peakSessions = new AtomicInteger();
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private final boolean cancelOnDisconnect;
+
+	// start time, so identities of a restarted gateway do not match owners recovered from the journal
+	private final String identityPrefix = "gw" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+	private final AtomicLong sessionNumbers = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	// port 0 picks a free port, see getPort
+	public OrderGateway(ShardedOrderbookServiceImpl service, int port) {
+		this(service, port, false);
+	}
+
+	public OrderGateway(ShardedOrderbookServiceImpl service, int port, boolean cancelOnDisconnect) {
+		this(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), cancelOnDisconnect);
+	}
+
+	public OrderGateway(ShardedOrderbookServiceImpl service, InetSocketAddress address) {
+		this(service, address, false);
+	}
+
+	// cancelOnDisconnect: once a session's connection ends, every order it added that is still resting or
+	// parked is cancelled in all books
+	public OrderGateway(ShardedOrderbookServiceImpl service, InetSocketAddress address, boolean cancelOnDisconnect) {
+		this.service = service;
+		this.cancelOnDisconnect = cancelOnDisconnect;
+		try {
+			serverSocket = new ServerSocket();
+			serverSocket.setReuseAddress(true);
+			serverSocket.bind(address, MAX_PENDING);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot listen on " + address, e);
+		}
+		sessionExecutor = newSessionExecutor();
+		acceptor = new Thread(this::accept, "orderbook-gateway-" + serverSocket.getLocalPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor is looked up reflectively so the build keeps working on JDK 17
+	static ExecutorService newSessionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger threads = new AtomicInteger();
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "orderbook-gateway-session-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	private void accept() {
+		while(running) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if(running) {
+					System.err.println("Gateway accept failed: " + e);
+				}
+				continue;
+			}
+			try {
+				socket.setTcpNoDelay(true);
+				sockets.add(socket);
+				int active = activeSessions.incrementAndGet();
+				peakSessions.accumulateAndGet(active, Math::max);
+				Session session = new Session(socket, identityPrefix + sessionNumbers.incrementAndGet());
+				sessionExecutor.execute(session::write);
+				sessionExecutor.execute(session::read);
+			} catch (IOException | RuntimeException e) {
+				// executor already shut down or the socket died before the session started
+				closeQuietly(socket);
+			}
+		}
+	}
+
+	private CompletableFuture<String> dispatch(GatewayRequest request, String identity) {
+		if(request.getError() != null) {
+			return CompletableFuture.failedFuture(new OrderException(request.getError()));
+		}
+		try {
+			if(request.isMassCancel()) {
+				MassCancel criteria = request.getMassCancel();
+				MassCancel massCancel = new MassCancel(criteria.getSymbol(), criteria.getSide(), criteria.getLowPrice(), criteria.getHighPrice(), identity);
+				return service.massCancelAsync(massCancel).thenApply(canceled -> null);
+			}
+			switch(request.getActionType()) {
+			case ADD:
+				request.getOrder().setOwner(identity);
+				return service.placeNewOrderAsync(request.getOrder());
+			case AMEND:
+				return service.amendOrderAsync(request.getOrder());
+			default:
+				return service.cancelOrderAsync(request.getSymbol(), request.getOrderId());
+			}
+		} catch (RuntimeException e) {
+			// unknown symbol or a sequencer that is shutting down
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private static String rejectReason(CompletableFuture<String> result) {
+		try {
+			result.join();
+			return null;
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			return String.valueOf(cause.getMessage());
+		}
+	}
+
+	private void closeQuietly(Socket socket) {
+		if(sockets.remove(socket)) {
+			activeSessions.decrementAndGet();
+		}
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// nothing left to release
+		}
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public int getActiveSessions() {
+		return activeSessions.get();
+	}
+
+	// most sessions that were connected at the same time since start
+	public int getPeakSessions() {
+		return peakSessions.get();
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	// stops accepting and drops every open session, requests already sequenced still run
+	@Override
+	public void close() {
+		running = false;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// the acceptor exits either way
+		}
+		for(Socket socket : sockets) {
+			closeQuietly(socket);
+		}
+		sessionExecutor.shutdown();
+		try {
+			acceptor.join(TimeUnit.SECONDS.toMillis(5));
+			sessionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//   java m2.orderbook.gateway.OrderGateway [port], serves every symbol from fixed point books until killed
+	public static void main(String[] args) throws InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7001;
+		try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP)) {
+			service.initializeOrderBook();
+			try (OrderGateway gateway = new OrderGateway(service, port)) {
+				System.out.println("Order gateway listening on port " + gateway.getPort());
+				gateway.acceptor.join();
+			}
+		}
+	}
+
+	private static final class Pending {
+
+		final long correlationId;
+		final CompletableFuture<String> result;
+
+		Pending(long correlationId, CompletableFuture<String> result) {
+			this.correlationId = correlationId;
+			this.result = result;
+		}
+	}
+
+	private final class Session {
+
+		private final Socket socket;
+
+		// owner of the orders this session adds
+		private final String identity;
+
+		private final BlockingQueue<Pending> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+
+		Session(Socket socket, String identity) {
+			this.socket = socket;
+			this.identity = identity;
+		}
+
+		void read() {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+				GatewayRequest request;
+				while((request = GatewayProtocol.readRequest(in)) != null) {
+					requests.incrementAndGet();
+					pending.put(new Pending(request.getCorrelationId(), dispatch(request, identity)));
+				}
+			} catch (SocketException e) {
+				// closed by the writer or by close()
+			} catch (IOException e) {
+				if(running) {
+					System.err.println("Gateway session failed: " + e);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if(cancelOnDisconnect) {
+					cancelSessionOrders();
+				}
+				pending.offer(END);
+			}
+		}
+
+		// sequenced after everything the session sent, nobody is left to answer
+		private void cancelSessionOrders() {
+			try {
+				service.massCancelAsync(MassCancel.forOwner(null, identity));
+			} catch (RuntimeException e) {
+				// the service is shutting down, its books go with it
+			}
+		}
+
+		// Flushes only once nothing else is ready, so a pipelining client gets its responses in
+		// batches and a request/response client gets each one straight away.
+		void write() {
+			boolean open = true;
+			try {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+				Pending next;
+				while((next = pending.take()) != END) {
+					String rejectReason = rejectReason(next.result);
+					if(open) {
+						try {
+							GatewayProtocol.writeResponse(out, next.correlationId, rejectReason);
+							if(pending.isEmpty()) {
+								out.flush();
+							}
+						} catch (IOException e) {
+							// keep draining so the reader is never stuck on a full queue
+							open = false;
+							closeQuietly(socket);
+						}
+					}
+				}
+				if(open) {
+					out.flush();
+				}
+			} catch (IOException e) {
+				// the socket was closed before the session started
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				closeQuietly(socket);
+			}
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package m2.orderbook.journal;
+
+import java.util.Arrays;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Point in time copy of every resting order and parked stop of a book together with the journal
+// sequence it reflects. Book orders come first (type LIMIT), then the stops in trigger order.
+// Capturing only copies primitives and id references into flat arrays, so the matching thread is held
+// for one pass over the book plus an owner lookup per order; encoding and writing the file happens
+// elsewhere (see SnapshotFile). Owners are captured, so an owner mass cancel works the same after a restore.
+public final class BookSnapshot {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final Symbol symbol;
+	private final long sequence;
+	private int size;
+	private byte[] sides;
+	private byte[] types;
+	private long[] prices;
+	// 0 for book orders
+	private long[] stopPrices;
+	private long[] quantities;
+	private String[] orderIds;
+	// null for orders without an owner
+	private String[] owners;
+
+	BookSnapshot(Symbol symbol, long sequence, int capacity) {
+		this.symbol = symbol;
+		this.sequence = sequence;
+		int initialCapacity = Math.max(capacity, 1);
+		this.sides = new byte[initialCapacity];
+		this.types = new byte[initialCapacity];
+		this.prices = new long[initialCapacity];
+		this.stopPrices = new long[initialCapacity];
+		this.quantities = new long[initialCapacity];
+		this.orderIds = new String[initialCapacity];
+		this.owners = new String[initialCapacity];
+	}
+
+	// must run on the thread that owns the engine, sequence is the last journal record applied to it
+	public static BookSnapshot capture(MatchingEngine engine, long sequence) {
+		BookSnapshot snapshot = new BookSnapshot(engine.getSymbol(), sequence, INITIAL_CAPACITY);
+		for(OrderSide side : OrderSide.values()) {
+			engine.forEachRestingOrder(side, (orderId, price, quantity) -> snapshot.add(side, Ordertype.LIMIT, orderId, price, 0L, quantity, engine.getOwner(orderId)));
+		}
+		for(OrderSide side : OrderSide.values()) {
+			engine.forEachStopOrder(side, (orderId, type, stopPrice, limitPrice, quantity) -> snapshot.add(side, type, orderId, limitPrice, stopPrice, quantity, engine.getOwner(orderId)));
+		}
+		return snapshot;
+	}
+
+	void add(OrderSide side, Ordertype type, String orderId, long price, long stopPrice, long quantity, String owner) {
+		if(size == orderIds.length) {
+			int capacity = size << 1;
+			sides = Arrays.copyOf(sides, capacity);
+			types = Arrays.copyOf(types, capacity);
+			prices = Arrays.copyOf(prices, capacity);
+			stopPrices = Arrays.copyOf(stopPrices, capacity);
+			quantities = Arrays.copyOf(quantities, capacity);
+			orderIds = Arrays.copyOf(orderIds, capacity);
+			owners = Arrays.copyOf(owners, capacity);
+		}
+		sides[size] = (byte) side.ordinal();
+		types[size] = (byte) type.ordinal();
+		prices[size] = price;
+		stopPrices[size] = stopPrice;
+		quantities[size] = quantity;
+		orderIds[size] = orderId;
+		owners[size] = owner;
+		size++;
+	}
+
+	// Rests every order again in the captured order, which rebuilds each price queue with the same priority.
+	// Stops are parked again the same way; parking never triggers, so nothing trades during a restore.
+	// The engine should be empty and have no listener attached yet.
+	public void restore(MatchingEngine engine) throws OrderException {
+		if(engine.getSymbol() != symbol)
+			throw new IllegalStateException("Snapshot of " + symbol + " can not restore book " + engine.getSymbol());
+		for(int i = 0; i < size; i++) {
+			Ordertype type = getType(i);
+			Order order;
+			if(type.isStop()) {
+				order = new Order(symbol, orderIds[i], type.hasLimitPrice() ? BigDecimalUtility.fromFixedPoint(prices[i]) : null,
+						BigDecimalUtility.fromFixedPoint(stopPrices[i]), BigDecimalUtility.fromFixedPoint(quantities[i]), getSide(i), type);
+			} else {
+				order = new Order(symbol, orderIds[i], BigDecimalUtility.fromFixedPoint(prices[i]),
+						BigDecimalUtility.fromFixedPoint(quantities[i]), getSide(i), Ordertype.LIMIT);
+			}
+			order.setOwner(owners[i]);
+			if(type.isStop()) {
+				engine.executeOrder(order, OrderActionType.ADD);
+			} else {
+				engine.addOrder(order);
+			}
+		}
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public OrderSide getSide(int index) {
+		return OrderSide.values()[sides[index]];
+	}
+
+	public Ordertype getType(int index) {
+		return Ordertype.values()[types[index]];
+	}
+
+	// limit price, 0 for STOP orders
+	public long getPrice(int index) {
+		return prices[index];
+	}
+
+	public long getStopPrice(int index) {
+		return stopPrices[index];
+	}
+
+	public String getOrderId(int index) {
+		return orderIds[index];
+	}
+
+	public long getQuantity(int index) {
+		return quantities[index];
+	}
+
+	// null if the order has no owner
+	public String getOwner(int index) {
+		return owners[index];
+	}
+}
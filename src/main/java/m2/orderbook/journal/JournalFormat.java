@@ -0,0 +1,87 @@
+package m2.orderbook.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// File layout shared by OrderJournal and JournalReader.
+//
+// The file is a sequence of fixed size regions which are memory mapped one at a time.
+// Region 0 starts with the header: magic, version, symbol ordinal, region size (4 ints) and the
+// base sequence (long), the sequence of the last record in the segment this file was rolled from.
+// Records never span regions. Each record is
+//   int length (bytes after this field), long sequence, byte action,
+//   [ADD and AMEND] byte side, byte type, long price, long quantity (fixed point),
+//   [STOP and STOP_LIMIT types only] long stop price (fixed point),
+//   byte id encoding, short id length, id bytes,
+//   [ADD and AMEND of an order with an owner] the owner encoded like the id
+// Records without an owner end after the id, so journals written before owners existed read the same.
+// A length of 0 marks the end of the journal, SKIP_REGION sends the reader to the next region.
+// The length is written last so a record torn by a crash is never visible.
+final class JournalFormat {
+
+	static final int MAGIC = 0x4F424A31;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 24;
+	static final int SKIP_REGION = -1;
+
+	static final byte ID_LATIN1 = 0;
+	static final byte ID_UTF8 = 1;
+
+	// length field + sequence + action
+	static final int RECORD_PREFIX = 4 + 8 + 1;
+	// side + type + price + quantity
+	static final int ADD_FIELDS = 1 + 1 + 8 + 8;
+	// stop price
+	static final int STOP_FIELDS = 8;
+	// encoding + id length
+	static final int ID_PREFIX = 1 + 2;
+
+	private JournalFormat() {
+	}
+
+	static boolean isLatin1(String id) {
+		for(int i = 0; i < id.length(); i++) {
+			if(id.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// bytes needed for the id, latin1 ids are written char by char without allocating
+	static int idSize(String id, boolean latin1) {
+		return latin1 ? id.length() : id.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	static void putId(ByteBuffer buffer, int position, String id, boolean latin1) {
+		if(latin1) {
+			buffer.put(position, ID_LATIN1);
+			buffer.putShort(position + 1, (short) id.length());
+			for(int i = 0; i < id.length(); i++) {
+				buffer.put(position + ID_PREFIX + i, (byte) id.charAt(i));
+			}
+		} else {
+			byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+			buffer.put(position, ID_UTF8);
+			buffer.putShort(position + 1, (short) bytes.length);
+			for(int i = 0; i < bytes.length; i++) {
+				buffer.put(position + ID_PREFIX + i, bytes[i]);
+			}
+		}
+	}
+
+	// bytes taken by the id (or owner) written at position
+	static int idRecordSize(ByteBuffer buffer, int position) {
+		return ID_PREFIX + (buffer.getShort(position + 1) & 0xFFFF);
+	}
+
+	static String getId(ByteBuffer buffer, int position) {
+		byte encoding = buffer.get(position);
+		int length = buffer.getShort(position + 1) & 0xFFFF;
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(position + ID_PREFIX + i);
+		}
+		return new String(bytes, encoding == ID_LATIN1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,154 @@
+package m2.orderbook.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Sequential reader for files written by OrderJournal, see JournalFormat for the layout.
+public class JournalReader {
+
+	public interface RecordHandler {
+
+		// order is null for a cancel by id
+		void onRecord(long sequence, OrderActionType actionType, Order order, String orderId);
+	}
+
+	private final Path file;
+	private Symbol symbol;
+	private int regionSize;
+	private long lastSequence;
+	private long endPosition;
+
+	public JournalReader(Path file) {
+		this.file = file;
+	}
+
+	// reads every record in order, afterwards the getters describe where the journal ends
+	public void read(RecordHandler handler) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			if(fileSize < JournalFormat.HEADER_SIZE)
+				throw new IllegalStateException("Journal header missing:" + file);
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, JournalFormat.HEADER_SIZE);
+			if(header.getInt(0) != JournalFormat.MAGIC || header.getInt(4) != JournalFormat.VERSION)
+				throw new IllegalStateException("Not a journal file:" + file);
+			symbol = Symbol.values()[header.getInt(8)];
+			regionSize = header.getInt(12);
+
+			lastSequence = header.getLong(16);
+			long regionStart = 0;
+			int offset = JournalFormat.HEADER_SIZE;
+			while(regionStart < fileSize) {
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(regionSize, fileSize - regionStart));
+				while(true) {
+					if(offset + 4 > region.limit()) {
+						break;
+					}
+					int length = region.getInt(offset);
+					if(length == 0) {
+						endPosition = regionStart + offset;
+						return;
+					}
+					if(length == JournalFormat.SKIP_REGION) {
+						break;
+					}
+					readRecord(region, offset, handler);
+					offset += 4 + length;
+				}
+				regionStart += regionSize;
+				offset = 0;
+			}
+			endPosition = regionStart;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal read failed:" + file, e);
+		}
+	}
+
+	private void readRecord(ByteBuffer region, int offset, RecordHandler handler) {
+		int position = offset + 4;
+		long sequence = region.getLong(position);
+		OrderActionType actionType = OrderActionType.values()[region.get(position + 8)];
+		position += 9;
+
+		Order order = null;
+		if(actionType != OrderActionType.REMOVE) {
+			OrderSide side = OrderSide.values()[region.get(position)];
+			Ordertype type = Ordertype.values()[region.get(position + 1)];
+			long price = region.getLong(position + 2);
+			long quantity = region.getLong(position + 10);
+			position += JournalFormat.ADD_FIELDS;
+			BigDecimal stopPrice = null;
+			if(type.isStop()) {
+				stopPrice = BigDecimalUtility.fromFixedPoint(region.getLong(position));
+				position += JournalFormat.STOP_FIELDS;
+			}
+			String orderId = JournalFormat.getId(region, position);
+			order = new Order(symbol, orderId, type.hasLimitPrice() ? BigDecimalUtility.fromFixedPoint(price) : null, stopPrice,
+					BigDecimalUtility.fromFixedPoint(quantity), side, type);
+			position += JournalFormat.idRecordSize(region, position);
+			// the owner is the optional last field
+			if(position < offset + 4 + region.getInt(offset)) {
+				order.setOwner(JournalFormat.getId(region, position));
+			}
+			handler.onRecord(sequence, actionType, order, orderId);
+		} else {
+			handler.onRecord(sequence, actionType, null, JournalFormat.getId(region, position));
+		}
+		lastSequence = sequence;
+	}
+
+	// Rebuild a book by applying every record after afterSequence. Commands the engine rejects
+	// were rejected the same way when they were first processed, so they are skipped.
+	public static long replay(Path file, MatchingEngine engine, long afterSequence) {
+		JournalReader reader = new JournalReader(file);
+		reader.read((sequence, actionType, order, orderId) -> {
+			if(sequence <= afterSequence) {
+				return;
+			}
+			try {
+				if(order == null) {
+					engine.cancelOrder(orderId);
+				} else {
+					engine.executeOrder(order, actionType);
+				}
+			} catch (RuntimeException e) {
+				// rejected originally as well
+			}
+		});
+		if(reader.getSymbol() != engine.getSymbol())
+			throw new IllegalStateException("Journal " + file + " belongs to " + reader.getSymbol());
+		return reader.getLastSequence();
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public int getRegionSize() {
+		return regionSize;
+	}
+
+	// sequence of the last complete record, the base sequence for an empty journal
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	// file offset the next record would be written at
+	public long getEndPosition() {
+		return endPosition;
+	}
+}
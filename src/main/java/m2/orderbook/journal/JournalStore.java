@@ -0,0 +1,126 @@
+package m2.orderbook.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.Symbol;
+
+// Files kept for one Symbol in a journal directory:
+//   <symbol>.journal        live journal
+//   <symbol>.journal.<seq>  rolled segments, seq is the last record they hold
+//   <symbol>.snapshot       latest snapshot
+// Restart loads the snapshot and replays only the journal records after its sequence.
+public class JournalStore {
+
+	private final Path directory;
+	private final Symbol symbol;
+	private final Path journalFile;
+	private final Path snapshotFile;
+	// sequence of the stored snapshot, -1 without one
+	private long snapshotSequence = -1;
+
+	public JournalStore(Path directory, Symbol symbol) {
+		this.directory = directory;
+		this.symbol = symbol;
+		this.journalFile = directory.resolve(symbol + ".journal");
+		this.snapshotFile = directory.resolve(symbol + ".snapshot");
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal directory not usable:" + directory, e);
+		}
+		if(Files.exists(snapshotFile)) {
+			snapshotSequence = SnapshotFile.readSequence(snapshotFile);
+		}
+	}
+
+	public boolean isEmpty() {
+		return !Files.exists(snapshotFile) && !Files.exists(journalFile) && getSegments().isEmpty();
+	}
+
+	// rebuilds the book and returns the last sequence applied, the engine's listener should not be attached yet
+	public long recover(MatchingEngine engine) {
+		long sequence = 0;
+		if(Files.exists(snapshotFile)) {
+			BookSnapshot snapshot = SnapshotFile.read(snapshotFile);
+			snapshot.restore(engine);
+			sequence = snapshot.getSequence();
+		}
+		List<Path> files = getSegments();
+		if(Files.exists(journalFile)) {
+			files.add(journalFile);
+		}
+		for(Path file : files) {
+			sequence = Math.max(sequence, JournalReader.replay(file, engine, sequence));
+		}
+		return sequence;
+	}
+
+	// rolled segments in sequence order
+	List<Path> getSegments() {
+		List<Path> segments = new ArrayList<>();
+		String prefix = journalFile.getFileName() + ".";
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+			for(Path file : files) {
+				if(segmentSequence(file) >= 0) {
+					segments.add(file);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal directory not readable:" + directory, e);
+		}
+		segments.sort(Comparator.comparingLong(this::segmentSequence));
+		return segments;
+	}
+
+	private long segmentSequence(Path segment) {
+		String suffix = segment.getFileName().toString().substring(journalFile.getFileName().toString().length() + 1);
+		try {
+			return Long.parseLong(suffix);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	// Persists the snapshot, then drops the segments it covers. A snapshot older than the stored one is
+	// ignored and false returned: the segments it would need may already be gone (two snapshots taken
+	// concurrently can arrive here in either order).
+	public synchronized boolean saveSnapshot(BookSnapshot snapshot) {
+		if(snapshot.getSymbol() != symbol)
+			throw new IllegalArgumentException("Snapshot of " + snapshot.getSymbol() + " for store " + symbol);
+		if(snapshot.getSequence() < snapshotSequence) {
+			return false;
+		}
+		SnapshotFile.write(snapshot, snapshotFile);
+		snapshotSequence = snapshot.getSequence();
+		for(Path segment : getSegments()) {
+			if(segmentSequence(segment) <= snapshot.getSequence()) {
+				try {
+					Files.deleteIfExists(segment);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Journal segment delete failed:" + segment, e);
+				}
+			}
+		}
+		return true;
+	}
+
+	public Path getJournalFile() {
+		return journalFile;
+	}
+
+	public Path getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+}
@@ -0,0 +1,287 @@
+package m2.orderbook.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.FlushPolicy;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.sequencer.CommandJournal;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Append only command journal for one Symbol, written through a memory mapped region of the file.
+// An append is a handful of stores into the mapping, the only syscalls are the region switch every
+// regionSize bytes and whatever the FlushPolicy asks for. Single writer: the sequencer's matching thread.
+public class OrderJournal implements CommandJournal, AutoCloseable {
+
+	public static final int DEFAULT_REGION_SIZE = 64 << 20;
+	public static final int DEFAULT_FLUSH_BATCH = 1024;
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+	private static final int MAX_ID_LENGTH = 0xFFFF;
+
+	private final Path file;
+	private final Symbol symbol;
+	private FileChannel channel;
+	private final int regionSize;
+	private final FlushPolicy flushPolicy;
+	private final int flushBatch;
+	private final long flushIntervalNanos;
+
+	private volatile MappedByteBuffer region;
+	private long regionStart;
+	private int offset;
+	private long lastSequence;
+	private int unflushed;
+
+	private final Thread flushThread;
+	private volatile boolean dirty;
+	private volatile long lastFlushNanos = System.nanoTime();
+	private final AtomicLong flushes = new AtomicLong();
+	private volatile boolean open = true;
+
+	public OrderJournal(Path file, Symbol symbol, FlushPolicy flushPolicy) {
+		this(file, symbol, flushPolicy, DEFAULT_REGION_SIZE, DEFAULT_FLUSH_BATCH, DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+
+	// regionSize is only used for a new file, an existing journal keeps the size in its header.
+	// flushBatch applies to BATCH, flushIntervalMillis to BATCH (minimum time between two batch end forces)
+	// and INTERVAL.
+	public OrderJournal(Path file, Symbol symbol, FlushPolicy flushPolicy, int regionSize, int flushBatch, long flushIntervalMillis) {
+		if(symbol == null || flushPolicy == null)
+			throw new IllegalArgumentException();
+		if(regionSize < 4096)
+			throw new IllegalArgumentException("Region size too small:" + regionSize);
+		if(flushBatch <= 0 || flushIntervalMillis <= 0)
+			throw new IllegalArgumentException("Invalid flush settings");
+		this.file = file;
+		this.symbol = symbol;
+		this.flushPolicy = flushPolicy;
+		this.flushBatch = flushBatch;
+		this.flushIntervalNanos = flushIntervalMillis * 1_000_000L;
+
+		boolean existing;
+		try {
+			existing = Files.exists(file) && Files.size(file) > 0;
+			if(existing) {
+				JournalReader reader = new JournalReader(file);
+				reader.read((sequence, actionType, order, orderId) -> {
+				});
+				if(reader.getSymbol() != symbol)
+					throw new IllegalStateException("Journal " + file + " belongs to " + reader.getSymbol());
+				this.regionSize = reader.getRegionSize();
+				this.lastSequence = reader.getLastSequence();
+				this.regionStart = reader.getEndPosition() / this.regionSize * this.regionSize;
+				this.offset = (int) (reader.getEndPosition() - regionStart);
+			} else {
+				this.regionSize = regionSize;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal open failed:" + file, e);
+		}
+		mapFile(!existing);
+
+		if(flushPolicy != FlushPolicy.NONE) {
+			flushThread = new Thread(() -> flushPeriodically(flushIntervalMillis), "orderbook-journal-" + symbol);
+			flushThread.setDaemon(true);
+			flushThread.start();
+		} else {
+			flushThread = null;
+		}
+	}
+
+	private void mapFile(boolean writeHeader) {
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal open failed:" + file, e);
+		}
+		if(writeHeader) {
+			region.putInt(0, JournalFormat.MAGIC);
+			region.putInt(4, JournalFormat.VERSION);
+			region.putInt(8, symbol.ordinal());
+			region.putInt(12, regionSize);
+			region.putLong(16, lastSequence);
+			offset = JournalFormat.HEADER_SIZE;
+			if(flushPolicy != FlushPolicy.NONE) {
+				force();
+			}
+		}
+	}
+
+	// Moves everything written so far to <file>.<last sequence> and continues in a new, empty file,
+	// so segments fully covered by a snapshot can be deleted. Called on the writer thread.
+	public Path roll() {
+		if(flushPolicy != FlushPolicy.NONE) {
+			force();
+		}
+		Path segment = file.resolveSibling(file.getFileName() + "." + lastSequence);
+		try {
+			channel.close();
+			Files.move(file, segment, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal roll failed:" + file, e);
+		}
+		regionStart = 0;
+		unflushed = 0;
+		mapFile(true);
+		return segment;
+	}
+
+	@Override
+	public void append(OrderActionType actionType, Order order, String orderId) {
+		// ADD and AMEND carry the order fields, REMOVE only the id
+		boolean add = order != null && actionType != OrderActionType.REMOVE;
+		// convert before touching the mapping so a rejected value leaves no trace
+		long price = add && order.getType().hasLimitPrice() ? BigDecimalUtility.toFixedPoint(order.getPrice()) : 0L;
+		long quantity = add ? BigDecimalUtility.toFixedPoint(order.getQuantity()) : 0L;
+		boolean stop = add && order.getType().isStop();
+		long stopPrice = stop ? BigDecimalUtility.toFixedPoint(order.getStopPrice()) : 0L;
+		boolean latin1 = JournalFormat.isLatin1(orderId);
+		int idSize = JournalFormat.idSize(orderId, latin1);
+		if(idSize > MAX_ID_LENGTH)
+			throw new IllegalArgumentException("Order id too long to journal:" + orderId);
+		String owner = add ? order.getOwner() : null;
+		boolean ownerLatin1 = owner == null || JournalFormat.isLatin1(owner);
+		int ownerSize = owner == null ? 0 : JournalFormat.idSize(owner, ownerLatin1);
+		if(ownerSize > MAX_ID_LENGTH)
+			throw new IllegalArgumentException("Owner too long to journal:" + owner);
+
+		int size = JournalFormat.RECORD_PREFIX + (add ? JournalFormat.ADD_FIELDS : 0) + (stop ? JournalFormat.STOP_FIELDS : 0) + JournalFormat.ID_PREFIX + idSize
+				+ (owner == null ? 0 : JournalFormat.ID_PREFIX + ownerSize);
+		if(size > regionSize - JournalFormat.HEADER_SIZE)
+			throw new IllegalArgumentException("Record larger than journal region:" + size);
+		if(offset + size > regionSize) {
+			nextRegion();
+		}
+
+		MappedByteBuffer buffer = region;
+		int position = offset + 4;
+		buffer.putLong(position, ++lastSequence);
+		buffer.put(position + 8, (byte) (add ? actionType : OrderActionType.REMOVE).ordinal());
+		position += 9;
+		if(add) {
+			buffer.put(position, (byte) order.getSide().ordinal());
+			buffer.put(position + 1, (byte) order.getType().ordinal());
+			buffer.putLong(position + 2, price);
+			buffer.putLong(position + 10, quantity);
+			position += JournalFormat.ADD_FIELDS;
+			if(stop) {
+				buffer.putLong(position, stopPrice);
+				position += JournalFormat.STOP_FIELDS;
+			}
+		}
+		JournalFormat.putId(buffer, position, orderId, latin1);
+		if(owner != null) {
+			JournalFormat.putId(buffer, position + JournalFormat.ID_PREFIX + idSize, owner, ownerLatin1);
+		}
+		// length last, a reader never sees a partially written record
+		buffer.putInt(offset, size - 4);
+		offset += size;
+
+		dirty = true;
+		if(flushPolicy == FlushPolicy.BATCH && ++unflushed >= flushBatch) {
+			flush();
+		}
+	}
+
+	// group commit: a batch ending within the flush interval of the last force is left to the next batch
+	// or the background thread
+	@Override
+	public void endOfBatch() {
+		if(flushPolicy == FlushPolicy.BATCH && unflushed > 0 && System.nanoTime() - lastFlushNanos >= flushIntervalNanos) {
+			flush();
+		}
+	}
+
+	private void nextRegion() {
+		if(offset + 4 <= regionSize) {
+			region.putInt(offset, JournalFormat.SKIP_REGION);
+		}
+		if(flushPolicy != FlushPolicy.NONE) {
+			force();
+		}
+		regionStart += regionSize;
+		offset = 0;
+		try {
+			region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal region map failed:" + file, e);
+		}
+	}
+
+	// msync the current region, one syscall for everything appended since the last flush
+	public void flush() {
+		unflushed = 0;
+		force();
+	}
+
+	private void force() {
+		dirty = false;
+		lastFlushNanos = System.nanoTime();
+		region.force();
+		flushes.incrementAndGet();
+	}
+
+	private void flushPeriodically(long intervalMillis) {
+		while(open) {
+			try {
+				Thread.sleep(intervalMillis);
+			} catch (InterruptedException e) {
+				return;
+			}
+			if(dirty) {
+				force();
+			}
+		}
+	}
+
+	// msyncs issued so far, from either thread
+	public long getFlushCount() {
+		return flushes.get();
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	// sequence of the last appended record
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	@Override
+	public void close() {
+		if(!open) {
+			return;
+		}
+		open = false;
+		if(flushThread != null) {
+			flushThread.interrupt();
+			try {
+				flushThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		force();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Journal close failed:" + file, e);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package m2.orderbook.journal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+
+// Binary encoding of a BookSnapshot:
+//   int magic, int version, int symbol ordinal, long sequence, int order count,
+//   per order: byte side, byte type, long price, long stop price, long quantity (fixed point), UTF order id,
+//              boolean has owner, UTF owner if it has one
+//   long CRC32 of everything before it
+// Orders are stored side by side from best price to worst, in queue order within a price, followed
+// by the parked stops. Version 1 files have no type and stop price, every order in them is a LIMIT;
+// version 1 and 2 files have no owners.
+public final class SnapshotFile {
+
+	private static final int MAGIC = 0x4F42534E;
+	private static final int VERSION = 3;
+	private static final int VERSION_WITHOUT_OWNERS = 2;
+	private static final int VERSION_WITHOUT_STOPS = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private SnapshotFile() {
+	}
+
+	// written to a temporary file, synced and then renamed over the target, a reader never sees half a snapshot
+	public static void write(BookSnapshot snapshot, Path file) {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileOutputStream fileStream = new FileOutputStream(temporary.toFile())) {
+			CRC32 checksum = new CRC32();
+			DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE), checksum));
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(snapshot.getSymbol().ordinal());
+			output.writeLong(snapshot.getSequence());
+			output.writeInt(snapshot.size());
+			for(int i = 0; i < snapshot.size(); i++) {
+				output.writeByte(snapshot.getSide(i).ordinal());
+				output.writeByte(snapshot.getType(i).ordinal());
+				output.writeLong(snapshot.getPrice(i));
+				output.writeLong(snapshot.getStopPrice(i));
+				output.writeLong(snapshot.getQuantity(i));
+				output.writeUTF(snapshot.getOrderId(i));
+				String owner = snapshot.getOwner(i);
+				output.writeBoolean(owner != null);
+				if(owner != null) {
+					output.writeUTF(owner);
+				}
+			}
+			output.writeLong(checksum.getValue());
+			output.flush();
+			fileStream.getFD().sync();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Snapshot write failed:" + temporary, e);
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Snapshot rename failed:" + file, e);
+		}
+	}
+
+	// sequence from the header only, the orders and the checksum are not read
+	public static long readSequence(Path file) {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64))) {
+			if(input.readInt() != MAGIC)
+				throw new IllegalStateException("Not a snapshot file:" + file);
+			int version = input.readInt();
+			if(version < VERSION_WITHOUT_STOPS || version > VERSION)
+				throw new IllegalStateException("Unsupported snapshot version " + version + ":" + file);
+			input.readInt();
+			return input.readLong();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Snapshot read failed:" + file, e);
+		}
+	}
+
+	public static BookSnapshot read(Path file) {
+		try (InputStream fileStream = Files.newInputStream(file)) {
+			CRC32 checksum = new CRC32();
+			DataInputStream input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(fileStream, BUFFER_SIZE), checksum));
+			if(input.readInt() != MAGIC)
+				throw new IllegalStateException("Not a snapshot file:" + file);
+			int version = input.readInt();
+			if(version < VERSION_WITHOUT_STOPS || version > VERSION)
+				throw new IllegalStateException("Unsupported snapshot version " + version + ":" + file);
+			Symbol symbol = Symbol.values()[input.readInt()];
+			long sequence = input.readLong();
+			int size = input.readInt();
+			BookSnapshot snapshot = new BookSnapshot(symbol, sequence, size);
+			for(int i = 0; i < size; i++) {
+				OrderSide side = OrderSide.values()[input.readByte()];
+				Ordertype type = version > VERSION_WITHOUT_STOPS ? Ordertype.values()[input.readByte()] : Ordertype.LIMIT;
+				long price = input.readLong();
+				long stopPrice = version > VERSION_WITHOUT_STOPS ? input.readLong() : 0L;
+				long quantity = input.readLong();
+				String orderId = input.readUTF();
+				String owner = version > VERSION_WITHOUT_OWNERS && input.readBoolean() ? input.readUTF() : null;
+				snapshot.add(side, type, orderId, price, stopPrice, quantity, owner);
+			}
+			long expected = checksum.getValue();
+			if(input.readLong() != expected)
+				throw new IllegalStateException("Snapshot checksum mismatch:" + file);
+			return snapshot;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Snapshot read failed:" + file, e);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package m2.orderbook.loadgen;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import m2.orderbook.enums.ArrivalPattern;
+
+// Gaps between intended send times for a target rate in commands per second, see ArrivalPattern.
+// BURSTY spends on average 20% of the time in busy phases (mean 10ms) at 4x the rate and the rest in
+// quiet phases (mean 40ms) at 1/4, which keeps the long run average at the target rate.
+public class ArrivalSchedule {
+
+	private static final double BUSY_FACTOR = 4.0;
+	private static final double QUIET_FACTOR = 0.25;
+	private static final long BUSY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long QUIET_NANOS = TimeUnit.MILLISECONDS.toNanos(40);
+
+	private final ArrivalPattern pattern;
+	private final double meanGapNanos;
+	private final Random random;
+	private boolean busy;
+	private long phaseLeftNanos;
+
+	public ArrivalSchedule(ArrivalPattern pattern, long commandsPerSecond, long seed) {
+		if(commandsPerSecond <= 0)
+			throw new IllegalArgumentException("Invalid rate:" + commandsPerSecond);
+		this.pattern = pattern;
+		this.meanGapNanos = 1e9 / commandsPerSecond;
+		this.random = new Random(seed);
+		this.phaseLeftNanos = exponential(QUIET_NANOS);
+	}
+
+	public long nextGapNanos() {
+		switch(pattern) {
+		case UNIFORM:
+			return Math.round(meanGapNanos);
+		case POISSON:
+			return exponential(meanGapNanos);
+		case BURSTY:
+			long gap = exponential(meanGapNanos / (busy ? BUSY_FACTOR : QUIET_FACTOR));
+			phaseLeftNanos -= gap;
+			if(phaseLeftNanos <= 0) {
+				busy = !busy;
+				phaseLeftNanos = exponential(busy ? BUSY_NANOS : QUIET_NANOS);
+			}
+			return gap;
+		default:
+			throw new IllegalStateException("Unexpected value: " + pattern);
+		}
+	}
+
+	private long exponential(double mean) {
+		return Math.round(-Math.log(1.0 - random.nextDouble()) * mean);
+	}
+}
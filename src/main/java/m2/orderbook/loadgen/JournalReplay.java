@@ -0,0 +1,31 @@
+package m2.orderbook.loadgen;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.journal.JournalReader;
+
+// Recorded command streams for LoadHarness: the commands of OrderJournal files, file after file.
+// Journals are per symbol, so files of different symbols are not interleaved the way they were recorded.
+// Commands that were rejected when recorded are replayed as well and will most likely be rejected again.
+public class JournalReplay {
+
+	public static List<LoadCommand> read(List<Path> journalFiles) {
+		List<LoadCommand> commands = new ArrayList<>();
+		for(Path file : journalFiles) {
+			JournalReader reader = new JournalReader(file);
+			reader.read((sequence, actionType, order, orderId) -> {
+				if(order == null) {
+					// the header is read before any record, so the symbol is known here
+					Symbol symbol = reader.getSymbol();
+					commands.add(new LoadCommand(symbol, orderId));
+				} else {
+					commands.add(new LoadCommand(actionType, order));
+				}
+			});
+		}
+		return commands;
+	}
+}
@@ -0,0 +1,49 @@
+package m2.orderbook.loadgen;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Symbol;
+
+// one command for LoadHarness, order is null for a cancel by id
+public final class LoadCommand {
+
+	private final OrderActionType actionType;
+	private final Symbol symbol;
+	private final Order order;
+	private final String orderId;
+
+	public LoadCommand(OrderActionType actionType, Order order) {
+		this(actionType, order.getSymbol(), order, order.getOrderId());
+	}
+
+	public LoadCommand(Symbol symbol, String orderId) {
+		this(OrderActionType.REMOVE, symbol, null, orderId);
+	}
+
+	private LoadCommand(OrderActionType actionType, Symbol symbol, Order order, String orderId) {
+		this.actionType = actionType;
+		this.symbol = symbol;
+		this.order = order;
+		this.orderId = orderId;
+	}
+
+	public OrderActionType getActionType() {
+		return actionType;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public Order getOrder() {
+		return order;
+	}
+
+	public String getOrderId() {
+		return orderId;
+	}
+
+	public String toString() {
+		return actionType + " " + (order != null ? order : symbol + " " + orderId);
+	}
+}
@@ -0,0 +1,155 @@
+package m2.orderbook.loadgen;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import m2.orderbook.enums.ArrivalPattern;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.metrics.Histogram;
+import m2.orderbook.service.OrderbookService;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+
+// Drives an OrderbookService from the calling thread with one command in flight at a time, either flat
+// out or paced by an ArrivalSchedule. With a schedule every latency is measured from the time the command
+// was meant to be sent, so a stall also counts against the commands that queued up behind it instead of
+// hiding them (coordinated omission). Flat out runs measure the service call alone.
+// Rejected commands (OrderException) are counted and timed like accepted ones.
+public class LoadHarness {
+
+	// closer than this to the send time the thread spins instead of parking
+	private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final OrderbookService service;
+
+	private final LongSupplier bookSize;
+
+	private final long sampleIntervalNanos;
+
+	// bookSize may be null, samples then report -1
+	public LoadHarness(OrderbookService service, LongSupplier bookSize, long sampleIntervalMillis) {
+		if(sampleIntervalMillis <= 0)
+			throw new IllegalArgumentException("Invalid sample interval:" + sampleIntervalMillis);
+		this.service = service;
+		this.bookSize = bookSize;
+		this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sampleIntervalMillis);
+	}
+
+	public LoadReport run(Iterator<LoadCommand> commands) {
+		return run(commands, null);
+	}
+
+	// schedule null runs flat out
+	public LoadReport run(Iterator<LoadCommand> commands, ArrivalSchedule schedule) {
+		Histogram latency = new Histogram();
+		List<LoadSample> samples = new ArrayList<>();
+		long count = 0;
+		long rejected = 0;
+		long start = System.nanoTime();
+		long intended = start;
+		long nextSample = start + sampleIntervalNanos;
+		long lastSample = start;
+		long lastSampleCount = 0;
+		long now = start;
+		while(commands.hasNext()) {
+			LoadCommand command = commands.next();
+			if(schedule != null) {
+				intended += schedule.nextGapNanos();
+				awaitNanoTime(intended);
+			}
+			long sent = System.nanoTime();
+			try {
+				execute(command);
+			} catch (OrderException e) {
+				rejected++;
+			}
+			now = System.nanoTime();
+			latency.record(now - (schedule != null ? intended : sent));
+			count++;
+			if(now >= nextSample) {
+				samples.add(sample(start, now, lastSample, count, lastSampleCount));
+				lastSample = now;
+				lastSampleCount = count;
+				nextSample = now + sampleIntervalNanos;
+			}
+		}
+		if(count > lastSampleCount) {
+			samples.add(sample(start, now, lastSample, count, lastSampleCount));
+		}
+		return new LoadReport(count, rejected, now - start, latency.snapshot(), samples);
+	}
+
+	private void execute(LoadCommand command) {
+		switch(command.getActionType()) {
+		case ADD:
+			service.placeNewOrder(command.getOrder());
+			break;
+		case AMEND:
+			service.amendOrder(command.getOrder());
+			break;
+		case REMOVE:
+			service.cancelOrder(command.getSymbol(), command.getOrderId());
+			break;
+		default:
+			throw new IllegalStateException("Unexpected value: " + command.getActionType());
+		}
+	}
+
+	private LoadSample sample(long start, long now, long lastSample, long count, long lastSampleCount) {
+		double rate = now == lastSample ? 0 : (count - lastSampleCount) * 1e9 / (now - lastSample);
+		return new LoadSample(now - start, count, rate, bookSize == null ? -1 : bookSize.getAsLong());
+	}
+
+	private static void awaitNanoTime(long deadline) {
+		long left;
+		while((left = deadline - System.nanoTime()) > 0) {
+			if(left > SPIN_NANOS) {
+				LockSupport.parkNanos(left - SPIN_NANOS);
+			} else {
+				Thread.onSpinWait();
+			}
+		}
+	}
+
+	//   java m2.orderbook.loadgen.LoadHarness [commands] [rate per second, 0 = flat out] [arrival pattern] [journal files...]
+	// Without journal files a synthetic stream over every symbol is generated, with them the files are replayed
+	// and the command count is ignored. Runs against fixed point books behind ShardedOrderbookServiceImpl.
+	public static void main(String[] args) {
+		long commands = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+		long rate = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		ArrivalPattern pattern = args.length > 2 ? ArrivalPattern.valueOf(args[2]) : ArrivalPattern.POISSON;
+		List<Path> journals = new ArrayList<>();
+		for(int i = 3; i < args.length; i++) {
+			journals.add(Paths.get(args[i]));
+		}
+		Iterator<LoadCommand> stream = journals.isEmpty()
+				? new SyntheticOrderStream(new LoadProfile(EnumSet.allOf(Symbol.class), 42), commands)
+				: JournalReplay.read(journals).iterator();
+
+		try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP)) {
+			service.initializeOrderBook();
+			LongSupplier bookSize = () -> {
+				long resting = 0;
+				for(Symbol symbol : service.getSymbols()) {
+					resting += service.getMetrics(symbol).getRestingOrders();
+				}
+				return resting;
+			};
+			LoadHarness harness = new LoadHarness(service, bookSize, 1000);
+			LoadReport report = harness.run(stream, rate > 0 ? new ArrivalSchedule(pattern, rate, 42) : null);
+			System.out.print(report);
+			for(Symbol symbol : service.getSymbols()) {
+				System.out.print(service.getMetrics(symbol).snapshot());
+			}
+		}
+	}
+}
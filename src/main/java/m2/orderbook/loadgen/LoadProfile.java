@@ -0,0 +1,78 @@
+package m2.orderbook.loadgen;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Set;
+
+import m2.orderbook.enums.Symbol;
+
+// Shape of a SyntheticOrderStream. The percentages split commands between limit adds, cancels of
+// earlier adds and market orders. Every symbol's mid price starts at startPrice and walks one tick at a
+// time, limit prices sit up to levels ticks behind the mid and occasionally cross it.
+public class LoadProfile {
+
+	private final Set<Symbol> symbols;
+	private final int addPercent;
+	private final int cancelPercent;
+	private final int marketPercent;
+	private final BigDecimal startPrice;
+	private final BigDecimal tickSize;
+	private final int levels;
+	private final long seed;
+
+	// 60% adds, 30% cancels, 10% market orders around 100 in cent ticks
+	public LoadProfile(Set<Symbol> symbols, long seed) {
+		this(symbols, 60, 30, 10, new BigDecimal(100), new BigDecimal("0.01"), 50, seed);
+	}
+
+	public LoadProfile(Set<Symbol> symbols, int addPercent, int cancelPercent, int marketPercent,
+			BigDecimal startPrice, BigDecimal tickSize, int levels, long seed) {
+		if(symbols == null || symbols.isEmpty())
+			throw new IllegalArgumentException("At least one symbol is required");
+		if(addPercent <= 0 || cancelPercent < 0 || marketPercent < 0 || addPercent + cancelPercent + marketPercent != 100)
+			throw new IllegalArgumentException("Invalid command mix:" + addPercent + "/" + cancelPercent + "/" + marketPercent);
+		if(tickSize == null || tickSize.signum() <= 0 || levels <= 0 || startPrice == null
+				|| startPrice.compareTo(tickSize.multiply(BigDecimal.valueOf(2L * levels))) < 0)
+			throw new IllegalArgumentException("Start price must leave room for " + levels + " levels of " + tickSize);
+		this.symbols = EnumSet.copyOf(symbols);
+		this.addPercent = addPercent;
+		this.cancelPercent = cancelPercent;
+		this.marketPercent = marketPercent;
+		this.startPrice = startPrice;
+		this.tickSize = tickSize;
+		this.levels = levels;
+		this.seed = seed;
+	}
+
+	public Set<Symbol> getSymbols() {
+		return symbols;
+	}
+
+	public int getAddPercent() {
+		return addPercent;
+	}
+
+	public int getCancelPercent() {
+		return cancelPercent;
+	}
+
+	public int getMarketPercent() {
+		return marketPercent;
+	}
+
+	public BigDecimal getStartPrice() {
+		return startPrice;
+	}
+
+	public BigDecimal getTickSize() {
+		return tickSize;
+	}
+
+	public int getLevels() {
+		return levels;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+}
@@ -0,0 +1,61 @@
+package m2.orderbook.loadgen;
+
+import java.util.List;
+
+import m2.orderbook.metrics.HistogramSnapshot;
+
+// outcome of a LoadHarness run, latencies in nanoseconds
+public final class LoadReport {
+
+	private final long commands;
+	private final long rejected;
+	private final long elapsedNanos;
+	private final HistogramSnapshot latency;
+	private final List<LoadSample> samples;
+
+	LoadReport(long commands, long rejected, long elapsedNanos, HistogramSnapshot latency, List<LoadSample> samples) {
+		this.commands = commands;
+		this.rejected = rejected;
+		this.elapsedNanos = elapsedNanos;
+		this.latency = latency;
+		this.samples = samples;
+	}
+
+	public long getCommands() {
+		return commands;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	// commands per second over the whole run
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : commands * 1e9 / elapsedNanos;
+	}
+
+	// measured from the intended send time when the run had a target rate, see LoadHarness
+	public HistogramSnapshot getLatency() {
+		return latency;
+	}
+
+	public List<LoadSample> getSamples() {
+		return samples;
+	}
+
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append("commands=").append(commands).append(" rejected=").append(rejected)
+				.append(" elapsed=").append(elapsedNanos / 1_000_000).append("ms")
+				.append(" throughput=").append(Math.round(getThroughput())).append("/s\n");
+		report.append("  latency ns: ").append(latency).append('\n');
+		for(LoadSample sample : samples) {
+			report.append("  ").append(sample).append('\n');
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,40 @@
+package m2.orderbook.loadgen;
+
+// one point of the throughput/book size timeline of a LoadHarness run
+public final class LoadSample {
+
+	private final long elapsedNanos;
+	private final long commands;
+	private final double commandsPerSecond;
+	private final long bookSize;
+
+	LoadSample(long elapsedNanos, long commands, double commandsPerSecond, long bookSize) {
+		this.elapsedNanos = elapsedNanos;
+		this.commands = commands;
+		this.commandsPerSecond = commandsPerSecond;
+		this.bookSize = bookSize;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	// commands completed since the start of the run
+	public long getCommands() {
+		return commands;
+	}
+
+	// throughput over the interval that ended with this sample
+	public double getCommandsPerSecond() {
+		return commandsPerSecond;
+	}
+
+	// resting orders at the time of the sample, -1 without a book size probe
+	public long getBookSize() {
+		return bookSize;
+	}
+
+	public String toString() {
+		return elapsedNanos / 1_000_000 + "ms commands=" + commands + " rate=" + Math.round(commandsPerSecond) + "/s book=" + bookSize;
+	}
+}
@@ -0,0 +1,110 @@
+package m2.orderbook.loadgen;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.util.OrderUtility;
+
+// Endless or bounded stream of commands following a LoadProfile. The same seed gives the same sequence of
+// symbols, sides, prices and quantities, only the order ids differ between runs (see OrderUtility.getOrderId).
+// Cancels pick a random earlier add of the same symbol, which may have been filled in the meantime,
+// so part of them are rejected by the book like late cancels in a real market.
+public class SyntheticOrderStream implements Iterator<LoadCommand> {
+
+	// chance that a limit price is placed one level further from the mid
+	private static final double LEVEL_DECAY = 0.9;
+
+	// chance that the mid moves by a tick before an add
+	private static final double WALK_CHANCE = 0.2;
+
+	// chance that a limit order crosses the mid and takes liquidity
+	private static final double CROSS_CHANCE = 0.1;
+
+	private static final int MAX_QUANTITY = 10;
+
+	private final LoadProfile profile;
+	private final Symbol[] symbols;
+	private final Random random;
+	private final long[] midTicks = new long[Symbol.values().length];
+	private final List<List<String>> liveOrders = new ArrayList<>();
+	private final long limit;
+	private long generated;
+
+	// commands < 0 for an endless stream
+	public SyntheticOrderStream(LoadProfile profile, long commands) {
+		this.profile = profile;
+		this.symbols = profile.getSymbols().toArray(new Symbol[0]);
+		this.random = new Random(profile.getSeed());
+		this.limit = commands;
+		long startTicks = profile.getStartPrice().divideToIntegralValue(profile.getTickSize()).longValueExact();
+		for(Symbol symbol : Symbol.values()) {
+			midTicks[symbol.ordinal()] = startTicks;
+			liveOrders.add(new ArrayList<>());
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return limit < 0 || generated < limit;
+	}
+
+	@Override
+	public LoadCommand next() {
+		if(!hasNext())
+			throw new NoSuchElementException();
+		generated++;
+		Symbol symbol = symbols[random.nextInt(symbols.length)];
+		List<String> live = liveOrders.get(symbol.ordinal());
+		int roll = random.nextInt(100);
+		if(roll < profile.getCancelPercent() && !live.isEmpty()) {
+			// swap remove keeps the pick O(1)
+			int index = random.nextInt(live.size());
+			String orderId = live.get(index);
+			live.set(index, live.get(live.size() - 1));
+			live.remove(live.size() - 1);
+			return new LoadCommand(symbol, orderId);
+		}
+		OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+		BigDecimal quantity = BigDecimal.valueOf(1 + random.nextInt(MAX_QUANTITY));
+		String orderId = OrderUtility.getOrderId();
+		if(roll >= 100 - profile.getMarketPercent()) {
+			return new LoadCommand(OrderActionType.ADD, new Order(symbol, orderId, null, quantity, side, Ordertype.MARKET));
+		}
+		Order order = new Order(symbol, orderId, nextLimitPrice(symbol, side), quantity, side, Ordertype.LIMIT);
+		live.add(orderId);
+		return new LoadCommand(OrderActionType.ADD, order);
+	}
+
+	// random walk of the mid, then a distance from it that falls off geometrically
+	private BigDecimal nextLimitPrice(Symbol symbol, OrderSide side) {
+		int levels = profile.getLevels();
+		long mid = midTicks[symbol.ordinal()];
+		if(random.nextDouble() < WALK_CHANCE) {
+			mid = Math.max(mid + (random.nextBoolean() ? 1 : -1), levels + 1);
+			midTicks[symbol.ordinal()] = mid;
+		}
+
+		int distance = 0;
+		while(distance < levels - 1 && random.nextDouble() < LEVEL_DECAY) {
+			distance++;
+		}
+		if(random.nextDouble() < CROSS_CHANCE) {
+			distance = -1 - random.nextInt(2);
+		}
+		long ticks = side == OrderSide.BUY ? mid - distance : mid + distance;
+		return profile.getTickSize().multiply(BigDecimal.valueOf(ticks));
+	}
+
+	public long getGenerated() {
+		return generated;
+	}
+}
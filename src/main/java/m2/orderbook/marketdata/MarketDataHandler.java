@@ -0,0 +1,19 @@
+package m2.orderbook.marketdata;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Symbol;
+
+// Subscriber of a MarketDataPublisher, called on the publisher thread. Prices and quantities are fixed point.
+// A subscriber first gets a snapshot per book, then per tick the levels that changed followed by onUpdateEnd.
+public interface MarketDataHandler {
+
+	// full depth of a book as of sequence, the depth is reused after the call returns
+	void onSnapshot(MarketDepth depth, long sequence);
+
+	// a level whose quantity or order count changed since the previous tick, quantity 0 means it is gone
+	void onLevelChanged(Symbol symbol, OrderSide side, long price, long quantity, int orderCount);
+
+	// the changes of one book for this tick are complete, sequence goes up by one per update
+	void onUpdateEnd(Symbol symbol, long sequence);
+}
@@ -0,0 +1,273 @@
+package m2.orderbook.marketdata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.engine.TopOfBook;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+
+// Conflated depth feed. The matching threads only count their updates (onUpdateComplete); a publisher thread
+// ticks every intervalMillis, or earlier once a book has seen changeThreshold updates, reads each changed
+// book from its lock free TopOfBook and sends the levels that differ from the previous tick.
+// However many orders hit a book in between, a tick costs one read and at most one update per changed level,
+// so the feed rate is bounded by the tick rate and not by the order rate.
+// Books are added with addBook once the engines exist; late subscribers get a snapshot of every book
+// before their first update.
+public class MarketDataPublisher implements OrderEventListener, AutoCloseable {
+
+	private static final OrderSide[] SIDES = OrderSide.values();
+
+	private static final class BookFeed {
+		final TopOfBook book;
+		MarketDepth last;
+		MarketDepth current;
+		long version = -1;
+		long sequence;
+
+		BookFeed(TopOfBook book) {
+			this.book = book;
+			this.last = new MarketDepth(book.getMaxLevels());
+			this.current = new MarketDepth(book.getMaxLevels());
+		}
+	}
+
+	private final long intervalNanos;
+	private final int changeThreshold;
+	// updates per symbol since the last tick
+	private final AtomicIntegerArray changes = new AtomicIntegerArray(Symbol.values().length);
+	private final Queue<TopOfBook> addedBooks = new ConcurrentLinkedQueue<>();
+	private final Queue<MarketDataHandler> joiners = new ConcurrentLinkedQueue<>();
+	private final Queue<MarketDataHandler> leavers = new ConcurrentLinkedQueue<>();
+	// owned by the publisher thread
+	private final List<BookFeed> feeds = new ArrayList<>();
+	private final List<MarketDataHandler> handlers = new ArrayList<>();
+	private final AtomicLong ticks = new AtomicLong();
+	private final AtomicLong levelUpdates = new AtomicLong();
+	private final AtomicLong bookUpdates = new AtomicLong();
+	private final AtomicLong handlerErrors = new AtomicLong();
+	private final Thread publisher;
+	private volatile boolean running = true;
+
+	// changeThreshold 0 ticks on the interval only
+	public MarketDataPublisher(long intervalMillis, int changeThreshold) {
+		if(intervalMillis <= 0 || changeThreshold < 0)
+			throw new IllegalArgumentException();
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		this.changeThreshold = changeThreshold;
+		this.publisher = new Thread(this::publish, "orderbook-market-data");
+		this.publisher.setDaemon(true);
+		this.publisher.start();
+	}
+
+	public void addBook(TopOfBook book) {
+		if(book == null)
+			throw new IllegalArgumentException();
+		addedBooks.add(book);
+		LockSupport.unpark(publisher);
+	}
+
+	public void subscribe(MarketDataHandler handler) {
+		if(handler == null)
+			throw new IllegalArgumentException();
+		joiners.add(handler);
+		LockSupport.unpark(publisher);
+	}
+
+	// takes effect on the next tick
+	public void unsubscribe(MarketDataHandler handler) {
+		leavers.add(handler);
+	}
+
+	@Override
+	public void onUpdateComplete(Symbol symbol) {
+		if(changes.incrementAndGet(symbol.ordinal()) == changeThreshold) {
+			LockSupport.unpark(publisher);
+		}
+	}
+
+	private void publish() {
+		long nextTick = System.nanoTime();
+		while(running) {
+			long now = System.nanoTime();
+			if(now - nextTick < 0 && !thresholdReached() && addedBooks.isEmpty() && joiners.isEmpty()) {
+				LockSupport.parkNanos(nextTick - now);
+				continue;
+			}
+			tick();
+			nextTick = now + intervalNanos;
+		}
+		// last tick so nothing matched before close goes unpublished
+		tick();
+	}
+
+	private boolean thresholdReached() {
+		if(changeThreshold == 0) {
+			return false;
+		}
+		for(int i = 0; i < changes.length(); i++) {
+			if(changes.get(i) >= changeThreshold) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void tick() {
+		ticks.incrementAndGet();
+		for(int i = 0; i < changes.length(); i++) {
+			changes.set(i, 0);
+		}
+		handlers.removeAll(drain(leavers));
+		TopOfBook added;
+		while((added = addedBooks.poll()) != null) {
+			BookFeed feed = new BookFeed(added);
+			read(feed);
+			feeds.add(feed);
+			for(MarketDataHandler handler : handlers) {
+				snapshot(handler, feed);
+			}
+		}
+		for(MarketDataHandler joiner : drain(joiners)) {
+			for(BookFeed feed : feeds) {
+				snapshot(joiner, feed);
+			}
+			handlers.add(joiner);
+		}
+		for(BookFeed feed : feeds) {
+			if(feed.book.getVersion() != feed.version) {
+				update(feed);
+			}
+		}
+	}
+
+	private static List<MarketDataHandler> drain(Queue<MarketDataHandler> queue) {
+		List<MarketDataHandler> drained = new ArrayList<>();
+		MarketDataHandler handler;
+		while((handler = queue.poll()) != null) {
+			drained.add(handler);
+		}
+		return drained;
+	}
+
+	// reads the book into feed.last, a version that moves during the read only causes one more diff later
+	private static void read(BookFeed feed) {
+		feed.version = feed.book.getVersion();
+		feed.book.read(feed.last);
+	}
+
+	private void snapshot(MarketDataHandler handler, BookFeed feed) {
+		try {
+			handler.onSnapshot(feed.last, feed.sequence);
+		} catch (RuntimeException e) {
+			handlerErrors.incrementAndGet();
+		}
+	}
+
+	private void update(BookFeed feed) {
+		long version = feed.book.getVersion();
+		feed.book.read(feed.current);
+		int changed = 0;
+		for(OrderSide side : SIDES) {
+			changed += diff(feed.last, feed.current, side);
+		}
+		MarketDepth previous = feed.last;
+		feed.last = feed.current;
+		feed.current = previous;
+		feed.version = version;
+		if(changed == 0) {
+			return;
+		}
+		feed.sequence++;
+		bookUpdates.incrementAndGet();
+		levelUpdates.addAndGet(changed);
+		Symbol symbol = feed.book.getSymbol();
+		for(MarketDataHandler handler : handlers) {
+			try {
+				handler.onUpdateEnd(symbol, feed.sequence);
+			} catch (RuntimeException e) {
+				handlerErrors.incrementAndGet();
+			}
+		}
+	}
+
+	// sends the levels of side that are new or different in current and the ones gone from it, returns how many
+	private int diff(MarketDepth last, MarketDepth current, OrderSide side) {
+		int changed = 0;
+		for(int level = 0; level < current.getLevelCount(side); level++) {
+			long price = current.getPrice(side, level);
+			long quantity = current.getQuantity(side, level);
+			int orderCount = current.getOrderCount(side, level);
+			int before = find(last, side, price);
+			if(before < 0 || last.getQuantity(side, before) != quantity || last.getOrderCount(side, before) != orderCount) {
+				levelChanged(current.getSymbol(), side, price, quantity, orderCount);
+				changed++;
+			}
+		}
+		for(int level = 0; level < last.getLevelCount(side); level++) {
+			long price = last.getPrice(side, level);
+			if(find(current, side, price) < 0) {
+				levelChanged(current.getSymbol(), side, price, 0L, 0);
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+	// depth is at most TopOfBook.DEFAULT_LEVELS deep in practice, a scan beats a lookup structure
+	private static int find(MarketDepth depth, OrderSide side, long price) {
+		for(int level = 0; level < depth.getLevelCount(side); level++) {
+			if(depth.getPrice(side, level) == price) {
+				return level;
+			}
+		}
+		return -1;
+	}
+
+	private void levelChanged(Symbol symbol, OrderSide side, long price, long quantity, int orderCount) {
+		for(MarketDataHandler handler : handlers) {
+			try {
+				handler.onLevelChanged(symbol, side, price, quantity, orderCount);
+			} catch (RuntimeException e) {
+				handlerErrors.incrementAndGet();
+			}
+		}
+	}
+
+	public long getTicks() {
+		return ticks.get();
+	}
+
+	// books that changed on a tick, each one onUpdateEnd per subscriber
+	public long getBookUpdates() {
+		return bookUpdates.get();
+	}
+
+	public long getLevelUpdates() {
+		return levelUpdates.get();
+	}
+
+	public long getHandlerErrors() {
+		return handlerErrors.get();
+	}
+
+	// publishes the final state and stops the publisher thread
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(publisher);
+		try {
+			publisher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
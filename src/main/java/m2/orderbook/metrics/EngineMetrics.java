@@ -0,0 +1,88 @@
+package m2.orderbook.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import m2.orderbook.enums.LatencyType;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+
+// Latency and activity figures for one book. The record methods are called by the engine with its
+// lock held and never allocate; snapshot() may be called from any thread at any time.
+// Latencies are in nanoseconds.
+public class EngineMetrics {
+
+	private final Symbol symbol;
+	private final Histogram[] latencies = new Histogram[LatencyType.values().length];
+	private final Histogram[] orderTypeLatencies = new Histogram[Ordertype.values().length];
+	private final Histogram levelsPerOrder = new Histogram();
+	private final AtomicLong orders = new AtomicLong();
+	private final AtomicLong fills = new AtomicLong();
+	private final AtomicLong cancels = new AtomicLong();
+	private final AtomicLong amends = new AtomicLong();
+	private final AtomicLong rejects = new AtomicLong();
+	private final AtomicLong restingOrders = new AtomicLong();
+
+	public EngineMetrics(Symbol symbol) {
+		this.symbol = symbol;
+		for(int i = 0; i < latencies.length; i++) {
+			latencies[i] = new Histogram();
+		}
+		for(int i = 0; i < orderTypeLatencies.length; i++) {
+			orderTypeLatencies[i] = new Histogram();
+		}
+	}
+
+	// an ADD that was accepted (or a stop that triggered); levels is the number of opposite price levels it traded through
+	public void recordOrder(Ordertype type, long latencyNanos, int orderFills, int levels, int restingOrderCount) {
+		LatencyType latencyType = (type.canRest() || type.isStop()) && orderFills == 0 ? LatencyType.ADD : LatencyType.MATCH;
+		latencies[latencyType.ordinal()].record(latencyNanos);
+		orderTypeLatencies[type.ordinal()].record(latencyNanos);
+		levelsPerOrder.record(levels);
+		orders.lazySet(orders.get() + 1);
+		fills.lazySet(fills.get() + orderFills);
+		restingOrders.lazySet(restingOrderCount);
+	}
+
+	public void recordCancel(long latencyNanos, int restingOrderCount) {
+		latencies[LatencyType.CANCEL.ordinal()].record(latencyNanos);
+		cancels.lazySet(cancels.get() + 1);
+		restingOrders.lazySet(restingOrderCount);
+	}
+
+	public void recordAmend(long latencyNanos, int orderFills, int restingOrderCount) {
+		latencies[LatencyType.AMEND.ordinal()].record(latencyNanos);
+		amends.lazySet(amends.get() + 1);
+		fills.lazySet(fills.get() + orderFills);
+		restingOrders.lazySet(restingOrderCount);
+	}
+
+	// a command the engine refused (invalid, duplicate id, unknown id on cancel or amend)
+	public void recordReject() {
+		rejects.lazySet(rejects.get() + 1);
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	// as of the last command, cheap enough to poll without taking a snapshot
+	public long getRestingOrders() {
+		return restingOrders.get();
+	}
+
+	// copies the current figures without stopping the engine
+	public MetricsSnapshot snapshot() {
+		Map<LatencyType, HistogramSnapshot> latencySnapshots = new EnumMap<>(LatencyType.class);
+		for(LatencyType latencyType : LatencyType.values()) {
+			latencySnapshots.put(latencyType, latencies[latencyType.ordinal()].snapshot());
+		}
+		Map<Ordertype, HistogramSnapshot> orderTypeSnapshots = new EnumMap<>(Ordertype.class);
+		for(Ordertype type : Ordertype.values()) {
+			orderTypeSnapshots.put(type, orderTypeLatencies[type.ordinal()].snapshot());
+		}
+		return new MetricsSnapshot(symbol, latencySnapshots, orderTypeSnapshots, levelsPerOrder.snapshot(),
+				orders.get(), fills.get(), cancels.get(), amends.get(), rejects.get(), restingOrders.get());
+	}
+}
@@ -0,0 +1,65 @@
+package m2.orderbook.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of non negative longs in the style of HdrHistogram: exact below 256,
+// above that 128 sub-buckets per power of two, so any recorded value is reported within 1%.
+// Fixed size (about 7k buckets), recording never allocates.
+// One writer at a time (the engine, under its lock); readers may snapshot concurrently, each bucket
+// is read atomically but the snapshot is not a single point in time across buckets.
+public final class Histogram {
+
+	static final int SUB_BUCKET_BITS = 7;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+
+	public void record(long value) {
+		if(value < 0) {
+			value = 0;
+		}
+		int bucket = bucketOf(value);
+		// single writer, an ordered store is enough and avoids a locked instruction
+		counts.lazySet(bucket, counts.get(bucket) + 1);
+		sum.lazySet(sum.get() + value);
+		if(value > max.get()) {
+			max.lazySet(value);
+		}
+		count.lazySet(count.get() + 1);
+	}
+
+	static int bucketOf(long value) {
+		if(value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	// highest value that falls into the bucket
+	static long highestValueOf(int bucket) {
+		if(bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long top = bucket - shift * SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public HistogramSnapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new HistogramSnapshot(copy, max.get(), sum.get());
+	}
+}
@@ -0,0 +1,72 @@
+package m2.orderbook.metrics;
+
+// immutable copy of a Histogram taken by a reader, percentiles are computed from the copy
+public final class HistogramSnapshot {
+
+	private final long[] counts;
+	private final long count;
+	private final long max;
+	private final long sum;
+
+	HistogramSnapshot(long[] counts, long max, long sum) {
+		this.counts = counts;
+		long total = 0;
+		for(long bucketCount : counts) {
+			total += bucketCount;
+		}
+		this.count = total;
+		this.max = max;
+		this.sum = sum;
+	}
+
+	// combined distribution of several snapshots, e.g. one histogram per client session
+	public static HistogramSnapshot merge(Iterable<HistogramSnapshot> snapshots) {
+		long[] merged = new long[Histogram.BUCKETS];
+		long max = 0;
+		long sum = 0;
+		for(HistogramSnapshot snapshot : snapshots) {
+			for(int i = 0; i < merged.length; i++) {
+				merged[i] += snapshot.counts[i];
+			}
+			max = Math.max(max, snapshot.max);
+			sum += snapshot.sum;
+		}
+		return new HistogramSnapshot(merged, max, sum);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	// value at or below which the given percentage (0..100) of the recorded values fall, 0 when empty
+	public long getValueAtPercentile(double percentile) {
+		if(count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+		long seen = 0;
+		for(int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if(seen >= rank) {
+				return Math.min(Histogram.highestValueOf(bucket), max);
+			}
+		}
+		return max;
+	}
+
+	public String toString() {
+		return "count=" + count
+				+ " p50=" + getValueAtPercentile(50)
+				+ " p99=" + getValueAtPercentile(99)
+				+ " p99.9=" + getValueAtPercentile(99.9)
+				+ " max=" + max;
+	}
+}
@@ -0,0 +1,92 @@
+package m2.orderbook.metrics;
+
+import java.util.Map;
+
+import m2.orderbook.enums.LatencyType;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+
+// point in time export of EngineMetrics, latencies in nanoseconds
+public final class MetricsSnapshot {
+
+	private final Symbol symbol;
+	private final Map<LatencyType, HistogramSnapshot> latencies;
+	private final Map<Ordertype, HistogramSnapshot> orderTypeLatencies;
+	private final HistogramSnapshot levelsPerOrder;
+	private final long orders;
+	private final long fills;
+	private final long cancels;
+	private final long amends;
+	private final long rejects;
+	private final long restingOrders;
+
+	MetricsSnapshot(Symbol symbol, Map<LatencyType, HistogramSnapshot> latencies, Map<Ordertype, HistogramSnapshot> orderTypeLatencies,
+			HistogramSnapshot levelsPerOrder, long orders, long fills, long cancels, long amends, long rejects, long restingOrders) {
+		this.symbol = symbol;
+		this.latencies = latencies;
+		this.orderTypeLatencies = orderTypeLatencies;
+		this.levelsPerOrder = levelsPerOrder;
+		this.orders = orders;
+		this.fills = fills;
+		this.cancels = cancels;
+		this.amends = amends;
+		this.rejects = rejects;
+		this.restingOrders = restingOrders;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public HistogramSnapshot getLatency(LatencyType latencyType) {
+		return latencies.get(latencyType);
+	}
+
+	public HistogramSnapshot getLatency(Ordertype type) {
+		return orderTypeLatencies.get(type);
+	}
+
+	// opposite side price levels traded through per accepted order
+	public HistogramSnapshot getLevelsPerOrder() {
+		return levelsPerOrder;
+	}
+
+	public long getOrders() {
+		return orders;
+	}
+
+	public long getFills() {
+		return fills;
+	}
+
+	public long getCancels() {
+		return cancels;
+	}
+
+	public long getAmends() {
+		return amends;
+	}
+
+	public long getRejects() {
+		return rejects;
+	}
+
+	public long getRestingOrders() {
+		return restingOrders;
+	}
+
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append(symbol).append(" orders=").append(orders).append(" fills=").append(fills)
+				.append(" cancels=").append(cancels).append(" amends=").append(amends).append(" rejects=").append(rejects)
+				.append(" resting=").append(restingOrders).append('\n');
+		for(Map.Entry<LatencyType, HistogramSnapshot> entry : latencies.entrySet()) {
+			report.append("  ").append(entry.getKey()).append(" ns: ").append(entry.getValue()).append('\n');
+		}
+		for(Map.Entry<Ordertype, HistogramSnapshot> entry : orderTypeLatencies.entrySet()) {
+			report.append("  ").append(entry.getKey()).append(" ns: ").append(entry.getValue()).append('\n');
+		}
+		report.append("  levels/order: ").append(levelsPerOrder).append('\n');
+		return report.toString();
+	}
+}
@@ -0,0 +1,190 @@
+package m2.orderbook.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.MatchingEngineFactory;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Symbol;
+
+// Hot standby for one Symbol: applies the command stream of a ReplicationPrimary to its own book,
+// in sequence order on a single applier thread, and acknowledges every batch by sequence.
+// Commands the engine rejects were rejected the same way on the primary (see JournalReader.replay).
+// When the primary goes away the replica keeps its book as of getAppliedSequence; promote stops
+// replication and hands the book over so it can take the primary's place.
+public class ReplicaNode implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 64 << 10;
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+	private final Symbol symbol;
+
+	private final MatchingEngine engine;
+
+	private final Socket socket;
+
+	private final Thread applier;
+
+	private final Object applied = new Object();
+
+	private volatile long appliedSequence;
+
+	private volatile boolean connected;
+
+	private volatile IOException failure;
+
+	public ReplicaNode(String host, int port, Symbol symbol, EngineMode engineMode) {
+		this(host, port, MatchingEngineFactory.create(symbol, engineMode), 0L);
+	}
+
+	// engine must hold the book as of appliedSequence, e.g. a fresh book and 0
+	public ReplicaNode(String host, int port, MatchingEngine engine, long appliedSequence) {
+		if(engine == null || appliedSequence < 0)
+			throw new IllegalArgumentException();
+		this.symbol = engine.getSymbol();
+		this.engine = engine;
+		this.appliedSequence = appliedSequence;
+		DataInputStream in;
+		DataOutputStream out;
+		try {
+			socket = new Socket();
+			socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			ReplicationProtocol.writeHello(out, symbol, appliedSequence);
+			out.flush();
+			if(in.readByte() != ReplicationProtocol.ACCEPTED) {
+				String reason = in.readUTF();
+				socket.close();
+				throw new IllegalStateException("Replication rejected: " + reason);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot replicate from " + host + ":" + port, e);
+		}
+		connected = true;
+		applier = new Thread(() -> apply(in, out), "orderbook-replica-" + symbol);
+		applier.setDaemon(true);
+		applier.start();
+	}
+
+	private void apply(DataInputStream in, DataOutputStream out) {
+		try {
+			while(true) {
+				ReplicationProtocol.readBatch(in, symbol, this::applyRecord);
+				out.writeLong(appliedSequence);
+				out.flush();
+				synchronized(applied) {
+					applied.notifyAll();
+				}
+			}
+		} catch (IOException e) {
+			// primary gone, or close(); the book stays as of appliedSequence
+			failure = e;
+		} catch (IllegalStateException e) {
+			// a gap in the stream, nothing after it can be applied
+			failure = new IOException(e.getMessage(), e);
+		} finally {
+			connected = false;
+			synchronized(applied) {
+				applied.notifyAll();
+			}
+		}
+	}
+
+	private void applyRecord(long sequence, OrderActionType actionType, Order order, String orderId) {
+		// a reconnect may resend the start of a batch that was applied before
+		if(sequence <= appliedSequence) {
+			return;
+		}
+		if(sequence != appliedSequence + 1)
+			throw new IllegalStateException("Replication gap for " + symbol + ": expected " + (appliedSequence + 1) + " got " + sequence);
+		try {
+			if(order == null) {
+				engine.cancelOrder(orderId);
+			} else {
+				engine.executeOrder(order, actionType);
+			}
+		} catch (RuntimeException e) {
+			// rejected on the primary as well
+		}
+		appliedSequence = sequence;
+	}
+
+	// waits until sequence is applied, false on timeout or when the primary is gone before that
+	public boolean awaitSequence(long sequence, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized(applied) {
+			long left;
+			while(appliedSequence < sequence && connected && (left = deadline - System.currentTimeMillis()) > 0) {
+				applied.wait(left);
+			}
+		}
+		return appliedSequence >= sequence;
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
+	}
+
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	public boolean isConnected() {
+		return connected;
+	}
+
+	// why replication stopped (primary lost, close or a gap), null while connected
+	public IOException getFailure() {
+		return failure;
+	}
+
+	// Stops replicating and returns the book for this node to serve from, it holds every command up to
+	// getAppliedSequence. Only the caller may touch the engine afterwards.
+	public MatchingEngine promote() {
+		close();
+		return engine;
+	}
+
+	@Override
+	public void close() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// the applier exits either way
+		}
+		try {
+			applier.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//   java m2.orderbook.replication.ReplicaNode [host] [port] [symbol]
+	// replicates one symbol of a ReplicationPrimary into a fixed point book and reports its progress
+	public static void main(String[] args) throws InterruptedException {
+		String host = args.length > 0 ? args[0] : "127.0.0.1";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 7101;
+		Symbol symbol = args.length > 2 ? Symbol.valueOf(args[2]) : Symbol.BTC;
+		ReplicaNode replica = new ReplicaNode(host, port, symbol, EngineMode.FIXED_POINT);
+		System.out.println("Replicating " + symbol + " from " + host + ":" + port);
+		while(replica.isConnected()) {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+			System.out.println(symbol + " applied " + replica.getAppliedSequence());
+		}
+		MatchingEngine book = replica.promote();
+		System.out.println("Primary lost (" + replica.getFailure() + "), promoted at sequence " + replica.getAppliedSequence()
+				+ " with best bid " + book.getTopOfBook().getBestBid() + " best ask " + book.getTopOfBook().getBestAsk());
+	}
+}
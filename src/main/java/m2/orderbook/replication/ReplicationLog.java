@@ -0,0 +1,166 @@
+package m2.orderbook.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.metrics.Histogram;
+import m2.orderbook.sequencer.CommandJournal;
+
+// The replicated command stream of one Symbol. The matching thread encodes every command into a scratch
+// buffer and hands the whole sequencer batch over at endOfBatch, the only shared step is appending it to
+// the retained batches under a short lock. Sender threads pick batches up from there, socket writes never
+// happen on the matching thread.
+// The last retainedRecords records are kept for replicas that connect late or reconnect.
+final class ReplicationLog implements CommandJournal {
+
+	static final class Batch {
+		final long firstSequence;
+		final long lastSequence;
+		final int records;
+		final byte[] bytes;
+
+		Batch(long firstSequence, long lastSequence, int records, byte[] bytes) {
+			this.firstSequence = firstSequence;
+			this.lastSequence = lastSequence;
+			this.records = records;
+			this.bytes = bytes;
+		}
+	}
+
+	private final Symbol symbol;
+	private final int retainedRecords;
+
+	// matching thread only
+	private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(4096);
+	private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+	private long sequence;
+	private int batchRecords;
+	private long batchNanos;
+
+	// guarded by this
+	private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+	private long retained;
+
+	private volatile long lastSequence;
+	private final AtomicLong ackedSequence = new AtomicLong();
+	private final AtomicInteger replicas = new AtomicInteger();
+	private final Histogram overhead = new Histogram();
+
+	ReplicationLog(Symbol symbol, int retainedRecords) {
+		this.symbol = symbol;
+		this.retainedRecords = retainedRecords;
+	}
+
+	@Override
+	public void append(OrderActionType actionType, Order order, String orderId) {
+		long start = System.nanoTime();
+		try {
+			ReplicationProtocol.writeRecord(scratchOut, ++sequence, actionType, order, orderId);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Replication encode failed for " + symbol, e);
+		}
+		batchRecords++;
+		batchNanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void endOfBatch() {
+		if(batchRecords == 0) {
+			return;
+		}
+		long start = System.nanoTime();
+		Batch batch = new Batch(sequence - batchRecords + 1, sequence, batchRecords, scratch.toByteArray());
+		scratch.reset();
+		synchronized(this) {
+			batches.addLast(batch);
+			retained += batch.records;
+			// always keep the newest batch, whatever its size
+			while(retained - batches.peekFirst().records >= retainedRecords) {
+				retained -= batches.removeFirst().records;
+			}
+			lastSequence = batch.lastSequence;
+			notifyAll();
+		}
+		overhead.record(batchNanos + System.nanoTime() - start);
+		batchRecords = 0;
+		batchNanos = 0;
+	}
+
+	// true if a replica that applied everything up to appliedSequence can be served from the retained batches
+	synchronized boolean canServe(long appliedSequence) {
+		if(appliedSequence > lastSequence) {
+			return false;
+		}
+		return batches.isEmpty() ? appliedSequence == lastSequence : appliedSequence + 1 >= batches.peekFirst().firstSequence;
+	}
+
+	// Next batch with records after appliedSequence, null after waiting timeoutMillis for one.
+	// Throws if the batch was already dropped from the retained ones.
+	synchronized Batch next(long appliedSequence, long timeoutMillis) throws InterruptedException {
+		if(lastSequence <= appliedSequence) {
+			wait(timeoutMillis);
+			if(lastSequence <= appliedSequence) {
+				return null;
+			}
+		}
+		// a replica that keeps up is near the end
+		Batch found = null;
+		for(Iterator<Batch> newestFirst = batches.descendingIterator(); newestFirst.hasNext();) {
+			Batch batch = newestFirst.next();
+			if(batch.lastSequence <= appliedSequence) {
+				break;
+			}
+			found = batch;
+		}
+		if(found == null || found.firstSequence > appliedSequence + 1)
+			throw new IllegalStateException("Replica of " + symbol + " fell behind the retained records at sequence " + appliedSequence);
+		return found;
+	}
+
+	void acknowledge(long sequence) {
+		ackedSequence.accumulateAndGet(sequence, Math::max);
+		synchronized(ackedSequence) {
+			ackedSequence.notifyAll();
+		}
+	}
+
+	boolean awaitAcked(long sequence, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized(ackedSequence) {
+			long left;
+			while(ackedSequence.get() < sequence && (left = deadline - System.currentTimeMillis()) > 0) {
+				ackedSequence.wait(left);
+			}
+		}
+		return ackedSequence.get() >= sequence;
+	}
+
+	Symbol getSymbol() {
+		return symbol;
+	}
+
+	long getLastSequence() {
+		return lastSequence;
+	}
+
+	long getAckedSequence() {
+		return ackedSequence.get();
+	}
+
+	AtomicInteger getReplicas() {
+		return replicas;
+	}
+
+	Histogram getOverhead() {
+		return overhead;
+	}
+}
@@ -0,0 +1,274 @@
+package m2.orderbook.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.gateway.OrderGateway;
+import m2.orderbook.metrics.HistogramSnapshot;
+import m2.orderbook.sequencer.CommandJournal;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+
+// Primary side of hot standby replication. Every shard's sequencer journals into getJournal(symbol),
+// so replicas receive exactly the sequenced command stream and rebuild the same books deterministically.
+// Replicas connect over TCP (ReplicaNode), say which sequence they applied last and are streamed
+// everything after it from the retained records; they acknowledge each batch by sequence.
+// A replica that falls more than retainedRecords behind is disconnected, which bounds the lag a
+// takeover can have. Sequences count commands since the primary started, replicas have to start from the
+// same book as the primary (a fresh one, the seed orders travel through the stream).
+public class ReplicationPrimary implements AutoCloseable {
+
+	public static final int DEFAULT_RETAINED_RECORDS = 1 << 20;
+
+	private static final int BUFFER_SIZE = 64 << 10;
+
+	private static final long POLL_MILLIS = 100;
+
+	private final Map<Symbol, ReplicationLog> logs = new EnumMap<>(Symbol.class);
+
+	private final ServerSocket serverSocket;
+
+	private final Thread acceptor;
+
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean running = true;
+
+	public ReplicationPrimary(int port, Set<Symbol> symbols) {
+		this(port, symbols, DEFAULT_RETAINED_RECORDS);
+	}
+
+	// port 0 picks a free port, see getPort
+	public ReplicationPrimary(int port, Set<Symbol> symbols, int retainedRecords) {
+		if(symbols == null || symbols.isEmpty())
+			throw new IllegalArgumentException("At least one symbol is required");
+		if(retainedRecords <= 0)
+			throw new IllegalArgumentException("Invalid retained records:" + retainedRecords);
+		for(Symbol symbol : symbols) {
+			logs.put(symbol, new ReplicationLog(symbol, retainedRecords));
+		}
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+		try {
+			serverSocket = new ServerSocket();
+			serverSocket.setReuseAddress(true);
+			serverSocket.bind(address);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot listen on " + address, e);
+		}
+		acceptor = new Thread(this::accept, "orderbook-replication-" + serverSocket.getLocalPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	// to be handed to the symbol's sequencer, see ShardedOrderbookServiceImpl.setReplication
+	public CommandJournal getJournal(Symbol symbol) {
+		return getLog(symbol);
+	}
+
+	private ReplicationLog getLog(Symbol symbol) {
+		ReplicationLog log = logs.get(symbol);
+		if(log == null)
+			throw new IllegalArgumentException("Symbol is not replicated:" + symbol);
+		return log;
+	}
+
+	private void accept() {
+		while(running) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if(running) {
+					System.err.println("Replication accept failed: " + e);
+				}
+				continue;
+			}
+			sockets.add(socket);
+			Thread sender = new Thread(() -> serve(socket), "orderbook-replication-sender-" + socket.getPort());
+			sender.setDaemon(true);
+			sender.start();
+		}
+	}
+
+	private void serve(Socket socket) {
+		ReplicationLog log = null;
+		try {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+			if(in.readInt() != ReplicationProtocol.MAGIC)
+				throw new IOException("Not a replica");
+			Symbol symbol = ReplicationProtocol.valueOf(Symbol.values(), in.readUnsignedByte(), "symbol");
+			long appliedSequence = in.readLong();
+
+			String rejectReason = null;
+			if(!logs.containsKey(symbol)) {
+				rejectReason = "Symbol is not replicated:" + symbol;
+			} else if(!logs.get(symbol).canServe(appliedSequence)) {
+				rejectReason = "Sequence " + appliedSequence + " of " + symbol + " is not retained, reseed the replica";
+			}
+			if(rejectReason != null) {
+				out.writeByte(ReplicationProtocol.REJECTED);
+				out.writeUTF(rejectReason);
+				out.flush();
+				return;
+			}
+			out.writeByte(ReplicationProtocol.ACCEPTED);
+			out.flush();
+			log = logs.get(symbol);
+			log.getReplicas().incrementAndGet();
+
+			ReplicationLog acked = log;
+			Thread ackReader = new Thread(() -> readAcks(socket, in, acked), "orderbook-replication-acks-" + socket.getPort());
+			ackReader.setDaemon(true);
+			ackReader.start();
+
+			long sentSequence = appliedSequence;
+			while(running && !socket.isClosed()) {
+				ReplicationLog.Batch batch = log.next(sentSequence, POLL_MILLIS);
+				if(batch == null) {
+					continue;
+				}
+				out.writeInt(batch.records);
+				out.write(batch.bytes);
+				sentSequence = batch.lastSequence;
+				// flush once the replica has everything published so far
+				if(log.getLastSequence() == sentSequence) {
+					out.flush();
+				}
+			}
+		} catch (SocketException | EOFException e) {
+			// replica went away or close()
+		} catch (IOException | IllegalStateException e) {
+			if(running) {
+				System.err.println("Replication session failed: " + e);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if(log != null) {
+				log.getReplicas().decrementAndGet();
+			}
+			closeQuietly(socket);
+		}
+	}
+
+	private void readAcks(Socket socket, DataInputStream in, ReplicationLog log) {
+		try {
+			while(true) {
+				log.acknowledge(in.readLong());
+			}
+		} catch (IOException e) {
+			// the sender notices the closed socket on its next poll
+			closeQuietly(socket);
+		}
+	}
+
+	private void closeQuietly(Socket socket) {
+		sockets.remove(socket);
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// nothing left to release
+		}
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public Set<Symbol> getSymbols() {
+		return Collections.unmodifiableSet(logs.keySet());
+	}
+
+	// sequence of the last command the matching thread handed over
+	public long getLastSequence(Symbol symbol) {
+		return getLog(symbol).getLastSequence();
+	}
+
+	// highest sequence any replica has applied, a takeover by that replica loses nothing before it
+	public long getAckedSequence(Symbol symbol) {
+		return getLog(symbol).getAckedSequence();
+	}
+
+	public long getLag(Symbol symbol) {
+		ReplicationLog log = getLog(symbol);
+		return log.getLastSequence() - log.getAckedSequence();
+	}
+
+	public int getReplicaCount(Symbol symbol) {
+		return getLog(symbol).getReplicas().get();
+	}
+
+	// waits until some replica acknowledged sequence, false on timeout
+	public boolean awaitAcked(Symbol symbol, long sequence, long timeoutMillis) throws InterruptedException {
+		return getLog(symbol).awaitAcked(sequence, timeoutMillis);
+	}
+
+	// nanos the matching thread spent on replication per sequencer batch (encoding plus hand over),
+	// compare with the engine latency in EngineMetrics
+	public HistogramSnapshot getOverhead(Symbol symbol) {
+		return getLog(symbol).getOverhead().snapshot();
+	}
+
+	// disconnects every replica, they keep the book as of their last applied sequence
+	@Override
+	public void close() {
+		running = false;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// the acceptor exits either way
+		}
+		for(Socket socket : sockets) {
+			closeQuietly(socket);
+		}
+		try {
+			acceptor.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//   java m2.orderbook.replication.ReplicationPrimary [replication port] [gateway port]
+	// serves every symbol from fixed point books behind an OrderGateway and replicates them until killed,
+	// see ReplicaNode.main for the other side
+	public static void main(String[] args) throws InterruptedException {
+		int replicationPort = args.length > 0 ? Integer.parseInt(args[0]) : 7101;
+		int gatewayPort = args.length > 1 ? Integer.parseInt(args[1]) : 7001;
+		try (ReplicationPrimary primary = new ReplicationPrimary(replicationPort, EnumSet.allOf(Symbol.class));
+				ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP)) {
+			service.setReplication(primary);
+			service.initializeOrderBook();
+			try (OrderGateway gateway = new OrderGateway(service, gatewayPort)) {
+				System.out.println("Replicating on port " + primary.getPort() + ", order gateway on port " + gateway.getPort());
+				while(true) {
+					Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+					for(Symbol symbol : primary.getSymbols()) {
+						HistogramSnapshot overhead = primary.getOverhead(symbol);
+						System.out.println(symbol + " sequence " + primary.getLastSequence(symbol) + " acked " + primary.getAckedSequence(symbol)
+								+ " replicas " + primary.getReplicaCount(symbol) + " overhead p99 " + overhead.getValueAtPercentile(99.0) + "ns");
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package m2.orderbook.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.journal.JournalReader;
+import m2.orderbook.util.BigDecimalUtility;
+
+// Wire format between ReplicationPrimary and ReplicaNode, big endian as written by DataOutputStream.
+//
+// Replica hello:  int MAGIC, byte symbol, long last applied sequence (0 for an empty book)
+// Primary reply:  byte status, [REJECTED only] reason as modified UTF-8
+// Primary batch:  int record count, records
+// Record:         long sequence, byte action,
+//                 [ADD and AMEND] byte side, byte type, long price, long stop price, long quantity (fixed point),
+//                 id as modified UTF-8, [ADD and AMEND] owner as modified UTF-8 (empty for none)
+// Replica ack:    long sequence applied, sent after every batch
+// Enums travel as their ordinal and prices that do not apply to the type are 0, like in GatewayProtocol.
+public final class ReplicationProtocol {
+
+	public static final int MAGIC = 0x4F425231;
+	public static final byte ACCEPTED = 0;
+	public static final byte REJECTED = 1;
+
+	private ReplicationProtocol() {
+	}
+
+	public static void writeHello(DataOutputStream out, Symbol symbol, long appliedSequence) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(symbol.ordinal());
+		out.writeLong(appliedSequence);
+	}
+
+	// REMOVE carries only the id, order is null for a cancel by id
+	public static void writeRecord(DataOutputStream out, long sequence, OrderActionType actionType, Order order, String orderId) throws IOException {
+		boolean add = order != null && actionType != OrderActionType.REMOVE;
+		out.writeLong(sequence);
+		out.writeByte((add ? actionType : OrderActionType.REMOVE).ordinal());
+		if(add) {
+			Ordertype type = order.getType();
+			out.writeByte(order.getSide().ordinal());
+			out.writeByte(type.ordinal());
+			out.writeLong(type.hasLimitPrice() ? BigDecimalUtility.toFixedPoint(order.getPrice()) : 0L);
+			out.writeLong(type.isStop() ? BigDecimalUtility.toFixedPoint(order.getStopPrice()) : 0L);
+			out.writeLong(BigDecimalUtility.toFixedPoint(order.getQuantity()));
+		}
+		out.writeUTF(orderId);
+		if(add) {
+			out.writeUTF(order.getOwner() == null ? "" : order.getOwner());
+		}
+	}
+
+	// reads one batch and hands every record to handler, returns the record count
+	public static int readBatch(DataInputStream in, Symbol symbol, JournalReader.RecordHandler handler) throws IOException {
+		int records = in.readInt();
+		if(records < 0)
+			throw new IOException("Invalid record count:" + records);
+		for(int i = 0; i < records; i++) {
+			long sequence = in.readLong();
+			OrderActionType actionType = valueOf(OrderActionType.values(), in.readUnsignedByte(), "action");
+			if(actionType == OrderActionType.REMOVE) {
+				handler.onRecord(sequence, actionType, null, in.readUTF());
+				continue;
+			}
+			OrderSide side = valueOf(OrderSide.values(), in.readUnsignedByte(), "side");
+			Ordertype type = valueOf(Ordertype.values(), in.readUnsignedByte(), "order type");
+			long price = in.readLong();
+			long stopPrice = in.readLong();
+			long quantity = in.readLong();
+			String orderId = in.readUTF();
+			Order order = new Order(symbol, orderId, type.hasLimitPrice() ? BigDecimalUtility.fromFixedPoint(price) : null,
+					type.isStop() ? BigDecimalUtility.fromFixedPoint(stopPrice) : null, BigDecimalUtility.fromFixedPoint(quantity), side, type);
+			String owner = in.readUTF();
+			if(!owner.isEmpty()) {
+				order.setOwner(owner);
+			}
+			handler.onRecord(sequence, actionType, order, orderId);
+		}
+		return records;
+	}
+
+	static <T> T valueOf(T[] values, int ordinal, String field) throws IOException {
+		if(ordinal < 0 || ordinal >= values.length)
+			throw new IOException("Unknown " + field + ":" + ordinal);
+		return values[ordinal];
+	}
+}
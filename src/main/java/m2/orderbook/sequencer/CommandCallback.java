@@ -0,0 +1,7 @@
+package m2.orderbook.sequencer;
+
+// invoked on the matching thread once a command is processed, error is null on success
+public interface CommandCallback {
+
+	void onComplete(String orderId, RuntimeException error);
+}
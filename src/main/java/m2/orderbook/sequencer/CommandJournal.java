@@ -0,0 +1,14 @@
+package m2.orderbook.sequencer;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+
+// called on the matching thread for every command, before it is applied to the engine
+public interface CommandJournal {
+
+	// order is null for a cancel by id
+	void append(OrderActionType actionType, Order order, String orderId);
+
+	// the matching thread has drained the currently published commands
+	void endOfBatch();
+}
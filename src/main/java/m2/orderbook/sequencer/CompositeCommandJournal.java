@@ -0,0 +1,30 @@
+package m2.orderbook.sequencer;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+
+// hands every command to several journals in registration order, e.g. the file journal and replication
+public class CompositeCommandJournal implements CommandJournal {
+
+	private final CommandJournal[] journals;
+
+	public CompositeCommandJournal(CommandJournal... journals) {
+		if(journals == null)
+			throw new IllegalArgumentException();
+		this.journals = journals.clone();
+	}
+
+	@Override
+	public void append(OrderActionType actionType, Order order, String orderId) {
+		for(CommandJournal journal : journals) {
+			journal.append(actionType, order, orderId);
+		}
+	}
+
+	@Override
+	public void endOfBatch() {
+		for(CommandJournal journal : journals) {
+			journal.endOfBatch();
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package m2.orderbook.sequencer;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.enums.OrderActionType;
+
+// preallocated ring slot, reused for every command published at this index
+final class OrderCommand {
+
+	OrderActionType actionType;
+
+	// null for a cancel by id
+	Order order;
+
+	String orderId;
+
+	CommandCallback callback;
+
+	// set instead of the fields above for work that has to run on the matching thread
+	Runnable task;
+
+	void set(OrderActionType actionType, Order order, String orderId, CommandCallback callback, Runnable task) {
+		this.actionType = actionType;
+		this.order = order;
+		this.orderId = orderId;
+		this.callback = callback;
+		this.task = task;
+	}
+
+	// a sequence claimed after the sequencer closed, published so the matching thread can move past it
+	boolean isNoOp() {
+		return actionType == null && task == null;
+	}
+
+	void clear() {
+		actionType = null;
+		order = null;
+		orderId = null;
+		callback = null;
+		task = null;
+	}
+}
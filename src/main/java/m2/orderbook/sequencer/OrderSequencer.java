@@ -0,0 +1,327 @@
+package m2.orderbook.sequencer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.OrderActionType;
+
+// Multi producer / single consumer ring buffer in front of a MatchingEngine.
+// Producers claim a sequence with one atomic increment, fill the preallocated slot and mark it
+// published. A single matching thread drains published slots in sequence order and in batches,
+// so the engine is only ever touched by that thread and commands are applied in claim order.
+public class OrderSequencer implements AutoCloseable {
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long PARK_NANOS = 1_000L;
+
+	private final MatchingEngine engine;
+	private final CommandJournal journal;
+	private final OrderCommand[] ring;
+	private final int mask;
+	private final int indexShift;
+	// round number (sequence / ring size) last published into each slot
+	private final AtomicIntegerArray published;
+	private final AtomicLong claimSequence = new AtomicLong(-1);
+	private final AtomicLong consumedSequence = new AtomicLong(-1);
+	// callbacks and tasks that threw on the matching thread
+	private final AtomicLong callbackFailures = new AtomicLong();
+	private final int maxBatchSize;
+	private final Thread matchingThread;
+	private volatile boolean running = true;
+	// set by the matching thread right before it returns
+	private volatile boolean terminated;
+
+	public OrderSequencer(MatchingEngine engine, int ringSize) {
+		this(engine, ringSize, ringSize);
+	}
+
+	public OrderSequencer(MatchingEngine engine, int ringSize, int maxBatchSize) {
+		this(engine, ringSize, maxBatchSize, null);
+	}
+
+	// every command is appended to journal before it reaches the engine, journal may be null
+	public OrderSequencer(MatchingEngine engine, int ringSize, int maxBatchSize, CommandJournal journal) {
+		if(engine == null)
+			throw new IllegalArgumentException("Engine is required");
+		if(ringSize <= 0 || Integer.bitCount(ringSize) != 1)
+			throw new IllegalArgumentException("Ring size must be a power of 2:" + ringSize);
+		if(maxBatchSize <= 0)
+			throw new IllegalArgumentException("Invalid batch size:" + maxBatchSize);
+		this.engine = engine;
+		this.journal = journal;
+		this.ring = new OrderCommand[ringSize];
+		for(int i = 0; i < ringSize; i++) {
+			ring[i] = new OrderCommand();
+		}
+		this.mask = ringSize - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(ringSize);
+		int[] notPublished = new int[ringSize];
+		Arrays.fill(notPublished, -1);
+		this.published = new AtomicIntegerArray(notPublished);
+		this.maxBatchSize = maxBatchSize;
+		this.matchingThread = new Thread(this::processCommands, "orderbook-matching-" + engine.getSymbol());
+		this.matchingThread.setDaemon(true);
+		this.matchingThread.start();
+	}
+
+	public void submit(Order order, OrderActionType orderActionType, CommandCallback callback) {
+		if(order == null || orderActionType == null)
+			throw new IllegalArgumentException();
+		publish(orderActionType, order, order.getOrderId(), callback, null);
+	}
+
+	public void submitCancel(String orderId, CommandCallback callback) {
+		if(orderId == null)
+			throw new IllegalArgumentException();
+		publish(OrderActionType.REMOVE, null, orderId, callback, null);
+	}
+
+	// The whole batch takes one ring slot and one engine lock acquisition, results are in input order.
+	// Every order is journaled before the batch is applied.
+	public CompletableFuture<List<OrderResult>> submitBatch(List<Order> orders, OrderActionType orderActionType) {
+		if(orders == null || orderActionType == null)
+			throw new IllegalArgumentException();
+		List<Order> batch = new ArrayList<>(orders);
+		CompletableFuture<List<OrderResult>> future = new CompletableFuture<>();
+		publish(null, null, null, null, () -> {
+			try {
+				future.complete(processBatch(batch, orderActionType));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	private List<OrderResult> processBatch(List<Order> batch, OrderActionType orderActionType) {
+		if(journal == null) {
+			return engine.executeOrders(batch, orderActionType);
+		}
+		int journaled = 0;
+		RuntimeException journalError = null;
+		try {
+			for(Order order : batch) {
+				journal.append(orderActionType, order, order.getOrderId());
+				journaled++;
+			}
+		} catch (RuntimeException e) {
+			journalError = e;
+		}
+		// orders that could not be journaled are rejected, not applied
+		List<OrderResult> results = new ArrayList<>(engine.executeOrders(batch.subList(0, journaled), orderActionType));
+		for(int i = journaled; i < batch.size(); i++) {
+			Order order = batch.get(i);
+			results.add(new OrderResult(order == null ? null : order.getOrderId(), journalError));
+		}
+		return results;
+	}
+
+	// Cancels every resting order massCancel matches in one engine call, the future gets the count.
+	// Each order is journaled as a cancel by id right before it goes, so a replay or a replica removes
+	// exactly the orders this book removed; an order that cannot be journaled stops the mass cancel.
+	public CompletableFuture<Integer> submitMassCancel(MassCancel massCancel) {
+		if(massCancel == null)
+			throw new IllegalArgumentException();
+		CompletableFuture<Integer> future = new CompletableFuture<>();
+		publish(null, null, null, null, () -> {
+			try {
+				future.complete(engine.massCancel(massCancel, journal == null ? null
+						: (orderId, price, quantity) -> journal.append(OrderActionType.REMOVE, null, orderId)));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	// Runs task on the matching thread in sequence with the commands around it, e.g. to read a
+	// consistent view of the book. Tasks are not journaled.
+	public <T> CompletableFuture<T> submitTask(Function<MatchingEngine, T> task) {
+		if(task == null)
+			throw new IllegalArgumentException();
+		CompletableFuture<T> future = new CompletableFuture<>();
+		publish(null, null, null, null, () -> {
+			try {
+				future.complete(task.apply(engine));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	// future is completed on the matching thread with the order id
+	public CompletableFuture<String> submit(Order order, OrderActionType orderActionType) {
+		CompletableFuture<String> future = new CompletableFuture<>();
+		submit(order, orderActionType, futureCallback(future));
+		return future;
+	}
+
+	public CompletableFuture<String> submitCancel(String orderId) {
+		CompletableFuture<String> future = new CompletableFuture<>();
+		submitCancel(orderId, futureCallback(future));
+		return future;
+	}
+
+	private static CommandCallback futureCallback(CompletableFuture<String> future) {
+		return (orderId, error) -> {
+			if(error == null) {
+				future.complete(orderId);
+			} else {
+				future.completeExceptionally(error);
+			}
+		};
+	}
+
+	// The sequence is claimed before running is read. A command claimed while running is visible to the
+	// matching thread before it can see running cleared, so it is applied before the thread stops. One
+	// claimed after close is published as a no-op, the matching thread may be waiting for that sequence,
+	// and the caller gets the exception instead of a callback.
+	private void publish(OrderActionType actionType, Order order, String orderId, CommandCallback callback, Runnable task) {
+		long sequence = claimSequence.incrementAndGet();
+		boolean accepted = running;
+		// wait for the matching thread to free the slot claimed one lap earlier
+		long wrapPoint = sequence - ring.length;
+		int idle = 0;
+		while(wrapPoint > consumedSequence.get()) {
+			// only a sequence claimed after close can find the matching thread gone, nobody needs it then
+			if(terminated)
+				throw new IllegalStateException("Sequencer is closed");
+			idle = idle(idle);
+		}
+		int index = (int) (sequence & mask);
+		if(accepted) {
+			ring[index].set(actionType, order, orderId, callback, task);
+		} else {
+			ring[index].clear();
+		}
+		published.set(index, (int) (sequence >>> indexShift));
+		if(!accepted)
+			throw new IllegalStateException("Sequencer is closed");
+	}
+
+	private boolean isPublished(long sequence) {
+		return published.get((int) (sequence & mask)) == (int) (sequence >>> indexShift);
+	}
+
+	private void processCommands() {
+		long nextSequence = 0;
+		int idle = 0;
+		while(true) {
+			long available = nextSequence - 1;
+			long limit = Math.min(claimSequence.get(), nextSequence + maxBatchSize - 1);
+			while(available < limit && isPublished(available + 1)) {
+				available++;
+			}
+
+			if(available < nextSequence) {
+				// stops only once every claimed sequence has been published and processed
+				if(!running && claimSequence.get() < nextSequence) {
+					terminated = true;
+					return;
+				}
+				idle = idle(idle);
+				continue;
+			}
+			idle = 0;
+
+			for(long sequence = nextSequence; sequence <= available; sequence++) {
+				process(ring[(int) (sequence & mask)]);
+			}
+			if(journal != null) {
+				journal.endOfBatch();
+			}
+			consumedSequence.set(available);
+			nextSequence = available + 1;
+		}
+	}
+
+	// A callback or task that throws is counted and otherwise ignored, the matching thread has to
+	// outlive it or every producer waiting for a slot would hang.
+	private void process(OrderCommand command) {
+		if(command.isNoOp()) {
+			return;
+		}
+		if(command.task != null) {
+			Runnable task = command.task;
+			command.clear();
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				callbackFailures.incrementAndGet();
+			}
+			return;
+		}
+		RuntimeException error = null;
+		try {
+			if(journal != null) {
+				journal.append(command.actionType, command.order, command.orderId);
+			}
+			if(command.order == null) {
+				engine.cancelOrder(command.orderId);
+			} else {
+				engine.executeOrder(command.order, command.actionType);
+			}
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		CommandCallback callback = command.callback;
+		String orderId = command.orderId;
+		command.clear();
+		if(callback != null) {
+			try {
+				callback.onComplete(orderId, error);
+			} catch (RuntimeException e) {
+				callbackFailures.incrementAndGet();
+			}
+		}
+	}
+
+	private static int idle(int idle) {
+		if(idle < SPIN_TRIES) {
+			Thread.onSpinWait();
+		} else if(idle < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+			return idle;
+		}
+		return idle + 1;
+	}
+
+	public MatchingEngine getEngine() {
+		return engine;
+	}
+
+	// sequence of the last command applied to the engine, -1 before the first one
+	public long getConsumedSequence() {
+		return consumedSequence.get();
+	}
+
+	// callbacks and tasks that threw instead of returning
+	public long getCallbackFailures() {
+		return callbackFailures.get();
+	}
+
+	// stops accepting commands, applies every command accepted before and waits for the matching thread
+	@Override
+	public void close() {
+		running = false;
+		try {
+			matchingThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
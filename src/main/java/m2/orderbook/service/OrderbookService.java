@@ -1,6 +1,11 @@
 package m2.orderbook.service;
 
+import java.util.List;
+
+import m2.orderbook.dto.MassCancel;
 import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.enums.Symbol;
 
 public interface OrderbookService {
 
@@ -9,4 +14,19 @@ public interface OrderbookService {
 	void placeNewOrder(Order order);
 	
 	void cancelOrder(Order order);
+
+	void cancelOrder(String orderId);
+
+	void cancelOrder(Symbol symbol, String orderId);
+
+	// new price/quantity for the resting order with the same id, see MatchingEngine.amendOrder
+	void amendOrder(Order order);
+
+	// batch entry points: one pass through the book per batch, failures are reported per order
+	List<OrderResult> placeNewOrders(List<Order> orders);
+
+	List<OrderResult> cancelOrders(List<Order> orders);
+
+	// cancels every resting order massCancel matches with one book update per book, returns how many
+	int massCancel(MassCancel massCancel);
 }
@@ -1,31 +1,53 @@
 package m2.orderbook.service.impl;
 
-import java.math.BigDecimal;
+import java.util.List;
 
-import m2.orderbook.OrderBook;
+import m2.orderbook.dto.MassCancel;
 import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.MatchingEngineFactory;
+import m2.orderbook.enums.EngineMode;
 import m2.orderbook.enums.OrderActionType;
-import m2.orderbook.enums.OrderSide;
-import m2.orderbook.enums.Ordertype;
 import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.AsyncConsoleEventListener;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.metrics.EngineMetrics;
 import m2.orderbook.service.OrderbookService;
 import m2.orderbook.util.OrderUtility;
 
 public class OrderbookServiceImpl implements OrderbookService {
 
-	OrderBook orderBook;
+	MatchingEngine orderBook;
+
+	private final EngineMode engineMode;
+
+	private final OrderEventListener eventListener;
+
+	private final EngineMetrics metrics = new EngineMetrics(Symbol.BTC);
+
+	public OrderbookServiceImpl() {
+		this(EngineMode.BIG_DECIMAL);
+	}
+
+	public OrderbookServiceImpl(EngineMode engineMode) {
+		this(engineMode, new AsyncConsoleEventListener());
+	}
+
+	public OrderbookServiceImpl(EngineMode engineMode, OrderEventListener eventListener) {
+		this.engineMode = engineMode;
+		this.eventListener = eventListener;
+	}
 	
 	@Override
 	public void initializeOrderBook() {
 		
-		orderBook = new OrderBook(Symbol.BTC);
+		orderBook = MatchingEngineFactory.create(Symbol.BTC, engineMode);
+		orderBook.setEventListener(eventListener);
+		orderBook.setMetrics(metrics);
 		
-		for(int i=0;i<10;i++) {
-			
-			String id = OrderUtility.getOrderId();
-			OrderSide side = (i<5) ? OrderSide.BUY : OrderSide.SELL;
-			orderBook.addOrder( new Order(id, new BigDecimal(i+1), new BigDecimal(i+1), side, Ordertype.LIMIT));
-		}
+		OrderUtility.seedOrderBook(orderBook);
 		
 		System.out.println(orderBook);
 		
@@ -34,7 +56,6 @@ public class OrderbookServiceImpl implements OrderbookService {
 	public void placeNewOrder(Order order) {
 
 		orderBook.executeOrder(order, OrderActionType.ADD);
-		System.out.println(orderBook);
 
 	}
 	
@@ -42,9 +63,47 @@ public class OrderbookServiceImpl implements OrderbookService {
 	public void cancelOrder(Order order) {
 		
 		orderBook.executeOrder(order, OrderActionType.REMOVE);
-		System.out.println(orderBook);	
 	}
-	
-	 
 
+	@Override
+	public void amendOrder(Order order) {
+
+		orderBook.executeOrder(order, OrderActionType.AMEND);
+	}
+
+	@Override
+	public void cancelOrder(String orderId) {
+
+		orderBook.cancelOrder(orderId);
+	}
+
+	@Override
+	public void cancelOrder(Symbol symbol, String orderId) {
+
+		if(symbol != orderBook.getSymbol())
+			throw new OrderException("No order book for symbol:" + symbol);
+		orderBook.cancelOrder(orderId);
+	}
+
+	@Override
+	public List<OrderResult> placeNewOrders(List<Order> orders) {
+
+		return orderBook.executeOrders(orders, OrderActionType.ADD);
+	}
+
+	@Override
+	public List<OrderResult> cancelOrders(List<Order> orders) {
+
+		return orderBook.executeOrders(orders, OrderActionType.REMOVE);
+	}
+
+	@Override
+	public int massCancel(MassCancel massCancel) {
+
+		return orderBook.massCancel(massCancel, null);
+	}
+
+	public EngineMetrics getMetrics() {
+		return metrics;
+	}
 }
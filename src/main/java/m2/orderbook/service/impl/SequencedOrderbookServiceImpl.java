@@ -0,0 +1,139 @@
+package m2.orderbook.service.impl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.MatchingEngineFactory;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.metrics.EngineMetrics;
+import m2.orderbook.sequencer.OrderSequencer;
+import m2.orderbook.service.OrderbookService;
+import m2.orderbook.util.OrderUtility;
+
+// OrderbookService where all callers publish into one OrderSequencer instead of locking the book.
+// The blocking methods wait for their own command, the async ones return the completion future.
+public class SequencedOrderbookServiceImpl implements OrderbookService, AutoCloseable {
+
+	private static final int DEFAULT_RING_SIZE = 1 << 14;
+
+	private final EngineMode engineMode;
+
+	private final OrderEventListener eventListener;
+
+	private final EngineMetrics metrics = new EngineMetrics(Symbol.BTC);
+
+	private final int ringSize;
+
+	private OrderSequencer sequencer;
+
+	public SequencedOrderbookServiceImpl(EngineMode engineMode, OrderEventListener eventListener) {
+		this(engineMode, eventListener, DEFAULT_RING_SIZE);
+	}
+
+	public SequencedOrderbookServiceImpl(EngineMode engineMode, OrderEventListener eventListener, int ringSize) {
+		this.engineMode = engineMode;
+		this.eventListener = eventListener;
+		this.ringSize = ringSize;
+	}
+
+	@Override
+	public void initializeOrderBook() {
+
+		MatchingEngine orderBook = MatchingEngineFactory.create(Symbol.BTC, engineMode);
+		orderBook.setEventListener(eventListener);
+		orderBook.setMetrics(metrics);
+
+		OrderUtility.seedOrderBook(orderBook);
+
+		sequencer = new OrderSequencer(orderBook, ringSize);
+	}
+
+	@Override
+	public void placeNewOrder(Order order) {
+		await(placeNewOrderAsync(order));
+	}
+
+	@Override
+	public void cancelOrder(Order order) {
+		await(sequencer.submit(order, OrderActionType.REMOVE));
+	}
+
+	@Override
+	public void amendOrder(Order order) {
+		await(sequencer.submit(order, OrderActionType.AMEND));
+	}
+
+	@Override
+	public void cancelOrder(String orderId) {
+		await(cancelOrderAsync(orderId));
+	}
+
+	@Override
+	public void cancelOrder(Symbol symbol, String orderId) {
+		if(symbol != sequencer.getEngine().getSymbol())
+			throw new OrderException("No order book for symbol:" + symbol);
+		cancelOrder(orderId);
+	}
+
+	@Override
+	public List<OrderResult> placeNewOrders(List<Order> orders) {
+		return sequencer.submitBatch(orders, OrderActionType.ADD).join();
+	}
+
+	@Override
+	public List<OrderResult> cancelOrders(List<Order> orders) {
+		return sequencer.submitBatch(orders, OrderActionType.REMOVE).join();
+	}
+
+	@Override
+	public int massCancel(MassCancel massCancel) {
+		try {
+			return sequencer.submitMassCancel(massCancel).join();
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public CompletableFuture<String> placeNewOrderAsync(Order order) {
+		return sequencer.submit(order, OrderActionType.ADD);
+	}
+
+	public CompletableFuture<String> cancelOrderAsync(String orderId) {
+		return sequencer.submitCancel(orderId);
+	}
+
+	// rethrow the engine exception (OrderException etc) rather than the CompletionException wrapper
+	private static void await(CompletableFuture<String> future) {
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public EngineMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public void close() {
+		if(sequencer != null) {
+			sequencer.close();
+		}
+	}
+}
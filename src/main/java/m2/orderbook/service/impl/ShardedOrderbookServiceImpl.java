@@ -0,0 +1,375 @@
+package m2.orderbook.service.impl;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.MatchingEngineFactory;
+import m2.orderbook.engine.TopOfBook;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.FlushPolicy;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.journal.BookSnapshot;
+import m2.orderbook.journal.JournalStore;
+import m2.orderbook.journal.OrderJournal;
+import m2.orderbook.metrics.EngineMetrics;
+import m2.orderbook.replication.ReplicationPrimary;
+import m2.orderbook.sequencer.CommandJournal;
+import m2.orderbook.sequencer.CompositeCommandJournal;
+import m2.orderbook.sequencer.OrderSequencer;
+import m2.orderbook.service.OrderbookService;
+import m2.orderbook.util.OrderUtility;
+
+// One book per Symbol, each behind its own OrderSequencer and therefore its own matching thread.
+// Shards share nothing, orders are routed by Order.getSymbol().
+// With a journal directory every shard journals its commands and rebuilds its book on startup from
+// the latest snapshot plus the journal tail, see JournalStore. Snapshots are taken every
+// snapshotIntervalMillis (0 = only on takeSnapshot).
+public class ShardedOrderbookServiceImpl implements OrderbookService, AutoCloseable {
+
+	private static final int DEFAULT_RING_SIZE = 1 << 14;
+
+	private final EngineMode engineMode;
+
+	private final OrderEventListener eventListener;
+
+	private final Set<Symbol> symbols;
+
+	private final int ringSize;
+
+	private final Path journalDirectory;
+
+	private final FlushPolicy flushPolicy;
+
+	private final long snapshotIntervalMillis;
+
+	private final Map<Symbol, JournalStore> stores = new EnumMap<>(Symbol.class);
+
+	private final Map<Symbol, OrderJournal> journals = new EnumMap<>(Symbol.class);
+
+	private ReplicationPrimary replication;
+
+	private ScheduledExecutorService snapshotScheduler;
+
+	private volatile Map<Symbol, OrderSequencer> shards = Collections.emptyMap();
+
+	private volatile Map<Symbol, EngineMetrics> metrics = Collections.emptyMap();
+
+	public ShardedOrderbookServiceImpl(EngineMode engineMode, OrderEventListener eventListener) {
+		this(engineMode, eventListener, EnumSet.allOf(Symbol.class), DEFAULT_RING_SIZE);
+	}
+
+	public ShardedOrderbookServiceImpl(EngineMode engineMode, OrderEventListener eventListener, Set<Symbol> symbols, int ringSize) {
+		this(engineMode, eventListener, symbols, ringSize, null, FlushPolicy.NONE);
+	}
+
+	public ShardedOrderbookServiceImpl(EngineMode engineMode, OrderEventListener eventListener, Set<Symbol> symbols, int ringSize,
+			Path journalDirectory, FlushPolicy flushPolicy) {
+		this(engineMode, eventListener, symbols, ringSize, journalDirectory, flushPolicy, 0);
+	}
+
+	public ShardedOrderbookServiceImpl(EngineMode engineMode, OrderEventListener eventListener, Set<Symbol> symbols, int ringSize,
+			Path journalDirectory, FlushPolicy flushPolicy, long snapshotIntervalMillis) {
+		if(symbols == null || symbols.isEmpty())
+			throw new IllegalArgumentException("At least one symbol is required");
+		this.engineMode = engineMode;
+		this.eventListener = eventListener;
+		this.symbols = EnumSet.copyOf(symbols);
+		this.ringSize = ringSize;
+		this.journalDirectory = journalDirectory;
+		this.flushPolicy = flushPolicy;
+		this.snapshotIntervalMillis = snapshotIntervalMillis;
+	}
+
+	// Streams every shard's commands to the primary's replicas, to be set before initializeOrderBook.
+	// The seed orders then go through the sequencer so replicas start from the same book. A shard recovered
+	// from its journal is not streamed, its replicas need a copy of the recovered book at sequence 0.
+	public void setReplication(ReplicationPrimary replication) {
+		this.replication = replication;
+	}
+
+	@Override
+	public void initializeOrderBook() {
+
+		Map<Symbol, OrderSequencer> newShards = new EnumMap<>(Symbol.class);
+		Map<Symbol, EngineMetrics> newMetrics = new EnumMap<>(Symbol.class);
+		for(Symbol symbol : symbols) {
+			MatchingEngine orderBook = MatchingEngineFactory.create(symbol, engineMode);
+			EngineMetrics engineMetrics = new EngineMetrics(symbol);
+			newMetrics.put(symbol, engineMetrics);
+			if(journalDirectory == null && replication == null) {
+				orderBook.setEventListener(eventListener);
+				orderBook.setMetrics(engineMetrics);
+				OrderUtility.seedOrderBook(orderBook);
+				newShards.put(symbol, new OrderSequencer(orderBook, ringSize));
+			} else if(journalDirectory == null) {
+				orderBook.setEventListener(eventListener);
+				orderBook.setMetrics(engineMetrics);
+				OrderSequencer sequencer = new OrderSequencer(orderBook, ringSize, ringSize, replication.getJournal(symbol));
+				seed(sequencer);
+				newShards.put(symbol, sequencer);
+			} else {
+				newShards.put(symbol, openJournaledShard(orderBook, engineMetrics));
+			}
+		}
+		shards = newShards;
+		metrics = newMetrics;
+
+		if(journalDirectory != null && snapshotIntervalMillis > 0) {
+			snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "orderbook-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+			snapshotScheduler.scheduleWithFixedDelay(this::takeSnapshots, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// recovery runs before the listener is attached so recovered commands are not reported twice,
+	// a new journal gets the seed orders through the sequencer so they are journaled as well
+	private OrderSequencer openJournaledShard(MatchingEngine orderBook, EngineMetrics engineMetrics) {
+		Symbol symbol = orderBook.getSymbol();
+		JournalStore store = new JournalStore(journalDirectory, symbol);
+		boolean recovered = !store.isEmpty();
+		if(recovered) {
+			store.recover(orderBook);
+		}
+		orderBook.setEventListener(eventListener);
+		orderBook.setMetrics(engineMetrics);
+
+		OrderJournal journal = new OrderJournal(store.getJournalFile(), symbol, flushPolicy);
+		stores.put(symbol, store);
+		journals.put(symbol, journal);
+		CommandJournal commandJournal = replication == null ? journal : new CompositeCommandJournal(journal, replication.getJournal(symbol));
+		OrderSequencer sequencer = new OrderSequencer(orderBook, ringSize, ringSize, commandJournal);
+		if(!recovered) {
+			seed(sequencer);
+		}
+		return sequencer;
+	}
+
+	private static void seed(OrderSequencer sequencer) {
+		for(Order order : OrderUtility.seedOrders(sequencer.getEngine().getSymbol())) {
+			await(sequencer.submit(order, OrderActionType.ADD));
+		}
+	}
+
+	// Only the copy of the book and the journal roll run on the matching thread,
+	// encoding and syncing the snapshot file happen on the calling thread.
+	public void takeSnapshot(Symbol symbol) {
+		OrderSequencer shard = getShard(symbol);
+		OrderJournal journal = journals.get(symbol);
+		if(journal == null)
+			throw new IllegalStateException("Journaling is not enabled");
+		BookSnapshot snapshot = shard.submitTask(engine -> {
+			BookSnapshot captured = BookSnapshot.capture(engine, journal.getLastSequence());
+			journal.roll();
+			return captured;
+		}).join();
+		stores.get(symbol).saveSnapshot(snapshot);
+	}
+
+	private void takeSnapshots() {
+		for(Symbol symbol : shards.keySet()) {
+			try {
+				takeSnapshot(symbol);
+			} catch (RuntimeException e) {
+				// keep the schedule alive, the journal still holds everything
+				System.err.println("Snapshot failed for " + symbol + ": " + e);
+			}
+		}
+	}
+
+	private OrderSequencer getShard(Symbol symbol) {
+		OrderSequencer shard = shards.get(symbol);
+		if(shard == null)
+			throw new OrderException("No order book for symbol:" + symbol);
+		return shard;
+	}
+
+	@Override
+	public void placeNewOrder(Order order) {
+		await(placeNewOrderAsync(order));
+	}
+
+	@Override
+	public void cancelOrder(Order order) {
+		await(getShard(order.getSymbol()).submit(order, OrderActionType.REMOVE));
+	}
+
+	@Override
+	public void amendOrder(Order order) {
+		await(amendOrderAsync(order));
+	}
+
+	// Without a symbol every shard is asked whether it holds the order, as a task that is not journaled,
+	// and only the first one that does gets the REMOVE, so the cancel is journaled once. Prefer
+	// cancelOrder(Symbol, String), which skips the lookup round trip.
+	@Override
+	public void cancelOrder(String orderId) {
+		Map<Symbol, CompletableFuture<Boolean>> lookups = new EnumMap<>(Symbol.class);
+		for(Map.Entry<Symbol, OrderSequencer> shard : shards.entrySet()) {
+			lookups.put(shard.getKey(), shard.getValue().submitTask(engine -> engine.containsOrder(orderId)));
+		}
+		for(Map.Entry<Symbol, CompletableFuture<Boolean>> lookup : lookups.entrySet()) {
+			if(await(lookup.getValue())) {
+				await(cancelOrderAsync(lookup.getKey(), orderId));
+				return;
+			}
+		}
+		throw new OrderException("Remove fail.Not found, Order:" + orderId);
+	}
+
+	@Override
+	public void cancelOrder(Symbol symbol, String orderId) {
+		await(cancelOrderAsync(symbol, orderId));
+	}
+
+	@Override
+	public List<OrderResult> placeNewOrders(List<Order> orders) {
+		return executeBatch(orders, OrderActionType.ADD);
+	}
+
+	@Override
+	public List<OrderResult> cancelOrders(List<Order> orders) {
+		return executeBatch(orders, OrderActionType.REMOVE);
+	}
+
+	// splits the batch per symbol, the shards work on their part in parallel and the results
+	// are put back into input order
+	private List<OrderResult> executeBatch(List<Order> orders, OrderActionType orderActionType) {
+		Map<Symbol, List<Integer>> positions = new EnumMap<>(Symbol.class);
+		Map<Symbol, List<Order>> batches = new EnumMap<>(Symbol.class);
+		OrderResult[] results = new OrderResult[orders.size()];
+		for(int i = 0; i < orders.size(); i++) {
+			Order order = orders.get(i);
+			if(order == null || !shards.containsKey(order.getSymbol())) {
+				results[i] = new OrderResult(order == null ? null : order.getOrderId(),
+						new OrderException("No order book for symbol:" + (order == null ? null : order.getSymbol())));
+				continue;
+			}
+			positions.computeIfAbsent(order.getSymbol(), symbol -> new ArrayList<>()).add(i);
+			batches.computeIfAbsent(order.getSymbol(), symbol -> new ArrayList<>()).add(order);
+		}
+		Map<Symbol, CompletableFuture<List<OrderResult>>> futures = new EnumMap<>(Symbol.class);
+		for(Map.Entry<Symbol, List<Order>> batch : batches.entrySet()) {
+			futures.put(batch.getKey(), getShard(batch.getKey()).submitBatch(batch.getValue(), orderActionType));
+		}
+		for(Map.Entry<Symbol, CompletableFuture<List<OrderResult>>> future : futures.entrySet()) {
+			List<Integer> symbolPositions = positions.get(future.getKey());
+			List<OrderResult> symbolResults = future.getValue().join();
+			for(int i = 0; i < symbolResults.size(); i++) {
+				results[symbolPositions.get(i)] = symbolResults.get(i);
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	public CompletableFuture<String> placeNewOrderAsync(Order order) {
+		return getShard(order.getSymbol()).submit(order, OrderActionType.ADD);
+	}
+
+	public CompletableFuture<String> cancelOrderAsync(Symbol symbol, String orderId) {
+		return getShard(symbol).submitCancel(orderId);
+	}
+
+	public CompletableFuture<String> amendOrderAsync(Order order) {
+		return getShard(order.getSymbol()).submit(order, OrderActionType.AMEND);
+	}
+
+	@Override
+	public int massCancel(MassCancel massCancel) {
+		return await(massCancelAsync(massCancel));
+	}
+
+	// without a symbol every shard cancels its part in parallel, e.g. all orders of an owner, and the
+	// future completes with the total
+	public CompletableFuture<Integer> massCancelAsync(MassCancel massCancel) {
+		if(massCancel.getSymbol() != null) {
+			return getShard(massCancel.getSymbol()).submitMassCancel(massCancel);
+		}
+		CompletableFuture<Integer> canceled = CompletableFuture.completedFuture(0);
+		for(OrderSequencer shard : shards.values()) {
+			canceled = canceled.thenCombine(shard.submitMassCancel(massCancel), Integer::sum);
+		}
+		return canceled;
+	}
+
+	// depth as of the point in the command stream where the request is sequenced
+	public MarketDepth getMarketDepth(Symbol symbol, int levels) {
+		MarketDepth depth = new MarketDepth(levels);
+		return getShard(symbol).submitTask(engine -> engine.getMarketDepth(depth)).join();
+	}
+
+	// recording happens on the shard's matching thread, snapshot() is safe from any thread
+	public EngineMetrics getMetrics(Symbol symbol) {
+		EngineMetrics engineMetrics = metrics.get(symbol);
+		if(engineMetrics == null)
+			throw new OrderException("No order book for symbol:" + symbol);
+		return engineMetrics;
+	}
+
+	// lock free, any thread may poll it while the shard is matching
+	public TopOfBook getTopOfBook(Symbol symbol) {
+		return getShard(symbol).getEngine().getTopOfBook();
+	}
+
+	public Set<Symbol> getSymbols() {
+		return Collections.unmodifiableSet(shards.keySet());
+	}
+
+	// only safe to inspect after close, or from the shard's own listener callbacks
+	public MatchingEngine getOrderBook(Symbol symbol) {
+		return getShard(symbol).getEngine();
+	}
+
+	private static <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		if(snapshotScheduler != null) {
+			snapshotScheduler.shutdown();
+			try {
+				snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			snapshotScheduler = null;
+		}
+		for(OrderSequencer shard : shards.values()) {
+			shard.close();
+		}
+		for(OrderJournal journal : journals.values()) {
+			journal.close();
+		}
+		journals.clear();
+	}
+}
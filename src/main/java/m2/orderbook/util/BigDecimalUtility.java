@@ -5,7 +5,24 @@ import java.math.RoundingMode;
 
 public class BigDecimalUtility {
 
+	public static final int SCALE = 8;
+
+	// number of fixed point units in 1.0 at SCALE decimals
+	public static final long FIXED_POINT_ONE = 100_000_000L;
+
 	 public static BigDecimal setScale(BigDecimal value) {
-	        return value.setScale(8, RoundingMode.DOWN);
+	        return value.setScale(SCALE, RoundingMode.DOWN);
 	    }
+
+	public static long toFixedPoint(BigDecimal value) {
+		try {
+			return setScale(value).unscaledValue().longValueExact();
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("Value out of fixed point range:" + value);
+		}
+	}
+
+	public static BigDecimal fromFixedPoint(long value) {
+		return BigDecimal.valueOf(value, SCALE);
+	}
 }
@@ -1,10 +1,43 @@
 package m2.orderbook.util;
 
-import java.time.Instant;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
 
 public class OrderUtility {
 
+	private static final OrderIdGenerator orderIdGenerator = new OrderIdGenerator(Integer.getInteger("orderbook.nodeId", 0));
+
+	// unique per node even for orders in the same millisecond, see OrderIdGenerator
+	public static long nextOrderId() {
+		return orderIdGenerator.nextId();
+	}
+
 	public static String getOrderId() {
-		return  String.valueOf(Instant.now().toEpochMilli());
+		return String.valueOf(nextOrderId());
+	}
+
+	// sample book used by the services: buys at 1..5 and sells at 6..10, quantity equal to price
+	public static void seedOrderBook(MatchingEngine orderBook) {
+		for(Order order : seedOrders(orderBook.getSymbol())) {
+			orderBook.addOrder(order);
+		}
+	}
+
+	public static List<Order> seedOrders(Symbol symbol) {
+		List<Order> orders = new ArrayList<>();
+		for(int i=0;i<10;i++) {
+
+			String id = getOrderId();
+			OrderSide side = (i<5) ? OrderSide.BUY : OrderSide.SELL;
+			orders.add(new Order(symbol, id, new BigDecimal(i+1), new BigDecimal(i+1), side, Ordertype.LIMIT));
+		}
+		return orders;
 	}
 }
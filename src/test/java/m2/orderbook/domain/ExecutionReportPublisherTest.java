@@ -0,0 +1,173 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.engine.FixedPointOrderBook;
+import m2.orderbook.enums.BackPressurePolicy;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.ExecutionReport;
+import m2.orderbook.event.ExecutionReportPublisher;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.util.BigDecimalUtility;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ExecutionReportPublisherTest {
+
+    private static final long ONE = BigDecimalUtility.FIXED_POINT_ONE;
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testEveryConsumerShouldSeeEveryFillInOrder() throws OrderException {
+        List<String> clearing = Collections.synchronizedList(new ArrayList<>());
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        // a small ring that wraps many times, the spin budget is generous enough that nothing is dropped
+        try (ExecutionReportPublisher publisher = new ExecutionReportPublisher(8, BackPressurePolicy.SPIN_THEN_DROP, TimeUnit.SECONDS.toNanos(5),
+                report -> clearing.add(report.getTakerOrderId() + "/" + report.getMakerOrderId() + " " + report.getQuantity() + " " + report.getRemainingQuantity()),
+                report -> sequences.add(report.getSequence()))) {
+            orderBook.setEventListener(publisher);
+
+            orderBook.executeOrder("1", OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, ONE);
+            orderBook.executeOrder("2", OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, 3 * ONE);
+            orderBook.executeOrder("3", OrderSide.BUY, Ordertype.MARKET, 0L, 2 * ONE);
+            orderBook.executeOrder(10L, OrderSide.SELL, Ordertype.LIMIT, 101 * ONE, ONE);
+            orderBook.executeOrder(11L, OrderSide.BUY, Ordertype.LIMIT, 101 * ONE, 3 * ONE);
+            for (int i = 0; i < 100; i++) {
+                orderBook.executeOrder(100L + i, OrderSide.SELL, Ordertype.LIMIT, 102 * ONE, ONE);
+                orderBook.executeOrder(1000L + i, OrderSide.BUY, Ordertype.LIMIT, 102 * ONE, ONE);
+            }
+            assertEquals(0, publisher.getDroppedReports());
+        }
+
+        // close drains both consumers
+        assertEquals(104, clearing.size());
+        assertEquals("3/1 " + ONE + " " + ONE, clearing.get(0));
+        assertEquals("3/2 " + ONE + " 0", clearing.get(1));
+        assertEquals("11/2 " + 2 * ONE + " " + ONE, clearing.get(2));
+        assertEquals("11/10 " + ONE + " 0", clearing.get(3));
+        assertEquals("1000/100 " + ONE + " 0", clearing.get(4));
+        assertEquals(104, sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i, sequences.get(i));
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testSlowConsumerShouldNotBlockTheMatchingThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<ExecutionReport> copies = Collections.synchronizedList(new ArrayList<>());
+        List<Long> fast = Collections.synchronizedList(new ArrayList<>());
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        ExecutionReportPublisher publisher = new ExecutionReportPublisher(16, report -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            copies.add(report);
+        }, report -> fast.add(report.getSequence()));
+        orderBook.setEventListener(publisher);
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            orderBook.executeOrder(2 * i, OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, ONE);
+            orderBook.executeOrder(2 * i + 1, OrderSide.BUY, Ordertype.LIMIT, 100 * ONE, ONE);
+        }
+        // 1000 fills against a stuck consumer, well within a second
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+
+        // the stuck consumer never frees a slot, the ring fills up and the rest is dropped
+        assertEquals(16, publisher.getPublishedReports());
+        assertEquals(1000 - 16, publisher.getDroppedReports());
+        assertTrue(publisher.getConsumerLag(0) > 0);
+
+        release.countDown();
+        publisher.close();
+        assertEquals(16, copies.size());
+        assertEquals(16, fast.size());
+        assertEquals(0, publisher.getConsumerLag(0));
+        assertEquals(0, publisher.getHandlerErrors());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testSpinThenDropShouldWaitForTheConsumerUpToTheBudget() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        List<Long> received = Collections.synchronizedList(new ArrayList<>());
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        try (ExecutionReportPublisher publisher = new ExecutionReportPublisher(4, BackPressurePolicy.SPIN_THEN_DROP, TimeUnit.MILLISECONDS.toNanos(50), report -> {
+            if (received.isEmpty() && stuck.getCount() > 0) {
+                try {
+                    stuck.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            received.add(report.getSequence());
+        })) {
+            orderBook.setEventListener(publisher);
+            long started = System.nanoTime();
+            for (int i = 0; i < 6; i++) {
+                orderBook.executeOrder(2 * i, OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, ONE);
+                orderBook.executeOrder(2 * i + 1, OrderSide.BUY, Ordertype.LIMIT, 100 * ONE, ONE);
+            }
+            long elapsed = System.nanoTime() - started;
+
+            // the fifth and sixth fill each spun out the 50ms budget while the consumer was stuck
+            assertEquals(2, publisher.getDroppedReports());
+            assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(100), "elapsed " + elapsed);
+            assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(1000), "elapsed " + elapsed);
+
+            stuck.countDown();
+            orderBook.executeOrder(100L, OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, ONE);
+            orderBook.executeOrder(101L, OrderSide.BUY, Ordertype.LIMIT, 100 * ONE, ONE);
+        }
+        // the fill after the consumer caught up got through, sequences stay contiguous
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), received);
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(4)
+    void testConsumerShouldSeeTheReportsItLost() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        ExecutionReportPublisher publisher = new ExecutionReportPublisher(4, report -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(report.getSequence() + ":" + report.getDroppedReports());
+        });
+        orderBook.setEventListener(publisher);
+        for (int i = 0; i < 10; i++) {
+            orderBook.executeOrder(2 * i, OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, ONE);
+            orderBook.executeOrder(2 * i + 1, OrderSide.BUY, Ordertype.LIMIT, 100 * ONE, ONE);
+        }
+        assertEquals(6, publisher.getDroppedReports());
+        release.countDown();
+        while (publisher.getConsumerLag(0) > 0) {
+            Thread.onSpinWait();
+        }
+        orderBook.executeOrder(100L, OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, ONE);
+        orderBook.executeOrder(101L, OrderSide.BUY, Ordertype.LIMIT, 100 * ONE, ONE);
+        publisher.close();
+
+        // no gap in the sequences, the drops show up in the count on the next report
+        assertEquals(List.of("0:0", "1:0", "2:0", "3:0", "4:6"), received);
+        assertEquals(6, publisher.getConsumerDroppedReports(0));
+    }
+}
@@ -0,0 +1,207 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.engine.FixedPointOrderBook;
+import m2.orderbook.engine.OffHeapOrderBook;
+import m2.orderbook.engine.SymbolConfig;
+import m2.orderbook.enums.LadderType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.metrics.EngineMetrics;
+import m2.orderbook.util.BigDecimalUtility;
+import m2.orderbook.util.OrderIdGenerator;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FixedPointOrderBookAllocationTest {
+
+    private static final int IDS = 1024;
+    private static final long TICK = BigDecimalUtility.FIXED_POINT_ONE / 100;
+    private static final long PRICE = 100 * BigDecimalUtility.FIXED_POINT_ONE;
+
+    private final String[] makerIds = new String[IDS];
+    private final String[] takerIds = new String[IDS];
+
+    @Test
+    void testAddMatchCancelShouldNotAllocateAfterWarmUp() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < IDS; i++) {
+            makerIds[i] = "m" + i;
+            takerIds[i] = "t" + i;
+            // String caches its hash on first use, warm it up front
+            makerIds[i].hashCode();
+            takerIds[i].hashCode();
+        }
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 256));
+        // recording metrics has to stay allocation free as well
+        orderBook.setMetrics(new EngineMetrics(Symbol.BTC));
+
+        runWorkload(orderBook, 200_000);
+
+        int operations = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        runWorkload(orderBook, operations);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, allocated / operations, "bytes allocated per operation: " + allocated + " / " + operations);
+    }
+
+    @Test
+    void testLongIdPathShouldNotAllocateIncludingIdGeneration() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 256));
+        orderBook.setMetrics(new EngineMetrics(Symbol.BTC));
+        OrderIdGenerator idGenerator = new OrderIdGenerator(1);
+        long[] ids = new long[4];
+
+        runLongIdWorkload(orderBook, idGenerator, ids, 200_000);
+
+        int operations = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        runLongIdWorkload(orderBook, idGenerator, ids, operations);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, allocated / operations, "bytes allocated per operation: " + allocated + " / " + operations);
+    }
+
+    @Test
+    void testDefaultTreeMapLadderShouldAllocateWhereArrayLadderDoesNot() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // the default config, the allocation free guarantee does not cover it
+        assertEquals(LadderType.TREE_MAP, SymbolConfig.forSymbol(Symbol.BTC).getLadderType());
+        long defaultAllocated = longIdWorkloadAllocation(threadBean, new FixedPointOrderBook(Symbol.BTC));
+        long arrayAllocated = longIdWorkloadAllocation(threadBean,
+                new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 256)));
+
+        assertTrue(defaultAllocated > 0, "default ladder bytes allocated per operation: " + defaultAllocated);
+        assertEquals(0, arrayAllocated, "ARRAY ladder bytes allocated per operation: " + arrayAllocated);
+    }
+
+    // bytes per iteration of runLongIdWorkload after warm-up
+    private long longIdWorkloadAllocation(com.sun.management.ThreadMXBean threadBean, FixedPointOrderBook orderBook) {
+        orderBook.setMetrics(new EngineMetrics(Symbol.BTC));
+        OrderIdGenerator idGenerator = new OrderIdGenerator(1);
+        long[] ids = new long[4];
+        runLongIdWorkload(orderBook, idGenerator, ids, 200_000);
+
+        int operations = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        runLongIdWorkload(orderBook, idGenerator, ids, operations);
+        return (threadBean.getThreadAllocatedBytes(threadId) - before) / operations;
+    }
+
+    @Test
+    void testOffHeapLongIdPathShouldNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        OffHeapOrderBook orderBook = new OffHeapOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 256));
+        orderBook.setMetrics(new EngineMetrics(Symbol.BTC));
+        OrderIdGenerator idGenerator = new OrderIdGenerator(1);
+        long[] ids = new long[4];
+
+        runOffHeapWorkload(orderBook, idGenerator, ids, 200_000);
+
+        int operations = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        runOffHeapWorkload(orderBook, idGenerator, ids, operations);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, allocated / operations, "bytes allocated per operation: " + allocated + " / " + operations);
+    }
+
+    @Test
+    void testOffHeapBookShouldKeepRestingOrdersOffTheHeap() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        int orders = 500_000;
+        long threadId = Thread.currentThread().getId();
+
+        OffHeapOrderBook offHeapBook = new OffHeapOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 256));
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < orders; i++) {
+            offHeapBook.executeOrder((long) i, OrderSide.BUY, Ordertype.LIMIT, PRICE - (i % 200) * TICK, one);
+        }
+        long offHeapAllocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        FixedPointOrderBook heapBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 256));
+        before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < orders; i++) {
+            heapBook.executeOrder((long) i, OrderSide.BUY, Ordertype.LIMIT, PRICE - (i % 200) * TICK, one);
+        }
+        long heapAllocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(orders, offHeapBook.getOrderCount());
+        // what is left on the heap is the growth of the int id table
+        assertTrue(offHeapAllocated / orders < 24, "off-heap book bytes per order: " + offHeapAllocated / orders);
+        assertTrue(heapAllocated > 2 * offHeapAllocated, "heap book " + heapAllocated + " off-heap book " + offHeapAllocated);
+    }
+
+    private void runOffHeapWorkload(OffHeapOrderBook orderBook, OrderIdGenerator idGenerator, long[] ids, int iterations) {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        for (int i = 0; i < iterations; i++) {
+            for (int level = 0; level < 4; level++) {
+                ids[level] = idGenerator.nextId();
+                orderBook.executeOrder(ids[level], OrderSide.SELL, Ordertype.LIMIT, PRICE + level * TICK, 2 * one);
+            }
+            orderBook.executeOrder(idGenerator.nextId(), OrderSide.BUY, Ordertype.LIMIT, PRICE + TICK, 3 * one);
+            orderBook.executeOrder(idGenerator.nextId(), OrderSide.BUY, Ordertype.MARKET, 0L, 2 * one);
+            orderBook.cancelOrder(ids[2]);
+            orderBook.cancelOrder(ids[3]);
+        }
+        assertEquals(0, orderBook.getOrderCount());
+    }
+
+    // same workload as runWorkload with freshly generated primitive ids
+    private void runLongIdWorkload(FixedPointOrderBook orderBook, OrderIdGenerator idGenerator, long[] ids, int iterations) {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        for (int i = 0; i < iterations; i++) {
+            for (int level = 0; level < 4; level++) {
+                ids[level] = idGenerator.nextId();
+                orderBook.executeOrder(ids[level], OrderSide.SELL, Ordertype.LIMIT, PRICE + level * TICK, 2 * one);
+            }
+            orderBook.executeOrder(idGenerator.nextId(), OrderSide.BUY, Ordertype.LIMIT, PRICE + TICK, 3 * one);
+            orderBook.executeOrder(idGenerator.nextId(), OrderSide.BUY, Ordertype.MARKET, 0L, 2 * one);
+            orderBook.cancelOrder(ids[2]);
+            orderBook.cancelOrder(ids[3]);
+        }
+        assertEquals(0, orderBook.getOrderCount());
+    }
+
+    // per iteration: rest several levels deep, match part of them with a LIMIT and a MARKET order, cancel the rest
+    private void runWorkload(FixedPointOrderBook orderBook, int iterations) {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        for (int i = 0; i < iterations; i++) {
+            int slot = (i * 4) % IDS;
+            for (int level = 0; level < 4; level++) {
+                orderBook.executeOrder(makerIds[slot + level], OrderSide.SELL, Ordertype.LIMIT, PRICE + level * TICK, 2 * one);
+            }
+            orderBook.executeOrder(takerIds[slot], OrderSide.BUY, Ordertype.LIMIT, PRICE + TICK, 3 * one);
+            orderBook.executeOrder(takerIds[slot + 1], OrderSide.BUY, Ordertype.MARKET, 0L, 2 * one);
+            orderBook.cancelOrder(makerIds[slot + 2]);
+            orderBook.cancelOrder(makerIds[slot + 3]);
+        }
+        assertEquals(0, orderBook.getOrderCount());
+    }
+}
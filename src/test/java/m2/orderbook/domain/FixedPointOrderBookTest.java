@@ -0,0 +1,939 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.OrderBook;
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.FixedPointOrderBook;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.OffHeapOrderBook;
+import m2.orderbook.engine.SymbolConfig;
+import m2.orderbook.engine.TopOfBook;
+import m2.orderbook.enums.LadderType;
+import m2.orderbook.enums.LatencyType;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.metrics.EngineMetrics;
+import m2.orderbook.metrics.Histogram;
+import m2.orderbook.metrics.HistogramSnapshot;
+import m2.orderbook.metrics.MetricsSnapshot;
+import m2.orderbook.util.BigDecimalUtility;
+import m2.orderbook.util.OrderIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class FixedPointOrderBookTest {
+    private FixedPointOrderBook orderBook;
+
+    @BeforeEach
+    void setUp() {
+        orderBook = new FixedPointOrderBook(Symbol.BTC);
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testFixedPointConversionShouldKeepEightDecimalsRoundedDown() {
+        assertEquals(123456789L, BigDecimalUtility.toFixedPoint(new BigDecimal("1.234567899")));
+        assertEquals(0, new BigDecimal("1.23456789").compareTo(BigDecimalUtility.fromFixedPoint(123456789L)));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testLimitOrderShouldMatchAcrossLevelsAndRestRemainder() throws OrderException {
+        orderBook.addOrder(new Order("1", new BigDecimal("100"), new BigDecimal("1.5"), OrderSide.SELL, Ordertype.LIMIT));
+        orderBook.addOrder(new Order("2", new BigDecimal("101"), new BigDecimal("2"), OrderSide.SELL, Ordertype.LIMIT));
+
+        Order buy = new Order("3", new BigDecimal("101"), new BigDecimal("4"), OrderSide.BUY, Ordertype.LIMIT);
+        orderBook.executeOrder(buy, OrderActionType.ADD);
+
+        assertEquals(0, orderBook.getLevelCount(OrderSide.SELL));
+        assertEquals(0, new BigDecimal("0.5").compareTo(buy.getQuantity()));
+        assertEquals(BigDecimalUtility.toFixedPoint(new BigDecimal("101")), orderBook.getBestPrice(OrderSide.BUY));
+        assertEquals(BigDecimalUtility.toFixedPoint(new BigDecimal("0.5")), orderBook.getQuantityAtPrice(OrderSide.BUY, orderBook.getBestPrice(OrderSide.BUY)));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testMatchingShouldGiveSameResultAsBigDecimalOrderBook() throws OrderException {
+        OrderBook reference = new OrderBook(Symbol.BTC);
+        String[][] orders = {
+                {"1", "10.123456789", "0.333333333", "SELL", "LIMIT"},
+                {"2", "10.12345678", "1.1", "SELL", "LIMIT"},
+                {"3", "9.5", "2.00000001", "BUY", "LIMIT"},
+                {"4", "10.2", "0.5", "BUY", "LIMIT"},
+                {"5", null, "0.7", "BUY", "MARKET"},
+                {"6", "9.4", "3.3", "SELL", "LIMIT"},
+        };
+
+        for (String[] values : orders) {
+            Ordertype type = Ordertype.valueOf(values[4]);
+            BigDecimal price = values[1] == null ? null : new BigDecimal(values[1]);
+            Order referenceOrder = new Order(values[0], price, new BigDecimal(values[2]), OrderSide.valueOf(values[3]), type);
+            Order order = new Order(values[0], price, new BigDecimal(values[2]), OrderSide.valueOf(values[3]), type);
+
+            reference.executeOrder(referenceOrder, OrderActionType.ADD);
+            orderBook.executeOrder(order, OrderActionType.ADD);
+            assertEquals(0, referenceOrder.getQuantity().compareTo(order.getQuantity()));
+        }
+        assertEquals(reference.getBuyOrders().size(), orderBook.getLevelCount(OrderSide.BUY));
+        assertEquals(reference.getSellOrders().size(), orderBook.getLevelCount(OrderSide.SELL));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(4)
+    void testRemoveOrderShouldThrowOrderExceptionWhenOrderNotFound() throws OrderException {
+        Order order = new Order("1", new BigDecimal("100"), new BigDecimal("10"), OrderSide.BUY, Ordertype.LIMIT);
+        orderBook.addOrder(order);
+        orderBook.removeOrder(order);
+        assertEquals(0, orderBook.getLevelCount(OrderSide.BUY));
+
+        OrderException exception = assertThrows(OrderException.class, () -> {
+            orderBook.removeOrder(order);
+        });
+        assertTrue(exception.getMessage().contains("Remove fail.Not found, Order:" + order.getOrderId()));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(5)
+    void testCancelOrderByIdShouldOnlyNeedOrderId() throws OrderException {
+        orderBook.addOrder(new Order("1", new BigDecimal("100"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+        orderBook.addOrder(new Order("2", new BigDecimal("100"), new BigDecimal("2"), OrderSide.SELL, Ordertype.LIMIT));
+        orderBook.addOrder(new Order("3", new BigDecimal("100"), new BigDecimal("3"), OrderSide.SELL, Ordertype.LIMIT));
+
+        orderBook.cancelOrder("2");
+        assertEquals(2, orderBook.getOrderCount());
+
+        // remaining orders keep their time priority
+        Order buy = new Order("4", new BigDecimal("100"), new BigDecimal("2"), OrderSide.BUY, Ordertype.LIMIT);
+        orderBook.executeOrder(buy, OrderActionType.ADD);
+        assertEquals(1, orderBook.getOrderCount());
+        assertEquals(BigDecimalUtility.toFixedPoint(new BigDecimal("2")), orderBook.getQuantityAtPrice(OrderSide.SELL, orderBook.getBestPrice(OrderSide.SELL)));
+        assertThrows(OrderException.class, () -> {
+            orderBook.cancelOrder("1");
+        });
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(6)
+    void testArrayLadderShouldMatchLikeTreeMapLadder() throws OrderException {
+        // small window so that the random walk forces recentering and growth
+        FixedPointOrderBook arrayBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.5"), 8));
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            BigDecimal quantity = new BigDecimal(1 + random.nextInt(20));
+            if (random.nextInt(10) == 0) {
+                Order order = new Order("m" + i, null, quantity, side, Ordertype.MARKET);
+                Order arrayOrder = new Order("m" + i, null, quantity, side, Ordertype.MARKET);
+                orderBook.executeOrder(order, OrderActionType.ADD);
+                arrayBook.executeOrder(arrayOrder, OrderActionType.ADD);
+                assertEquals(0, order.getQuantity().compareTo(arrayOrder.getQuantity()));
+            } else {
+                BigDecimal price = new BigDecimal(200 + random.nextInt(100)).multiply(new BigDecimal("0.5"));
+                Order order = new Order("l" + i, price, quantity, side, Ordertype.LIMIT);
+                Order arrayOrder = new Order("l" + i, price, quantity, side, Ordertype.LIMIT);
+                orderBook.executeOrder(order, OrderActionType.ADD);
+                arrayBook.executeOrder(arrayOrder, OrderActionType.ADD);
+                assertEquals(0, order.getQuantity().compareTo(arrayOrder.getQuantity()));
+            }
+            assertEquals(orderBook.getBestPrice(OrderSide.BUY), arrayBook.getBestPrice(OrderSide.BUY));
+            assertEquals(orderBook.getBestPrice(OrderSide.SELL), arrayBook.getBestPrice(OrderSide.SELL));
+        }
+        assertEquals(orderBook.getLevelCount(OrderSide.BUY), arrayBook.getLevelCount(OrderSide.BUY));
+        assertEquals(orderBook.getLevelCount(OrderSide.SELL), arrayBook.getLevelCount(OrderSide.SELL));
+        assertEquals(orderBook.toString(), arrayBook.toString());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(7)
+    void testArrayLadderShouldRejectPriceOffTickGrid() {
+        FixedPointOrderBook arrayBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.5"), 8));
+        assertThrows(OrderException.class, () -> {
+            arrayBook.addOrder(new Order("1", new BigDecimal("100.25"), new BigDecimal("1"), OrderSide.BUY, Ordertype.LIMIT));
+        });
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(8)
+    void testEventListenerShouldReceiveMatchingEvents() throws OrderException {
+        List<String> events = new ArrayList<>();
+        orderBook.setEventListener(new OrderEventListener() {
+            @Override
+            public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId + " " + quantity);
+            }
+
+            @Override
+            public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+                events.add("partial " + takerOrderId + "/" + makerOrderId + " " + quantity + " " + remainingQuantity);
+            }
+
+            @Override
+            public void onOrderRested(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+                events.add("rest " + orderId + " " + quantity);
+            }
+
+            @Override
+            public void onOrderCanceled(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+                events.add("cancel " + orderId + " " + quantity);
+            }
+
+            @Override
+            public void onMarketOrderUnfilled(Symbol symbol, String orderId, OrderSide side, long unfilledQuantity) {
+                events.add("unfilled " + orderId + " " + unfilledQuantity);
+            }
+        });
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+
+        orderBook.executeOrder(new Order("1", new BigDecimal("100"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("2", new BigDecimal("100"), new BigDecimal("3"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("3", null, new BigDecimal("2"), OrderSide.BUY, Ordertype.MARKET), OrderActionType.ADD);
+        orderBook.cancelOrder("2");
+        orderBook.executeOrder(new Order("4", null, new BigDecimal("1"), OrderSide.BUY, Ordertype.MARKET), OrderActionType.ADD);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("rest 1 " + one);
+        expected.add("rest 2 " + 3 * one);
+        expected.add("partial 3/1 " + one + " " + one);
+        expected.add("trade 3/2 " + one);
+        expected.add("cancel 2 " + 2 * one);
+        expected.add("unfilled 4 " + one);
+        assertEquals(expected, events);
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(9)
+    void testMarketDepthShouldTrackFillsAddsAndCancels() throws OrderException {
+        OrderBook reference = new OrderBook(Symbol.BTC);
+        Random random = new Random(11);
+        List<String> resting = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            int action = random.nextInt(10);
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            BigDecimal quantity = new BigDecimal(1 + random.nextInt(9)).divide(new BigDecimal("4"));
+            if (action < 2 && !resting.isEmpty()) {
+                String id = resting.remove(random.nextInt(resting.size()));
+                boolean referenceCanceled = cancelIfResting(reference, id);
+                assertEquals(referenceCanceled, cancelIfResting(orderBook, id));
+            } else if (action < 3) {
+                reference.executeOrder(new Order("m" + i, null, quantity, side, Ordertype.MARKET), OrderActionType.ADD);
+                orderBook.executeOrder(new Order("m" + i, null, quantity, side, Ordertype.MARKET), OrderActionType.ADD);
+            } else {
+                BigDecimal price = new BigDecimal(90 + random.nextInt(20));
+                reference.executeOrder(new Order("l" + i, price, quantity, side, Ordertype.LIMIT), OrderActionType.ADD);
+                orderBook.executeOrder(new Order("l" + i, price, quantity, side, Ordertype.LIMIT), OrderActionType.ADD);
+                resting.add("l" + i);
+            }
+        }
+
+        MarketDepth depth = orderBook.getMarketDepth(new MarketDepth(5));
+        MarketDepth referenceDepth = reference.getMarketDepth(new MarketDepth(5));
+        assertEquals(referenceDepth.toString(), depth.toString());
+
+        // aggregates have to agree with a walk over the resting orders
+        MarketDepth fullDepth = orderBook.getMarketDepth(new MarketDepth(100));
+        for (OrderSide side : OrderSide.values()) {
+            assertEquals(orderBook.getLevelCount(side), fullDepth.getLevelCount(side));
+            assertTrue(depth.getLevelCount(side) <= 5);
+            for (int level = 0; level < fullDepth.getLevelCount(side); level++) {
+                long price = fullDepth.getPrice(side, level);
+                long[] walked = new long[2];
+                orderBook.forEachRestingOrder(side, (orderId, orderPrice, quantity) -> {
+                    if (orderPrice == price) {
+                        walked[0] += quantity;
+                        walked[1]++;
+                    }
+                });
+                assertEquals(walked[0], fullDepth.getQuantity(side, level));
+                assertEquals(walked[1], fullDepth.getOrderCount(side, level));
+            }
+        }
+    }
+
+    private static boolean cancelIfResting(MatchingEngine engine, String orderId) {
+        try {
+            engine.cancelOrder(orderId);
+            return true;
+        } catch (OrderException e) {
+            return false;
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(10)
+    void testTopOfBookReadersShouldNeverSeeTornLevels() throws Exception {
+        TopOfBook topOfBook = orderBook.getTopOfBook();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            Thread reader = new Thread(() -> {
+                MarketDepth depth = new MarketDepth(TopOfBook.DEFAULT_LEVELS);
+                while (writing.get() && failure.get() == null) {
+                    topOfBook.read(depth);
+                    String error = checkLevels(depth);
+                    if (error != null) {
+                        failure.set(error);
+                    }
+                    long bid = topOfBook.getBestBid();
+                    long ask = topOfBook.getBestAsk();
+                    if (bid != 0 && ask != 0 && topOfBook.getSpread() <= 0) {
+                        failure.set("crossed book " + bid + "/" + ask);
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+
+        // every order's quantity equals its price, so a level is only consistent if quantity == price * count
+        Random random = new Random(5);
+        List<String> resting = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            if (resting.size() > 200 || (random.nextInt(3) == 0 && !resting.isEmpty())) {
+                orderBook.cancelOrder(resting.remove(random.nextInt(resting.size())));
+            } else {
+                boolean buy = random.nextBoolean();
+                long price = (buy ? 80 + random.nextInt(20) : 100 + random.nextInt(20)) * BigDecimalUtility.FIXED_POINT_ONE;
+                orderBook.executeOrder("o" + i, buy ? OrderSide.BUY : OrderSide.SELL, Ordertype.LIMIT, price, price);
+                resting.add("o" + i);
+            }
+        }
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+
+        MarketDepth published = topOfBook.read(new MarketDepth(TopOfBook.DEFAULT_LEVELS));
+        assertEquals(orderBook.getMarketDepth(new MarketDepth(TopOfBook.DEFAULT_LEVELS)).toString(), published.toString());
+        assertEquals(orderBook.getBestPrice(OrderSide.BUY), topOfBook.getBestBid());
+    }
+
+    private static String checkLevels(MarketDepth depth) {
+        for (OrderSide side : OrderSide.values()) {
+            for (int level = 0; level < depth.getLevelCount(side); level++) {
+                long price = depth.getPrice(side, level);
+                if (depth.getQuantity(side, level) != price * depth.getOrderCount(side, level)) {
+                    return "torn level " + side + " " + level;
+                }
+                if (level > 0 && (side == OrderSide.BUY) == (price >= depth.getPrice(side, level - 1))) {
+                    return "unordered levels " + side + " " + level;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(11)
+    void testMetricsShouldCountFillsLevelsAndLatencies() throws OrderException {
+        EngineMetrics metrics = new EngineMetrics(Symbol.BTC);
+        orderBook.setMetrics(metrics);
+        orderBook.executeOrder(new Order("1", new BigDecimal("100"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("2", new BigDecimal("101"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("3", new BigDecimal("101"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("4", null, new BigDecimal("2.5"), OrderSide.BUY, Ordertype.MARKET), OrderActionType.ADD);
+        orderBook.cancelOrder("3");
+        assertThrows(OrderException.class, () -> orderBook.cancelOrder("3"));
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(4, snapshot.getOrders());
+        assertEquals(3, snapshot.getFills());
+        assertEquals(1, snapshot.getCancels());
+        assertEquals(1, snapshot.getRejects());
+        assertEquals(0, snapshot.getRestingOrders());
+        assertEquals(3, snapshot.getLatency(LatencyType.ADD).getCount());
+        assertEquals(1, snapshot.getLatency(LatencyType.MATCH).getCount());
+        assertEquals(1, snapshot.getLatency(LatencyType.CANCEL).getCount());
+        assertEquals(1, snapshot.getLatency(Ordertype.MARKET).getCount());
+        assertEquals(2, snapshot.getLevelsPerOrder().getMax());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(12)
+    void testHistogramPercentilesShouldBeWithinOnePercent() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1_000_000, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(500_000, snapshot.getValueAtPercentile(50), 5_000);
+        assertEquals(990_000, snapshot.getValueAtPercentile(99), 9_900);
+        assertEquals(999_000, snapshot.getValueAtPercentile(99.9), 9_990);
+        assertEquals(1_000_000, snapshot.getValueAtPercentile(100));
+        assertEquals(0, new Histogram().snapshot().getValueAtPercentile(99));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(13)
+    void testOrderIdGeneratorShouldBeUniqueAndMonotonicAcrossThreadsAndNodes() throws InterruptedException {
+        OrderIdGenerator node1 = new OrderIdGenerator(1);
+        OrderIdGenerator node2 = new OrderIdGenerator(2);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        int perThread = 50_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            OrderIdGenerator generator = t % 2 == 0 ? node1 : node2;
+            threads.add(new Thread(() -> {
+                long last = 0;
+                for (int i = 0; i < perThread; i++) {
+                    long id = generator.nextId();
+                    if (id <= last) {
+                        outOfOrder.set(true);
+                    }
+                    last = id;
+                    ids.add(id);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(outOfOrder.get());
+        assertEquals(4 * perThread, ids.size());
+
+        long id = node2.nextId();
+        assertEquals(2, OrderIdGenerator.nodeIdOf(id));
+        assertTrue(Math.abs(OrderIdGenerator.timestampOf(id) - System.currentTimeMillis()) < 60_000);
+        assertThrows(IllegalArgumentException.class, () -> new OrderIdGenerator(OrderIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(14)
+    void testLongIdsShouldMatchCancelAndRejectDuplicates() throws OrderException {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        List<String> events = new ArrayList<>();
+        orderBook.setEventListener(new OrderEventListener() {
+            @Override
+            public void onTrade(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId);
+            }
+
+            @Override
+            public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId + " string");
+            }
+
+            @Override
+            public void onOrderCanceled(Symbol symbol, long orderId, OrderSide side, long price, long quantity) {
+                events.add("cancel " + orderId);
+            }
+        });
+
+        orderBook.executeOrder(10L, OrderSide.SELL, Ordertype.LIMIT, 100 * one, one);
+        orderBook.executeOrder(11L, OrderSide.SELL, Ordertype.LIMIT, 100 * one, one);
+        assertThrows(OrderException.class, () -> orderBook.executeOrder(11L, OrderSide.SELL, Ordertype.LIMIT, 101 * one, one));
+        // the String id space is separate, "10" is a different order
+        orderBook.executeOrder("10", OrderSide.SELL, Ordertype.LIMIT, 102 * one, one);
+        assertEquals(3, orderBook.getOrderCount());
+
+        assertEquals(0, orderBook.executeOrder(20L, OrderSide.BUY, Ordertype.LIMIT, 100 * one, one));
+        orderBook.cancelOrder(11L);
+        assertThrows(OrderException.class, () -> orderBook.cancelOrder(11L));
+        // mixed taker/maker ids are reported through the String callbacks
+        orderBook.executeOrder("21", OrderSide.BUY, Ordertype.MARKET, 0L, one);
+
+        assertEquals(List.of("trade 20/10", "cancel 11", "trade 21/10 string"), events);
+        assertEquals(0, orderBook.getOrderCount());
+        assertEquals(0, orderBook.getBestPrice(OrderSide.SELL));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(15)
+    void testFokShouldBeKilledWithoutTouchingTheBookAndIocShouldNotRest() throws OrderException {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        List<String> events = new ArrayList<>();
+        orderBook.executeOrder("s1", OrderSide.SELL, Ordertype.LIMIT, 100 * one, one);
+        orderBook.executeOrder("s2", OrderSide.SELL, Ordertype.LIMIT, 101 * one, one);
+        orderBook.executeOrder("s3", OrderSide.SELL, Ordertype.LIMIT, 102 * one, 5 * one);
+        orderBook.setEventListener(new OrderEventListener() {
+            @Override
+            public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId);
+            }
+
+            @Override
+            public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+                events.add("fill " + takerOrderId + "/" + makerOrderId);
+            }
+
+            @Override
+            public void onMarketOrderUnfilled(Symbol symbol, String orderId, OrderSide side, long unfilledQuantity) {
+                events.add("unfilled " + orderId + " " + unfilledQuantity / one);
+            }
+        });
+
+        // only 2 available at or below 101
+        assertEquals(3 * one, orderBook.executeOrder("f1", OrderSide.BUY, Ordertype.FOK, 101 * one, 3 * one));
+        assertEquals(3, orderBook.getOrderCount());
+        assertEquals(one, orderBook.getQuantityAtPrice(OrderSide.SELL, 100 * one));
+
+        assertEquals(0, orderBook.executeOrder("f2", OrderSide.BUY, Ordertype.FOK, 101 * one, 2 * one));
+        assertEquals(2 * one, orderBook.executeOrder("i1", OrderSide.BUY, Ordertype.IOC, 102 * one, 7 * one));
+        assertEquals(0, orderBook.getOrderCount());
+        assertEquals(0, orderBook.getBestPrice(OrderSide.BUY));
+
+        assertEquals(List.of("unfilled f1 3", "fill f2/s1", "trade f2/s2", "fill i1/s3", "unfilled i1 2"), events);
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(16)
+    void testIocAndFokShouldMatchAcrossLaddersAndBigDecimalOrderBook() throws OrderException {
+        OrderBook reference = new OrderBook(Symbol.BTC);
+        // small window so the cumulative depth index is rebuilt on recentering
+        FixedPointOrderBook arrayBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.5"), 8));
+        Ordertype[] types = {Ordertype.LIMIT, Ordertype.LIMIT, Ordertype.LIMIT, Ordertype.IOC, Ordertype.FOK, Ordertype.FOK};
+        Random random = new Random(16);
+
+        for (int i = 0; i < 3000; i++) {
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            Ordertype type = types[random.nextInt(types.length)];
+            BigDecimal quantity = new BigDecimal(1 + random.nextInt(30));
+            BigDecimal price = new BigDecimal(180 + random.nextInt(40)).multiply(new BigDecimal("0.5"));
+            Order referenceOrder = new Order("o" + i, price, quantity, side, type);
+            Order order = new Order("o" + i, price, quantity, side, type);
+            Order arrayOrder = new Order("o" + i, price, quantity, side, type);
+            reference.executeOrder(referenceOrder, OrderActionType.ADD);
+            orderBook.executeOrder(order, OrderActionType.ADD);
+            arrayBook.executeOrder(arrayOrder, OrderActionType.ADD);
+            assertEquals(0, referenceOrder.getQuantity().compareTo(order.getQuantity()));
+            assertEquals(0, referenceOrder.getQuantity().compareTo(arrayOrder.getQuantity()));
+            if (type == Ordertype.FOK) {
+                assertTrue(order.getQuantity().signum() == 0 || order.getQuantity().compareTo(quantity) == 0);
+            }
+        }
+        assertEquals(reference.toString(), orderBook.toString());
+        assertEquals(orderBook.toString(), arrayBook.toString());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(17)
+    void testAmendShouldKeepPriorityOnlyForQuantityReductions() throws OrderException {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        List<String> events = new ArrayList<>();
+        orderBook.executeOrder("s1", OrderSide.SELL, Ordertype.LIMIT, 100 * one, 5 * one);
+        orderBook.executeOrder("s2", OrderSide.SELL, Ordertype.LIMIT, 100 * one, 5 * one);
+        orderBook.executeOrder("s3", OrderSide.SELL, Ordertype.LIMIT, 101 * one, 5 * one);
+        orderBook.setEventListener(new OrderEventListener() {
+            @Override
+            public void onOrderAmended(Symbol symbol, String orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+                events.add("amend " + orderId + " " + price / one + " " + quantity / one + " " + keptPriority);
+            }
+
+            @Override
+            public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId + " " + quantity / one);
+            }
+
+            @Override
+            public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+                events.add("fill " + takerOrderId + "/" + makerOrderId + " " + quantity / one);
+            }
+        });
+
+        // reduce in place, s1 stays in front of s2
+        assertEquals(2 * one, orderBook.amendOrder("s1", OrderSide.SELL, 100 * one, 2 * one));
+        assertEquals(7 * one, orderBook.getQuantityAtPrice(OrderSide.SELL, 100 * one));
+        orderBook.executeOrder("b1", OrderSide.BUY, Ordertype.LIMIT, 100 * one, one);
+
+        // an increase goes to the back of the queue, behind s2
+        orderBook.amendOrder("s1", OrderSide.SELL, 100 * one, 3 * one);
+        orderBook.executeOrder("b2", OrderSide.BUY, Ordertype.LIMIT, 100 * one, one);
+
+        // rejected amends leave the order untouched
+        assertThrows(OrderException.class, () -> orderBook.amendOrder("s1", OrderSide.BUY, 99 * one, one));
+        assertThrows(OrderException.class, () -> orderBook.amendOrder("s1", OrderSide.SELL, 100 * one, 0));
+        assertThrows(OrderException.class, () -> orderBook.amendOrder("nope", OrderSide.SELL, 100 * one, one));
+
+        // a price change that crosses trades first and rests the rest
+        orderBook.executeOrder("b3", OrderSide.BUY, Ordertype.LIMIT, 99 * one, 2 * one);
+        assertEquals(one, orderBook.amendOrder("s3", OrderSide.SELL, 99 * one, 3 * one));
+        assertEquals(99 * one, orderBook.getBestPrice(OrderSide.SELL));
+        assertEquals(0, orderBook.getBestPrice(OrderSide.BUY));
+        assertEquals(0, orderBook.getQuantityAtPrice(OrderSide.SELL, 101 * one));
+
+        assertEquals(List.of("amend s1 100 2 true", "trade b1/s1 1",
+                "amend s1 100 3 false", "trade b2/s2 1",
+                "amend s3 99 3 false", "fill s3/b3 2"), events);
+        assertEquals(3, orderBook.getOrderCount());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(18)
+    void testAmendShouldMatchBigDecimalOrderBookAcrossLadders() throws OrderException {
+        OrderBook reference = new OrderBook(Symbol.BTC);
+        FixedPointOrderBook arrayBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.5"), 8));
+        MatchingEngine[] engines = {reference, orderBook, arrayBook};
+        Random random = new Random(17);
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            BigDecimal price = new BigDecimal(180 + random.nextInt(40)).multiply(new BigDecimal("0.5"));
+            BigDecimal quantity = new BigDecimal(1 + random.nextInt(10));
+            boolean amend = random.nextInt(3) == 0 && !ids.isEmpty();
+            String id = amend ? ids.get(random.nextInt(ids.size())) : "o" + i;
+            if (!amend) {
+                ids.add(id);
+            }
+            BigDecimal[] left = new BigDecimal[engines.length];
+            boolean[] rejected = new boolean[engines.length];
+            for (int e = 0; e < engines.length; e++) {
+                Order order = new Order(id, price, quantity, side, Ordertype.LIMIT);
+                try {
+                    engines[e].executeOrder(order, amend ? OrderActionType.AMEND : OrderActionType.ADD);
+                } catch (OrderException ex) {
+                    rejected[e] = true;
+                }
+                left[e] = order.getQuantity();
+            }
+            for (int e = 1; e < engines.length; e++) {
+                assertEquals(rejected[0], rejected[e]);
+                assertEquals(0, left[0].compareTo(left[e]));
+            }
+        }
+        assertEquals(reference.toString(), orderBook.toString());
+        assertEquals(orderBook.toString(), arrayBook.toString());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(19)
+    void testTriggeredStopsShouldCascadeThroughTheMatchingPath() throws OrderException {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        for (int level = 0; level < 4; level++) {
+            orderBook.executeOrder("s" + (100 + level), OrderSide.SELL, Ordertype.LIMIT, (100 + level) * one, one);
+        }
+        orderBook.executeStopOrder("stop", OrderSide.BUY, Ordertype.STOP, 101 * one, 0L, one);
+        orderBook.executeStopOrder("stopLimit", OrderSide.BUY, Ordertype.STOP_LIMIT, 102 * one, 102 * one, 2 * one);
+        orderBook.executeStopOrder("sellStop", OrderSide.SELL, Ordertype.STOP, 99 * one, 0L, one);
+        assertThrows(OrderException.class, () -> orderBook.executeStopOrder("bad", OrderSide.BUY, Ordertype.STOP, 0L, 0L, one));
+        assertThrows(OrderException.class, () -> orderBook.executeOrder("stop", OrderSide.BUY, Ordertype.LIMIT, 90 * one, one));
+        assertEquals(3, orderBook.getStopOrderCount());
+        assertEquals(4, orderBook.getOrderCount());
+
+        List<String> events = new ArrayList<>();
+        orderBook.setEventListener(new OrderEventListener() {
+            @Override
+            public void onStopTriggered(Symbol symbol, String orderId, OrderSide side, long stopPrice) {
+                events.add("triggered " + orderId);
+            }
+
+            @Override
+            public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId);
+            }
+
+            @Override
+            public void onOrderRested(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+                events.add("rested " + orderId + " " + price / one + " " + quantity / one);
+            }
+        });
+
+        // a trade at 100 reaches no stop
+        orderBook.executeOrder("b1", OrderSide.BUY, Ordertype.LIMIT, 100 * one, one);
+        // the trade at 101 triggers the STOP, whose trade at 102 triggers the STOP_LIMIT
+        orderBook.executeOrder("b2", OrderSide.BUY, Ordertype.LIMIT, 101 * one, one);
+
+        assertEquals(List.of("trade b1/s100", "trade b2/s101", "triggered stop", "trade stop/s102", "triggered stopLimit", "rested stopLimit 102 2"), events);
+        assertEquals(1, orderBook.getStopOrderCount());
+        assertEquals(102 * one, orderBook.getBestPrice(OrderSide.BUY));
+
+        // parked stops cancel like resting orders and never show up in the depth
+        orderBook.cancelOrder("sellStop");
+        assertEquals(0, orderBook.getStopOrderCount());
+        assertThrows(OrderException.class, () -> orderBook.cancelOrder("sellStop"));
+        assertEquals(2, orderBook.getOrderCount());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(20)
+    void testStopsShouldTriggerTheSameWayAcrossEngines() throws OrderException {
+        OrderBook reference = new OrderBook(Symbol.BTC);
+        FixedPointOrderBook arrayBook = new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.5"), 8));
+        MatchingEngine[] engines = {reference, orderBook, arrayBook};
+        Ordertype[] types = {Ordertype.LIMIT, Ordertype.LIMIT, Ordertype.LIMIT, Ordertype.MARKET, Ordertype.STOP, Ordertype.STOP_LIMIT};
+        Random random = new Random(18);
+        List<String> ids = new ArrayList<>();
+        List<List<String>> events = new ArrayList<>();
+        for (MatchingEngine engine : engines) {
+            List<String> engineEvents = new ArrayList<>();
+            events.add(engineEvents);
+            engine.setEventListener(new OrderEventListener() {
+                @Override
+                public void onStopTriggered(Symbol symbol, String orderId, OrderSide side, long stopPrice) {
+                    engineEvents.add("triggered " + orderId);
+                }
+
+                @Override
+                public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                    engineEvents.add("trade " + takerOrderId + "/" + makerOrderId + " " + price + " " + quantity);
+                }
+
+                @Override
+                public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+                    engineEvents.add("fill " + takerOrderId + "/" + makerOrderId + " " + price + " " + quantity);
+                }
+            });
+        }
+
+        for (int i = 0; i < 3000; i++) {
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            Ordertype type = types[random.nextInt(types.length)];
+            BigDecimal price = new BigDecimal(180 + random.nextInt(40)).multiply(new BigDecimal("0.5"));
+            BigDecimal stopPrice = new BigDecimal(180 + random.nextInt(40)).multiply(new BigDecimal("0.5"));
+            BigDecimal quantity = new BigDecimal(1 + random.nextInt(10));
+            boolean cancel = random.nextInt(8) == 0 && !ids.isEmpty();
+            String id = cancel ? ids.remove(random.nextInt(ids.size())) : "o" + i;
+            if (!cancel) {
+                ids.add(id);
+            }
+            for (MatchingEngine engine : engines) {
+                if (cancel) {
+                    try {
+                        engine.cancelOrder(id);
+                    } catch (OrderException e) {
+                        // filled or dropped already, the same in every engine
+                    }
+                } else {
+                    engine.executeOrder(new Order(Symbol.BTC, id, price, stopPrice, quantity, side, type), OrderActionType.ADD);
+                }
+            }
+        }
+        assertTrue(events.get(0).stream().anyMatch(event -> event.startsWith("triggered")));
+        assertEquals(events.get(0), events.get(1));
+        assertEquals(events.get(0), events.get(2));
+        assertEquals(reference.toString(), orderBook.toString());
+        assertEquals(orderBook.toString(), arrayBook.toString());
+        assertEquals(reference.getStopOrderCount(), orderBook.getStopOrderCount());
+        assertEquals(orderBook.getStopOrderCount(), arrayBook.getStopOrderCount());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(21)
+    void testOffHeapBookShouldMatchFixedPointBook() throws OrderException {
+        OffHeapOrderBook offHeapBook = new OffHeapOrderBook(Symbol.BTC);
+        OffHeapOrderBook offHeapArrayBook = new OffHeapOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.5"), 8));
+        MatchingEngine[] engines = {orderBook, offHeapBook, offHeapArrayBook};
+        Ordertype[] types = {Ordertype.LIMIT, Ordertype.LIMIT, Ordertype.LIMIT, Ordertype.MARKET, Ordertype.IOC, Ordertype.FOK,
+                Ordertype.STOP, Ordertype.STOP_LIMIT};
+        Random random = new Random(21);
+        List<String> ids = new ArrayList<>();
+        List<List<String>> events = new ArrayList<>();
+        for (MatchingEngine engine : engines) {
+            List<String> engineEvents = new ArrayList<>();
+            events.add(engineEvents);
+            engine.setEventListener(new OrderEventListener() {
+                @Override
+                public void onStopTriggered(Symbol symbol, String orderId, OrderSide side, long stopPrice) {
+                    engineEvents.add("triggered " + orderId);
+                }
+
+                @Override
+                public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                    engineEvents.add("trade " + takerOrderId + "/" + makerOrderId + " " + price + " " + quantity);
+                }
+
+                @Override
+                public void onPartialFill(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity, long remainingQuantity) {
+                    engineEvents.add("fill " + takerOrderId + "/" + makerOrderId + " " + price + " " + quantity);
+                }
+
+                @Override
+                public void onOrderCanceled(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+                    engineEvents.add("cancel " + orderId + " " + price + " " + quantity);
+                }
+
+                @Override
+                public void onOrderAmended(Symbol symbol, String orderId, OrderSide side, long price, long quantity, boolean keptPriority) {
+                    engineEvents.add("amend " + orderId + " " + price + " " + quantity + " " + keptPriority);
+                }
+            });
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            Ordertype type = types[random.nextInt(types.length)];
+            BigDecimal price = new BigDecimal(180 + random.nextInt(40)).multiply(new BigDecimal("0.5"));
+            BigDecimal stopPrice = new BigDecimal(180 + random.nextInt(40)).multiply(new BigDecimal("0.5"));
+            BigDecimal quantity = new BigDecimal(1 + random.nextInt(10));
+            int action = ids.isEmpty() ? 0 : random.nextInt(8);
+            String id = action == 1 ? ids.remove(random.nextInt(ids.size())) : action == 2 ? ids.get(random.nextInt(ids.size())) : "o" + i;
+            if (action != 1 && action != 2) {
+                ids.add(id);
+            }
+            boolean[] rejected = new boolean[engines.length];
+            for (int e = 0; e < engines.length; e++) {
+                try {
+                    if (action == 1) {
+                        engines[e].cancelOrder(id);
+                    } else if (action == 2) {
+                        engines[e].executeOrder(new Order(id, price, quantity, side, Ordertype.LIMIT), OrderActionType.AMEND);
+                    } else {
+                        engines[e].executeOrder(new Order(Symbol.BTC, id, price, stopPrice, quantity, side, type), OrderActionType.ADD);
+                    }
+                } catch (OrderException ex) {
+                    rejected[e] = true;
+                }
+            }
+            assertEquals(rejected[0], rejected[1]);
+            assertEquals(rejected[0], rejected[2]);
+        }
+        assertTrue(events.get(0).stream().anyMatch(event -> event.startsWith("triggered")));
+        assertEquals(events.get(0), events.get(1));
+        assertEquals(events.get(0), events.get(2));
+        assertEquals(orderBook.toString(), offHeapBook.toString());
+        assertEquals(orderBook.toString(), offHeapArrayBook.toString());
+        assertEquals(orderBook.getOrderCount(), offHeapBook.getOrderCount());
+        assertEquals(orderBook.getStopOrderCount(), offHeapArrayBook.getStopOrderCount());
+        for (OrderSide side : OrderSide.values()) {
+            assertEquals(restingOrders(orderBook, side), restingOrders(offHeapArrayBook, side));
+            assertEquals(stopOrders(orderBook, side), stopOrders(offHeapArrayBook, side));
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(22)
+    void testOffHeapBookShouldReuseSlabRecordsAndKeepIdSpacesApart() throws OrderException {
+        long one = BigDecimalUtility.FIXED_POINT_ONE;
+        OffHeapOrderBook offHeapBook = new OffHeapOrderBook(Symbol.BTC);
+        List<String> events = new ArrayList<>();
+        offHeapBook.setEventListener(new OrderEventListener() {
+            @Override
+            public void onTrade(Symbol symbol, long takerOrderId, long makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId);
+            }
+
+            @Override
+            public void onTrade(Symbol symbol, String takerOrderId, String makerOrderId, OrderSide takerSide, long price, long quantity) {
+                events.add("trade " + takerOrderId + "/" + makerOrderId + " string");
+            }
+        });
+
+        offHeapBook.executeOrder(10L, OrderSide.SELL, Ordertype.LIMIT, 100 * one, one);
+        offHeapBook.executeOrder("10", OrderSide.SELL, Ordertype.LIMIT, 100 * one, one);
+        assertThrows(OrderException.class, () -> offHeapBook.executeOrder(10L, OrderSide.SELL, Ordertype.LIMIT, 101 * one, one));
+        assertThrows(OrderException.class, () -> offHeapBook.executeOrder("10", OrderSide.SELL, Ordertype.LIMIT, 101 * one, one));
+        // ids that do not fit a slab record cannot rest, but may still take liquidity
+        String longId = "x".repeat(40);
+        assertThrows(OrderException.class, () -> offHeapBook.executeOrder(longId, OrderSide.BUY, Ordertype.LIMIT, 90 * one, one));
+        offHeapBook.executeOrder(20L, OrderSide.BUY, Ordertype.MARKET, 0L, one);
+        offHeapBook.executeOrder(longId, OrderSide.BUY, Ordertype.IOC, 100 * one, one);
+        assertEquals(List.of("trade 20/10", "trade " + longId + "/10 string"), events);
+        assertEquals(0, offHeapBook.getOrderCount());
+
+        // freed records are reused, the slabs only grow with the largest book
+        for (int round = 0; round < 3; round++) {
+            for (long id = 1000; id < 101_000; id++) {
+                offHeapBook.executeOrder(id, OrderSide.BUY, Ordertype.LIMIT, (50 + id % 40) * one, one);
+            }
+            assertEquals(100_000, offHeapBook.getOrderCount());
+            for (long id = 1000; id < 101_000; id++) {
+                offHeapBook.cancelOrder(id);
+            }
+            assertEquals(0, offHeapBook.getOrderCount());
+            assertEquals(0, offHeapBook.getLevelCount(OrderSide.BUY));
+        }
+        assertTrue(offHeapBook.getReservedOffHeapBytes() <= 2L * 65536 * 96, String.valueOf(offHeapBook.getReservedOffHeapBytes()));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(23)
+    void testArrayLadderShouldRefuseRestingPricesBeyondItsMaximumWindow() {
+        SymbolConfig config = new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 1024, 4096);
+        List<MatchingEngine> engines = List.of(new FixedPointOrderBook(Symbol.BTC, config), new OffHeapOrderBook(Symbol.BTC, config),
+                new FixedPointOrderBook(Symbol.BTC, new SymbolConfig(LadderType.ARRAY, new BigDecimal("0.01"), 1024)));
+        for (MatchingEngine engine : engines) {
+            engine.executeOrder(new Order("bid", new BigDecimal("100"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+            engine.executeOrder(new Order("ask", new BigDecimal("101"), BigDecimal.ONE, OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+
+            // the window span no longer overflows, the price is refused before anything trades
+            Order far = new Order("far", new BigDecimal("100000000"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT);
+            OrderException exception = assertTimeoutPreemptively(java.time.Duration.ofSeconds(5),
+                    () -> assertThrows(OrderException.class, () -> engine.executeOrder(far, OrderActionType.ADD)));
+            assertTrue(exception.getMessage().contains("Price outside ladder window"), exception.getMessage());
+            assertEquals(List.of("ask 10100000000 100000000"), restingOrders(engine, OrderSide.SELL));
+            Order farAmend = new Order("bid", new BigDecimal("100000000"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT);
+            assertThrows(OrderException.class, () -> engine.executeOrder(farAmend, OrderActionType.AMEND));
+            assertEquals(List.of("bid 10000000000 100000000"), restingOrders(engine, OrderSide.BUY));
+
+            // orders that never rest may still use any price
+            engine.executeOrder(new Order("sweep", new BigDecimal("100000000"), BigDecimal.ONE, OrderSide.BUY, Ordertype.IOC), OrderActionType.ADD);
+            assertTrue(restingOrders(engine, OrderSide.SELL).isEmpty());
+
+            // the window grows up to its maximum
+            engine.executeOrder(new Order("near", new BigDecimal("120"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+            assertEquals(2, restingOrders(engine, OrderSide.BUY).size());
+            Order beyond = new Order("beyond", new BigDecimal("150"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT);
+            if (engine == engines.get(2)) {
+                // within the default maximum
+                engine.executeOrder(beyond, OrderActionType.ADD);
+                assertEquals(3, restingOrders(engine, OrderSide.BUY).size());
+            } else {
+                assertThrows(OrderException.class, () -> engine.executeOrder(beyond, OrderActionType.ADD));
+                assertEquals(2, restingOrders(engine, OrderSide.BUY).size());
+            }
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(24)
+    void testWideSparseArrayLadderShouldFindNextLevelWithoutWalkingEmptySlots() {
+        // one tick per unit over a 2^20 slot window, the levels sit hundreds of thousands of slots apart
+        SymbolConfig config = new SymbolConfig(LadderType.ARRAY, BigDecimal.ONE, 1 << 20);
+        List<FixedPointOrderBook> engines = List.of(new FixedPointOrderBook(Symbol.BTC, config), new OffHeapOrderBook(Symbol.BTC, config));
+        for (FixedPointOrderBook engine : engines) {
+            engine.executeOrder(new Order("deepBid", new BigDecimal("10"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+            engine.executeOrder(new Order("deepAsk", new BigDecimal("1000000"), BigDecimal.ONE, OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 2000; i++) {
+                    // every fill empties the best level, the new best is found across the empty slots
+                    engine.executeOrder(new Order("b" + i, new BigDecimal(400000 + i), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+                    engine.executeOrder(new Order("a" + i, new BigDecimal(600000 - i), BigDecimal.ONE, OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+                    assertEquals(BigDecimalUtility.toFixedPoint(new BigDecimal(400000 + i)), engine.getBestPrice(OrderSide.BUY));
+                    engine.executeOrder(new Order("s" + i, null, BigDecimal.ONE, OrderSide.SELL, Ordertype.MARKET), OrderActionType.ADD);
+                    engine.executeOrder(new Order("m" + i, null, BigDecimal.ONE, OrderSide.BUY, Ordertype.MARKET), OrderActionType.ADD);
+                    assertEquals(BigDecimalUtility.toFixedPoint(BigDecimal.TEN), engine.getBestPrice(OrderSide.BUY));
+                    assertEquals(BigDecimalUtility.toFixedPoint(new BigDecimal("1000000")), engine.getBestPrice(OrderSide.SELL));
+                }
+            });
+            assertEquals(List.of("deepBid 1000000000 100000000"), restingOrders(engine, OrderSide.BUY));
+            assertEquals(List.of("deepAsk 100000000000000 100000000"), restingOrders(engine, OrderSide.SELL));
+        }
+    }
+
+    private static List<String> restingOrders(MatchingEngine engine, OrderSide side) {
+        List<String> orders = new ArrayList<>();
+        engine.forEachRestingOrder(side, (orderId, price, quantity) -> orders.add(orderId + " " + price + " " + quantity));
+        return orders;
+    }
+
+    private static List<String> stopOrders(MatchingEngine engine, OrderSide side) {
+        List<String> orders = new ArrayList<>();
+        engine.forEachStopOrder(side, (orderId, type, stopPrice, limitPrice, quantity) -> orders.add(orderId + " " + type + " " + stopPrice + " " + limitPrice + " " + quantity));
+        return orders;
+    }
+}
@@ -0,0 +1,146 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.enums.ArrivalPattern;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.FlushPolicy;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.journal.JournalStore;
+import m2.orderbook.loadgen.ArrivalSchedule;
+import m2.orderbook.loadgen.JournalReplay;
+import m2.orderbook.loadgen.LoadCommand;
+import m2.orderbook.loadgen.LoadHarness;
+import m2.orderbook.loadgen.LoadProfile;
+import m2.orderbook.loadgen.LoadReport;
+import m2.orderbook.loadgen.LoadSample;
+import m2.orderbook.loadgen.SyntheticOrderStream;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class LoadHarnessTest {
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testSyntheticStreamShouldFollowTheProfile() {
+        LoadProfile profile = new LoadProfile(EnumSet.of(Symbol.BTC, Symbol.ETH), 1);
+        List<String> first = describe(new SyntheticOrderStream(profile, 10000));
+        List<String> second = describe(new SyntheticOrderStream(profile, 10000));
+        // same seed, same stream apart from the generated ids
+        assertEquals(first, second);
+
+        int adds = 0;
+        int cancels = 0;
+        int markets = 0;
+        EnumSet<Symbol> symbols = EnumSet.noneOf(Symbol.class);
+        SyntheticOrderStream stream = new SyntheticOrderStream(profile, 10000);
+        while (stream.hasNext()) {
+            LoadCommand command = stream.next();
+            symbols.add(command.getSymbol());
+            if (command.getActionType() == OrderActionType.REMOVE) {
+                cancels++;
+            } else if (command.getOrder().getType() == Ordertype.MARKET) {
+                markets++;
+            } else {
+                adds++;
+                assertTrue(command.getOrder().getPrice().signum() > 0);
+            }
+        }
+        assertEquals(EnumSet.of(Symbol.BTC, Symbol.ETH), symbols);
+        assertEquals(10000, adds + cancels + markets);
+        assertTrue(Math.abs(cancels - 3000) < 300, "cancels " + cancels);
+        assertTrue(Math.abs(markets - 1000) < 200, "markets " + markets);
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testHarnessShouldReportThroughputLatencyAndBookSize() {
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.allOf(Symbol.class), 1 << 10)) {
+            service.initializeOrderBook();
+            LoadHarness harness = new LoadHarness(service, () -> service.getMetrics(Symbol.BTC).getRestingOrders(), 1);
+            LoadReport report = harness.run(new SyntheticOrderStream(new LoadProfile(EnumSet.of(Symbol.BTC), 7), 20000));
+
+            assertEquals(20000, report.getCommands());
+            assertEquals(20000, report.getLatency().getCount());
+            assertTrue(report.getRejected() > 0);
+            assertEquals(report.getRejected(), service.getMetrics(Symbol.BTC).snapshot().getRejects());
+            assertTrue(report.getThroughput() > 0);
+
+            List<LoadSample> samples = report.getSamples();
+            assertFalse(samples.isEmpty());
+            LoadSample last = samples.get(samples.size() - 1);
+            assertEquals(20000, last.getCommands());
+            assertEquals(service.getMetrics(Symbol.BTC).getRestingOrders(), last.getBookSize());
+            assertTrue(last.getBookSize() > 0);
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testPacedRunShouldHoldTheTargetRate() {
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC), 1 << 10)) {
+            service.initializeOrderBook();
+            for (ArrivalPattern pattern : ArrivalPattern.values()) {
+                LoadHarness harness = new LoadHarness(service, null, 100);
+                LoadReport report = harness.run(new SyntheticOrderStream(new LoadProfile(EnumSet.of(Symbol.BTC), 3), 2000),
+                        new ArrivalSchedule(pattern, 10000, 3));
+
+                // 2000 commands at 10k/s take about 200ms, never much less
+                assertEquals(2000, report.getCommands());
+                assertTrue(report.getElapsedNanos() > 100_000_000L, pattern + " " + report);
+                assertEquals(-1, report.getSamples().get(0).getBookSize());
+            }
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(4)
+    void testJournalReplayShouldRebuildTheSameBook(@TempDir Path directory) {
+        long resting;
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC), 1 << 10, directory, FlushPolicy.NONE)) {
+            service.initializeOrderBook();
+            new LoadHarness(service, null, 1000).run(new SyntheticOrderStream(new LoadProfile(EnumSet.of(Symbol.BTC), 11), 5000));
+            resting = service.getMetrics(Symbol.BTC).getRestingOrders();
+        }
+
+        List<LoadCommand> commands = JournalReplay.read(Collections.singletonList(new JournalStore(directory, Symbol.BTC).getJournalFile()));
+        // the seed orders are journaled ahead of the generated stream
+        assertEquals(5010, commands.size());
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC), 1 << 10)) {
+            service.initializeOrderBook();
+            // the fresh service seeds its own copy of the sample orders, replay only the generated part
+            LoadReport report = new LoadHarness(service, null, 1000).run(commands.subList(10, commands.size()).iterator());
+            assertEquals(5000, report.getCommands());
+            assertEquals(resting, service.getMetrics(Symbol.BTC).getRestingOrders());
+        }
+    }
+
+    private static List<String> describe(SyntheticOrderStream stream) {
+        List<String> commands = new ArrayList<>();
+        while (stream.hasNext()) {
+            LoadCommand command = stream.next();
+            commands.add(command.getActionType() == OrderActionType.REMOVE ? "REMOVE " + command.getSymbol()
+                    : command.getSymbol() + " " + command.getOrder().getSide() + " " + command.getOrder().getType()
+                    + " " + command.getOrder().getPrice() + " " + command.getOrder().getQuantity());
+        }
+        return commands;
+    }
+}
@@ -0,0 +1,161 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.engine.FixedPointOrderBook;
+import m2.orderbook.engine.TopOfBook;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.marketdata.MarketDataHandler;
+import m2.orderbook.marketdata.MarketDataPublisher;
+import m2.orderbook.util.BigDecimalUtility;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MarketDataPublisherTest {
+
+    private static final long ONE = BigDecimalUtility.FIXED_POINT_ONE;
+
+    // rebuilds the depth from snapshot plus level updates, like a downstream consumer would
+    private static class DepthMirror implements MarketDataHandler {
+        final Map<OrderSide, TreeMap<Long, Long>> levels = new EnumMap<>(OrderSide.class);
+        final CountDownLatch snapshot = new CountDownLatch(1);
+        final CountDownLatch updated = new CountDownLatch(1);
+        long sequence = -1;
+        int gaps;
+
+        DepthMirror() {
+            levels.put(OrderSide.BUY, new TreeMap<>());
+            levels.put(OrderSide.SELL, new TreeMap<>());
+        }
+
+        @Override
+        public void onSnapshot(MarketDepth depth, long sequence) {
+            for (OrderSide side : OrderSide.values()) {
+                levels.get(side).clear();
+                for (int level = 0; level < depth.getLevelCount(side); level++) {
+                    levels.get(side).put(depth.getPrice(side, level), depth.getQuantity(side, level));
+                }
+            }
+            this.sequence = sequence;
+            snapshot.countDown();
+        }
+
+        @Override
+        public void onLevelChanged(Symbol symbol, OrderSide side, long price, long quantity, int orderCount) {
+            if (quantity == 0) {
+                levels.get(side).remove(price);
+            } else {
+                levels.get(side).put(price, quantity);
+            }
+        }
+
+        @Override
+        public void onUpdateEnd(Symbol symbol, long sequence) {
+            if (sequence != this.sequence + 1) {
+                gaps++;
+            }
+            this.sequence = sequence;
+            updated.countDown();
+        }
+    }
+
+    private static Map<OrderSide, TreeMap<Long, Long>> levels(TopOfBook topOfBook) {
+        MarketDepth depth = topOfBook.read(new MarketDepth(topOfBook.getMaxLevels()));
+        DepthMirror mirror = new DepthMirror();
+        mirror.onSnapshot(depth, 0);
+        return mirror.levels;
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testSubscribersShouldRebuildTheBookFromSnapshotAndUpdates() throws OrderException {
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        DepthMirror early = new DepthMirror();
+        DepthMirror late = new DepthMirror();
+        MarketDataPublisher publisher = new MarketDataPublisher(5, 0);
+        orderBook.setEventListener(publisher);
+        publisher.addBook(orderBook.getTopOfBook());
+        publisher.subscribe(early);
+
+        Random random = new Random(5);
+        List<Long> live = new ArrayList<>();
+        int commands = 50000;
+        for (long id = 0; id < commands; id++) {
+            if (id == commands / 2) {
+                publisher.subscribe(late);
+            }
+            if (!live.isEmpty() && random.nextInt(3) == 0) {
+                long canceled = live.remove(random.nextInt(live.size()));
+                try {
+                    orderBook.cancelOrder(Long.toString(canceled));
+                } catch (OrderException e) {
+                    // filled since it rested
+                }
+                continue;
+            }
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            long price = (side == OrderSide.BUY ? 95 + random.nextInt(10) : 96 + random.nextInt(10)) * ONE;
+            if (orderBook.executeOrder(Long.toString(id), side, Ordertype.LIMIT, price, (1 + random.nextInt(5)) * ONE) > 0) {
+                live.add(id);
+            }
+        }
+        // the final tick on close publishes the last state
+        publisher.close();
+
+        Map<OrderSide, TreeMap<Long, Long>> expected = levels(orderBook.getTopOfBook());
+        assertFalse(expected.get(OrderSide.BUY).isEmpty());
+        assertEquals(expected, early.levels);
+        assertEquals(expected, late.levels);
+        assertEquals(0, early.gaps);
+        assertEquals(0, late.gaps);
+        assertEquals(early.sequence, late.sequence);
+        assertEquals(0, publisher.getHandlerErrors());
+
+        // every command changed the book, the feed saw a small fraction of that
+        assertTrue(publisher.getBookUpdates() > 0);
+        assertTrue(publisher.getBookUpdates() <= publisher.getTicks());
+        assertTrue(publisher.getBookUpdates() < commands / 10, "updates " + publisher.getBookUpdates());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testChangeThresholdShouldTickBeforeTheInterval() throws Exception {
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        DepthMirror mirror = new DepthMirror();
+        try (MarketDataPublisher publisher = new MarketDataPublisher(TimeUnit.MINUTES.toMillis(10), 50)) {
+            orderBook.setEventListener(publisher);
+            publisher.addBook(orderBook.getTopOfBook());
+            publisher.subscribe(mirror);
+            assertTrue(mirror.snapshot.await(5, TimeUnit.SECONDS));
+            // let the tick that sent the snapshot finish before the book moves
+            Thread.sleep(100);
+            long ticks = publisher.getTicks();
+
+            for (long id = 0; id < 49; id++) {
+                orderBook.executeOrder(id, OrderSide.BUY, Ordertype.LIMIT, (90 + id % 5) * ONE, ONE);
+            }
+            // below the threshold and long before the next interval tick
+            assertFalse(mirror.updated.await(200, TimeUnit.MILLISECONDS));
+
+            orderBook.executeOrder(49L, OrderSide.SELL, Ordertype.LIMIT, 100 * ONE, ONE);
+            assertTrue(mirror.updated.await(5, TimeUnit.SECONDS));
+            assertEquals(ticks + 1, publisher.getTicks());
+        }
+        assertEquals(levels(orderBook.getTopOfBook()), mirror.levels);
+    }
+}
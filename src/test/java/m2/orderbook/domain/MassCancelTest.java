@@ -0,0 +1,264 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.dto.MarketDepth;
+import m2.orderbook.dto.MassCancel;
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.engine.MatchingEngineFactory;
+import m2.orderbook.engine.SymbolConfig;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.FlushPolicy;
+import m2.orderbook.enums.LadderType;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.journal.BookSnapshot;
+import m2.orderbook.journal.JournalReader;
+import m2.orderbook.journal.OrderJournal;
+import m2.orderbook.journal.SnapshotFile;
+import m2.orderbook.sequencer.OrderSequencer;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MassCancelTest {
+
+    @TempDir
+    Path directory;
+
+    private static final class CountingListener implements OrderEventListener {
+        final List<String> canceled = new ArrayList<>();
+        int updates;
+
+        @Override
+        public void onOrderCanceled(Symbol symbol, String orderId, OrderSide side, long price, long quantity) {
+            canceled.add(orderId);
+        }
+
+        @Override
+        public void onUpdateComplete(Symbol symbol) {
+            updates++;
+        }
+    }
+
+    private static List<MatchingEngine> engines() {
+        SymbolConfig array = new SymbolConfig(LadderType.ARRAY, BigDecimal.ONE, 64);
+        SymbolConfig treeMap = new SymbolConfig(LadderType.TREE_MAP, BigDecimal.ONE, 64);
+        List<MatchingEngine> engines = new ArrayList<>();
+        engines.add(MatchingEngineFactory.create(Symbol.BTC, EngineMode.BIG_DECIMAL));
+        engines.add(MatchingEngineFactory.create(Symbol.BTC, EngineMode.FIXED_POINT, treeMap));
+        engines.add(MatchingEngineFactory.create(Symbol.BTC, EngineMode.FIXED_POINT, array));
+        engines.add(MatchingEngineFactory.create(Symbol.BTC, EngineMode.OFF_HEAP, treeMap));
+        engines.add(MatchingEngineFactory.create(Symbol.BTC, EngineMode.OFF_HEAP, array));
+        return engines;
+    }
+
+    // two orders per price, bids 90 to 99 and asks 101 to 110, alternating between two owners
+    private static void fill(MatchingEngine engine) {
+        for (int price = 90; price <= 110; price++) {
+            if (price == 100) {
+                continue;
+            }
+            OrderSide side = price < 100 ? OrderSide.BUY : OrderSide.SELL;
+            for (int i = 0; i < 2; i++) {
+                Order order = new Order(Symbol.BTC, side + "-" + price + "-" + i, new BigDecimal(price), BigDecimal.ONE, side, Ordertype.LIMIT);
+                order.setOwner("mm-" + i);
+                engine.executeOrder(order, OrderActionType.ADD);
+            }
+        }
+    }
+
+    // a buy stop of mm-0, a sell stop of mm-1 and one without owner, none of them near a trade
+    private static void park(MatchingEngine engine) {
+        Order buyStop = new Order(Symbol.BTC, "buy-stop", new BigDecimal(116), new BigDecimal(115), BigDecimal.ONE, OrderSide.BUY, Ordertype.STOP_LIMIT);
+        buyStop.setOwner("mm-0");
+        engine.executeOrder(buyStop, OrderActionType.ADD);
+        Order sellStop = new Order(Symbol.BTC, "sell-stop", null, new BigDecimal(85), BigDecimal.ONE, OrderSide.SELL, Ordertype.STOP);
+        sellStop.setOwner("mm-1");
+        engine.executeOrder(sellStop, OrderActionType.ADD);
+        engine.executeOrder(new Order(Symbol.BTC, "free-stop", null, new BigDecimal(120), BigDecimal.ONE, OrderSide.BUY, Ordertype.STOP), OrderActionType.ADD);
+    }
+
+    private static List<String> stops(MatchingEngine engine) {
+        List<String> stops = new ArrayList<>();
+        for (OrderSide side : OrderSide.values()) {
+            engine.forEachStopOrder(side, (orderId, type, stopPrice, limitPrice, quantity) -> stops.add(orderId));
+        }
+        return stops;
+    }
+
+    private static List<String> book(MatchingEngine engine) {
+        List<String> orders = new ArrayList<>();
+        for (OrderSide side : OrderSide.values()) {
+            engine.forEachRestingOrder(side, (orderId, price, quantity) -> orders.add(orderId));
+        }
+        return orders;
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testPriceRangeShouldCancelOnlyTheLevelsInRange() {
+        for (MatchingEngine engine : engines()) {
+            fill(engine);
+            CountingListener listener = new CountingListener();
+            engine.setEventListener(listener);
+
+            assertEquals(6, engine.massCancel(new MassCancel(Symbol.BTC, OrderSide.BUY, new BigDecimal(95), new BigDecimal(97), null), null));
+            assertEquals(List.of("BUY-97-0", "BUY-97-1", "BUY-96-0", "BUY-96-1", "BUY-95-0", "BUY-95-1"), listener.canceled, engine.getClass().getSimpleName());
+            assertEquals(1, listener.updates);
+            List<String> book = book(engine);
+            assertEquals(34, book.size());
+            assertTrue(book.contains("BUY-98-0") && book.contains("BUY-94-1") && book.contains("SELL-101-0"));
+
+            // open at the top, and the range may start between levels
+            listener.canceled.clear();
+            assertEquals(6, engine.massCancel(new MassCancel(Symbol.BTC, OrderSide.SELL, new BigDecimal("107.5"), null, null), null));
+            assertEquals(List.of("SELL-108-0", "SELL-108-1", "SELL-109-0", "SELL-109-1", "SELL-110-0", "SELL-110-1"), listener.canceled);
+            assertEquals(2, listener.updates);
+            MarketDepth depth = engine.getMarketDepth(new MarketDepth(20));
+            assertEquals(7, depth.getLevelCount(OrderSide.SELL));
+            assertEquals(107 * 100_000_000L, depth.getPrice(OrderSide.SELL, 6));
+
+            // nothing in range, no book update
+            assertEquals(0, engine.massCancel(new MassCancel(Symbol.BTC, OrderSide.BUY, new BigDecimal(95), new BigDecimal(97), null), null));
+            assertEquals(2, listener.updates);
+
+            // both sides, everything left
+            assertEquals(28, engine.massCancel(new MassCancel(Symbol.BTC, null, null, null, null), null));
+            assertTrue(book(engine).isEmpty());
+            assertEquals(0L, engine.getTopOfBook().getBestBid());
+            assertEquals(3, listener.updates);
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testOwnerShouldCancelOnlyItsOwnOrders() {
+        for (MatchingEngine engine : engines()) {
+            fill(engine);
+            // partly filled, amended and triggered orders stay with their owner
+            Order taker = new Order(Symbol.BTC, "taker", new BigDecimal(101), new BigDecimal("1.5"), OrderSide.BUY, Ordertype.LIMIT);
+            engine.executeOrder(taker, OrderActionType.ADD);
+            engine.executeOrder(new Order(Symbol.BTC, "BUY-90-0", new BigDecimal(91), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.AMEND);
+            Order stop = new Order(Symbol.BTC, "stop", new BigDecimal(99), new BigDecimal(102), BigDecimal.ONE, OrderSide.BUY, Ordertype.STOP_LIMIT);
+            stop.setOwner("mm-0");
+            engine.executeOrder(stop, OrderActionType.ADD);
+            // trades 101 and 102, the stop rests as a bid at 99
+            engine.executeOrder(new Order(Symbol.BTC, "lift", new BigDecimal(102), new BigDecimal("2.5"), OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+
+            CountingListener listener = new CountingListener();
+            engine.setEventListener(listener);
+            assertEquals(0, engine.massCancel(MassCancel.forOwner(Symbol.BTC, "nobody"), null));
+            assertEquals(0, listener.updates);
+
+            List<String> visited = new ArrayList<>();
+            int canceled = engine.massCancel(MassCancel.forOwner(Symbol.BTC, "mm-0"), (orderId, price, quantity) -> visited.add(orderId));
+            String name = engine.getClass().getSimpleName();
+            // ten bids plus the triggered stop, asks 103 to 110 (101 and 102 traded away)
+            assertEquals(19, canceled, name);
+            assertEquals(visited, listener.canceled);
+            assertTrue(visited.contains("BUY-90-0") && visited.contains("stop"), name);
+            assertEquals(1, listener.updates);
+            for (String orderId : book(engine)) {
+                assertFalse(orderId.endsWith("-0") || orderId.equals("stop"), orderId);
+            }
+
+            // side and range narrow an owner cancel down
+            assertEquals(2, engine.massCancel(new MassCancel(Symbol.BTC, OrderSide.SELL, null, new BigDecimal(104), "mm-1"), null));
+            assertFalse(book(engine).contains("SELL-104-1"));
+            assertTrue(book(engine).contains("SELL-105-1"));
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testJournaledMassCancelShouldReplayToTheSameBook() throws Exception {
+        Path file = directory.resolve("BTC.journal");
+        MatchingEngine engine = MatchingEngineFactory.create(Symbol.BTC, EngineMode.FIXED_POINT);
+        try (OrderJournal journal = new OrderJournal(file, Symbol.BTC, FlushPolicy.BATCH);
+             OrderSequencer sequencer = new OrderSequencer(engine, 64, 64, journal)) {
+            for (int price = 90; price <= 110; price++) {
+                OrderSide side = price < 100 ? OrderSide.BUY : OrderSide.SELL;
+                Order order = new Order(Symbol.BTC, "o" + price, new BigDecimal(price == 100 ? 111 : price), BigDecimal.ONE, side, Ordertype.LIMIT);
+                order.setOwner(price % 2 == 0 ? "even" : "odd");
+                sequencer.submit(order, OrderActionType.ADD);
+            }
+            assertEquals(5, sequencer.submitMassCancel(new MassCancel(Symbol.BTC, OrderSide.BUY, new BigDecimal(95), null, null)).join());
+            assertEquals(7, sequencer.submitMassCancel(MassCancel.forOwner(Symbol.BTC, "odd")).join());
+            assertThrows(Exception.class, () -> sequencer.submitMassCancel(MassCancel.forSide(Symbol.ETH, OrderSide.BUY)).join());
+        }
+        List<String> expected = book(engine);
+        assertEquals(List.of("o94", "o92", "o90", "o102", "o104", "o106", "o108", "o110", "o100"), expected);
+
+        // the mass cancels are journaled as cancels by id, owners come back with the adds
+        MatchingEngine replayed = MatchingEngineFactory.create(Symbol.BTC, EngineMode.OFF_HEAP);
+        assertEquals(21 + 5 + 7, JournalReader.replay(file, replayed, 0));
+        assertEquals(expected, book(replayed));
+        assertEquals(9, replayed.massCancel(MassCancel.forOwner(Symbol.BTC, "even"), null));
+        assertTrue(book(replayed).isEmpty());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(4)
+    void testParkedStopsShouldBeCancelledWithTheBook() {
+        for (MatchingEngine engine : engines()) {
+            fill(engine);
+            park(engine);
+            String name = engine.getClass().getSimpleName();
+            CountingListener listener = new CountingListener();
+            engine.setEventListener(listener);
+
+            // the owner's stop goes with its book orders
+            List<String> visited = new ArrayList<>();
+            assertEquals(21, engine.massCancel(MassCancel.forOwner(Symbol.BTC, "mm-0"), (orderId, price, quantity) -> visited.add(orderId)), name);
+            assertTrue(visited.contains("buy-stop"), name);
+            assertEquals(List.of("free-stop", "sell-stop"), stops(engine), name);
+
+            // a range matches stops by their stop price
+            assertEquals(1, engine.massCancel(new MassCancel(Symbol.BTC, OrderSide.SELL, new BigDecimal(80), new BigDecimal(89), null), null), name);
+            assertEquals(List.of("free-stop"), stops(engine), name);
+
+            // a kill switch leaves nothing behind
+            assertEquals(21, engine.massCancel(new MassCancel(Symbol.BTC, null, null, null, null), null), name);
+            assertTrue(stops(engine).isEmpty() && book(engine).isEmpty(), name);
+            assertTrue(listener.canceled.containsAll(List.of("buy-stop", "sell-stop", "free-stop")), name);
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(5)
+    void testOwnersShouldSurviveASnapshotRestore() {
+        List<MatchingEngine> engines = engines();
+        List<MatchingEngine> restored = engines();
+        for (int i = 0; i < engines.size(); i++) {
+            MatchingEngine engine = engines.get(i);
+            fill(engine);
+            park(engine);
+            Path file = directory.resolve("BTC-" + i + ".snapshot");
+            SnapshotFile.write(BookSnapshot.capture(engine, 7), file);
+            MatchingEngine restart = restored.get(i);
+            SnapshotFile.read(file).restore(restart);
+            String name = restart.getClass().getSimpleName();
+
+            assertEquals("mm-0", restart.getOwner("BUY-90-0"), name);
+            assertEquals("mm-1", restart.getOwner("sell-stop"), name);
+            assertNull(restart.getOwner("free-stop"), name);
+            assertEquals(21, restart.massCancel(MassCancel.forOwner(Symbol.BTC, "mm-1"), null), name);
+            for (String orderId : book(restart)) {
+                assertTrue(orderId.endsWith("-0"), orderId);
+            }
+            assertEquals(List.of("buy-stop", "free-stop"), stops(restart), name);
+        }
+    }
+}
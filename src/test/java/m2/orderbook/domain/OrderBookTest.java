@@ -1,7 +1,9 @@
 package m2.orderbook.domain;
 
 import m2.orderbook.OrderBook;
+import m2.orderbook.dto.MarketDepth;
 import m2.orderbook.dto.Order;
+import m2.orderbook.engine.TopOfBook;
 import m2.orderbook.enums.OrderActionType;
 import m2.orderbook.enums.OrderSide;
 import m2.orderbook.enums.Ordertype;
@@ -143,6 +145,68 @@ public class OrderBookTest {
         assertNotNull(orderBook.getSymbol());
         assertNotEquals("", orderBook.getSymbol());
     }
+
+    @Test
+    @org.junit.jupiter.api.Order(11)
+    void testCancelOrderByIdShouldUnlinkOrderAndKeepQueuePriority() throws OrderException {
+        orderBook.clear();
+        Order order1 = new Order("10", new BigDecimal("100"), new BigDecimal("1"), OrderSide.BUY, Ordertype.LIMIT);
+        Order order2 = new Order("11", new BigDecimal("100"), new BigDecimal("2"), OrderSide.BUY, Ordertype.LIMIT);
+        Order order3 = new Order("12", new BigDecimal("100"), new BigDecimal("3"), OrderSide.BUY, Ordertype.LIMIT);
+        orderBook.addOrder(order1);
+        orderBook.addOrder(order2);
+        orderBook.addOrder(order3);
+
+        orderBook.cancelOrder("11");
+
+        assertEquals(2, orderBook.getBuyOrders().get(order1.getPrice()).size());
+        assertSame(order1, orderBook.getBuyOrders().get(order1.getPrice()).poll());
+        assertSame(order3, orderBook.getBuyOrders().get(order1.getPrice()).peek());
+        assertThrows(OrderException.class, () -> {
+            orderBook.cancelOrder("11");
+        });
+    }
     
+    @Test
+    @org.junit.jupiter.api.Order(12)
+    void testAddWithRestingIdShouldBeRejectedBeforeItTrades() throws OrderException {
+        orderBook.clear();
+        Order ask = new Order("20", new BigDecimal("100"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT);
+        Order bid = new Order("21", new BigDecimal("99"), new BigDecimal("1"), OrderSide.BUY, Ordertype.LIMIT);
+        orderBook.executeOrder(ask, OrderActionType.ADD);
+        orderBook.executeOrder(bid, OrderActionType.ADD);
+
+        Order reused = new Order("21", new BigDecimal("100"), new BigDecimal("2"), OrderSide.BUY, Ordertype.LIMIT);
+        OrderException exception = assertThrows(OrderException.class, () -> orderBook.executeOrder(reused, OrderActionType.ADD));
+        assertTrue(exception.getMessage().contains("Duplicate order id"));
+        // nothing traded
+        assertEquals(0, new BigDecimal("2").compareTo(reused.getQuantity()));
+        assertEquals(1, orderBook.getSellOrders().get(ask.getPrice()).size());
+        assertEquals(1, orderBook.getBuyOrders().get(bid.getPrice()).size());
+    }
 
-}
\ No newline at end of file
+    @Test
+    @org.junit.jupiter.api.Order(13)
+    void testTopOfBookShouldOnlyBePublishedWhenItsLevelsChange() throws OrderException {
+        orderBook.clear();
+        TopOfBook topOfBook = orderBook.getTopOfBook();
+        orderBook.executeOrder(new Order("30", new BigDecimal("100.5"), new BigDecimal("1.25"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        for (int i = 0; i < TopOfBook.DEFAULT_LEVELS; i++) {
+            orderBook.executeOrder(new Order("b" + i, new BigDecimal(99 - i), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+        }
+        long version = topOfBook.getVersion();
+
+        // below the published levels
+        orderBook.executeOrder(new Order("deep", new BigDecimal("50"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.cancelOrder("deep");
+        assertEquals(version, topOfBook.getVersion());
+
+        orderBook.executeOrder(new Order("31", new BigDecimal("100.5"), new BigDecimal("0.5"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        assertEquals(version + 2, topOfBook.getVersion());
+        MarketDepth depth = topOfBook.read(new MarketDepth(TopOfBook.DEFAULT_LEVELS));
+        assertEquals(100_50000000L, depth.getPrice(OrderSide.SELL, 0));
+        assertEquals(1_75000000L, depth.getQuantity(OrderSide.SELL, 0));
+        assertEquals(2, depth.getOrderCount(OrderSide.SELL, 0));
+        assertEquals(99_00000000L, topOfBook.getBestBid());
+    }
+}
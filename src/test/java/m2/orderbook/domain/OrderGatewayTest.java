@@ -0,0 +1,170 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.gateway.GatewayLoadClient;
+import m2.orderbook.gateway.GatewayLoadReport;
+import m2.orderbook.gateway.GatewayProtocol;
+import m2.orderbook.gateway.GatewayResponse;
+import m2.orderbook.gateway.OrderGateway;
+import m2.orderbook.metrics.MetricsSnapshot;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class OrderGatewayTest {
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testManyConcurrentSessionsShouldAllBeServed() throws Exception {
+        int sessions = 300;
+        int ordersPerSession = 20;
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC), 1 << 12)) {
+            service.initializeOrderBook();
+            try (OrderGateway gateway = new OrderGateway(service, 0)) {
+                GatewayLoadReport report = GatewayLoadClient.run(InetAddress.getLoopbackAddress().getHostAddress(), gateway.getPort(),
+                        sessions, ordersPerSession, Symbol.BTC, () -> awaitActiveSessions(gateway, sessions));
+
+                // every fourth order is followed by its cancel
+                long expectedRequests = sessions * (ordersPerSession + ordersPerSession / 4);
+                assertEquals(sessions, report.getConnectedSessions());
+                assertEquals(expectedRequests, report.getRequests());
+                assertEquals(expectedRequests, report.getRoundTrip().getCount());
+                assertEquals(expectedRequests, gateway.getRequests());
+                assertEquals(sessions, gateway.getPeakSessions());
+
+                // adds have unique ids, only cancels of already filled orders can be rejected
+                MetricsSnapshot metrics = service.getMetrics(Symbol.BTC).snapshot();
+                assertEquals(report.getRejected(), metrics.getRejects());
+                assertEquals(sessions * ordersPerSession / 4, metrics.getCancels() + metrics.getRejects());
+
+                long deadline = System.currentTimeMillis() + 5000;
+                while (gateway.getActiveSessions() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(0, gateway.getActiveSessions());
+            }
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testPipelinedRequestsShouldBeAnsweredInOrder() throws Exception {
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC), 1 << 10)) {
+            service.initializeOrderBook();
+            try (OrderGateway gateway = new OrderGateway(service, 0);
+                 Socket socket = new Socket(InetAddress.getLoopbackAddress(), gateway.getPort())) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+                Order bid = new Order(Symbol.BTC, "G1", new BigDecimal("4.5"), new BigDecimal(2), OrderSide.BUY, Ordertype.LIMIT);
+                GatewayProtocol.writeOrder(out, 1, bid, OrderActionType.ADD);
+                GatewayProtocol.writeOrder(out, 2, bid, OrderActionType.ADD);
+                Order amended = new Order(Symbol.BTC, "G1", new BigDecimal("4.5"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT);
+                GatewayProtocol.writeOrder(out, 3, amended, OrderActionType.AMEND);
+                Order stop = new Order(Symbol.BTC, "G2", null, new BigDecimal(11), BigDecimal.ONE, OrderSide.BUY, Ordertype.STOP);
+                GatewayProtocol.writeOrder(out, 4, stop, OrderActionType.ADD);
+                GatewayProtocol.writeCancel(out, 5, Symbol.BTC, "G1");
+                GatewayProtocol.writeCancel(out, 6, Symbol.BTC, "G1");
+                GatewayProtocol.writeCancel(out, 7, Symbol.ETH, "G1");
+                out.flush();
+                socket.shutdownOutput();
+
+                String[] expected = {"1 ACCEPTED", "2 REJECTED", "3 ACCEPTED", "4 ACCEPTED", "5 ACCEPTED", "6 REJECTED", "7 REJECTED"};
+                for (String response : expected) {
+                    GatewayResponse received = GatewayProtocol.readResponse(in);
+                    assertTrue(received.toString().startsWith(response), received.toString());
+                }
+                assertEquals(-1, in.read());
+            }
+            AtomicInteger stops = new AtomicInteger();
+            service.getOrderBook(Symbol.BTC).forEachStopOrder(OrderSide.BUY, (orderId, type, stopPrice, limitPrice, quantity) -> stops.incrementAndGet());
+            assertEquals(1, stops.get());
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testSessionsShouldOwnTheirOrdersForMassCancelAndDisconnect() throws Exception {
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC, Symbol.ETH), 1 << 10)) {
+            service.initializeOrderBook();
+            MatchingEngine btc = service.getOrderBook(Symbol.BTC);
+            try (OrderGateway gateway = new OrderGateway(service, 0, true);
+                 Socket first = new Socket(InetAddress.getLoopbackAddress(), gateway.getPort());
+                 Socket second = new Socket(InetAddress.getLoopbackAddress(), gateway.getPort())) {
+                DataOutputStream firstOut = new DataOutputStream(new BufferedOutputStream(first.getOutputStream()));
+                DataInputStream firstIn = new DataInputStream(new BufferedInputStream(first.getInputStream()));
+                GatewayProtocol.writeOrder(firstOut, 1, new Order(Symbol.BTC, "A1", new BigDecimal("4.5"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+                GatewayProtocol.writeOrder(firstOut, 2, new Order(Symbol.BTC, "A2", null, new BigDecimal(11), BigDecimal.ONE, OrderSide.BUY, Ordertype.STOP), OrderActionType.ADD);
+                GatewayProtocol.writeOrder(firstOut, 3, new Order(Symbol.ETH, "A3", new BigDecimal("4.5"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+                firstOut.flush();
+                for (int i = 1; i <= 3; i++) {
+                    assertTrue(GatewayProtocol.readResponse(firstIn).toString().startsWith(i + " ACCEPTED"));
+                }
+
+                DataOutputStream secondOut = new DataOutputStream(new BufferedOutputStream(second.getOutputStream()));
+                DataInputStream secondIn = new DataInputStream(new BufferedInputStream(second.getInputStream()));
+                GatewayProtocol.writeOrder(secondOut, 1, new Order(Symbol.BTC, "B1", new BigDecimal("4.5"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+                GatewayProtocol.writeOrder(secondOut, 2, new Order(Symbol.BTC, "B2", new BigDecimal("4"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+                // only reaches the second session's bids at 4.25 and above
+                GatewayProtocol.writeMassCancel(secondOut, 3, Symbol.BTC, OrderSide.BUY, new BigDecimal("4.25"), null);
+                GatewayProtocol.writeMassCancel(secondOut, 4, null, OrderSide.SELL, new BigDecimal("5"), new BigDecimal("4"));
+                secondOut.flush();
+                String[] expected = {"1 ACCEPTED", "2 ACCEPTED", "3 ACCEPTED", "4 REJECTED"};
+                for (String response : expected) {
+                    GatewayResponse received = GatewayProtocol.readResponse(secondIn);
+                    assertTrue(received.toString().startsWith(response), received.toString());
+                }
+
+                assertNotNull(btc.getOwner("A1"));
+                assertEquals(btc.getOwner("A1"), btc.getOwner("A2"));
+                assertEquals(btc.getOwner("A1"), service.getOrderBook(Symbol.ETH).getOwner("A3"));
+                assertNotEquals(btc.getOwner("A1"), btc.getOwner("B2"));
+                assertFalse(btc.containsOrder("B1"));
+
+                // cancel on disconnect takes the first session's orders out of every book
+                first.close();
+                MatchingEngine eth = service.getOrderBook(Symbol.ETH);
+                long deadline = System.currentTimeMillis() + 5000;
+                while ((btc.containsOrder("A1") || eth.containsOrder("A3")) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertFalse(btc.containsOrder("A1"));
+                assertFalse(btc.containsOrder("A2"));
+                assertFalse(eth.containsOrder("A3"));
+                assertTrue(btc.containsOrder("B2"));
+            }
+        }
+    }
+
+    // a connect completes once the server queued it, the peak only counts sessions the gateway accepted
+    private static void awaitActiveSessions(OrderGateway gateway, int sessions) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (gateway.getActiveSessions() < sessions && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
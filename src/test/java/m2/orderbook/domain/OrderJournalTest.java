@@ -0,0 +1,341 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.OrderBook;
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.FixedPointOrderBook;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.FlushPolicy;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.journal.BookSnapshot;
+import m2.orderbook.journal.JournalReader;
+import m2.orderbook.journal.JournalStore;
+import m2.orderbook.journal.OrderJournal;
+import m2.orderbook.journal.SnapshotFile;
+import m2.orderbook.sequencer.OrderSequencer;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+import m2.orderbook.util.BigDecimalUtility;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class OrderJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testReplayShouldRebuildTheSameBook() throws Exception {
+        Path file = directory.resolve("BTC.journal");
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+
+        // small regions so the stream crosses several region boundaries
+        try (OrderJournal journal = new OrderJournal(file, Symbol.BTC, FlushPolicy.BATCH, 4096, 64, 10);
+             OrderSequencer sequencer = new OrderSequencer(orderBook, 64, 64, journal)) {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            Random random = new Random(9);
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                int action = random.nextInt(10);
+                if (action < 6 || ids.isEmpty()) {
+                    String id = "o" + i;
+                    OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+                    Order order = new Order(id, new BigDecimal(95 + random.nextInt(10)), new BigDecimal(1 + random.nextInt(5)), side, Ordertype.LIMIT);
+                    futures.add(sequencer.submit(order, OrderActionType.ADD));
+                    ids.add(id);
+                } else if (action < 7) {
+                    Order order = new Order("mkt" + i, null, new BigDecimal(1 + random.nextInt(3)), random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL, Ordertype.MARKET);
+                    futures.add(sequencer.submit(order, OrderActionType.ADD));
+                } else if (action < 8) {
+                    // the side is a guess, wrong ones are rejected and replay the same way
+                    Order amend = new Order(ids.get(random.nextInt(ids.size())), new BigDecimal(95 + random.nextInt(10)), new BigDecimal(1 + random.nextInt(5)),
+                            random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL, Ordertype.LIMIT);
+                    futures.add(sequencer.submit(amend, OrderActionType.AMEND));
+                } else {
+                    // may already be filled, the rejection has to replay the same way
+                    futures.add(sequencer.submitCancel(ids.remove(random.nextInt(ids.size()))));
+                }
+            }
+            for (CompletableFuture<String> future : futures) {
+                future.handle((id, error) -> id).get();
+            }
+        }
+
+        FixedPointOrderBook replayed = new FixedPointOrderBook(Symbol.BTC);
+        assertEquals(2000, JournalReader.replay(file, replayed, 0));
+        assertEquals(orderBook.toString(), replayed.toString());
+        assertEquals(orderBook.getOrderCount(), replayed.getOrderCount());
+
+        // reopening continues the sequence after the last record
+        try (OrderJournal journal = new OrderJournal(file, Symbol.BTC, FlushPolicy.NONE)) {
+            assertEquals(2000, journal.getLastSequence());
+            journal.append(OrderActionType.REMOVE, null, "o0");
+            assertEquals(2001, journal.getLastSequence());
+        }
+        JournalReader reader = new JournalReader(file);
+        reader.read((sequence, actionType, order, orderId) -> { });
+        assertEquals(2001, reader.getLastSequence());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testTornRecordShouldBeIgnored() throws IOException {
+        Path file = directory.resolve("ETH.journal");
+        try (OrderJournal journal = new OrderJournal(file, Symbol.ETH, FlushPolicy.NONE)) {
+            journal.append(OrderActionType.ADD, new Order(Symbol.ETH, "a", new BigDecimal("10.5"), new BigDecimal("2"), OrderSide.BUY, Ordertype.LIMIT), "a");
+            journal.append(OrderActionType.ADD, new Order(Symbol.ETH, "b", new BigDecimal("11"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), "b");
+        }
+        JournalReader reader = new JournalReader(file);
+        reader.read((sequence, actionType, order, orderId) -> { });
+        long end = reader.getEndPosition();
+
+        // a crash after the body was written but before the length: only the body is on disk
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer body = ByteBuffer.allocate(16);
+            body.putLong(3).put((byte) 0).put((byte) 1).flip();
+            channel.write(body, end + 4);
+        }
+
+        List<String> ids = new ArrayList<>();
+        new JournalReader(file).read((sequence, actionType, order, orderId) -> ids.add(orderId));
+        assertEquals(List.of("a", "b"), ids);
+
+        FixedPointOrderBook replayed = new FixedPointOrderBook(Symbol.ETH);
+        assertEquals(2, JournalReader.replay(file, replayed, 0));
+        assertEquals(BigDecimalUtility.toFixedPoint(new BigDecimal("10.5")), replayed.getBestPrice(OrderSide.BUY));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testShardedServiceShouldRecoverFromItsJournal() {
+        EnumSet<Symbol> symbols = EnumSet.of(Symbol.BTC, Symbol.ETH);
+        String before;
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                symbols, 1024, directory, FlushPolicy.BATCH)) {
+            service.initializeOrderBook();
+            service.placeNewOrder(new Order(Symbol.BTC, "x1", new BigDecimal("2.5"), new BigDecimal("3"), OrderSide.BUY, Ordertype.LIMIT));
+            service.placeNewOrder(new Order(Symbol.ETH, "x2", new BigDecimal("9.5"), new BigDecimal("2"), OrderSide.SELL, Ordertype.LIMIT));
+            service.cancelOrder(Symbol.BTC, "x1");
+            service.close();
+            before = service.getOrderBook(Symbol.BTC).toString() + service.getOrderBook(Symbol.ETH).toString();
+        }
+
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                symbols, 1024, directory, FlushPolicy.BATCH)) {
+            service.initializeOrderBook();
+            service.close();
+            assertEquals(before, service.getOrderBook(Symbol.BTC).toString() + service.getOrderBook(Symbol.ETH).toString());
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(4)
+    void testSnapshotShouldKeepQueuePriority() {
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        orderBook.executeOrder(new Order("s1", new BigDecimal("10"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("s2", new BigDecimal("10"), new BigDecimal("2"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("s3", new BigDecimal("11"), new BigDecimal("3"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        orderBook.executeOrder(new Order("b1", new BigDecimal("9.5"), new BigDecimal("4"), OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+
+        Path file = directory.resolve("BTC.snapshot");
+        SnapshotFile.write(BookSnapshot.capture(orderBook, 42), file);
+        BookSnapshot snapshot = SnapshotFile.read(file);
+        assertEquals(42, snapshot.getSequence());
+        assertEquals(4, snapshot.size());
+
+        OrderBook restored = new OrderBook(Symbol.BTC);
+        snapshot.restore(restored);
+        assertEquals(orderBook.toString(), restored.toString());
+
+        // s1 was first at 10 and has to fill first after the restore
+        List<String> makers = new ArrayList<>();
+        restored.setEventListener(new OrderEventListener() {
+            @Override
+            public void onTrade(Symbol symbol, String takerId, String makerId, OrderSide takerSide, long price, long quantity) {
+                makers.add(makerId);
+            }
+        });
+        restored.executeOrder(new Order("t1", null, new BigDecimal("1"), OrderSide.BUY, Ordertype.MARKET), OrderActionType.ADD);
+        assertEquals(List.of("s1"), makers);
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(5)
+    void testRestartShouldLoadSnapshotAndReplayOnlyTheTail() throws IOException {
+        EnumSet<Symbol> symbols = EnumSet.of(Symbol.BTC);
+        String before;
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                symbols, 1024, directory, FlushPolicy.NONE)) {
+            service.initializeOrderBook();
+            service.placeNewOrder(new Order(Symbol.BTC, "x1", new BigDecimal("2.5"), new BigDecimal("3"), OrderSide.BUY, Ordertype.LIMIT));
+            service.takeSnapshot(Symbol.BTC);
+            service.placeNewOrder(new Order(Symbol.BTC, "x2", new BigDecimal("8.5"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+            service.cancelOrder(Symbol.BTC, "x1");
+            service.close();
+            before = service.getOrderBook(Symbol.BTC).toString();
+        }
+
+        // the snapshot covers the seed orders and x1, the rolled segment holding them is gone
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(Set.of("BTC.journal", "BTC.snapshot"), files.map(path -> path.getFileName().toString()).collect(Collectors.toSet()));
+        }
+        JournalReader reader = new JournalReader(directory.resolve("BTC.journal"));
+        List<String> tail = new ArrayList<>();
+        reader.read((sequence, actionType, order, orderId) -> tail.add(orderId));
+        assertEquals(List.of("x2", "x1"), tail);
+        assertEquals(13, reader.getLastSequence());
+
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                symbols, 1024, directory, FlushPolicy.NONE)) {
+            service.initializeOrderBook();
+            service.close();
+            assertEquals(before, service.getOrderBook(Symbol.BTC).toString());
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(6)
+    void testStopOrdersShouldSurviveJournalReplayAndSnapshots() {
+        Path file = directory.resolve("BTC.journal");
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        try (OrderJournal journal = new OrderJournal(file, Symbol.BTC, FlushPolicy.NONE);
+             OrderSequencer sequencer = new OrderSequencer(orderBook, 64, 64, journal)) {
+            sequencer.submit(new Order("s1", new BigDecimal("10"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+            sequencer.submit(new Order("s2", new BigDecimal("11"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+            sequencer.submit(new Order(Symbol.BTC, "stop", null, new BigDecimal("10.5"), new BigDecimal("1"), OrderSide.BUY, Ordertype.STOP), OrderActionType.ADD);
+            sequencer.submit(new Order(Symbol.BTC, "stopLimit", new BigDecimal("9"), new BigDecimal("9.5"), new BigDecimal("2"), OrderSide.SELL, Ordertype.STOP_LIMIT), OrderActionType.ADD).join();
+        }
+        assertEquals(2, orderBook.getStopOrderCount());
+
+        FixedPointOrderBook replayed = new FixedPointOrderBook(Symbol.BTC);
+        JournalReader.replay(file, replayed, 0);
+        assertEquals(stopOrders(orderBook), stopOrders(replayed));
+
+        Path snapshotFile = directory.resolve("BTC.snapshot");
+        SnapshotFile.write(BookSnapshot.capture(orderBook, 4), snapshotFile);
+        OrderBook restored = new OrderBook(Symbol.BTC);
+        SnapshotFile.read(snapshotFile).restore(restored);
+        assertEquals(orderBook.toString(), restored.toString());
+        assertEquals(stopOrders(orderBook), stopOrders(restored));
+
+        // the trade at 11 triggers the buy stop, which finds nothing left; the sell stop stays parked
+        for (MatchingEngine engine : List.of(orderBook, restored)) {
+            engine.executeOrder(new Order("t1", null, new BigDecimal("2"), OrderSide.BUY, Ordertype.MARKET), OrderActionType.ADD);
+            assertEquals(List.of("SELL stopLimit STOP_LIMIT 9.5 9 2"), stopOrders(engine));
+        }
+        assertEquals(orderBook.toString(), restored.toString());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(7)
+    void testOlderSnapshotShouldNotReplaceANewerOne() throws IOException {
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        orderBook.executeOrder(new Order("s1", new BigDecimal("10"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        BookSnapshot older = BookSnapshot.capture(orderBook, 5);
+        orderBook.executeOrder(new Order("s2", new BigDecimal("11"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD);
+        BookSnapshot newer = BookSnapshot.capture(orderBook, 10);
+        Files.createFile(directory.resolve("BTC.journal.5"));
+        Files.createFile(directory.resolve("BTC.journal.10"));
+        Files.createFile(directory.resolve("BTC.journal.15"));
+
+        // a scheduled and a manual snapshot finishing in the wrong order
+        JournalStore store = new JournalStore(directory, Symbol.BTC);
+        assertTrue(store.saveSnapshot(newer));
+        assertFalse(store.saveSnapshot(older));
+        assertEquals(10, SnapshotFile.read(store.getSnapshotFile()).getSequence());
+        assertEquals(2, SnapshotFile.read(store.getSnapshotFile()).size());
+        assertTrue(Files.exists(directory.resolve("BTC.journal.15")));
+        assertFalse(Files.exists(directory.resolve("BTC.journal.10")));
+
+        // the stored sequence is known after a restart as well
+        JournalStore reopened = new JournalStore(directory, Symbol.BTC);
+        assertFalse(reopened.saveSnapshot(older));
+        assertTrue(reopened.saveSnapshot(newer));
+        assertEquals(10, SnapshotFile.read(reopened.getSnapshotFile()).getSequence());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(8)
+    void testBatchPolicyShouldGroupCommitUnderLightLoad() throws InterruptedException {
+        Path file = directory.resolve("LTC.journal");
+        try (OrderJournal journal = new OrderJournal(file, Symbol.LTC, FlushPolicy.BATCH, 4096, 1024, 500)) {
+            long flushes = journal.getFlushCount();
+            // one command per sequencer batch, the worst case for a force at every batch end
+            for (int i = 0; i < 50; i++) {
+                journal.append(OrderActionType.ADD, new Order(Symbol.LTC, "o" + i, new BigDecimal("10"), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT), "o" + i);
+                journal.endOfBatch();
+            }
+            assertTrue(journal.getFlushCount() - flushes <= 2, "flushes: " + (journal.getFlushCount() - flushes));
+
+            // the tail is still forced once the interval is over
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (journal.getFlushCount() - flushes == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            long forced = journal.getFlushCount();
+            assertTrue(forced > flushes);
+            Thread.sleep(600);
+            assertEquals(forced, journal.getFlushCount(), "nothing left to force");
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(9)
+    void testCancelWithoutSymbolShouldOnlyBeJournaledByTheOwningShard() {
+        EnumSet<Symbol> symbols = EnumSet.of(Symbol.BTC, Symbol.ETH, Symbol.LTC);
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                symbols, 1024, directory, FlushPolicy.NONE)) {
+            service.initializeOrderBook();
+            service.placeNewOrder(new Order(Symbol.ETH, "x9", new BigDecimal("9.5"), new BigDecimal("2"), OrderSide.SELL, Ordertype.LIMIT));
+            service.cancelOrder("x9");
+            assertThrows(OrderException.class, () -> service.cancelOrder("x9"));
+        }
+
+        for (Symbol symbol : symbols) {
+            List<String> removes = new ArrayList<>();
+            new JournalReader(new JournalStore(directory, symbol).getJournalFile()).read((sequence, actionType, order, orderId) -> {
+                if (actionType == OrderActionType.REMOVE) {
+                    removes.add(orderId);
+                }
+            });
+            assertEquals(symbol == Symbol.ETH ? List.of("x9") : List.of(), removes, symbol.toString());
+        }
+    }
+
+    private static List<String> stopOrders(MatchingEngine engine) {
+        List<String> stops = new ArrayList<>();
+        for (OrderSide side : OrderSide.values()) {
+            engine.forEachStopOrder(side, (orderId, type, stopPrice, limitPrice, quantity) -> stops.add(side + " " + orderId + " " + type + " "
+                    + BigDecimalUtility.fromFixedPoint(stopPrice).stripTrailingZeros().toPlainString() + " "
+                    + BigDecimalUtility.fromFixedPoint(limitPrice).stripTrailingZeros().toPlainString() + " "
+                    + BigDecimalUtility.fromFixedPoint(quantity).stripTrailingZeros().toPlainString()));
+        }
+        return stops;
+    }
+}
@@ -0,0 +1,229 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.dto.OrderResult;
+import m2.orderbook.engine.FixedPointOrderBook;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.exception.OrderException;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.sequencer.OrderSequencer;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class OrderSequencerTest {
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testCommandsFromManyProducersShouldAllBeApplied() throws Exception {
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        int producers = 4;
+        int ordersPerProducer = 5000;
+
+        try (OrderSequencer sequencer = new OrderSequencer(orderBook, 16)) {
+            List<Thread> threads = new ArrayList<>();
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < ordersPerProducer; i++) {
+                        String id = producer + "-" + i;
+                        Order order = new Order(id, new BigDecimal(100 + producer), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT);
+                        sequencer.submit(order, OrderActionType.ADD);
+                        // cancel every other order straight away, ordering guarantees the add is applied first
+                        if (i % 2 == 0) {
+                            synchronized (futures) {
+                                futures.add(sequencer.submitCancel(id));
+                            }
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (CompletableFuture<String> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(producers * ordersPerProducer / 2, orderBook.getOrderCount());
+        assertEquals(producers, orderBook.getLevelCount(OrderSide.SELL));
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testEngineExceptionShouldCompleteFutureExceptionally() throws Exception {
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        try (OrderSequencer sequencer = new OrderSequencer(orderBook, 8)) {
+            CompletableFuture<String> future = sequencer.submitCancel("missing");
+            ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+            assertTrue(exception.getCause() instanceof OrderException);
+
+            // the matching thread keeps running after a failed command
+            Order order = new Order("1", new BigDecimal("100"), new BigDecimal("1"), OrderSide.BUY, Ordertype.LIMIT);
+            assertEquals("1", sequencer.submit(order, OrderActionType.ADD).get());
+        }
+        assertEquals(1, orderBook.getOrderCount());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testShardedServiceShouldRouteOrdersBySymbol() throws Exception {
+        ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC, Symbol.ETH), 64);
+        service.initializeOrderBook();
+        try {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(service.placeNewOrderAsync(new Order(Symbol.BTC, "b" + i, new BigDecimal("20"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT)));
+                futures.add(service.placeNewOrderAsync(new Order(Symbol.ETH, "e" + i, new BigDecimal("30"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT)));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            service.cancelOrder(Symbol.ETH, "e0");
+
+            assertThrows(OrderException.class, () -> {
+                service.cancelOrder(Symbol.BTC, "e1");
+            });
+            assertThrows(OrderException.class, () -> {
+                service.placeNewOrder(new Order(Symbol.LTC, "l1", new BigDecimal("30"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+            });
+        } finally {
+            service.close();
+        }
+        MatchingEngine btc = service.getOrderBook(Symbol.BTC);
+        MatchingEngine eth = service.getOrderBook(Symbol.ETH);
+        // 10 seeded orders per book plus the ones placed above
+        assertEquals(110, ((FixedPointOrderBook) btc).getOrderCount());
+        assertEquals(109, ((FixedPointOrderBook) eth).getOrderCount());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(4)
+    void testBatchShouldReturnPerOrderResultsAndPublishOnce() throws Exception {
+        AtomicInteger updates = new AtomicInteger();
+        ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, new OrderEventListener() {
+            @Override
+            public void onUpdateComplete(Symbol symbol) {
+                updates.incrementAndGet();
+            }
+        }, EnumSet.of(Symbol.BTC, Symbol.ETH), 64);
+        service.initializeOrderBook();
+        updates.set(0);
+        List<OrderResult> results;
+        List<OrderResult> cancelResults;
+        long versionBefore = service.getTopOfBook(Symbol.BTC).getVersion();
+        try {
+            List<Order> orders = new ArrayList<>();
+            orders.add(new Order(Symbol.BTC, "b1", new BigDecimal("20"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+            orders.add(new Order(Symbol.ETH, "e1", new BigDecimal("30"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+            orders.add(new Order(Symbol.BTC, "b1", new BigDecimal("21"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+            orders.add(new Order(Symbol.LTC, "l1", new BigDecimal("30"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+            orders.add(new Order(Symbol.BTC, "b2", new BigDecimal("0.5"), new BigDecimal("1"), OrderSide.BUY, Ordertype.LIMIT));
+            results = service.placeNewOrders(orders);
+
+            List<Order> cancels = new ArrayList<>();
+            cancels.add(orders.get(0));
+            cancels.add(new Order(Symbol.BTC, "missing", new BigDecimal("1"), new BigDecimal("1"), OrderSide.SELL, Ordertype.LIMIT));
+            cancelResults = service.cancelOrders(cancels);
+        } finally {
+            service.close();
+        }
+
+        assertEquals(List.of("b1", "e1", "b1", "l1", "b2"), results.stream().map(OrderResult::getOrderId).collect(Collectors.toList()));
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertTrue(results.get(2).getError() instanceof OrderException);
+        assertTrue(results.get(3).getError() instanceof OrderException);
+        assertTrue(results.get(4).isSuccess());
+        assertTrue(cancelResults.get(0).isSuccess());
+        assertFalse(cancelResults.get(1).isSuccess());
+
+        // BTC: one publish for the add batch and one for the cancel batch, ETH: one for its part of the adds
+        assertEquals(versionBefore + 4, service.getTopOfBook(Symbol.BTC).getVersion());
+        assertEquals(3, updates.get());
+        assertEquals(11, ((FixedPointOrderBook) service.getOrderBook(Symbol.BTC)).getOrderCount());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(5)
+    void testThrowingCallbackShouldNotStopTheMatchingThread() {
+        FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+        try (OrderSequencer sequencer = new OrderSequencer(orderBook, 4)) {
+            // far more commands than slots, a dead matching thread would leave the producer waiting for good
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> {
+                for (int i = 0; i < 20; i++) {
+                    Order order = new Order("t" + i, new BigDecimal(100), BigDecimal.ONE, OrderSide.SELL, Ordertype.LIMIT);
+                    sequencer.submit(order, OrderActionType.ADD, (orderId, error) -> {
+                        throw new IllegalStateException("callback failed for " + orderId);
+                    });
+                }
+                assertEquals("t20", sequencer.submit(new Order("t20", new BigDecimal(100), BigDecimal.ONE, OrderSide.SELL, Ordertype.LIMIT), OrderActionType.ADD).join());
+            });
+            assertEquals(21, orderBook.getOrderCount());
+            assertEquals(20, sequencer.getCallbackFailures());
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(6)
+    void testEveryAcceptedCommandShouldCompleteWhenCloseRacesProducers() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            FixedPointOrderBook orderBook = new FixedPointOrderBook(Symbol.BTC);
+            OrderSequencer sequencer = new OrderSequencer(orderBook, 4);
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                final int producer = p;
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int i = 0; ; i++) {
+                            Order order = new Order(producer + "-" + i, new BigDecimal(100), BigDecimal.ONE, OrderSide.SELL, Ordertype.LIMIT);
+                            CompletableFuture<String> future = sequencer.submit(order, OrderActionType.ADD);
+                            synchronized (futures) {
+                                futures.add(future);
+                            }
+                        }
+                    } catch (IllegalStateException closed) {
+                        // expected once close has run
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            Thread.sleep(2);
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> {
+                sequencer.close();
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            });
+            // close drains every command it accepted
+            synchronized (futures) {
+                for (CompletableFuture<String> future : futures) {
+                    assertTrue(future.isDone(), "round " + round);
+                }
+                assertEquals(futures.size(), orderBook.getOrderCount());
+            }
+        }
+    }
+}
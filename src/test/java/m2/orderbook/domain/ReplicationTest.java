@@ -0,0 +1,140 @@
+package m2.orderbook.domain;
+
+import m2.orderbook.dto.Order;
+import m2.orderbook.engine.MatchingEngine;
+import m2.orderbook.enums.EngineMode;
+import m2.orderbook.enums.OrderActionType;
+import m2.orderbook.enums.OrderSide;
+import m2.orderbook.enums.Ordertype;
+import m2.orderbook.enums.Symbol;
+import m2.orderbook.event.OrderEventListener;
+import m2.orderbook.loadgen.LoadHarness;
+import m2.orderbook.loadgen.LoadProfile;
+import m2.orderbook.loadgen.SyntheticOrderStream;
+import m2.orderbook.replication.ReplicaNode;
+import m2.orderbook.replication.ReplicationPrimary;
+import m2.orderbook.service.impl.ShardedOrderbookServiceImpl;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReplicationTest {
+
+    private static final String HOST = InetAddress.getLoopbackAddress().getHostAddress();
+
+    @Test
+    @org.junit.jupiter.api.Order(1)
+    void testReplicasShouldRebuildThePrimaryBook() throws Exception {
+        try (ReplicationPrimary primary = new ReplicationPrimary(0, EnumSet.of(Symbol.BTC));
+             ReplicaNode heapReplica = new ReplicaNode(HOST, primary.getPort(), Symbol.BTC, EngineMode.FIXED_POINT);
+             ReplicaNode offHeapReplica = new ReplicaNode(HOST, primary.getPort(), Symbol.BTC, EngineMode.OFF_HEAP)) {
+            ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                    EnumSet.of(Symbol.BTC), 1 << 10);
+            service.setReplication(primary);
+            service.initializeOrderBook();
+            new LoadHarness(service, null, 1000).run(new SyntheticOrderStream(new LoadProfile(EnumSet.of(Symbol.BTC), 13), 20000));
+            service.placeNewOrder(new Order(Symbol.BTC, "r-1", new BigDecimal("1"), new BigDecimal("2"), OrderSide.BUY, Ordertype.LIMIT));
+            service.amendOrder(new Order(Symbol.BTC, "r-1", new BigDecimal("1"), new BigDecimal("1"), OrderSide.BUY, Ordertype.LIMIT));
+            service.close();
+
+            // ten seed orders, the generated stream, the add and the amend
+            long lastSequence = primary.getLastSequence(Symbol.BTC);
+            assertEquals(20012, lastSequence);
+            assertTrue(heapReplica.awaitSequence(lastSequence, 10000));
+            assertTrue(offHeapReplica.awaitSequence(lastSequence, 10000));
+            assertTrue(primary.awaitAcked(Symbol.BTC, lastSequence, 10000));
+            assertEquals(0, primary.getLag(Symbol.BTC));
+            assertEquals(2, primary.getReplicaCount(Symbol.BTC));
+            assertTrue(primary.getOverhead(Symbol.BTC).getCount() > 0);
+
+            // rejected commands (cancels of filled orders) were rejected on the replicas as well
+            List<String> expected = book(service.getOrderBook(Symbol.BTC));
+            assertTrue(expected.size() > 10);
+            assertTrue(expected.contains("BUY r-1 100000000 100000000"));
+            assertEquals(expected, book(heapReplica.promote()));
+            assertEquals(expected, book(offHeapReplica.promote()));
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(2)
+    void testLateReplicaShouldCatchUpFromTheRetainedRecords() throws Exception {
+        try (ReplicationPrimary primary = new ReplicationPrimary(0, EnumSet.of(Symbol.BTC), 1000);
+             ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                     EnumSet.of(Symbol.BTC), 1 << 10)) {
+            service.setReplication(primary);
+            service.initializeOrderBook();
+            for (int i = 0; i < 500; i++) {
+                service.placeNewOrder(new Order(Symbol.BTC, "a-" + i, new BigDecimal(50 + i % 20), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT));
+            }
+
+            // everything since start is still retained
+            try (ReplicaNode late = new ReplicaNode(HOST, primary.getPort(), Symbol.BTC, EngineMode.FIXED_POINT)) {
+                assertTrue(late.awaitSequence(510, 10000));
+                assertEquals(510, late.getAppliedSequence());
+            }
+
+            for (int i = 0; i < 2000; i++) {
+                service.placeNewOrder(new Order(Symbol.BTC, "b-" + i, new BigDecimal(50 + i % 20), BigDecimal.ONE, OrderSide.BUY, Ordertype.LIMIT));
+            }
+            // the start of the stream is gone, a fresh replica would have to be seeded from elsewhere
+            IllegalStateException rejected = assertThrows(IllegalStateException.class,
+                    () -> new ReplicaNode(HOST, primary.getPort(), Symbol.BTC, EngineMode.FIXED_POINT));
+            assertTrue(rejected.getMessage().contains("not retained"), rejected.getMessage());
+            assertThrows(IllegalStateException.class, () -> new ReplicaNode(HOST, primary.getPort(), Symbol.ETH, EngineMode.FIXED_POINT));
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Order(3)
+    void testReplicaShouldTakeOverWhenThePrimaryIsGone() throws Exception {
+        ReplicationPrimary primary = new ReplicationPrimary(0, EnumSet.of(Symbol.BTC));
+        ReplicaNode replica = new ReplicaNode(HOST, primary.getPort(), Symbol.BTC, EngineMode.FIXED_POINT);
+        try (ShardedOrderbookServiceImpl service = new ShardedOrderbookServiceImpl(EngineMode.FIXED_POINT, OrderEventListener.NO_OP,
+                EnumSet.of(Symbol.BTC), 1 << 10)) {
+            service.setReplication(primary);
+            service.initializeOrderBook();
+            service.placeNewOrder(new Order(Symbol.BTC, "maker", new BigDecimal("200"), new BigDecimal("3"), OrderSide.SELL, Ordertype.LIMIT));
+            // ten seed orders and the maker
+            assertTrue(replica.awaitSequence(11, 10000));
+            assertTrue(primary.awaitAcked(Symbol.BTC, 11, 10000));
+
+            // the primary process dies
+            primary.close();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (replica.isConnected() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(replica.isConnected());
+            assertNotNull(replica.getFailure());
+        }
+
+        assertEquals(11, replica.getAppliedSequence());
+        MatchingEngine promoted = replica.promote();
+        List<String> sells = new ArrayList<>();
+        promoted.forEachRestingOrder(OrderSide.SELL, (orderId, price, quantity) -> sells.add(orderId + " " + quantity));
+        assertTrue(sells.contains("maker 300000000"));
+        // the promoted book serves on
+        promoted.cancelOrder("maker");
+        // takes the seeded ask at 6
+        promoted.executeOrder(new Order(Symbol.BTC, "after-takeover", new BigDecimal("6"), new BigDecimal("6"), OrderSide.BUY, Ordertype.LIMIT), OrderActionType.ADD);
+        assertEquals(7 * 100_000_000L, promoted.getTopOfBook().getBestAsk());
+    }
+
+    private static List<String> book(MatchingEngine engine) {
+        List<String> orders = new ArrayList<>();
+        for (OrderSide side : OrderSide.values()) {
+            engine.forEachRestingOrder(side, (orderId, price, quantity) -> orders.add(side + " " + orderId + " " + price + " " + quantity));
+        }
+        return orders;
+    }
+}